@@ -0,0 +1,363 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.webrtc.DataChannel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Data channel throughput and round trip time between two peers on this device.
+ * <p>
+ * For every message size, ordering mode and in-flight window the viewer keeps {@code window}
+ * messages outstanding, the master acknowledges each with a small echo, and every acknowledgement
+ * releases the next message. Throughput counts acknowledged payload bytes, the round trip is from
+ * send to acknowledgement. Results go to {@code benchmarks/datachannel-<time>.json} in the app's
+ * external files directory and to logcat.
+ * <p>
+ * Skipped unless the instrumentation is run with {@code -e benchmark true}, for example
+ * {@code adb shell am instrument -w -e benchmark true -e class
+ * com.amazonaws.kinesisvideo.webrtc.datachannel.DataChannelBenchmark
+ * com.amazonaws.kinesisvideo.demoapp.test/androidx.test.runner.AndroidJUnitRunner}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DataChannelBenchmark {
+
+    private static final String TAG = "KVSDataChannelBenchmark";
+
+    private static final int[] MESSAGE_SIZES = {256, 1024, 16 * 1024, 64 * 1024, 256 * 1024};
+
+    private static final int[] WINDOWS = {1, 8, 64};
+
+    private static final boolean[] ORDERED = {true, false};
+
+    /**
+     * Runs that would buffer more than this are skipped, libwebrtc closes a channel whose buffer
+     * exceeds 16 MiB.
+     */
+    private static final long MAX_IN_FLIGHT_BYTES = 8 * 1024 * 1024;
+
+    private static final long DEFAULT_DURATION_MS = 3000;
+
+    private static final long WARM_UP_MS = 500;
+
+    private static final long CONNECT_TIMEOUT_MS = 10000;
+
+    private static final long OPEN_TIMEOUT_MS = 5000;
+
+    private static final long DRAIN_TIMEOUT_MS = 5000;
+
+    private static final int FIRST_CHANNEL_ID = 100;
+
+    /**
+     * Send time in nanoseconds followed by the sequence number; the acknowledgement is the header.
+     */
+    private static final int HEADER_LENGTH = Long.BYTES + Integer.BYTES;
+
+    private Context context;
+
+    private long durationMs;
+
+    private LoopbackPeers peers;
+
+    private int nextChannelId = FIRST_CHANNEL_ID;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        final Bundle arguments = InstrumentationRegistry.getArguments();
+        Assume.assumeTrue("Run with -e benchmark true", Boolean.parseBoolean(arguments.getString("benchmark")));
+        durationMs = Long.parseLong(arguments.getString("benchmarkDurationMs", String.valueOf(DEFAULT_DURATION_MS)));
+
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        peers = new LoopbackPeers(context);
+        peers.connect(CONNECT_TIMEOUT_MS);
+    }
+
+    @After
+    public void tearDown() {
+        if (peers != null) {
+            peers.close();
+        }
+    }
+
+    @Test
+    public void sweep() throws InterruptedException, IOException {
+        final List<Result> results = new ArrayList<>();
+        for (final int messageSize : MESSAGE_SIZES) {
+            for (final boolean ordered : ORDERED) {
+                for (final int window : WINDOWS) {
+                    if ((long) messageSize * window > MAX_IN_FLIGHT_BYTES) {
+                        continue;
+                    }
+                    final Result result = run(messageSize, ordered, window);
+                    Log.i(TAG, result.toString());
+                    results.add(result);
+                }
+            }
+        }
+        final File file = write(new Report(results));
+        Log.i(TAG, "Wrote " + results.size() + " results to " + file);
+    }
+
+    private Result run(final int messageSize, final boolean ordered, final int window) throws InterruptedException {
+        final DataChannelSpec spec = DataChannelSpec.builder("benchmark-" + nextChannelId)
+                .setOrdered(ordered)
+                .setNegotiatedId(nextChannelId++)
+                .build();
+        final DataChannel[] channels = peers.openChannelPair(spec, OPEN_TIMEOUT_MS);
+        final Run run = new Run(channels[0], channels[1], messageSize, window);
+        try {
+            return run.measure(ordered);
+        } finally {
+            channels[0].unregisterObserver();
+            channels[1].unregisterObserver();
+            channels[0].close();
+            channels[1].close();
+        }
+    }
+
+    private File write(final Report report) throws IOException {
+        File directory = context.getExternalFilesDir("benchmarks");
+        if (directory == null) {
+            directory = new File(context.getFilesDir(), "benchmarks");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        final String time = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date(report.timestampMs));
+        final File file = new File(directory, "datachannel-" + time + ".json");
+        final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            gson.toJson(report, writer);
+        }
+        return file;
+    }
+
+    /**
+     * Value at quantile {@code q} of sorted {@code values}, nearest rank.
+     */
+    private static long percentile(final long[] values, final int count, final double q) {
+        if (count == 0) {
+            return 0;
+        }
+        final int rank = (int) Math.ceil(q * count);
+        return values[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    /**
+     * One measurement. The viewer sends from the test thread to fill the window and then from the
+     * signaling thread as acknowledgements come in; the master echoes on the signaling thread.
+     */
+    private final class Run {
+        private final DataChannel sender;
+
+        private final DataChannel echo;
+
+        private final int messageSize;
+
+        private final int window;
+
+        private final ByteBuffer payload;
+
+        private final ByteBuffer acknowledgement = ByteBuffer.allocateDirect(HEADER_LENGTH);
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final CountDownLatch drained = new CountDownLatch(1);
+
+        private long[] rttNs = new long[1024];
+
+        private int rttCount;
+
+        private long measuredBytes;
+
+        private int sequence;
+
+        private volatile boolean sending = true;
+
+        private volatile long measureFromNs;
+
+        private volatile long measureUntilNs;
+
+        Run(final DataChannel sender, final DataChannel echo, final int messageSize, final int window) {
+            this.sender = sender;
+            this.echo = echo;
+            this.messageSize = messageSize;
+            this.window = window;
+            this.payload = ByteBuffer.allocateDirect(messageSize);
+            for (int i = HEADER_LENGTH; i < messageSize; i++) {
+                payload.put(i, (byte) i);
+            }
+        }
+
+        Result measure(final boolean ordered) throws InterruptedException {
+            echo.registerObserver(new ObserverAdapter() {
+                @Override
+                public void onMessage(final DataChannel.Buffer buffer) {
+                    acknowledgement.clear();
+                    acknowledgement.putLong(buffer.data.getLong(0));
+                    acknowledgement.putInt(buffer.data.getInt(Long.BYTES));
+                    acknowledgement.flip();
+                    echo.send(new DataChannel.Buffer(acknowledgement, true));
+                }
+            });
+            sender.registerObserver(new ObserverAdapter() {
+                @Override
+                public void onMessage(final DataChannel.Buffer buffer) {
+                    onAcknowledged(buffer.data.getLong(0));
+                }
+            });
+
+            final long startNs = System.nanoTime();
+            measureFromNs = startNs + TimeUnit.MILLISECONDS.toNanos(WARM_UP_MS);
+            measureUntilNs = measureFromNs + TimeUnit.MILLISECONDS.toNanos(durationMs);
+            for (int i = 0; i < window; i++) {
+                sendNext();
+            }
+            Thread.sleep(WARM_UP_MS + durationMs);
+            sending = false;
+            if (!drained.await(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, inFlight.get() + " messages still in flight after " + DRAIN_TIMEOUT_MS + " ms");
+            }
+
+            synchronized (this) {
+                final long[] sorted = Arrays.copyOf(rttNs, rttCount);
+                Arrays.sort(sorted);
+                final double seconds = durationMs / 1000.0;
+                return new Result(messageSize, ordered, window, rttCount,
+                        measuredBytes / seconds / (1024 * 1024),
+                        nanosToMillis(percentile(sorted, rttCount, 0.50)),
+                        nanosToMillis(percentile(sorted, rttCount, 0.99)),
+                        nanosToMillis(percentile(sorted, rttCount, 1.0)));
+            }
+        }
+
+        private synchronized void sendNext() {
+            payload.clear();
+            payload.putLong(0, System.nanoTime());
+            payload.putInt(Long.BYTES, sequence++);
+            inFlight.incrementAndGet();
+            if (!sender.send(new DataChannel.Buffer(payload, true))) {
+                inFlight.decrementAndGet();
+                Log.e(TAG, "Send failed at " + messageSize + " bytes, window " + window);
+            }
+        }
+
+        private void onAcknowledged(final long sentAtNs) {
+            final long nowNs = System.nanoTime();
+            synchronized (this) {
+                if (sentAtNs >= measureFromNs && nowNs <= measureUntilNs) {
+                    if (rttCount == rttNs.length) {
+                        rttNs = Arrays.copyOf(rttNs, rttCount * 2);
+                    }
+                    rttNs[rttCount++] = nowNs - sentAtNs;
+                    measuredBytes += messageSize;
+                }
+            }
+            final int remaining = inFlight.decrementAndGet();
+            if (sending) {
+                sendNext();
+            } else if (remaining == 0) {
+                drained.countDown();
+            }
+        }
+    }
+
+    private static double nanosToMillis(final long nanos) {
+        return nanos / 1e6;
+    }
+
+    private abstract static class ObserverAdapter implements DataChannel.Observer {
+        @Override
+        public void onBufferedAmountChange(final long previousAmount) {
+        }
+
+        @Override
+        public void onStateChange() {
+        }
+    }
+
+    /**
+     * Written as JSON, field names are part of the output format.
+     */
+    static final class Result {
+        final int messageSize;
+
+        final boolean ordered;
+
+        final int window;
+
+        final int messages;
+
+        final double megabytesPerSecond;
+
+        final double rttP50Ms;
+
+        final double rttP99Ms;
+
+        final double rttMaxMs;
+
+        Result(final int messageSize, final boolean ordered, final int window, final int messages,
+               final double megabytesPerSecond, final double rttP50Ms, final double rttP99Ms,
+               final double rttMaxMs) {
+            this.messageSize = messageSize;
+            this.ordered = ordered;
+            this.window = window;
+            this.messages = messages;
+            this.megabytesPerSecond = megabytesPerSecond;
+            this.rttP50Ms = rttP50Ms;
+            this.rttP99Ms = rttP99Ms;
+            this.rttMaxMs = rttMaxMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "Result(messageSize=%d, ordered=%b, window=%d, messages=%d, MB/s=%.2f, rttP50Ms=%.3f, rttP99Ms=%.3f, rttMaxMs=%.3f)",
+                    messageSize, ordered, window, messages, megabytesPerSecond, rttP50Ms, rttP99Ms, rttMaxMs);
+        }
+    }
+
+    static final class Report {
+        final String device = Build.MANUFACTURER + " " + Build.MODEL;
+
+        final String osVersion = Build.VERSION.RELEASE;
+
+        final long timestampMs = System.currentTimeMillis();
+
+        final List<Result> results;
+
+        Report(final List<Result> results) {
+            this.results = results;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import android.content.Context;
+
+import com.amazonaws.kinesisvideo.signaling.model.Event;
+import com.amazonaws.kinesisvideo.signaling.model.Message;
+import com.amazonaws.kinesisvideo.webrtc.KinesisVideoPeerConnection;
+import com.amazonaws.kinesisvideo.webrtc.KinesisVideoSdpObserver;
+
+import org.webrtc.DataChannel;
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.PeerConnection;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.SessionDescription;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A viewer and a master peer connection in one process.
+ * <p>
+ * Offer, answer and ICE candidates go through the signaling message model: each is built as the
+ * {@link Message} the app would send and parsed back from the {@link Event} the other side would
+ * receive. Only host candidates are gathered, so no STUN or TURN server is involved.
+ */
+final class LoopbackPeers implements Closeable {
+
+    private static final String VIEWER_CLIENT_ID = "loopback-viewer";
+
+    private static final String BOOTSTRAP_LABEL = "loopback-bootstrap";
+
+    private static final long OPEN_POLL_MS = 5;
+
+    private final PeerConnectionFactory factory;
+
+    private final Side viewer = new Side(false);
+
+    private final Side master = new Side(true);
+
+    private final CountDownLatch connected = new CountDownLatch(2);
+
+    private volatile String failure;
+
+    LoopbackPeers(final Context context) {
+        PeerConnectionFactory.initialize(PeerConnectionFactory
+                .InitializationOptions
+                .builder(context)
+                .createInitializationOptions());
+        factory = PeerConnectionFactory.builder().createPeerConnectionFactory();
+
+        viewer.peerConnection = factory.createPeerConnection(rtcConfiguration(), viewer);
+        master.peerConnection = factory.createPeerConnection(rtcConfiguration(), master);
+        viewer.remote = master;
+        master.remote = viewer;
+    }
+
+    PeerConnection getViewer() {
+        return viewer.peerConnection;
+    }
+
+    PeerConnection getMaster() {
+        return master.peerConnection;
+    }
+
+    /**
+     * Runs the offer/answer exchange and waits for both sides to connect.
+     *
+     * @throws IllegalStateException if negotiation failed or timed out.
+     */
+    void connect(final long timeoutMs) throws InterruptedException {
+        // The offer needs an application section for the SCTP transport the channels run on
+        viewer.peerConnection.createDataChannel(BOOTSTRAP_LABEL, new DataChannel.Init());
+
+        viewer.peerConnection.createOffer(new FailureRecordingSdpObserver() {
+            @Override
+            public void onCreateSuccess(final SessionDescription offer) {
+                viewer.peerConnection.setLocalDescription(new FailureRecordingSdpObserver(), offer);
+                final Message message = Message.createOfferMessage(offer, VIEWER_CLIENT_ID);
+                final String sdp = Event.parseOfferEvent(receive(message));
+                master.setRemoteDescription(new SessionDescription(SessionDescription.Type.OFFER, sdp),
+                        this::answer);
+            }
+
+            private void answer() {
+                master.peerConnection.createAnswer(new FailureRecordingSdpObserver() {
+                    @Override
+                    public void onCreateSuccess(final SessionDescription answer) {
+                        master.peerConnection.setLocalDescription(new FailureRecordingSdpObserver(), answer);
+                        final Message message = Message.createAnswerMessage(answer, true, VIEWER_CLIENT_ID);
+                        final String sdp = Event.parseSdpEvent(receive(message));
+                        viewer.setRemoteDescription(new SessionDescription(SessionDescription.Type.ANSWER, sdp),
+                                null);
+                    }
+                }, new MediaConstraints());
+            }
+        }, new MediaConstraints());
+
+        if (!connected.await(timeoutMs, TimeUnit.MILLISECONDS) || failure != null) {
+            throw new IllegalStateException("Loopback peers did not connect: " + (failure != null ? failure : "timeout"));
+        }
+    }
+
+    /**
+     * Creates a pre-negotiated channel with the same id on both sides and waits until both are open.
+     *
+     * @return The viewer's channel first, the master's second.
+     */
+    DataChannel[] openChannelPair(final DataChannelSpec spec, final long timeoutMs) throws InterruptedException {
+        if (spec.getNegotiatedId() < 0) {
+            throw new IllegalArgumentException("Channel pair needs a negotiated id: " + spec);
+        }
+        final DataChannel viewerChannel = viewer.peerConnection.createDataChannel(spec.getLabel(), spec.toInit());
+        final DataChannel masterChannel = master.peerConnection.createDataChannel(spec.getLabel(), spec.toInit());
+
+        final long deadlineMs = System.currentTimeMillis() + timeoutMs;
+        while (viewerChannel.state() != DataChannel.State.OPEN || masterChannel.state() != DataChannel.State.OPEN) {
+            if (System.currentTimeMillis() > deadlineMs) {
+                throw new IllegalStateException("Data channel did not open: " + spec);
+            }
+            Thread.sleep(OPEN_POLL_MS);
+        }
+        return new DataChannel[]{viewerChannel, masterChannel};
+    }
+
+    @Override
+    public void close() {
+        viewer.peerConnection.dispose();
+        master.peerConnection.dispose();
+        factory.dispose();
+    }
+
+    private static PeerConnection.RTCConfiguration rtcConfiguration() {
+        final PeerConnection.RTCConfiguration rtcConfig =
+                new PeerConnection.RTCConfiguration(Collections.emptyList());
+        rtcConfig.bundlePolicy = PeerConnection.BundlePolicy.MAXBUNDLE;
+        rtcConfig.sdpSemantics = PeerConnection.SdpSemantics.UNIFIED_PLAN;
+        rtcConfig.rtcpMuxPolicy = PeerConnection.RtcpMuxPolicy.REQUIRE;
+        rtcConfig.tcpCandidatePolicy = PeerConnection.TcpCandidatePolicy.DISABLED;
+        return rtcConfig;
+    }
+
+    /**
+     * What the signaling service delivers to the other peer for {@code message}. Messages are built
+     * with the URL-safe alphabet while events are parsed with the default one, so the payload is
+     * mapped back here.
+     */
+    private static Event receive(final Message message) {
+        final String payload = message.getMessagePayload().replace('-', '+').replace('_', '/');
+        return new Event(message.getSenderClientId(), message.getAction(), payload);
+    }
+
+    private class FailureRecordingSdpObserver extends KinesisVideoSdpObserver {
+        @Override
+        public void onCreateFailure(final String error) {
+            super.onCreateFailure(error);
+            fail("create: " + error);
+        }
+
+        @Override
+        public void onSetFailure(final String error) {
+            super.onSetFailure(error);
+            fail("set: " + error);
+        }
+    }
+
+    private void fail(final String reason) {
+        failure = reason;
+        while (connected.getCount() > 0) {
+            connected.countDown();
+        }
+    }
+
+    private class Side extends KinesisVideoPeerConnection {
+        private final boolean isMaster;
+
+        private final List<IceCandidate> pendingCandidates = new ArrayList<>();
+
+        private PeerConnection peerConnection;
+
+        private Side remote;
+
+        private boolean remoteDescriptionSet;
+
+        private boolean reportedConnected;
+
+        Side(final boolean isMaster) {
+            this.isMaster = isMaster;
+        }
+
+        void setRemoteDescription(final SessionDescription description, final Runnable then) {
+            peerConnection.setRemoteDescription(new FailureRecordingSdpObserver() {
+                @Override
+                public void onSetSuccess() {
+                    super.onSetSuccess();
+                    synchronized (Side.this) {
+                        remoteDescriptionSet = true;
+                        for (final IceCandidate candidate : pendingCandidates) {
+                            peerConnection.addIceCandidate(candidate);
+                        }
+                        pendingCandidates.clear();
+                    }
+                    if (then != null) {
+                        then.run();
+                    }
+                }
+            }, description);
+        }
+
+        @Override
+        public void onIceCandidate(final IceCandidate iceCandidate) {
+            super.onIceCandidate(iceCandidate);
+            final Message message = isMaster
+                    ? Message.createIceCandidateMessage(iceCandidate, VIEWER_CLIENT_ID, "")
+                    : Message.createIceCandidateMessage(iceCandidate, null, VIEWER_CLIENT_ID);
+            final IceCandidate received = Event.parseIceCandidate(receive(message));
+            if (received != null) {
+                remote.addRemoteCandidate(received);
+            }
+        }
+
+        @Override
+        public void onIceConnectionChange(final PeerConnection.IceConnectionState iceConnectionState) {
+            super.onIceConnectionChange(iceConnectionState);
+            if (iceConnectionState == PeerConnection.IceConnectionState.FAILED) {
+                fail((isMaster ? "master" : "viewer") + " ICE failed");
+            } else if (iceConnectionState == PeerConnection.IceConnectionState.CONNECTED && !reportedConnected) {
+                reportedConnected = true;
+                connected.countDown();
+            }
+        }
+
+        private synchronized void addRemoteCandidate(final IceCandidate candidate) {
+            if (remoteDescriptionSet) {
+                peerConnection.addIceCandidate(candidate);
+            } else {
+                pendingCandidates.add(candidate);
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import com.amazonaws.AmazonWebServiceClient;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.regions.Region;
+import com.amazonaws.services.kinesisvideo.AWSKinesisVideoClient;
+import com.amazonaws.services.kinesisvideosignaling.AWSKinesisVideoSignalingClient;
+import com.amazonaws.services.kinesisvideowebrtcstorage.AWSKinesisVideoWebRTCStorageClient;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+/**
+ * Hands out one AWS service client per service, region and endpoint, so sessions reuse clients
+ * instead of constructing them for every call, and requests to the same endpoint share the
+ * client's HTTP configuration and keep-alive connections.
+ * <p>
+ * Clients are created with the credentials provider rather than with credentials, so the SDK asks
+ * it for credentials on every request and refreshed credentials are used without new clients.
+ * The least recently used clients are shut down once there are more than {@link #DEFAULT_MAX_CLIENTS}.
+ */
+public class AwsClientRegistry {
+
+    public static final int DEFAULT_MAX_CLIENTS = 16;
+
+    private static final String SERVICE_NAME = "kinesisvideo";
+
+    /**
+     * Creates and shuts down the clients of a service.
+     */
+    public abstract static class Service<T> {
+        private final String name;
+
+        protected Service(final String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @param endpoint {@code null} for the region's default endpoint.
+         */
+        protected abstract T create(AWSCredentialsProvider credentialsProvider, ClientConfiguration configuration,
+                                    String region, String endpoint);
+
+        protected abstract void shutdown(T client);
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final class SdkService<T extends AmazonWebServiceClient> extends Service<T> {
+        private final BiFunction<AWSCredentialsProvider, ClientConfiguration, T> constructor;
+
+        SdkService(final String name, final BiFunction<AWSCredentialsProvider, ClientConfiguration, T> constructor) {
+            super(name);
+            this.constructor = constructor;
+        }
+
+        @Override
+        protected T create(final AWSCredentialsProvider credentialsProvider, final ClientConfiguration configuration,
+                           final String region, final String endpoint) {
+            final T client = constructor.apply(credentialsProvider, configuration);
+            client.setRegion(Region.getRegion(region));
+            client.setSignerRegionOverride(region);
+            client.setServiceNameIntern(SERVICE_NAME);
+            if (endpoint != null) {
+                client.setEndpoint(endpoint);
+            }
+            return client;
+        }
+
+        @Override
+        protected void shutdown(final T client) {
+            client.shutdown();
+        }
+    }
+
+    /**
+     * The control plane: channels, their endpoints and storage configuration.
+     */
+    public static final Service<AWSKinesisVideoClient> KINESIS_VIDEO =
+            new SdkService<>("KinesisVideo", AWSKinesisVideoClient::new);
+
+    /**
+     * GetIceServerConfig, at a channel's HTTPS endpoint.
+     */
+    public static final Service<AWSKinesisVideoSignalingClient> SIGNALING =
+            new SdkService<>("KinesisVideoSignaling", AWSKinesisVideoSignalingClient::new);
+
+    /**
+     * JoinStorageSession, at a channel's WEBRTC endpoint.
+     */
+    public static final Service<AWSKinesisVideoWebRTCStorageClient> WEBRTC_STORAGE =
+            new SdkService<>("KinesisVideoWebRTCStorage", AWSKinesisVideoWebRTCStorageClient::new);
+
+    private static final class Key {
+        final Service<?> service;
+
+        final String region;
+
+        final String endpoint;
+
+        Key(final Service<?> service, final String region, final String endpoint) {
+            this.service = service;
+            this.region = region;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return service == other.service && region.equals(other.region) && Objects.equals(endpoint, other.endpoint);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(service, region, endpoint);
+        }
+    }
+
+    private final AWSCredentialsProvider credentialsProvider;
+
+    private final ClientConfiguration configuration;
+
+    private final int maxClients;
+
+    /**
+     * Clients by key, least recently used first.
+     */
+    private final Map<Key, Object> clients = new LinkedHashMap<>(DEFAULT_MAX_CLIENTS, 0.75f, true);
+
+    private long created;
+
+    private long reused;
+
+    private long evicted;
+
+    public AwsClientRegistry(final AWSCredentialsProvider credentialsProvider) {
+        this(credentialsProvider, new ClientConfiguration(), DEFAULT_MAX_CLIENTS);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code maxClients} is not positive.
+     */
+    public AwsClientRegistry(final AWSCredentialsProvider credentialsProvider, final ClientConfiguration configuration,
+                             final int maxClients) {
+        if (maxClients <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of clients " + maxClients);
+        }
+        this.credentialsProvider = credentialsProvider;
+        this.configuration = configuration;
+        this.maxClients = maxClients;
+    }
+
+    /**
+     * @return The client for the region's default endpoint.
+     */
+    public <T> T get(final Service<T> service, final String region) {
+        return get(service, region, null);
+    }
+
+    /**
+     * @param endpoint {@code null} for the region's default endpoint.
+     * @return The client for {@code endpoint}, created if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(final Service<T> service, final String region, final String endpoint) {
+        final Key key = new Key(service, region, endpoint);
+        final T existing = (T) clients.get(key);
+        if (existing != null) {
+            reused++;
+            return existing;
+        }
+        final T client = service.create(credentialsProvider, configuration, region, endpoint);
+        created++;
+        clients.put(key, client);
+        evictLeastRecentlyUsed();
+        return client;
+    }
+
+    public synchronized AwsClientStats getStats() {
+        return new AwsClientStats(clients.size(), created, reused, evicted);
+    }
+
+    /**
+     * Shuts down all clients. Later calls to {@link #get} create new ones.
+     */
+    public synchronized void shutdown() {
+        for (final Map.Entry<Key, Object> entry : clients.entrySet()) {
+            shutdown(entry.getKey().service, entry.getValue());
+        }
+        clients.clear();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        final Iterator<Map.Entry<Key, Object>> iterator = clients.entrySet().iterator();
+        while (clients.size() > maxClients && iterator.hasNext()) {
+            final Map.Entry<Key, Object> eldest = iterator.next();
+            iterator.remove();
+            evicted++;
+            shutdown(eldest.getKey().service, eldest.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void shutdown(final Service<T> service, final Object client) {
+        service.shutdown((T) client);
+    }
+}
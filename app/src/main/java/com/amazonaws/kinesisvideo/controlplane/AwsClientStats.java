@@ -0,0 +1,61 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+/**
+ * Snapshot of how often an {@link AwsClientRegistry} reused its clients.
+ */
+public final class AwsClientStats {
+
+    private final int clients;
+
+    private final long created;
+
+    private final long reused;
+
+    private final long evicted;
+
+    public AwsClientStats(final int clients, final long created, final long reused, final long evicted) {
+        this.clients = clients;
+        this.created = created;
+        this.reused = reused;
+        this.evicted = evicted;
+    }
+
+    /**
+     * @return Clients currently held.
+     */
+    public int getClients() {
+        return clients;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * @return Times an existing client, with its connections, was handed out.
+     */
+    public long getReused() {
+        return reused;
+    }
+
+    /**
+     * @return Clients shut down to stay within the registry's maximum.
+     */
+    public long getEvicted() {
+        return evicted;
+    }
+
+    /**
+     * @return The share of requests for a client served by an existing one, 0 if none.
+     */
+    public double getReuseRatio() {
+        final long requests = created + reused;
+        return requests == 0 ? 0 : (double) reused / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "AwsClientStats(clients=" + clients + ", created=" + created + ", reused=" + reused
+                + ", evicted=" + evicted + ", reuseRatio=" + String.format("%.2f", getReuseRatio()) + ")";
+    }
+}
@@ -0,0 +1,64 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * How long the stages of a {@link SignalingBootstrap.Session} took, in ms. Stages served from a
+ * cache are not run and have no time.
+ */
+public final class BootstrapTimings {
+
+    private final Map<SignalingBootstrap.Stage, Long> stageMs;
+
+    private final long channelInfoMs;
+
+    private final long iceServersMs;
+
+    BootstrapTimings(final Map<SignalingBootstrap.Stage, Long> stageMs, final long channelInfoMs,
+                     final long iceServersMs) {
+        this.stageMs = Collections.unmodifiableMap(new EnumMap<>(stageMs));
+        this.channelInfoMs = channelInfoMs;
+        this.iceServersMs = iceServersMs;
+    }
+
+    /**
+     * @return How long {@code stage} took, -1 if it was not run or has not finished.
+     */
+    public long getStageMs(final SignalingBootstrap.Stage stage) {
+        final Long ms = stageMs.get(stage);
+        return ms != null ? ms : -1;
+    }
+
+    /**
+     * @return From the start until the channel info was ready, -1 if it is not.
+     */
+    public long getChannelInfoMs() {
+        return channelInfoMs;
+    }
+
+    /**
+     * @return From the start until the ICE servers were ready, -1 if they are not.
+     */
+    public long getIceServersMs() {
+        return iceServersMs;
+    }
+
+    /**
+     * @return The sum of the stage times, i.e. how long running them one after the other would take.
+     */
+    public long getSequentialMs() {
+        long sum = 0;
+        for (final long ms : stageMs.values()) {
+            sum += ms;
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return "BootstrapTimings(stageMs=" + stageMs + ", channelInfoMs=" + channelInfoMs
+                + ", iceServersMs=" + iceServersMs + ", sequentialMs=" + getSequentialMs() + ")";
+    }
+}
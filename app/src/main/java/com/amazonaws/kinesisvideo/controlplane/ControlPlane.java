@@ -0,0 +1,48 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import com.amazonaws.services.kinesisvideosignaling.model.IceServer;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Kinesis Video Streams control plane calls a session needs before it can connect to its
+ * signaling channel. Each call is one round trip and blocks the calling thread.
+ * <p>
+ * The error messages of {@link ControlPlaneException} are shown to the user.
+ */
+public interface ControlPlane {
+
+    /**
+     * Calls DescribeSignalingChannel, and CreateSignalingChannel for a master if the channel does
+     * not exist.
+     *
+     * @return The channel ARN.
+     */
+    String getChannelArn(SignalingChannelKey key) throws ControlPlaneException;
+
+    /**
+     * Calls DescribeMediaStorageConfiguration.
+     *
+     * @return The ARN of the stream media is ingested to.
+     * @throws ControlPlaneException also if media storage is disabled for the channel.
+     */
+    String getStorageStreamArn(SignalingChannelKey key, String channelArn) throws ControlPlaneException;
+
+    /**
+     * Calls GetSignalingChannelEndpoint.
+     *
+     * @param ingestMedia Whether to also get the {@link SignalingChannelInfo#PROTOCOL_WEBRTC} endpoint.
+     * @return Resource endpoints by protocol.
+     */
+    Map<String, String> getEndpoints(SignalingChannelKey key, String channelArn, boolean ingestMedia)
+            throws ControlPlaneException;
+
+    /**
+     * Calls GetIceServerConfig.
+     *
+     * @param httpsEndpoint The {@link SignalingChannelInfo#PROTOCOL_HTTPS} endpoint of the channel.
+     */
+    List<IceServer> getIceServers(SignalingChannelKey key, String channelArn, String httpsEndpoint)
+            throws ControlPlaneException;
+}
@@ -0,0 +1,247 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import android.util.Log;
+
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers what the control plane reported about signaling channels, so a session on a channel
+ * used before can start without calling it.
+ * <p>
+ * Entries are used for {@link #DEFAULT_TTL_MS}. Once older than {@link #DEFAULT_REVALIDATE_AFTER_MS}
+ * they are still returned, and fetched again in the background for the next session. Whoever finds
+ * an entry not to work, e.g. because connecting to its signaling endpoint failed, must
+ * {@link #invalidate} it. Entries are kept in a JSON file and survive restarts of the app.
+ */
+public class ControlPlaneCache {
+
+    private static final String TAG = "KVSControlPlaneCache";
+
+    public static final long DEFAULT_TTL_MS = 24 * 60 * 60 * 1000L;
+
+    public static final long DEFAULT_REVALIDATE_AFTER_MS = 60 * 60 * 1000L;
+
+    /**
+     * Fetches a channel's info from the control plane.
+     */
+    public interface Loader {
+        SignalingChannelInfo load(SignalingChannelKey key) throws ControlPlaneException;
+    }
+
+    private static final class Entry {
+        String region;
+
+        String channelName;
+
+        ChannelRole role;
+
+        SignalingChannelInfo info;
+
+        long fetchedAtMs;
+
+        SignalingChannelKey key() {
+            return new SignalingChannelKey(region, channelName, role);
+        }
+    }
+
+    private static final Type ENTRIES_TYPE = new TypeToken<List<Entry>>() {
+    }.getType();
+
+    private final Gson gson = new Gson();
+
+    private final File file;
+
+    private final Executor revalidationExecutor;
+
+    private final LongSupplier clock;
+
+    private final long ttlMs;
+
+    private final long revalidateAfterMs;
+
+    private final Map<SignalingChannelKey, Entry> entries = new HashMap<>();
+
+    private final Set<SignalingChannelKey> revalidating = new HashSet<>();
+
+    private long hits;
+
+    private long misses;
+
+    private long revalidations;
+
+    public ControlPlaneCache(final File file, final Executor revalidationExecutor) {
+        this(file, revalidationExecutor, System::currentTimeMillis, DEFAULT_TTL_MS, DEFAULT_REVALIDATE_AFTER_MS);
+    }
+
+    /**
+     * @param clock Wall clock time in ms; entries outlive the process, so it must not be uptime.
+     * @throws IllegalArgumentException if the times are not positive or out of order.
+     */
+    public ControlPlaneCache(final File file, final Executor revalidationExecutor, final LongSupplier clock,
+                             final long ttlMs, final long revalidateAfterMs) {
+        if (ttlMs <= 0 || revalidateAfterMs <= 0 || revalidateAfterMs > ttlMs) {
+            throw new IllegalArgumentException("Invalid control plane cache configuration");
+        }
+        this.file = file;
+        this.revalidationExecutor = revalidationExecutor;
+        this.clock = clock;
+        this.ttlMs = ttlMs;
+        this.revalidateAfterMs = revalidateAfterMs;
+        read();
+    }
+
+    /**
+     * Returns the cached info for {@code key}, or fetches it with {@code loader} on the calling
+     * thread if there is none or it expired. Stale entries are refreshed with {@code loader} on the
+     * revalidation executor.
+     *
+     * @throws ControlPlaneException from {@code loader}.
+     */
+    public SignalingChannelInfo get(final SignalingChannelKey key, final Loader loader) throws ControlPlaneException {
+        final SignalingChannelInfo cached = getCached(key, loader);
+        if (cached != null) {
+            return cached;
+        }
+        final SignalingChannelInfo info = loader.load(key);
+        put(key, info);
+        return info;
+    }
+
+    /**
+     * Like {@link #get}, but returns {@code null} instead of fetching if there is no unexpired info
+     * for {@code key}.
+     */
+    public SignalingChannelInfo getIfPresent(final SignalingChannelKey key, final Loader loader) {
+        return getCached(key, loader);
+    }
+
+    /**
+     * @return The unexpired info for {@code key} without fetching or revalidating, {@code null} if none.
+     */
+    public synchronized SignalingChannelInfo peek(final SignalingChannelKey key) {
+        final Entry entry = entries.get(key);
+        return entry != null && clock.getAsLong() - entry.fetchedAtMs < ttlMs ? entry.info : null;
+    }
+
+    public void put(final SignalingChannelKey key, final SignalingChannelInfo info) {
+        final Entry entry = new Entry();
+        entry.region = key.getRegion();
+        entry.channelName = key.getChannelName();
+        entry.role = key.getRole();
+        entry.info = info;
+        entry.fetchedAtMs = clock.getAsLong();
+        synchronized (this) {
+            entries.put(key, entry);
+            write();
+        }
+    }
+
+    /**
+     * Drops the entry for {@code key}, so the next session fetches it again.
+     */
+    public synchronized void invalidate(final SignalingChannelKey key) {
+        if (entries.remove(key) != null) {
+            write();
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getRevalidations() {
+        return revalidations;
+    }
+
+    private synchronized SignalingChannelInfo getCached(final SignalingChannelKey key, final Loader loader) {
+        final Entry entry = entries.get(key);
+        final long ageMs = entry != null ? clock.getAsLong() - entry.fetchedAtMs : Long.MAX_VALUE;
+        if (ageMs >= ttlMs || ageMs < 0) {
+            misses++;
+            return null;
+        }
+        hits++;
+        if (ageMs >= revalidateAfterMs && revalidating.add(key)) {
+            revalidations++;
+            revalidationExecutor.execute(() -> revalidate(key, entry, loader));
+        }
+        return entry.info;
+    }
+
+    private void revalidate(final SignalingChannelKey key, final Entry stale, final Loader loader) {
+        try {
+            final SignalingChannelInfo info = loader.load(key);
+            synchronized (this) {
+                // Unless it was invalidated or replaced meanwhile
+                if (entries.get(key) == stale) {
+                    put(key, info);
+                }
+            }
+        } catch (final ControlPlaneException e) {
+            Log.w(TAG, "Could not revalidate " + key + ": " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                revalidating.remove(key);
+            }
+        }
+    }
+
+    private void read() {
+        if (!file.exists()) {
+            return;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            final List<Entry> stored = gson.fromJson(reader, ENTRIES_TYPE);
+            if (stored == null) {
+                return;
+            }
+            for (final Entry entry : stored) {
+                if (entry.region != null && entry.channelName != null && entry.role != null && entry.info != null) {
+                    entries.put(entry.key(), entry);
+                }
+            }
+        } catch (final IOException | JsonParseException e) {
+            // Starts over, the entries are fetched again
+            entries.clear();
+        }
+    }
+
+    private void write() {
+        final File temporary = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temporary), StandardCharsets.UTF_8)) {
+            gson.toJson(new ArrayList<>(entries.values()), ENTRIES_TYPE, writer);
+        } catch (final IOException e) {
+            Log.w(TAG, "Could not write control plane cache", e);
+            return;
+        }
+        if (!temporary.renameTo(file)) {
+            Log.w(TAG, "Could not replace control plane cache " + file);
+        }
+    }
+}
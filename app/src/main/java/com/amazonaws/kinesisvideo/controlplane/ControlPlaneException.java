@@ -0,0 +1,15 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+/**
+ * A control plane call failed. The message is meant for the user.
+ */
+public class ControlPlaneException extends Exception {
+
+    public ControlPlaneException(final String message) {
+        super(message);
+    }
+
+    public ControlPlaneException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
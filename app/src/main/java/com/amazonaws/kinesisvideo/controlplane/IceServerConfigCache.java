@@ -0,0 +1,300 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import android.util.Log;
+
+import com.amazonaws.services.kinesisvideosignaling.model.IceServer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the TURN servers GetIceServerConfig returned for a signaling channel until their
+ * credentials expire, so sessions started meanwhile do not call it again.
+ * <p>
+ * The servers are used until {@link #DEFAULT_SAFETY_MARGIN_MS} before the shortest TTL among them
+ * ends. While a session has a {@link Listener} registered for the channel, they are fetched again
+ * {@link #DEFAULT_REFRESH_LEAD_MS} before that, and the listener gets the new servers to pass to its
+ * peer connections, which keep using the old credentials for TURN allocations otherwise.
+ * <p>
+ * The credentials are kept in memory only.
+ */
+public class IceServerConfigCache {
+
+    private static final String TAG = "KVSIceServerConfigCache";
+
+    public static final long DEFAULT_SAFETY_MARGIN_MS = 30 * 1000L;
+
+    public static final long DEFAULT_REFRESH_LEAD_MS = 30 * 1000L;
+
+    /**
+     * TTL assumed for servers without one. GetIceServerConfig currently returns 300 seconds.
+     */
+    static final int DEFAULT_TTL_SECONDS = 300;
+
+    /**
+     * Bounds how often a channel's servers are fetched, also after failures.
+     */
+    static final long MIN_REFRESH_DELAY_MS = 5 * 1000L;
+
+    /**
+     * Calls GetIceServerConfig. Runs on the calling thread of {@link #get} and on the executor for
+     * refreshes, so it must not hold on to UI objects.
+     */
+    public interface Loader {
+        List<IceServer> load(SignalingChannelKey key) throws ControlPlaneException;
+    }
+
+    public interface Listener {
+        /**
+         * Called on the executor with servers replacing the ones of the last call or of {@link #get}.
+         */
+        void onIceServersRefreshed(List<IceServer> iceServers);
+    }
+
+    private static final class Entry {
+        final Loader loader;
+
+        final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+        List<IceServer> iceServers;
+
+        long expiresAtMs;
+
+        ScheduledFuture<?> refreshTask;
+
+        Entry(final Loader loader) {
+            this.loader = loader;
+        }
+    }
+
+    private final ScheduledExecutorService executor;
+
+    private final LongSupplier clock;
+
+    private final long safetyMarginMs;
+
+    private final long refreshLeadMs;
+
+    private final Map<SignalingChannelKey, Entry> entries = new HashMap<>();
+
+    private final Map<SignalingChannelKey, CompletableFuture<List<IceServer>>> loading = new HashMap<>();
+
+    private long hits;
+
+    private long misses;
+
+    private long refreshes;
+
+    public IceServerConfigCache(final ScheduledExecutorService executor, final LongSupplier clock) {
+        this(executor, clock, DEFAULT_SAFETY_MARGIN_MS, DEFAULT_REFRESH_LEAD_MS);
+    }
+
+    /**
+     * @param clock Time in ms, e.g. {@code SystemClock::elapsedRealtime}.
+     * @throws IllegalArgumentException if the margins are negative.
+     */
+    public IceServerConfigCache(final ScheduledExecutorService executor, final LongSupplier clock,
+                                final long safetyMarginMs, final long refreshLeadMs) {
+        if (safetyMarginMs < 0 || refreshLeadMs < 0) {
+            throw new IllegalArgumentException("Invalid ICE server config cache configuration");
+        }
+        this.executor = executor;
+        this.clock = clock;
+        this.safetyMarginMs = safetyMarginMs;
+        this.refreshLeadMs = refreshLeadMs;
+    }
+
+    /**
+     * Returns the cached servers for {@code key}, or fetches them with {@code loader} on the calling
+     * thread if there are none or they are about to expire. {@code loader} is kept for refreshes.
+     *
+     * @throws ControlPlaneException from {@code loader}.
+     */
+    public List<IceServer> get(final SignalingChannelKey key, final Loader loader) throws ControlPlaneException {
+        try {
+            return getAsync(key, loader, Runnable::run).join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof ControlPlaneException) {
+                throw (ControlPlaneException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Like {@link #get}, but fetches on {@code executor}. If the servers for {@code key} are being
+     * fetched already, returns the pending result instead of fetching them again, so a session can
+     * pick up servers fetched for it before it started.
+     *
+     * @return Completes exceptionally with the {@link ControlPlaneException} from {@code loader}.
+     */
+    public CompletableFuture<List<IceServer>> getAsync(final SignalingChannelKey key, final Loader loader,
+                                                       final Executor executor) {
+        final CompletableFuture<List<IceServer>> loading;
+        synchronized (this) {
+            final Entry entry = entries.get(key);
+            if (entry != null && entry.iceServers != null && clock.getAsLong() < entry.expiresAtMs) {
+                hits++;
+                return CompletableFuture.completedFuture(entry.iceServers);
+            }
+            final CompletableFuture<List<IceServer>> pending = this.loading.get(key);
+            if (pending != null) {
+                hits++;
+                return pending;
+            }
+            misses++;
+            loading = new CompletableFuture<>();
+            this.loading.put(key, loading);
+        }
+        executor.execute(() -> load(key, loader, loading));
+        return loading;
+    }
+
+    /**
+     * Has {@code listener} called with new servers for {@code key} until removed. Does nothing
+     * if there are no servers cached for {@code key}, as there is nothing to refresh them with.
+     *
+     * @return {@code false} if there are no servers cached for {@code key}.
+     */
+    public synchronized boolean addListener(final SignalingChannelKey key, final Listener listener) {
+        final Entry entry = entries.get(key);
+        if (entry == null || entry.iceServers == null) {
+            return false;
+        }
+        entry.listeners.add(listener);
+        scheduleRefresh(key, entry);
+        return true;
+    }
+
+    public synchronized void removeListener(final SignalingChannelKey key, final Listener listener) {
+        final Entry entry = entries.get(key);
+        if (entry == null || !entry.listeners.remove(listener) || !entry.listeners.isEmpty()) {
+            return;
+        }
+        if (entry.refreshTask != null) {
+            entry.refreshTask.cancel(false);
+            entry.refreshTask = null;
+        }
+    }
+
+    /**
+     * Drops the servers for {@code key}, so the next session fetches them again.
+     */
+    public synchronized void invalidate(final SignalingChannelKey key) {
+        final Entry entry = entries.remove(key);
+        if (entry != null && entry.refreshTask != null) {
+            entry.refreshTask.cancel(false);
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getRefreshes() {
+        return refreshes;
+    }
+
+    /**
+     * @return The shortest TTL among {@code iceServers} in ms.
+     */
+    static long ttlMs(final List<IceServer> iceServers) {
+        long ttlSeconds = Long.MAX_VALUE;
+        for (final IceServer iceServer : iceServers) {
+            final Integer ttl = iceServer.getTtl();
+            ttlSeconds = Math.min(ttlSeconds, ttl != null ? ttl : DEFAULT_TTL_SECONDS);
+        }
+        return TimeUnit.SECONDS.toMillis(ttlSeconds == Long.MAX_VALUE ? DEFAULT_TTL_SECONDS : ttlSeconds);
+    }
+
+    private void load(final SignalingChannelKey key, final Loader loader,
+                      final CompletableFuture<List<IceServer>> loading) {
+        final List<IceServer> iceServers;
+        try {
+            final List<IceServer> loaded = loader.load(key);
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry == null) {
+                    entry = new Entry(loader);
+                    entries.put(key, entry);
+                }
+                update(key, entry, loaded);
+                iceServers = entry.iceServers;
+                this.loading.remove(key);
+            }
+        } catch (final ControlPlaneException | RuntimeException e) {
+            synchronized (this) {
+                this.loading.remove(key);
+            }
+            loading.completeExceptionally(e);
+            return;
+        }
+        loading.complete(iceServers);
+    }
+
+    private void update(final SignalingChannelKey key, final Entry entry, final List<IceServer> iceServers) {
+        entry.iceServers = Collections.unmodifiableList(new ArrayList<>(iceServers));
+        entry.expiresAtMs = clock.getAsLong() + ttlMs(iceServers) - safetyMarginMs;
+        if (entry.refreshTask != null) {
+            entry.refreshTask.cancel(false);
+            entry.refreshTask = null;
+        }
+        scheduleRefresh(key, entry);
+    }
+
+    private void scheduleRefresh(final SignalingChannelKey key, final Entry entry) {
+        if (entry.refreshTask != null || entry.listeners.isEmpty()) {
+            return;
+        }
+        final long delayMs = Math.max(MIN_REFRESH_DELAY_MS, entry.expiresAtMs - refreshLeadMs - clock.getAsLong());
+        entry.refreshTask = executor.schedule(() -> refresh(key, entry), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void refresh(final SignalingChannelKey key, final Entry entry) {
+        synchronized (this) {
+            if (entries.get(key) != entry || entry.listeners.isEmpty()) {
+                return;
+            }
+            entry.refreshTask = null;
+        }
+        final List<IceServer> loaded;
+        try {
+            loaded = entry.loader.load(key);
+        } catch (final ControlPlaneException e) {
+            Log.w(TAG, "Could not refresh ICE servers of " + key + ": " + e.getMessage());
+            synchronized (this) {
+                if (entries.get(key) == entry) {
+                    scheduleRefresh(key, entry);
+                }
+            }
+            return;
+        }
+        final List<IceServer> iceServers;
+        synchronized (this) {
+            if (entries.get(key) != entry) {
+                return;
+            }
+            refreshes++;
+            update(key, entry, loaded);
+            iceServers = entry.iceServers;
+        }
+        for (final Listener listener : entry.listeners) {
+            listener.onIceServersRefreshed(iceServers);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import android.util.Log;
+
+import com.amazonaws.services.kinesisvideo.AWSKinesisVideoClient;
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+import com.amazonaws.services.kinesisvideo.model.CreateSignalingChannelRequest;
+import com.amazonaws.services.kinesisvideo.model.CreateSignalingChannelResult;
+import com.amazonaws.services.kinesisvideo.model.DescribeMediaStorageConfigurationRequest;
+import com.amazonaws.services.kinesisvideo.model.DescribeMediaStorageConfigurationResult;
+import com.amazonaws.services.kinesisvideo.model.DescribeSignalingChannelRequest;
+import com.amazonaws.services.kinesisvideo.model.DescribeSignalingChannelResult;
+import com.amazonaws.services.kinesisvideo.model.GetSignalingChannelEndpointRequest;
+import com.amazonaws.services.kinesisvideo.model.GetSignalingChannelEndpointResult;
+import com.amazonaws.services.kinesisvideo.model.ResourceEndpointListItem;
+import com.amazonaws.services.kinesisvideo.model.ResourceNotFoundException;
+import com.amazonaws.services.kinesisvideo.model.SingleMasterChannelEndpointConfiguration;
+import com.amazonaws.services.kinesisvideosignaling.AWSKinesisVideoSignalingClient;
+import com.amazonaws.services.kinesisvideosignaling.model.GetIceServerConfigRequest;
+import com.amazonaws.services.kinesisvideosignaling.model.GetIceServerConfigResult;
+import com.amazonaws.services.kinesisvideosignaling.model.IceServer;
+import com.amazonaws.services.kinesisvideowebrtcstorage.model.JoinStorageSessionRequest;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ControlPlane} calling Kinesis Video Streams with the AWS SDK.
+ */
+public class KinesisVideoControlPlane implements ControlPlane {
+
+    private static final String TAG = "KVSControlPlane";
+
+    private final AwsClientRegistry clients;
+
+    public KinesisVideoControlPlane(final AwsClientRegistry clients) {
+        this.clients = clients;
+    }
+
+    // Step 2. Use the Kinesis Video Client to call DescribeSignalingChannel API.
+    //         If that fails with ResourceNotFoundException, the channel does not exist.
+    //         If we are connecting as Master, if it doesn't exist, we attempt to create
+    //         it by calling CreateSignalingChannel API.
+    @Override
+    public String getChannelArn(final SignalingChannelKey key) throws ControlPlaneException {
+        final AWSKinesisVideoClient awsKinesisVideoClient = getAwsKinesisVideoClient(key.getRegion());
+        try {
+            final DescribeSignalingChannelResult describeSignalingChannelResult = awsKinesisVideoClient.describeSignalingChannel(
+                    new DescribeSignalingChannelRequest()
+                            .withChannelName(key.getChannelName()));
+
+            return describeSignalingChannelResult.getChannelInfo().getChannelARN();
+        } catch (final ResourceNotFoundException e) {
+            if (key.getRole().equals(ChannelRole.MASTER)) {
+                try {
+                    CreateSignalingChannelResult createSignalingChannelResult = awsKinesisVideoClient.createSignalingChannel(
+                            new CreateSignalingChannelRequest()
+                                    .withChannelName(key.getChannelName()));
+
+                    return createSignalingChannelResult.getChannelARN();
+                } catch (Exception ex) {
+                    throw new ControlPlaneException("Create Signaling Channel failed with Exception " + ex.getLocalizedMessage(), ex);
+                }
+            } else {
+                throw new ControlPlaneException("Signaling Channel " + key.getChannelName() + " doesn't exist!");
+            }
+        } catch (Exception ex) {
+            throw new ControlPlaneException("Describe Signaling Channel failed with Exception " + ex.getLocalizedMessage(), ex);
+        }
+    }
+
+    // Step 3. If we are ingesting media, we need to check if the Signaling Channel has a Kinesis Video
+    //         Stream configured to write media to. We can call the DescribeMediaStorageConfiguration API
+    //         to determine this.
+    @Override
+    public String getStorageStreamArn(final SignalingChannelKey key, final String channelArn) throws ControlPlaneException {
+        final DescribeMediaStorageConfigurationResult describeMediaStorageConfigurationResult;
+        try {
+            describeMediaStorageConfigurationResult = getAwsKinesisVideoClient(key.getRegion()).describeMediaStorageConfiguration(
+                    new DescribeMediaStorageConfigurationRequest()
+                            .withChannelARN(channelArn));
+        } catch (ControlPlaneException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new ControlPlaneException("Describe Media Storage Configuration failed with Exception " + ex.getLocalizedMessage(), ex);
+        }
+        if (!"ENABLED".equalsIgnoreCase(describeMediaStorageConfigurationResult.getMediaStorageConfiguration().getStatus())) {
+            Log.e(TAG, "Media storage is not enabled for this channel!");
+            throw new ControlPlaneException("Media Storage is DISABLED for this channel!");
+        }
+        return describeMediaStorageConfigurationResult.getMediaStorageConfiguration().getStreamARN();
+    }
+
+    // Step 4. Use the Kinesis Video Client to call GetSignalingChannelEndpoint.
+    //         Each signaling channel is assigned an HTTPS and WSS endpoint to connect
+    //         to for data-plane operations, which we fetch using the GetSignalingChannelEndpoint API,
+    //         and a WEBRTC endpoint to for storage data-plane operations.
+    //         Attempting to obtain the WEBRTC endpoint if the signaling channel is not configured
+    //         will result in an InvalidArgumentException.
+    @Override
+    public Map<String, String> getEndpoints(final SignalingChannelKey key, final String channelArn,
+                                            final boolean ingestMedia) throws ControlPlaneException {
+        final String[] protocols;
+        if (ingestMedia) {
+            protocols = new String[]{"WSS", "HTTPS", "WEBRTC"};
+        } else {
+            protocols = new String[]{"WSS", "HTTPS"};
+        }
+
+        final Map<String, String> endpoints = new HashMap<>();
+        try {
+            final GetSignalingChannelEndpointResult getSignalingChannelEndpointResult = getAwsKinesisVideoClient(key.getRegion()).getSignalingChannelEndpoint(
+                    new GetSignalingChannelEndpointRequest()
+                            .withChannelARN(channelArn)
+                            .withSingleMasterChannelEndpointConfiguration(
+                                    new SingleMasterChannelEndpointConfiguration()
+                                            .withProtocols(protocols)
+                                            .withRole(key.getRole())));
+
+            Log.i(TAG, "Endpoints " + getSignalingChannelEndpointResult.toString());
+            for (final ResourceEndpointListItem endpoint : getSignalingChannelEndpointResult.getResourceEndpointList()) {
+                endpoints.put(endpoint.getProtocol(), endpoint.getResourceEndpoint());
+            }
+        } catch (ControlPlaneException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ControlPlaneException("Get Signaling Endpoint failed with Exception " + e.getLocalizedMessage(), e);
+        }
+        return endpoints;
+    }
+
+    // Step 5. Construct the Kinesis Video Signaling Client. The HTTPS endpoint from the
+    //         GetSignalingChannelEndpoint response above is used with this client. This
+    //         client is just used for getting ICE servers, not for actual signaling.
+    // Step 6. Call GetIceServerConfig in order to obtain TURN ICE server info.
+    //         Note: the STUN endpoint will be `stun:stun.kinesisvideo.${region}.amazonaws.com:443`
+    @Override
+    public List<IceServer> getIceServers(final SignalingChannelKey key, final String channelArn,
+                                         final String httpsEndpoint) throws ControlPlaneException {
+        try {
+            final AWSKinesisVideoSignalingClient awsKinesisVideoSignalingClient = getAwsKinesisVideoSignalingClient(key.getRegion(), httpsEndpoint);
+            GetIceServerConfigResult getIceServerConfigResult = awsKinesisVideoSignalingClient.getIceServerConfig(
+                    new GetIceServerConfigRequest().withChannelARN(channelArn).withClientId(key.getRole().name()));
+            return getIceServerConfigResult.getIceServerList();
+        } catch (Exception e) {
+            throw new ControlPlaneException("Get Ice Server Config failed with Exception " + e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Asks the storage service to join the channel's session as a viewer, which it answers before
+     * sending its offer, see {@link StorageSessionSupervisor}.
+     *
+     * @param webrtcEndpoint The channel's WEBRTC endpoint.
+     */
+    public void joinStorageSession(final String region, final String webrtcEndpoint, final String channelArn)
+            throws ControlPlaneException {
+        try {
+            clients.get(AwsClientRegistry.WEBRTC_STORAGE, region, webrtcEndpoint)
+                    .joinStorageSession(new JoinStorageSessionRequest().withChannelArn(channelArn));
+        } catch (Exception e) {
+            throw new ControlPlaneException("Join Storage Session failed with Exception " + e.getLocalizedMessage(), e);
+        }
+    }
+
+    // Step 1. Create Kinesis Video Client, or reuse the one created for the region before
+    private AWSKinesisVideoClient getAwsKinesisVideoClient(final String region) throws ControlPlaneException {
+        try {
+            return clients.get(AwsClientRegistry.KINESIS_VIDEO, region);
+        } catch (Exception e) {
+            throw new ControlPlaneException("Create client failed with " + e.getLocalizedMessage(), e);
+        }
+    }
+
+    private AWSKinesisVideoSignalingClient getAwsKinesisVideoSignalingClient(final String region, final String endpoint) {
+        return clients.get(AwsClientRegistry.SIGNALING, region, endpoint);
+    }
+}
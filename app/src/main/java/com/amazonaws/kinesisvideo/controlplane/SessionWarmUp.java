@@ -0,0 +1,369 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Prepares a session speculatively while it is being configured, so starting it only has to
+ * connect. Once the inputs did not change for {@link #DEFAULT_SETTLE_MS}, the channel info and ICE
+ * servers are fetched into the caches with {@link SignalingBootstrap#warmUp}, the signaling URL is
+ * signed, and the initializer runs, e.g. to load the WebRTC native library.
+ * <p>
+ * Warm state not {@link #take taken} within {@link #DEFAULT_MAX_AGE_MS} is discarded, well before
+ * its signed URL expires. What is spent on sessions that never start is bounded: one warm-up runs at
+ * a time, at most {@link #DEFAULT_MAX_WARM_UPS} start per {@link #DEFAULT_BUDGET_WINDOW_MS}, each
+ * is given up after {@link #DEFAULT_DEADLINE_MS}, and the initializer runs once.
+ */
+public class SessionWarmUp {
+
+    public static final long DEFAULT_SETTLE_MS = 1500;
+
+    public static final long DEFAULT_MAX_AGE_MS = 2 * 60 * 1000L;
+
+    public static final long DEFAULT_DEADLINE_MS = 15 * 1000L;
+
+    public static final int DEFAULT_MAX_WARM_UPS = 4;
+
+    public static final long DEFAULT_BUDGET_WINDOW_MS = 5 * 60 * 1000L;
+
+    /**
+     * Signs the URL a session connects to signaling with.
+     */
+    public interface UrlSigner {
+        /**
+         * @param clientId The viewer's client id, never empty for a viewer.
+         * @throws ControlPlaneException if there are no credentials to sign with.
+         */
+        URI sign(SignalingChannelKey key, SignalingChannelInfo info, String clientId) throws ControlPlaneException;
+    }
+
+    /**
+     * What a warm-up prepared for a session.
+     */
+    public static final class Warm {
+        private final SignalingChannelKey key;
+
+        private final boolean ingestMedia;
+
+        private final String clientId;
+
+        private final SignalingChannelInfo channelInfo;
+
+        private final URI signedUri;
+
+        private Warm(final SignalingChannelKey key, final boolean ingestMedia, final String clientId,
+                     final SignalingChannelInfo channelInfo, final URI signedUri) {
+            this.key = key;
+            this.ingestMedia = ingestMedia;
+            this.clientId = clientId;
+            this.channelInfo = channelInfo;
+            this.signedUri = signedUri;
+        }
+
+        public SignalingChannelKey getKey() {
+            return key;
+        }
+
+        public boolean isIngestMedia() {
+            return ingestMedia;
+        }
+
+        /**
+         * @return The client id the URL was signed for, generated if none was given.
+         */
+        public String getClientId() {
+            return clientId;
+        }
+
+        public SignalingChannelInfo getChannelInfo() {
+            return channelInfo;
+        }
+
+        public URI getSignedUri() {
+            return signedUri;
+        }
+    }
+
+    private static final class Inputs {
+        final SignalingChannelKey key;
+
+        final boolean ingestMedia;
+
+        final String clientId;
+
+        Inputs(final SignalingChannelKey key, final boolean ingestMedia, final String clientId) {
+            this.key = key;
+            this.ingestMedia = ingestMedia;
+            this.clientId = clientId == null ? "" : clientId;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Inputs)) {
+                return false;
+            }
+            final Inputs other = (Inputs) o;
+            return key.equals(other.key) && ingestMedia == other.ingestMedia && clientId.equals(other.clientId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, ingestMedia, clientId);
+        }
+    }
+
+    private final SignalingBootstrap bootstrap;
+
+    private final UrlSigner signer;
+
+    private final Runnable initializer;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final LongSupplier clock;
+
+    private final long settleMs;
+
+    private final long maxAgeMs;
+
+    private final long deadlineMs;
+
+    private final int maxWarmUps;
+
+    private final long budgetWindowMs;
+
+    /**
+     * When the warm-ups within the budget window started, oldest first.
+     */
+    private final Deque<Long> startTimesMs = new ArrayDeque<>();
+
+    /**
+     * The inputs warmed up or about to be, {@code null} if none.
+     */
+    private Inputs inputs;
+
+    /**
+     * Waits for the inputs to settle, for a running warm-up's deadline, or for warm state to expire.
+     */
+    private ScheduledFuture<?> timer;
+
+    private SignalingBootstrap.Session session;
+
+    private Warm warm;
+
+    private boolean initialized;
+
+    private long started;
+
+    private long used;
+
+    private long expired;
+
+    private long failed;
+
+    private long overBudget;
+
+    public SessionWarmUp(final SignalingBootstrap bootstrap, final UrlSigner signer, final Runnable initializer,
+                         final ScheduledExecutorService scheduler, final LongSupplier clock) {
+        this(bootstrap, signer, initializer, scheduler, clock, DEFAULT_SETTLE_MS, DEFAULT_MAX_AGE_MS,
+                DEFAULT_DEADLINE_MS, DEFAULT_MAX_WARM_UPS, DEFAULT_BUDGET_WINDOW_MS);
+    }
+
+    /**
+     * @param initializer Run once on the scheduler with the first warm-up, {@code null} for none.
+     * @param clock       Time in ms for the budget window.
+     * @throws IllegalArgumentException if the times or the maximum are not positive.
+     */
+    public SessionWarmUp(final SignalingBootstrap bootstrap, final UrlSigner signer, final Runnable initializer,
+                         final ScheduledExecutorService scheduler, final LongSupplier clock, final long settleMs,
+                         final long maxAgeMs, final long deadlineMs, final int maxWarmUps,
+                         final long budgetWindowMs) {
+        if (settleMs < 0 || maxAgeMs <= 0 || deadlineMs <= 0 || maxWarmUps <= 0 || budgetWindowMs <= 0) {
+            throw new IllegalArgumentException("Invalid session warm-up configuration");
+        }
+        this.bootstrap = bootstrap;
+        this.signer = signer;
+        this.initializer = initializer;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.settleMs = settleMs;
+        this.maxAgeMs = maxAgeMs;
+        this.deadlineMs = deadlineMs;
+        this.maxWarmUps = maxWarmUps;
+        this.budgetWindowMs = budgetWindowMs;
+    }
+
+    /**
+     * Discards what was warmed up for other inputs, and warms up for these once they stop changing.
+     *
+     * @param clientId The viewer's client id, empty to generate one.
+     */
+    public synchronized void onInputsChanged(final SignalingChannelKey key, final boolean ingestMedia,
+                                             final String clientId) {
+        final Inputs next = new Inputs(key, ingestMedia, clientId);
+        if (next.equals(inputs)) {
+            return;
+        }
+        discard();
+        inputs = next;
+        timer = scheduler.schedule(() -> start(next), settleMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hands over the warm state if it was prepared for these inputs, and discards it either way:
+     * a warm-up still running is cancelled, its finished calls stay cached for the session.
+     *
+     * @return {@code null} if nothing is warm for these inputs.
+     */
+    public synchronized Warm take(final SignalingChannelKey key, final boolean ingestMedia, final String clientId) {
+        final Warm ready = warm != null && inputs.equals(new Inputs(key, ingestMedia, clientId)) ? warm : null;
+        discard();
+        if (ready != null) {
+            used++;
+        }
+        return ready;
+    }
+
+    /**
+     * Discards all warm state and stops warming up until the inputs change.
+     */
+    public synchronized void stop() {
+        discard();
+    }
+
+    public synchronized long getStarted() {
+        return started;
+    }
+
+    /**
+     * @return Warm-ups a session was started with.
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * @return Warm-ups discarded because no session was started with them in time.
+     */
+    public synchronized long getExpired() {
+        return expired;
+    }
+
+    /**
+     * @return Warm-ups that failed or missed their deadline.
+     */
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return Warm-ups not started because the budget was spent.
+     */
+    public synchronized long getOverBudget() {
+        return overBudget;
+    }
+
+    private synchronized void start(final Inputs target) {
+        if (target != inputs) {
+            // Superseded
+            return;
+        }
+        timer = null;
+        final long nowMs = clock.getAsLong();
+        while (!startTimesMs.isEmpty() && nowMs - startTimesMs.peekFirst() >= budgetWindowMs) {
+            startTimesMs.pollFirst();
+        }
+        if (startTimesMs.size() >= maxWarmUps) {
+            overBudget++;
+            return;
+        }
+        startTimesMs.addLast(nowMs);
+        started++;
+        if (initializer != null && !initialized) {
+            initialized = true;
+            scheduler.execute(initializer);
+        }
+
+        final String clientId = target.clientId.isEmpty() ? UUID.randomUUID().toString() : target.clientId;
+        final SignalingBootstrap.Session warmUp = bootstrap.warmUp(target.key, target.ingestMedia);
+        session = warmUp;
+        warmUp.getChannelInfo()
+                .thenApply(info -> new Warm(target.key, target.ingestMedia, clientId, info, sign(target.key, info, clientId)))
+                .whenComplete((ready, e) -> onWarm(warmUp, ready, e));
+        if (session == warmUp) {
+            timer = scheduler.schedule(() -> onDeadline(warmUp), deadlineMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private URI sign(final SignalingChannelKey key, final SignalingChannelInfo info, final String clientId) {
+        try {
+            return signer.sign(key, info, clientId);
+        } catch (final ControlPlaneException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private synchronized void onWarm(final SignalingBootstrap.Session warmUp, final Warm ready, final Throwable error) {
+        if (warmUp != session) {
+            // Discarded meanwhile
+            return;
+        }
+        session = null;
+        cancelTimer();
+        if (error != null) {
+            failed++;
+            return;
+        }
+        warm = ready;
+        timer = scheduler.schedule(() -> expire(ready), maxAgeMs, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void onDeadline(final SignalingBootstrap.Session warmUp) {
+        if (warmUp != session) {
+            return;
+        }
+        session = null;
+        timer = null;
+        failed++;
+        warmUp.cancel();
+    }
+
+    private synchronized void expire(final Warm stale) {
+        if (stale != warm) {
+            return;
+        }
+        timer = null;
+        warm = null;
+        inputs = null;
+        expired++;
+    }
+
+    private void discard() {
+        cancelTimer();
+        if (session != null) {
+            final SignalingBootstrap.Session running = session;
+            session = null;
+            running.cancel();
+        }
+        warm = null;
+        inputs = null;
+    }
+
+    private void cancelTimer() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+    }
+}
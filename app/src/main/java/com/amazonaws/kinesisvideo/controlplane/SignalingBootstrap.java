@@ -0,0 +1,381 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+import com.amazonaws.services.kinesisvideosignaling.model.IceServer;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+/**
+ * Fetches what a session needs from the control plane, running the calls that do not depend on
+ * each other concurrently:
+ * <pre>
+ *                                 +-&gt; DescribeMediaStorageConfiguration -+
+ *                                 |   (master ingesting media)           +-&gt; channel info
+ * DescribeSignalingChannel -------+-&gt; GetSignalingChannelEndpoint -------+
+ *                                                                        +-&gt; GetIceServerConfig
+ * </pre>
+ * The channel info is all that signing and opening the signaling connection needs. The ICE servers
+ * are only needed to create the peer connection, so a session can start connecting to signaling
+ * while they are fetched, see {@link #getIceServers}.
+ * <p>
+ * Results are taken from and put in the {@link ControlPlaneCache} and {@link IceServerConfigCache}.
+ */
+public class SignalingBootstrap {
+
+    public enum Stage {
+        CHANNEL,
+        STORAGE_CONFIG,
+        ENDPOINTS,
+        ICE_SERVERS
+    }
+
+    public interface ProgressListener {
+        /**
+         * Called on a bootstrap thread when a stage finished, also if its result was cached, until
+         * the session is cancelled.
+         *
+         * @param finished How many of the {@code total} stages of the session finished.
+         */
+        void onProgress(Stage stage, int finished, int total);
+    }
+
+    private interface Call<T> {
+        T call() throws ControlPlaneException;
+    }
+
+    /**
+     * A bootstrap of one session. The futures complete exceptionally with the
+     * {@link ControlPlaneException} of the stage that failed, wrapped in a
+     * {@link CompletionException} when joined, and with a {@link CancellationException} once
+     * {@link #cancel cancelled}.
+     */
+    public static final class Session {
+        private final SignalingChannelKey key;
+
+        private final LongSupplier clock;
+
+        private final ProgressListener progressListener;
+
+        private final Set<Stage> stages;
+
+        private final long startMs;
+
+        private final Map<Stage, Long> stageMs = new EnumMap<>(Stage.class);
+
+        private final Set<Stage> finished = EnumSet.noneOf(Stage.class);
+
+        private volatile boolean cancelled;
+
+        private CompletableFuture<SignalingChannelInfo> channelInfo;
+
+        private CompletableFuture<List<IceServer>> iceServers;
+
+        private long channelInfoMs = -1;
+
+        private long iceServersMs = -1;
+
+        private Session(final SignalingChannelKey key, final LongSupplier clock, final Set<Stage> stages,
+                        final ProgressListener progressListener) {
+            this.key = key;
+            this.clock = clock;
+            this.stages = stages;
+            this.progressListener = progressListener;
+            this.startMs = clock.getAsLong();
+        }
+
+        public SignalingChannelKey getKey() {
+            return key;
+        }
+
+        public CompletableFuture<SignalingChannelInfo> getChannelInfo() {
+            return channelInfo;
+        }
+
+        public CompletableFuture<List<IceServer>> getIceServers() {
+            return iceServers;
+        }
+
+        public synchronized BootstrapTimings getTimings() {
+            return new BootstrapTimings(stageMs, channelInfoMs, iceServersMs);
+        }
+
+        /**
+         * Stops the session's stages that did not start yet and completes its futures. Calls that are
+         * running complete, and their results are still cached.
+         */
+        public void cancel() {
+            cancelled = true;
+            channelInfo.cancel(false);
+            iceServers.cancel(false);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void checkNotCancelled() {
+            if (cancelled) {
+                throw new CancellationException("Bootstrap of " + key + " cancelled");
+            }
+        }
+
+        private synchronized void record(final Stage stage, final long ms) {
+            stageMs.putIfAbsent(stage, ms);
+        }
+
+        private void finish(final Stage stage) {
+            final int count;
+            synchronized (this) {
+                if (cancelled || !stages.contains(stage) || !finished.add(stage)) {
+                    return;
+                }
+                count = finished.size();
+            }
+            if (progressListener != null) {
+                progressListener.onProgress(stage, count, stages.size());
+            }
+        }
+
+        private void start(final CompletableFuture<SignalingChannelInfo> channelInfo,
+                           final CompletableFuture<List<IceServer>> iceServers) {
+            // Timed before completing, so the timings are there for whoever waits for the results
+            this.channelInfo = channelInfo.whenComplete((info, e) -> {
+                synchronized (this) {
+                    channelInfoMs = e == null ? clock.getAsLong() - startMs : -1;
+                }
+            });
+            this.iceServers = iceServers.whenComplete((servers, e) -> {
+                synchronized (this) {
+                    iceServersMs = e == null ? clock.getAsLong() - startMs : -1;
+                }
+            });
+        }
+    }
+
+    private static final class Graph {
+        CompletableFuture<String> channelArn;
+
+        CompletableFuture<Map<String, String>> endpoints;
+
+        CompletableFuture<SignalingChannelInfo> channelInfo;
+    }
+
+    private final ControlPlane controlPlane;
+
+    private final ControlPlaneCache channelCache;
+
+    private final IceServerConfigCache iceServerCache;
+
+    private final Executor executor;
+
+    private final LongSupplier clock;
+
+    /**
+     * @param executor Runs the control plane calls; needs a thread per call that may run concurrently.
+     * @param clock    Time in ms to time stages with.
+     */
+    public SignalingBootstrap(final ControlPlane controlPlane, final ControlPlaneCache channelCache,
+                              final IceServerConfigCache iceServerCache, final Executor executor,
+                              final LongSupplier clock) {
+        this.controlPlane = controlPlane;
+        this.channelCache = channelCache;
+        this.iceServerCache = iceServerCache;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts fetching the channel info and the ICE servers for {@code key}.
+     *
+     * @param ingestMedia Whether the session ingests media, which needs the stream ARN as master and
+     *                    the WEBRTC endpoint.
+     */
+    public Session start(final SignalingChannelKey key, final boolean ingestMedia) {
+        return start(key, ingestMedia, null);
+    }
+
+    /**
+     * @param progressListener {@code null} for none.
+     * @see #start(SignalingChannelKey, boolean)
+     */
+    public Session start(final SignalingChannelKey key, final boolean ingestMedia,
+                         final ProgressListener progressListener) {
+        return start(key, ingestMedia, progressListener, true);
+    }
+
+    /**
+     * Like {@link #start(SignalingChannelKey, boolean)}, for a session that may never be started:
+     * a channel that does not exist is not created for a master, that is left to the session.
+     */
+    public Session warmUp(final SignalingChannelKey key, final boolean ingestMedia) {
+        return start(key, ingestMedia, null, false);
+    }
+
+    private Session start(final SignalingChannelKey key, final boolean ingestMedia,
+                          final ProgressListener progressListener, final boolean createChannel) {
+        final Set<Stage> stages = EnumSet.allOf(Stage.class);
+        if (!needsStorageConfig(key, ingestMedia)) {
+            stages.remove(Stage.STORAGE_CONFIG);
+        }
+        final Session session = new Session(key, clock, stages, progressListener);
+
+        final SignalingChannelInfo cached = channelCache.peek(key);
+        if (cached != null && ingestMedia && !hasIngestionInfo(cached, key.getRole())) {
+            // Cached for a session without ingestion
+            channelCache.invalidate(key);
+        }
+
+        final CompletableFuture<String> channelArn;
+        final CompletableFuture<Map<String, String>> endpoints;
+        final CompletableFuture<SignalingChannelInfo> channelInfo;
+        if (channelCache.peek(key) != null) {
+            // Revalidations run the stages without a session to time them for
+            channelInfo = CompletableFuture.supplyAsync(() -> channelCache.getIfPresent(key,
+                    k -> fetch(k, ingestMedia)), executor)
+                    .thenCompose(info -> {
+                        if (info != null) {
+                            return CompletableFuture.completedFuture(info);
+                        }
+                        // Expired since it was peeked
+                        return load(key, ingestMedia, null, true).channelInfo.thenApply(loaded -> {
+                            channelCache.put(key, loaded);
+                            return loaded;
+                        });
+                    })
+                    .thenApply(info -> {
+                        session.finish(Stage.CHANNEL);
+                        session.finish(Stage.STORAGE_CONFIG);
+                        session.finish(Stage.ENDPOINTS);
+                        return info;
+                    });
+            channelArn = channelInfo.thenApply(SignalingChannelInfo::getChannelArn);
+            endpoints = channelInfo.thenApply(SignalingChannelInfo::getEndpoints);
+        } else {
+            final Graph graph = load(key, ingestMedia, session, createChannel);
+            channelArn = graph.channelArn;
+            endpoints = graph.endpoints;
+            channelInfo = graph.channelInfo.thenApply(info -> {
+                channelCache.put(key, info);
+                return info;
+            });
+        }
+
+        final CompletableFuture<List<IceServer>> iceServers = channelArn
+                .thenCombine(endpoints, (arn, endpointsByProtocol) ->
+                        getIceServers(key, arn, endpointsByProtocol.get(SignalingChannelInfo.PROTOCOL_HTTPS), session))
+                .thenCompose(pending -> pending);
+
+        // A cached entry may hold what an earlier session fetched for ingesting, which starts recording
+        session.start(ingestMedia ? channelInfo : channelInfo.thenApply(SignalingChannelInfo::withoutIngestion),
+                iceServers);
+        return session;
+    }
+
+    /**
+     * Returns the ICE servers for {@code key} from the cache, or fetches them. If they are being
+     * fetched by a {@link Session} already, returns its pending result.
+     */
+    public CompletableFuture<List<IceServer>> getIceServers(final SignalingChannelKey key, final String channelArn,
+                                                            final String httpsEndpoint) {
+        return getIceServers(key, channelArn, httpsEndpoint, null);
+    }
+
+    static boolean hasIngestionInfo(final SignalingChannelInfo info, final ChannelRole role) {
+        return info.getEndpoint(SignalingChannelInfo.PROTOCOL_WEBRTC) != null
+                && (role != ChannelRole.MASTER || info.getStreamArn() != null);
+    }
+
+    private CompletableFuture<List<IceServer>> getIceServers(final SignalingChannelKey key, final String channelArn,
+                                                             final String httpsEndpoint, final Session session) {
+        if (session == null) {
+            return iceServerCache.getAsync(key, k -> controlPlane.getIceServers(k, channelArn, httpsEndpoint), executor);
+        }
+        session.checkNotCancelled();
+        // Only called if not cached. Refreshes call it again later, they are not timed for the session.
+        final IceServerConfigCache.Loader loader = k -> {
+            final long startMs = clock.getAsLong();
+            try {
+                return controlPlane.getIceServers(k, channelArn, httpsEndpoint);
+            } finally {
+                session.record(Stage.ICE_SERVERS, clock.getAsLong() - startMs);
+            }
+        };
+        return iceServerCache.getAsync(key, loader, executor).thenApply(servers -> {
+            session.finish(Stage.ICE_SERVERS);
+            return servers;
+        });
+    }
+
+    private Graph load(final SignalingChannelKey key, final boolean ingestMedia, final Session session,
+                       final boolean createChannel) {
+        // Only masters create channels that do not exist, the ARN is the same for both roles
+        final SignalingChannelKey channelKey = createChannel
+                ? key : new SignalingChannelKey(key.getRegion(), key.getChannelName(), ChannelRole.VIEWER);
+        final Graph graph = new Graph();
+        graph.channelArn = CompletableFuture.supplyAsync(
+                () -> timed(session, Stage.CHANNEL, () -> controlPlane.getChannelArn(channelKey)), executor);
+
+        final CompletableFuture<String> streamArn;
+        if (needsStorageConfig(key, ingestMedia)) {
+            streamArn = graph.channelArn.thenApplyAsync(arn -> timed(session, Stage.STORAGE_CONFIG,
+                    () -> controlPlane.getStorageStreamArn(key, arn)), executor);
+        } else {
+            streamArn = graph.channelArn.thenApply(arn -> null);
+        }
+        graph.endpoints = graph.channelArn.thenApplyAsync(arn -> timed(session, Stage.ENDPOINTS,
+                () -> controlPlane.getEndpoints(key, arn, ingestMedia)), executor);
+
+        graph.channelInfo = CompletableFuture.allOf(streamArn, graph.endpoints)
+                .thenApply(done -> new SignalingChannelInfo(graph.channelArn.join(), streamArn.join(),
+                        graph.endpoints.join()));
+        return graph;
+    }
+
+    /**
+     * Fetches the channel info on the calling thread, one call after the other.
+     */
+    private SignalingChannelInfo fetch(final SignalingChannelKey key, final boolean ingestMedia)
+            throws ControlPlaneException {
+        final String channelArn = controlPlane.getChannelArn(key);
+        final String streamArn = needsStorageConfig(key, ingestMedia)
+                ? controlPlane.getStorageStreamArn(key, channelArn) : null;
+        return new SignalingChannelInfo(channelArn, streamArn, controlPlane.getEndpoints(key, channelArn, ingestMedia));
+    }
+
+    private static boolean needsStorageConfig(final SignalingChannelKey key, final boolean ingestMedia) {
+        return key.getRole() == ChannelRole.MASTER && ingestMedia;
+    }
+
+    private <T> T timed(final Session session, final Stage stage, final Call<T> call) {
+        if (session == null) {
+            return call(call);
+        }
+        session.checkNotCancelled();
+        final long startMs = clock.getAsLong();
+        final T result;
+        try {
+            result = call(call);
+        } finally {
+            session.record(stage, clock.getAsLong() - startMs);
+        }
+        session.finish(stage);
+        return result;
+    }
+
+    private static <T> T call(final Call<T> call) {
+        try {
+            return call.call();
+        } catch (final ControlPlaneException e) {
+            throw new CompletionException(e);
+        }
+    }
+}
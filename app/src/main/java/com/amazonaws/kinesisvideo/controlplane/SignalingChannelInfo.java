@@ -0,0 +1,79 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What the control plane reports about a signaling channel for one role: its ARN, the ARN of the
+ * stream media is ingested to, and the resource endpoints by protocol.
+ */
+public final class SignalingChannelInfo {
+
+    public static final String PROTOCOL_WSS = "WSS";
+
+    public static final String PROTOCOL_HTTPS = "HTTPS";
+
+    public static final String PROTOCOL_WEBRTC = "WEBRTC";
+
+    private final String channelArn;
+
+    private final String streamArn;
+
+    private final Map<String, String> endpoints;
+
+    /**
+     * @param streamArn {@code null} unless media is ingested.
+     * @param endpoints Resource endpoints by protocol.
+     */
+    public SignalingChannelInfo(final String channelArn, final String streamArn, final Map<String, String> endpoints) {
+        this.channelArn = channelArn;
+        this.streamArn = streamArn;
+        this.endpoints = new HashMap<>(endpoints);
+    }
+
+    public String getChannelArn() {
+        return channelArn;
+    }
+
+    public String getStreamArn() {
+        return streamArn;
+    }
+
+    public Map<String, String> getEndpoints() {
+        return Collections.unmodifiableMap(endpoints);
+    }
+
+    /**
+     * @return The endpoint for {@code protocol}, {@code null} if none was fetched.
+     */
+    public String getEndpoint(final String protocol) {
+        return endpoints.get(protocol);
+    }
+
+    /**
+     * @return {@code true} if it has what ingesting media needs: the stream ARN and the WEBRTC endpoint.
+     */
+    public boolean supportsIngestion() {
+        return streamArn != null && endpoints.containsKey(PROTOCOL_WEBRTC);
+    }
+
+    /**
+     * @return This info without the stream ARN and the WEBRTC endpoint, for a session that does not
+     * ingest media.
+     */
+    public SignalingChannelInfo withoutIngestion() {
+        if (streamArn == null && !endpoints.containsKey(PROTOCOL_WEBRTC)) {
+            return this;
+        }
+        final Map<String, String> signalingEndpoints = new HashMap<>(endpoints);
+        signalingEndpoints.remove(PROTOCOL_WEBRTC);
+        return new SignalingChannelInfo(channelArn, null, signalingEndpoints);
+    }
+
+    @Override
+    public String toString() {
+        return "SignalingChannelInfo(channelArn=" + channelArn + ", streamArn=" + streamArn
+                + ", endpoints=" + endpoints + ")";
+    }
+}
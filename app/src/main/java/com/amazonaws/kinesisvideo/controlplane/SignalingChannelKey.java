@@ -0,0 +1,57 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+
+import java.util.Objects;
+
+/**
+ * Identifies what the control plane is asked about: a signaling channel in a region, as master or viewer.
+ */
+public final class SignalingChannelKey {
+
+    private final String region;
+
+    private final String channelName;
+
+    private final ChannelRole role;
+
+    public SignalingChannelKey(final String region, final String channelName, final ChannelRole role) {
+        this.region = Objects.requireNonNull(region, "region");
+        this.channelName = Objects.requireNonNull(channelName, "channelName");
+        this.role = Objects.requireNonNull(role, "role");
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public ChannelRole getRole() {
+        return role;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SignalingChannelKey)) {
+            return false;
+        }
+        final SignalingChannelKey other = (SignalingChannelKey) o;
+        return region.equals(other.region) && channelName.equals(other.channelName) && role == other.role;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(region, channelName, role);
+    }
+
+    @Override
+    public String toString() {
+        return region + "/" + channelName + "/" + role;
+    }
+}
@@ -0,0 +1,88 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+/**
+ * Snapshot of the attempts to join a storage session, and how long its offer took to arrive.
+ */
+public final class StorageSessionStats {
+
+    private final long joins;
+
+    private final long failures;
+
+    private final long offerTimeouts;
+
+    private final long offers;
+
+    private final long lastJoinToOfferMs;
+
+    private final double meanJoinToOfferMs;
+
+    private final long maxJoinToOfferMs;
+
+    private final boolean awaitingOffer;
+
+    public StorageSessionStats(final long joins, final long failures, final long offerTimeouts, final long offers,
+                               final long lastJoinToOfferMs, final double meanJoinToOfferMs,
+                               final long maxJoinToOfferMs, final boolean awaitingOffer) {
+        this.joins = joins;
+        this.failures = failures;
+        this.offerTimeouts = offerTimeouts;
+        this.offers = offers;
+        this.lastJoinToOfferMs = lastJoinToOfferMs;
+        this.meanJoinToOfferMs = meanJoinToOfferMs;
+        this.maxJoinToOfferMs = maxJoinToOfferMs;
+        this.awaitingOffer = awaitingOffer;
+    }
+
+    /**
+     * @return JoinStorageSession calls, including failed ones.
+     */
+    public long getJoins() {
+        return joins;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return Joins that succeeded but were not followed by an offer in time.
+     */
+    public long getOfferTimeouts() {
+        return offerTimeouts;
+    }
+
+    public long getOffers() {
+        return offers;
+    }
+
+    /**
+     * @return Time from the latest successful join until the storage peer's offer, -1 if none.
+     */
+    public long getLastJoinToOfferMs() {
+        return lastJoinToOfferMs;
+    }
+
+    public double getMeanJoinToOfferMs() {
+        return meanJoinToOfferMs;
+    }
+
+    public long getMaxJoinToOfferMs() {
+        return maxJoinToOfferMs;
+    }
+
+    /**
+     * @return {@code true} while joined and the offer did not arrive yet.
+     */
+    public boolean isAwaitingOffer() {
+        return awaitingOffer;
+    }
+
+    @Override
+    public String toString() {
+        return "StorageSessionStats(joins=" + joins + ", failures=" + failures + ", offerTimeouts=" + offerTimeouts
+                + ", offers=" + offers + ", lastJoinToOfferMs=" + lastJoinToOfferMs
+                + ", meanJoinToOfferMs=" + String.format("%.1f", meanJoinToOfferMs)
+                + ", maxJoinToOfferMs=" + maxJoinToOfferMs + ", awaitingOffer=" + awaitingOffer + ")";
+    }
+}
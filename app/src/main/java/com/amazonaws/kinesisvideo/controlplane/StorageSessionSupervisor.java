@@ -0,0 +1,223 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Joins a master to the storage session of a channel that ingests media, until the storage peer's
+ * offer arrives.
+ * <p>
+ * JoinStorageSession only asks the storage service to connect; it answers before the offer is sent
+ * and may not send one at all. Failed joins are retried, and so are joins not followed by an offer
+ * within {@link #DEFAULT_OFFER_DEADLINE_MS}, after a back-off that doubles from
+ * {@link #DEFAULT_INITIAL_BACKOFF_MS} up to {@link #DEFAULT_MAX_BACKOFF_MS}. Each back-off is
+ * jittered between half and all of it, so masters that failed together do not retry together.
+ * <p>
+ * Joins run on the scheduler, which must not be needed for anything urgent meanwhile.
+ */
+public class StorageSessionSupervisor {
+
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 1000;
+
+    public static final long DEFAULT_MAX_BACKOFF_MS = 30 * 1000L;
+
+    public static final long DEFAULT_OFFER_DEADLINE_MS = 15 * 1000L;
+
+    /**
+     * Calls JoinStorageSession.
+     */
+    public interface Joiner {
+        void join() throws ControlPlaneException;
+    }
+
+    /**
+     * Called on the scheduler when a join is retried.
+     */
+    public interface Listener {
+        /**
+         * @param error {@code null} if the join succeeded but no offer arrived in time.
+         */
+        void onRetry(ControlPlaneException error, long delayMs);
+    }
+
+    private final Joiner joiner;
+
+    private final Listener listener;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final LongSupplier clock;
+
+    private final Random random;
+
+    private final long initialBackoffMs;
+
+    private final long maxBackoffMs;
+
+    private final long offerDeadlineMs;
+
+    private long backoffMs;
+
+    private boolean started;
+
+    private boolean stopped;
+
+    private ScheduledFuture<?> timer;
+
+    /**
+     * When the latest join succeeded while awaiting the offer, -1 otherwise.
+     */
+    private long joinedAtMs = -1;
+
+    private long joins;
+
+    private long failures;
+
+    private long offerTimeouts;
+
+    private long offers;
+
+    private long lastJoinToOfferMs = -1;
+
+    private long totalJoinToOfferMs;
+
+    private long maxJoinToOfferMs;
+
+    public StorageSessionSupervisor(final Joiner joiner, final Listener listener,
+                                    final ScheduledExecutorService scheduler, final LongSupplier clock) {
+        this(joiner, listener, scheduler, clock, new Random(), DEFAULT_INITIAL_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS,
+                DEFAULT_OFFER_DEADLINE_MS);
+    }
+
+    /**
+     * @param listener {@code null} for none.
+     * @param clock    Time in ms to measure the time until the offer with.
+     * @throws IllegalArgumentException if the times are not positive or the back-offs out of order.
+     */
+    public StorageSessionSupervisor(final Joiner joiner, final Listener listener,
+                                    final ScheduledExecutorService scheduler, final LongSupplier clock,
+                                    final Random random, final long initialBackoffMs, final long maxBackoffMs,
+                                    final long offerDeadlineMs) {
+        if (initialBackoffMs <= 0 || maxBackoffMs < initialBackoffMs || offerDeadlineMs <= 0) {
+            throw new IllegalArgumentException("Invalid storage session supervisor configuration");
+        }
+        this.joiner = joiner;
+        this.listener = listener;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.random = random;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.offerDeadlineMs = offerDeadlineMs;
+        this.backoffMs = initialBackoffMs;
+    }
+
+    /**
+     * Joins on the scheduler. Does nothing if started before.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        timer = scheduler.schedule(this::join, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Call when an offer arrives, from signaling, as the master of the channel.
+     *
+     * @return {@code true} if it is taken to be the storage peer's, i.e. the first since joining.
+     */
+    public synchronized boolean onOfferReceived() {
+        if (joinedAtMs < 0 || stopped) {
+            return false;
+        }
+        final long joinToOfferMs = clock.getAsLong() - joinedAtMs;
+        joinedAtMs = -1;
+        cancelTimer();
+        offers++;
+        lastJoinToOfferMs = joinToOfferMs;
+        totalJoinToOfferMs += joinToOfferMs;
+        maxJoinToOfferMs = Math.max(maxJoinToOfferMs, joinToOfferMs);
+        backoffMs = initialBackoffMs;
+        return true;
+    }
+
+    /**
+     * Stops retrying. A join that is running completes.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        joinedAtMs = -1;
+        cancelTimer();
+    }
+
+    public synchronized StorageSessionStats getStats() {
+        return new StorageSessionStats(joins, failures, offerTimeouts, offers, lastJoinToOfferMs,
+                offers == 0 ? 0 : (double) totalJoinToOfferMs / offers, maxJoinToOfferMs, joinedAtMs >= 0);
+    }
+
+    private void join() {
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            timer = null;
+            joins++;
+        }
+        ControlPlaneException error = null;
+        try {
+            joiner.join();
+        } catch (final ControlPlaneException e) {
+            error = e;
+        }
+        final long delayMs;
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            if (error == null) {
+                joinedAtMs = clock.getAsLong();
+                timer = scheduler.schedule(this::onOfferDeadline, offerDeadlineMs, TimeUnit.MILLISECONDS);
+                return;
+            }
+            failures++;
+            delayMs = scheduleRetry();
+        }
+        if (listener != null) {
+            listener.onRetry(error, delayMs);
+        }
+    }
+
+    private void onOfferDeadline() {
+        final long delayMs;
+        synchronized (this) {
+            if (joinedAtMs < 0 || stopped) {
+                return;
+            }
+            joinedAtMs = -1;
+            offerTimeouts++;
+            delayMs = scheduleRetry();
+        }
+        if (listener != null) {
+            listener.onRetry(null, delayMs);
+        }
+    }
+
+    private long scheduleRetry() {
+        final long delayMs = backoffMs / 2 + (long) (random.nextDouble() * (backoffMs - backoffMs / 2));
+        backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+        timer = scheduler.schedule(this::join, delayMs, TimeUnit.MILLISECONDS);
+        return delayMs;
+    }
+
+    private void cancelTimer() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+    }
+}
@@ -1,21 +1,70 @@
 package com.amazonaws.kinesisvideo.demoapp;
 
 import android.app.Application;
+import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 
+import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.kinesisvideo.controlplane.AwsClientRegistry;
+import com.amazonaws.kinesisvideo.controlplane.ControlPlaneCache;
+import com.amazonaws.kinesisvideo.controlplane.ControlPlaneException;
+import com.amazonaws.kinesisvideo.controlplane.IceServerConfigCache;
+import com.amazonaws.kinesisvideo.controlplane.KinesisVideoControlPlane;
+import com.amazonaws.kinesisvideo.controlplane.SessionWarmUp;
+import com.amazonaws.kinesisvideo.controlplane.SignalingBootstrap;
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelInfo;
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
 import com.amazonaws.kinesisvideo.common.logging.LogLevel;
 import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.demoapp.activity.WebRtcActivity;
 import com.amazonaws.mobile.client.AWSMobileClient;
 import com.amazonaws.mobile.config.AWSConfiguration;
+import com.amazonaws.kinesisvideo.utils.AwsV4Signer;
+import com.amazonaws.kinesisvideo.utils.Constants;
+import com.amazonaws.kinesisvideo.webrtc.grid.ViewerGrid;
+import com.amazonaws.kinesisvideo.webrtc.host.ChannelHost;
+import com.amazonaws.kinesisvideo.webrtc.video.CodecCapabilityProbe;
 import com.amazonaws.mobileconnectors.kinesisvideo.util.AndroidLogOutputChannel;
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
 
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.webrtc.PeerConnectionFactory;
+
+import java.io.File;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class KinesisVideoWebRtcDemoApp extends Application {
     private static final String TAG = KinesisVideoWebRtcDemoApp.class.getSimpleName();
 
+    private static final String CONTROL_PLANE_CACHE_FILE = "control_plane_cache.json";
+
+    private static AwsClientRegistry awsClientRegistry;
+
+    private static KinesisVideoControlPlane controlPlane;
+
+    private static ControlPlaneCache controlPlaneCache;
+
+    private static IceServerConfigCache iceServerConfigCache;
+
+    private static SignalingBootstrap signalingBootstrap;
+
+    private static SessionWarmUp sessionWarmUp;
+
+    private static ChannelHost channelHost;
+
+    private static CodecCapabilityProbe codecCapabilityProbe;
+
+    private static ExecutorService codecProbeExecutor;
+
+    private static Future<?> codecMeasurement;
+
     public static AWSCredentialsProvider getCredentialsProvider() {
         final OutputChannel outputChannel = new AndroidLogOutputChannel();
         final com.amazonaws.kinesisvideo.common.logging.Log log =
@@ -46,4 +95,165 @@ public class KinesisVideoWebRtcDemoApp extends Application {
         return region;
     }
 
+    /**
+     * @return The AWS service clients shared by all sessions, one per service, region and endpoint.
+     */
+    public static synchronized AwsClientRegistry getAwsClientRegistry() {
+        if (awsClientRegistry == null) {
+            awsClientRegistry = new AwsClientRegistry(getCredentialsProvider());
+        }
+        return awsClientRegistry;
+    }
+
+    /**
+     * @return Calls the control plane with the shared AWS clients.
+     */
+    public static synchronized KinesisVideoControlPlane getControlPlane() {
+        if (controlPlane == null) {
+            controlPlane = new KinesisVideoControlPlane(getAwsClientRegistry());
+        }
+        return controlPlane;
+    }
+
+    /**
+     * @return The cache of signaling channel ARNs and endpoints shared by all sessions.
+     */
+    public static synchronized ControlPlaneCache getControlPlaneCache(final Context context) {
+        if (controlPlaneCache == null) {
+            controlPlaneCache = new ControlPlaneCache(
+                    new File(context.getApplicationContext().getFilesDir(), CONTROL_PLANE_CACHE_FILE),
+                    Executors.newSingleThreadExecutor());
+        }
+        return controlPlaneCache;
+    }
+
+    /**
+     * @return The cache of TURN servers shared by all sessions.
+     */
+    public static synchronized IceServerConfigCache getIceServerConfigCache() {
+        if (iceServerConfigCache == null) {
+            iceServerConfigCache = new IceServerConfigCache(Executors.newSingleThreadScheduledExecutor(),
+                    SystemClock::elapsedRealtime);
+        }
+        return iceServerConfigCache;
+    }
+
+    /**
+     * @return Fetches what sessions need from the control plane, using the caches above.
+     */
+    public static synchronized SignalingBootstrap getSignalingBootstrap(final Context context) {
+        if (signalingBootstrap == null) {
+            signalingBootstrap = new SignalingBootstrap(getControlPlane(),
+                    getControlPlaneCache(context), getIceServerConfigCache(), Executors.newCachedThreadPool(),
+                    SystemClock::elapsedRealtime);
+        }
+        return signalingBootstrap;
+    }
+
+    /**
+     * @return Prepares sessions while they are being configured, see {@link SessionWarmUp}.
+     */
+    public static synchronized SessionWarmUp getSessionWarmUp(final Context context) {
+        if (sessionWarmUp == null) {
+            final Context applicationContext = context.getApplicationContext();
+            sessionWarmUp = new SessionWarmUp(getSignalingBootstrap(context),
+                    KinesisVideoWebRtcDemoApp::signSignalingUri,
+                    // Loads the native library, the first session would otherwise wait for it
+                    () -> initializePeerConnectionFactory(applicationContext),
+                    Executors.newSingleThreadScheduledExecutor(), SystemClock::elapsedRealtime);
+        }
+        return sessionWarmUp;
+    }
+
+    /**
+     * @return What sessions know about the device's video encoders, see {@link CodecCapabilityProbe}.
+     */
+    public static synchronized CodecCapabilityProbe getCodecCapabilityProbe(final Context context) {
+        if (codecCapabilityProbe == null) {
+            // Listing the software encoders needs the native library
+            initializePeerConnectionFactory(context.getApplicationContext());
+            codecCapabilityProbe = new CodecCapabilityProbe(context.getApplicationContext(),
+                    WebRtcActivity.ENABLE_INTEL_VP8_ENCODER, WebRtcActivity.ENABLE_H264_HIGH_PROFILE);
+        }
+        return codecCapabilityProbe;
+    }
+
+    /**
+     * Measures the video encoders in the background, unless done for this OS build already. Only to
+     * be called while no session is encoding, see {@link #stopMeasuringCodecs()}.
+     */
+    public static synchronized void measureCodecsWhileIdle(final Context context) {
+        if (codecMeasurement != null && !codecMeasurement.isDone()) {
+            return;
+        }
+        if (codecProbeExecutor == null) {
+            codecProbeExecutor = Executors.newSingleThreadExecutor();
+        }
+        codecMeasurement = getCodecCapabilityProbe(context).measureInBackground(codecProbeExecutor);
+    }
+
+    /**
+     * Interrupts a running measurement before a session starts encoding. It is repeated by the next
+     * {@link #measureCodecsWhileIdle}.
+     */
+    public static synchronized void stopMeasuringCodecs() {
+        if (codecMeasurement != null) {
+            codecMeasurement.cancel(true);
+            codecMeasurement = null;
+        }
+    }
+
+    /**
+     * @return Serves several master channels at once, see {@link ChannelHost}. Not to be used while a
+     * {@link com.amazonaws.kinesisvideo.demoapp.activity.WebRtcActivity} session runs, the host has
+     * its own peer connection factory and audio device.
+     */
+    public static synchronized ChannelHost getChannelHost(final Context context) {
+        if (channelHost == null) {
+            channelHost = ChannelHost.create(context, getSignalingBootstrap(context),
+                    KinesisVideoWebRtcDemoApp::signSignalingUri);
+        }
+        return channelHost;
+    }
+
+    /**
+     * @return A new grid showing several channels at once, see {@link ViewerGrid}. The caller closes it.
+     */
+    public static ViewerGrid createViewerGrid(final Context context) {
+        return ViewerGrid.create(context, getSignalingBootstrap(context), KinesisVideoWebRtcDemoApp::signSignalingUri);
+    }
+
+    private static void initializePeerConnectionFactory(final Context applicationContext) {
+        PeerConnectionFactory.initialize(PeerConnectionFactory
+                .InitializationOptions
+                .builder(applicationContext)
+                .createInitializationOptions());
+    }
+
+    /**
+     * @return The URL to connect to the channel's signaling endpoint with, signed with the current credentials.
+     */
+    private static URI signSignalingUri(final SignalingChannelKey key, final SignalingChannelInfo info,
+                                        final String clientId) throws ControlPlaneException {
+        final String wssEndpoint = info.getEndpoint(SignalingChannelInfo.PROTOCOL_WSS);
+        String endpoint = wssEndpoint + "?" + Constants.CHANNEL_ARN_QUERY_PARAM + "=" + info.getChannelArn();
+        if (key.getRole() == ChannelRole.VIEWER) {
+            endpoint += "&" + Constants.CLIENT_ID_QUERY_PARAM + "=" + clientId;
+        }
+
+        final AWSCredentials credentials;
+        try {
+            credentials = getCredentialsProvider().getCredentials();
+        } catch (final Exception e) {
+            throw new ControlPlaneException("Failed to fetch credentials: " + e.getLocalizedMessage(), e);
+        }
+        if (credentials == null || credentials.getAWSAccessKeyId().isEmpty() || credentials.getAWSSecretKey().isEmpty()) {
+            throw new ControlPlaneException("Failed to fetch credentials!");
+        }
+        final String sessionToken = credentials instanceof AWSSessionCredentials
+                ? ((AWSSessionCredentials) credentials).getSessionToken() : "";
+
+        return AwsV4Signer.sign(URI.create(endpoint), credentials.getAWSAccessKeyId(), credentials.getAWSSecretKey(),
+                sessionToken, URI.create(wssEndpoint), key.getRegion(), System.currentTimeMillis());
+    }
 }
@@ -2,7 +2,9 @@ package com.amazonaws.kinesisvideo.demoapp.activity;
 
 import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_CAMERA_FRONT_FACING;
 import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_CHANNEL_ARN;
+import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_CHANNEL_NAME;
 import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_CLIENT_ID;
+import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_HTTPS_ENDPOINT;
 import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_ICE_SERVER_PASSWORD;
 import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_ICE_SERVER_TTL;
 import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_ICE_SERVER_URI;
@@ -10,6 +12,7 @@ import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurat
 import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_IS_MASTER;
 import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_REGION;
 import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_SEND_AUDIO;
+import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_SIGNED_WSS_URL;
 import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_STREAM_ARN;
 import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_WEBRTC_ENDPOINT;
 import static com.amazonaws.kinesisvideo.demoapp.fragment.StreamWebRtcConfigurationFragment.KEY_WSS_ENDPOINT;
@@ -19,11 +22,12 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.media.AudioManager;
 import android.os.Build;
 import android.os.Bundle;
-import android.util.Base64;
+import android.os.SystemClock;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.MotionEvent;
@@ -42,8 +46,12 @@ import androidx.core.app.NotificationManagerCompat;
 
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.kinesisvideo.controlplane.IceServerConfigCache;
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
+import com.amazonaws.kinesisvideo.controlplane.StorageSessionSupervisor;
 import com.amazonaws.kinesisvideo.demoapp.KinesisVideoWebRtcDemoApp;
 import com.amazonaws.kinesisvideo.demoapp.R;
+import com.amazonaws.kinesisvideo.signaling.DataChannelSignaling;
 import com.amazonaws.kinesisvideo.signaling.SignalingListener;
 import com.amazonaws.kinesisvideo.signaling.model.Event;
 import com.amazonaws.kinesisvideo.signaling.model.Message;
@@ -52,18 +60,34 @@ import com.amazonaws.kinesisvideo.utils.AwsV4Signer;
 import com.amazonaws.kinesisvideo.utils.Constants;
 import com.amazonaws.kinesisvideo.webrtc.KinesisVideoPeerConnection;
 import com.amazonaws.kinesisvideo.webrtc.KinesisVideoSdpObserver;
-import com.amazonaws.regions.Region;
-import com.amazonaws.services.kinesisvideowebrtcstorage.AWSKinesisVideoWebRTCStorageClient;
-import com.amazonaws.services.kinesisvideowebrtcstorage.model.JoinStorageSessionRequest;
+import com.amazonaws.kinesisvideo.webrtc.datachannel.DataChannelReceivePipeline;
+import com.amazonaws.kinesisvideo.webrtc.datachannel.DataChannelRegistry;
+import com.amazonaws.kinesisvideo.webrtc.datachannel.DataChannelSpec;
+import com.amazonaws.kinesisvideo.webrtc.datachannel.DataChannelTransferService;
+import com.amazonaws.kinesisvideo.webrtc.datachannel.MessageCoalescer;
+import com.amazonaws.kinesisvideo.webrtc.datachannel.OfflineSendQueue;
+import com.amazonaws.kinesisvideo.webrtc.datachannel.TransferStats;
+import com.amazonaws.kinesisvideo.webrtc.ice.IceCandidateFilter;
+import com.amazonaws.kinesisvideo.webrtc.ice.IceRestartMonitor;
+import com.amazonaws.kinesisvideo.webrtc.ice.IceRestartPolicy;
+import com.amazonaws.kinesisvideo.webrtc.video.AdaptiveBitrateController;
+import com.amazonaws.kinesisvideo.webrtc.video.AdaptiveBitrateManager;
+import com.amazonaws.kinesisvideo.webrtc.video.CameraCaptureFormat;
+import com.amazonaws.kinesisvideo.webrtc.video.CameraCapturerFactory;
+import com.amazonaws.kinesisvideo.webrtc.video.CodecCapabilityProbe;
+import com.amazonaws.kinesisvideo.webrtc.video.CodecPreferences;
+import com.amazonaws.kinesisvideo.webrtc.video.EncoderLatencyMonitor;
+import com.amazonaws.kinesisvideo.webrtc.video.EncoderMetrics;
+import com.amazonaws.kinesisvideo.webrtc.video.MonitoredVideoEncoderFactory;
+import com.amazonaws.kinesisvideo.webrtc.video.VideoEncodingLevel;
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
 import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
 
 import org.webrtc.AudioSource;
 import org.webrtc.AudioTrack;
-import org.webrtc.Camera1Enumerator;
-import org.webrtc.CameraEnumerator;
 import org.webrtc.DataChannel;
 import org.webrtc.DefaultVideoDecoderFactory;
-import org.webrtc.DefaultVideoEncoderFactory;
 import org.webrtc.EglBase;
 import org.webrtc.IceCandidate;
 import org.webrtc.Logging;
@@ -73,6 +97,8 @@ import org.webrtc.PeerConnection;
 import org.webrtc.PeerConnection.IceServer;
 import org.webrtc.PeerConnectionFactory;
 import org.webrtc.RTCStats;
+import org.webrtc.RtpSender;
+import org.webrtc.RtpTransceiver;
 import org.webrtc.SessionDescription;
 import org.webrtc.SurfaceTextureHelper;
 import org.webrtc.SurfaceViewRenderer;
@@ -84,9 +110,10 @@ import org.webrtc.VideoSource;
 import org.webrtc.VideoTrack;
 import org.webrtc.audio.JavaAudioDeviceModule;
 
+import java.io.File;
 import java.net.URI;
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -97,8 +124,11 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import javax.microedition.khronos.egl.EGLContext;
@@ -112,10 +142,28 @@ public class WebRtcActivity extends AppCompatActivity {
     private static final int VIDEO_SIZE_HEIGHT = 300;
     private static final int VIDEO_FPS = 30;
     private static final String CHANNEL_ID = "WebRtcDataChannel";
-    private static final boolean ENABLE_INTEL_VP8_ENCODER = true;
-    private static final boolean ENABLE_H264_HIGH_PROFILE = true;
+    public static final boolean ENABLE_INTEL_VP8_ENCODER = true;
+    public static final boolean ENABLE_H264_HIGH_PROFILE = true;
+    private static final long ADAPTIVE_BITRATE_POLL_MS = 1000;
+    private static final String TRANSFER_DIRECTORY = "transfers";
+    private static final long MESSAGE_NOTIFICATION_INTERVAL_MS = 2000;
+    private static final int MESSAGE_NOTIFICATION_ID = 0;
+    private static final String OUTBOX_FILE = "outbox.queue";
+    private static final int OUTBOX_SPILL_BYTES = 4 * 1024 * 1024;
+    private static final long ICE_SERVERS_TIMEOUT_MS = 5000;
+    private static final boolean ENABLE_IN_BAND_SIGNALING = true;
+    private static final boolean ICE_RELAY_ONLY = false;
+    private static final boolean ICE_ALLOW_TCP = true;
+    private static final boolean ICE_ALLOW_IPV6 = true;
+    private static final PeerConnection.AdapterType ICE_PREFERRED_NETWORK = null;
 
     private static volatile SignalingServiceWebSocketClient client;
+    private volatile SignalingListener signalingListener;
+
+    /**
+     * Sends signaling messages over a data channel once both peers support it, through {@link #client} otherwise.
+     */
+    private DataChannelSignaling dataChannelSignaling;
     private PeerConnectionFactory peerConnectionFactory;
 
     private VideoSource videoSource;
@@ -135,13 +183,45 @@ public class WebRtcActivity extends AppCompatActivity {
     private EglBase rootEglBase = null;
     private VideoCapturer videoCapturer;
 
+    /**
+     * The supported capture format closest to {@link #VIDEO_SIZE_WIDTH}x{@link #VIDEO_SIZE_HEIGHT}@{@link #VIDEO_FPS}.
+     */
+    private CameraCaptureFormat captureFormat;
+
     private final List<IceServer> peerIceServers = new ArrayList<>();
 
+    private PeerConnection.RTCConfiguration rtcConfig;
+
+    /**
+     * The TURN servers when they were not passed in the intent, added to {@link #peerIceServers}
+     * before the peer connection is created.
+     */
+    private CompletableFuture<List<com.amazonaws.services.kinesisvideosignaling.model.IceServer>> iceServersFuture;
+
+    /**
+     * Whether {@link #startSignaling} ran, only accessed on the main thread.
+     */
+    private boolean signalingStarted;
+
+    /**
+     * Passes refreshed TURN credentials to {@link #localPeer} before the ones it uses expire.
+     */
+    private final IceServerConfigCache.Listener iceServerListener = this::onIceServersRefreshed;
+
+    /**
+     * Applied to local and remote ICE candidates.
+     */
+    private final IceCandidateFilter iceCandidateFilter = IceCandidateFilter.builder()
+            .setRelayOnly(ICE_RELAY_ONLY)
+            .setAllowTcp(ICE_ALLOW_TCP)
+            .setAllowIpv6(ICE_ALLOW_IPV6)
+            .setPreferredNetwork(ICE_PREFERRED_NETWORK)
+            .build();
+
     private boolean gotException = false;
 
     private String recipientClientId;
 
-    private int mNotificationId = 0;
 
     private boolean master = true;
     private boolean isAudioSent = false;
@@ -149,6 +229,8 @@ public class WebRtcActivity extends AppCompatActivity {
     private EditText dataChannelText = null;
     private Button sendDataChannelButton = null;
 
+    private String mChannelName;
+    private SignalingChannelKey mChannelKey;
     private String mChannelArn;
     private String mClientId;
 
@@ -156,6 +238,12 @@ public class WebRtcActivity extends AppCompatActivity {
     private String mStreamArn;
 
     private String mWssEndpoint;
+
+    /**
+     * The WSS endpoint URL signed ahead of time, {@code null} to sign it when connecting.
+     */
+    private String mSignedWssUrl;
+    private String mHttpsEndpoint;
     private String mRegion;
 
     private boolean mCameraFacingFront = true;
@@ -167,6 +255,48 @@ public class WebRtcActivity extends AppCompatActivity {
      */
     private final ScheduledExecutorService printStatsExecutor = Executors.newSingleThreadScheduledExecutor();
 
+    /**
+     * Joins the storage session when ingesting media, see {@link StorageSessionSupervisor}.
+     */
+    private final ScheduledExecutorService storageSessionExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    private StorageSessionSupervisor storageSessionSupervisor;
+
+    private CodecCapabilityProbe codecCapabilityProbe;
+
+    private DataChannelTransferService transferService;
+
+    private DataChannelReceivePipeline receivePipeline;
+
+    private DataChannelRegistry dataChannelRegistry;
+
+    private volatile String textDataChannelLabel;
+
+    /**
+     * Text typed while the data channel is not open, sent once it is.
+     */
+    private OfflineSendQueue outboundTextQueue;
+
+    private Bitmap messageLargeIcon;
+
+    /**
+     * Adjusts the video sender's encoding parameters and the capture format to network conditions.
+     */
+    private AdaptiveBitrateManager adaptiveBitrateManager;
+
+    private RtpSender localVideoSender;
+
+    /**
+     * Restarts ICE when the network changes or the connection to the peer is lost.
+     */
+    private IceRestartMonitor iceRestartMonitor;
+
+    /**
+     * Set from an ICE restart until ICE connects again. The signaling data channel rides the
+     * transport being restarted, so signaling messages go through the signaling service meanwhile.
+     */
+    private volatile boolean iceRestarting;
+
     /**
      * Mapping of established peer connections to the peer's sender id. In other words, if an SDP
      * offer/answer for a peer connection has been received and sent, the PeerConnection is added
@@ -189,13 +319,18 @@ public class WebRtcActivity extends AppCompatActivity {
         // See https://docs.aws.amazon.com/kinesisvideostreams-webrtc-dg/latest/devguide/kvswebrtc-websocket-apis-1.html
         final String viewerEndpoint = mWssEndpoint + "?" + Constants.CHANNEL_ARN_QUERY_PARAM + "=" + mChannelArn + "&" + Constants.CLIENT_ID_QUERY_PARAM + "=" + mClientId;
 
-        runOnUiThread(() -> mCreds = KinesisVideoWebRtcDemoApp.getCredentialsProvider().getCredentials());
-
         final URI signedUri;
-        if (master) {
-            signedUri = getSignedUri(masterEndpoint);
+        if (mSignedWssUrl != null) {
+            // Signed while the session was being configured, see SessionWarmUp
+            signedUri = URI.create(mSignedWssUrl);
         } else {
-            signedUri = getSignedUri(viewerEndpoint);
+            runOnUiThread(() -> mCreds = KinesisVideoWebRtcDemoApp.getCredentialsProvider().getCredentials());
+
+            if (master) {
+                signedUri = getSignedUri(masterEndpoint);
+            } else {
+                signedUri = getSignedUri(viewerEndpoint);
+            }
         }
 
         if (signedUri == null) {
@@ -211,16 +346,21 @@ public class WebRtcActivity extends AppCompatActivity {
 
         // Step 10. Create Signaling Client Event Listeners.
         //          When we receive messages, we need to take the appropriate action.
-        final SignalingListener signalingListener = new SignalingListener() {
+        signalingListener = new SignalingListener() {
 
             @Override
             public void onSdpOffer(final Event offerEvent) {
                 Log.d(TAG, "Received SDP Offer: Setting Remote Description ");
 
+                if (storageSessionSupervisor != null && storageSessionSupervisor.onOfferReceived()) {
+                    Log.i(TAG, "Storage session joined: " + storageSessionSupervisor.getStats());
+                }
+
                 final String sdp = Event.parseOfferEvent(offerEvent);
 
                 localPeer.setRemoteDescription(new KinesisVideoSdpObserver(), new SessionDescription(SessionDescription.Type.OFFER, sdp));
                 recipientClientId = offerEvent.getSenderClientId();
+                dataChannelSignaling.setRemoteClientId(recipientClientId);
                 Log.d(TAG, "Received SDP offer for client ID: " + recipientClientId + ". Creating answer");
 
                 createSdpAnswer();
@@ -247,6 +387,7 @@ public class WebRtcActivity extends AppCompatActivity {
                     }
                 }, sdpAnswer);
                 Log.d(TAG, "Answer Client ID: " + answerEvent.getSenderClientId());
+                dataChannelSignaling.setRemoteClientId(answerEvent.getSenderClientId());
                 peerConnectionFoundMap.put(answerEvent.getSenderClientId(), localPeer);
                 // Check if ICE candidates are available in the queue and add the candidate
                 handlePendingIceCandidates(answerEvent.getSenderClientId());
@@ -257,7 +398,9 @@ public class WebRtcActivity extends AppCompatActivity {
             public void onIceCandidate(final Event message) {
                 Log.d(TAG, "Received ICE candidate from remote");
                 final IceCandidate iceCandidate = Event.parseIceCandidate(message);
-                if (iceCandidate != null) {
+                if (iceCandidate != null && !iceCandidateFilter.acceptRemote(iceCandidate.sdp)) {
+                    Log.d(TAG, "Ignoring filtered remote ICE candidate " + iceCandidate);
+                } else if (iceCandidate != null) {
                     checkAndAddIceCandidate(message, iceCandidate);
                 } else {
                     Log.e(TAG, "Invalid ICE candidate: " + message);
@@ -299,24 +442,16 @@ public class WebRtcActivity extends AppCompatActivity {
 
                     // If webrtc endpoint is non-null ==> Ingest media was checked
                     if (webrtcEndpoint != null) {
-                        new Thread(() -> {
-                            try {
-                                final AWSKinesisVideoWebRTCStorageClient storageClient =
-                                        new AWSKinesisVideoWebRTCStorageClient(
-                                                KinesisVideoWebRtcDemoApp.getCredentialsProvider().getCredentials());
-                                storageClient.setRegion(Region.getRegion(mRegion));
-                                storageClient.setSignerRegionOverride(mRegion);
-                                storageClient.setServiceNameIntern("kinesisvideo");
-                                storageClient.setEndpoint(webrtcEndpoint);
-
-                                Log.i(TAG, "Channel ARN is: " + mChannelArn);
-                                storageClient.joinStorageSession(new JoinStorageSessionRequest()
-                                        .withChannelArn(mChannelArn));
-                                Log.i(TAG, "Join storage session request sent!");
-                            } catch (Exception ex) {
-                                Log.e(TAG, "Error sending join storage session request!", ex);
-                            }
-                        }).start();
+                        Log.i(TAG, "Channel ARN is: " + mChannelArn);
+                        storageSessionSupervisor = new StorageSessionSupervisor(
+                                () -> KinesisVideoWebRtcDemoApp.getControlPlane()
+                                        .joinStorageSession(mRegion, webrtcEndpoint, mChannelArn),
+                                (error, delayMs) -> Log.w(TAG, (error != null
+                                        ? "Error sending join storage session request: " + error.getMessage()
+                                        : "No offer from the storage session")
+                                        + ", joining again in " + delayMs + " ms"),
+                                storageSessionExecutor, SystemClock::elapsedRealtime);
+                        storageSessionSupervisor.start();
                     }
                 } else {
                     Log.d(TAG, "Signaling service is connected: " +
@@ -335,6 +470,27 @@ public class WebRtcActivity extends AppCompatActivity {
         return client != null && client.isOpen();
     }
 
+    private void sendThroughSignalingService(final Message message) {
+        if (!isValidClient()) {
+            Log.e(TAG, "Signaling service is not connected, dropping " + message.getAction());
+            return;
+        }
+        switch (message.getAction()) {
+            case "SDP_OFFER":
+                client.sendSdpOffer(message);
+                break;
+            case "SDP_ANSWER":
+                client.sendSdpAnswer(message);
+                break;
+            case "ICE_CANDIDATE":
+                client.sendIceCandidate(message);
+                break;
+            default:
+                Log.w(TAG, "Unknown signaling action " + message.getAction());
+                break;
+        }
+    }
+
     /**
      * Called once the peer connection is established. Checks the pending ICE candidate queue to see
      * if we have received any before we finished sending the SDP answer. If so, add those ICE
@@ -395,7 +551,36 @@ public class WebRtcActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         Thread.setDefaultUncaughtExceptionHandler(null);
+        if (adaptiveBitrateManager != null) {
+            adaptiveBitrateManager.stop();
+            adaptiveBitrateManager = null;
+        }
+        if (iceRestartMonitor != null) {
+            iceRestartMonitor.stop();
+            Log.i(TAG, "ICE recovery: " + iceRestartMonitor.getStats());
+        }
+        Log.i(TAG, "AWS clients: " + KinesisVideoWebRtcDemoApp.getAwsClientRegistry().getStats());
+        if (mChannelKey != null) {
+            KinesisVideoWebRtcDemoApp.getIceServerConfigCache().removeListener(mChannelKey, iceServerListener);
+        }
+        if (storageSessionSupervisor != null) {
+            storageSessionSupervisor.stop();
+            Log.i(TAG, "Storage session: " + storageSessionSupervisor.getStats());
+        }
+        storageSessionExecutor.shutdownNow();
         printStatsExecutor.shutdownNow();
+        if (outboundTextQueue != null) {
+            outboundTextQueue.close();
+        }
+        if (dataChannelSignaling != null) {
+            dataChannelSignaling.close();
+        }
+        if (dataChannelRegistry != null) {
+            dataChannelRegistry.close();
+        }
+        if (receivePipeline != null) {
+            receivePipeline.close();
+        }
 
         audioManager.setMode(originalAudioMode);
         audioManager.setSpeakerphoneOn(originalSpeakerphoneOn);
@@ -415,6 +600,11 @@ public class WebRtcActivity extends AppCompatActivity {
             localPeer = null;
         }
 
+        // Disposing the peer connection closes the transfer channels, whose last callbacks need the service
+        if (transferService != null) {
+            transferService.close();
+        }
+
         if (videoSource != null) {
             videoSource.dispose();
             videoSource = null;
@@ -450,7 +640,15 @@ public class WebRtcActivity extends AppCompatActivity {
     protected void onPostCreate(@Nullable Bundle savedInstanceState) {
         super.onPostCreate(savedInstanceState);
 
-        // Start websocket after adding local audio/video tracks
+        // Start websocket after adding local audio/video tracks, and once the peer connection can get its TURN servers
+        awaitIceServers();
+    }
+
+    private void startSignaling() {
+        if (signalingStarted || isFinishing()) {
+            return;
+        }
+        signalingStarted = true;
         initWsConnection();
 
         if (!gotException && isValidClient()) {
@@ -461,10 +659,25 @@ public class WebRtcActivity extends AppCompatActivity {
     }
 
     private void notifySignalingConnectionFailed() {
+        // The cached channel ARN or endpoint may be the reason, have the next session fetch them again
+        if (mChannelKey != null) {
+            KinesisVideoWebRtcDemoApp.getControlPlaneCache(this).invalidate(mChannelKey);
+            KinesisVideoWebRtcDemoApp.getIceServerConfigCache().invalidate(mChannelKey);
+        }
         finish();
         Toast.makeText(this, "Connection error to signaling", Toast.LENGTH_LONG).show();
     }
 
+    /**
+     * Messages spilled to the outbox are only sent again by a session of the same channel, role and
+     * client id, never to the peer of another one.
+     */
+    private long outboxSession() {
+        return Hashing.sha256()
+                .hashString(mChannelArn + "|" + master + "|" + mClientId, StandardCharsets.UTF_8)
+                .asLong();
+    }
+
     @Override
     protected void onCreate(final Bundle savedInstanceState) {
 
@@ -472,9 +685,12 @@ public class WebRtcActivity extends AppCompatActivity {
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
 
         final Intent intent = getIntent();
+        mChannelName = intent.getStringExtra(KEY_CHANNEL_NAME);
         mChannelArn = intent.getStringExtra(KEY_CHANNEL_ARN);
         mStreamArn = intent.getStringExtra(KEY_STREAM_ARN);
         mWssEndpoint = intent.getStringExtra(KEY_WSS_ENDPOINT);
+        mSignedWssUrl = intent.getStringExtra(KEY_SIGNED_WSS_URL);
+        mHttpsEndpoint = intent.getStringExtra(KEY_HTTPS_ENDPOINT);
         webrtcEndpoint = intent.getStringExtra(KEY_WEBRTC_ENDPOINT);
 
         mClientId = intent.getStringExtra(KEY_CLIENT_ID);
@@ -494,7 +710,7 @@ public class WebRtcActivity extends AppCompatActivity {
         rootEglBase = EglBase.create();
 
 
-        //TODO: add ui to control TURN only option
+        //TODO: add ui to control the ICE candidate filter, e.g. TURN only
 
         final IceServer stun = IceServer
                 .builder(String.format("stun:stun.kinesisvideo.%s.amazonaws.com:443", mRegion))
@@ -506,10 +722,7 @@ public class WebRtcActivity extends AppCompatActivity {
             for (int i = 0; i < mUrisList.size(); i++) {
                 final String turnServer = mUrisList.get(i).toString();
                 if (turnServer != null) {
-                    final IceServer iceServer = IceServer.builder(turnServer.replace("[", "").replace("]", ""))
-                            .setUsername(mUserNames.get(i))
-                            .setPassword(mPasswords.get(i))
-                            .createIceServer();
+                    final IceServer iceServer = createTurnServer(mUrisList.get(i), mUserNames.get(i), mPasswords.get(i));
 
                     Log.d(TAG, "IceServer details (TURN) = " + iceServer.toString());
                     peerIceServers.add(iceServer);
@@ -517,20 +730,36 @@ public class WebRtcActivity extends AppCompatActivity {
             }
         }
 
+        if (mChannelName != null && mRegion != null) {
+            mChannelKey = new SignalingChannelKey(mRegion, mChannelName, master ? ChannelRole.MASTER : ChannelRole.VIEWER);
+            if (mUrisList == null && mHttpsEndpoint != null) {
+                // Most likely fetched while the session was configured, see awaitIceServers
+                iceServersFuture = KinesisVideoWebRtcDemoApp.getSignalingBootstrap(this)
+                        .getIceServers(mChannelKey, mChannelArn, mHttpsEndpoint);
+            } else if (!KinesisVideoWebRtcDemoApp.getIceServerConfigCache().addListener(mChannelKey, iceServerListener)) {
+                Log.w(TAG, "TURN credentials will not be refreshed, they expire after " + mTTLs + " seconds");
+            }
+        }
+
         setContentView(R.layout.activity_webrtc_main);
 
         PeerConnectionFactory.initialize(PeerConnectionFactory
                 .InitializationOptions
                 .builder(this)
                 .createInitializationOptions());
+        // The codec probe must not compete with this session's encoder
+        KinesisVideoWebRtcDemoApp.stopMeasuringCodecs();
+        codecCapabilityProbe = KinesisVideoWebRtcDemoApp.getCodecCapabilityProbe(this);
 
         final VideoDecoderFactory vdf = new DefaultVideoDecoderFactory(rootEglBase.getEglBaseContext());
         Log.d(TAG, "Available decoders on this device:");
         for (final VideoCodecInfo videoCodecInfo : vdf.getSupportedCodecs()) {
             Log.d(TAG, videoCodecInfo.name);
         }
-        final VideoEncoderFactory vef = new DefaultVideoEncoderFactory(rootEglBase.getEglBaseContext(),
-                ENABLE_INTEL_VP8_ENCODER, ENABLE_H264_HIGH_PROFILE);
+        final VideoEncoderFactory vef = new MonitoredVideoEncoderFactory(rootEglBase.getEglBaseContext(),
+                ENABLE_INTEL_VP8_ENCODER, ENABLE_H264_HIGH_PROFILE,
+                (codecName, reason, metrics, softwareFallbackAvailable) -> runOnUiThread(
+                        () -> onVideoEncoderFailing(codecName, reason, metrics, softwareFallbackAvailable)));
         Log.d(TAG, "Available encoders on this device:");
         for (final VideoCodecInfo videoCodecInfo : vef.getSupportedCodecs()) {
             Log.d(TAG, videoCodecInfo.name);
@@ -546,7 +775,10 @@ public class WebRtcActivity extends AppCompatActivity {
         // Enable Google WebRTC debug logs
         Logging.enableLogToDebugOutput(Logging.Severity.LS_INFO);
 
-        videoCapturer = createVideoCapturer();
+        final CameraCapturerFactory.CameraCapture cameraCapture = new CameraCapturerFactory(getApplicationContext())
+                .create(mCameraFacingFront, new CameraCaptureFormat(VIDEO_SIZE_WIDTH, VIDEO_SIZE_HEIGHT, VIDEO_FPS));
+        videoCapturer = cameraCapture.getCapturer();
+        captureFormat = cameraCapture.getFormat();
 
         // Local video view
         localView = findViewById(R.id.local_view);
@@ -572,7 +804,7 @@ public class WebRtcActivity extends AppCompatActivity {
         originalSpeakerphoneOn = audioManager.isSpeakerphoneOn();
 
         // Start capturing video
-        videoCapturer.startCapture(VIDEO_SIZE_WIDTH, VIDEO_SIZE_HEIGHT, VIDEO_FPS);
+        cameraCapture.startCapture();
         localVideoTrack.setEnabled(true);
 
         remoteView = findViewById(R.id.remote_view);
@@ -582,43 +814,73 @@ public class WebRtcActivity extends AppCompatActivity {
         sendDataChannelButton = findViewById(R.id.send_data_channel_text);
 
         createNotificationChannel();
-    }
 
-    private VideoCapturer createVideoCapturer() {
+        receivePipeline = new DataChannelReceivePipeline();
+        receivePipeline.subscribe(new MessageCoalescer(printStatsExecutor, MESSAGE_NOTIFICATION_INTERVAL_MS,
+                (count, lastText) -> runOnUiThread(() -> notifyPeerMessages(count, lastText))));
 
-        final VideoCapturer videoCapturer;
-
-        Logging.d(TAG, "Create camera");
-        videoCapturer = createCameraCapturer(new Camera1Enumerator(false));
-
-        return videoCapturer;
-    }
-
-    private VideoCapturer createCameraCapturer(CameraEnumerator enumerator) {
-
-        final String[] deviceNames = enumerator.getDeviceNames();
+        dataChannelRegistry = new DataChannelRegistry(receivePipeline, (label, state) -> {
+            if (label.equals(textDataChannelLabel)) {
+                outboundTextQueue.onStateChange(state);
+            }
+        }, (label, data, binary) -> {
+            // Sent again on the next text channel, e.g. after reconnecting
+            if (label.equals(textDataChannelLabel)) {
+                outboundTextQueue.requeue(data, binary);
+            }
+        });
 
-        Logging.d(TAG, "Enumerating cameras");
+        outboundTextQueue = OfflineSendQueue.builder()
+                .setSpillFile(new File(getFilesDir(), OUTBOX_FILE), OUTBOX_SPILL_BYTES, outboxSession())
+                .build(new OfflineSendQueue.Sink() {
+                    @Override
+                    public boolean send(final ByteBuffer data, final boolean binary) {
+                        return dataChannelRegistry.send(textDataChannelLabel, data, binary);
+                    }
 
-        for (String deviceName : deviceNames) {
+                    @Override
+                    public long getBufferedAmount() {
+                        final DataChannel channel = dataChannelRegistry.get(textDataChannelLabel);
+                        return channel != null ? channel.bufferedAmount() : 0;
+                    }
+                }, printStatsExecutor);
+        if (outboundTextQueue.getSpilledMessages() > 0) {
+            Log.i(TAG, outboundTextQueue.getSpilledMessages() + " messages from the last session are waiting to be sent");
+        }
 
-            if (mCameraFacingFront ? enumerator.isFrontFacing(deviceName) : enumerator.isBackFacing(deviceName)) {
+        dataChannelSignaling = new DataChannelSignaling(this::sendThroughSignalingService, message -> {
+            final SignalingListener listener = signalingListener;
+            if (listener != null) {
+                listener.handleMessage(message);
+            }
+        });
 
-                Logging.d(TAG, "Camera created");
-                VideoCapturer videoCapturer = enumerator.createCapturer(deviceName, null);
+        transferService = new DataChannelTransferService(new File(getFilesDir(), TRANSFER_DIRECTORY),
+                new DataChannelTransferService.Listener() {
+                    @Override
+                    public void onTransferProgress(final TransferStats stats) {
+                        Log.d(TAG, "Transfer progress: " + stats);
+                    }
 
-                if (videoCapturer != null) {
-                    return videoCapturer;
-                }
-            }
-        }
+                    @Override
+                    public void onTransferCompleted(final TransferStats stats, final File receivedFile) {
+                        Log.i(TAG, "Transfer completed: " + stats);
+                        if (receivedFile != null) {
+                            runOnUiThread(() -> Toast.makeText(getApplicationContext(),
+                                    "Received " + receivedFile.getName(), Toast.LENGTH_SHORT).show());
+                        }
+                    }
 
-        return null;
+                    @Override
+                    public void onTransferFailed(final TransferStats stats, final String reason) {
+                        Log.w(TAG, "Transfer failed (" + reason + "): " + stats);
+                    }
+                });
     }
 
     private void createLocalPeerConnection() {
 
-        final PeerConnection.RTCConfiguration rtcConfig = new PeerConnection.RTCConfiguration(peerIceServers);
+        rtcConfig = new PeerConnection.RTCConfiguration(new ArrayList<>(peerIceServers));
 
         rtcConfig.bundlePolicy = PeerConnection.BundlePolicy.MAXBUNDLE;
         rtcConfig.sdpSemantics = PeerConnection.SdpSemantics.UNIFIED_PLAN;
@@ -626,6 +888,7 @@ public class WebRtcActivity extends AppCompatActivity {
         rtcConfig.keyType = PeerConnection.KeyType.ECDSA;
         rtcConfig.rtcpMuxPolicy = PeerConnection.RtcpMuxPolicy.REQUIRE;
         rtcConfig.tcpCandidatePolicy = PeerConnection.TcpCandidatePolicy.ENABLED;
+        iceCandidateFilter.applyTo(rtcConfig);
 
         // Step 8. Create RTCPeerConnection.
         //         The RTCPeerConnection is the primary interface for WebRTC communications in the Web.
@@ -637,9 +900,14 @@ public class WebRtcActivity extends AppCompatActivity {
 
                 super.onIceCandidate(iceCandidate);
 
+                if (!iceCandidateFilter.acceptLocal(iceCandidate.sdp)) {
+                    Log.d(TAG, "Not sending filtered ICE candidate " + iceCandidate);
+                    return;
+                }
+
                 final Message message = createIceCandidateMessage(iceCandidate);
                 Log.d(TAG, "Sending IceCandidate to remote peer " + iceCandidate);
-                client.sendIceCandidate(message);  /* Send to Peer */
+                sendToPeer(message);
             }
 
             @Override
@@ -655,6 +923,14 @@ public class WebRtcActivity extends AppCompatActivity {
             @Override
             public void onIceConnectionChange(final PeerConnection.IceConnectionState iceConnectionState) {
                 super.onIceConnectionChange(iceConnectionState);
+                dataChannelSignaling.onIceConnectionChange(iceConnectionState);
+                if (iceConnectionState == PeerConnection.IceConnectionState.CONNECTED
+                        || iceConnectionState == PeerConnection.IceConnectionState.COMPLETED) {
+                    iceRestarting = false;
+                }
+                if (iceRestartMonitor != null) {
+                    iceRestartMonitor.onIceConnectionChange(iceConnectionState);
+                }
                 if (iceConnectionState == PeerConnection.IceConnectionState.FAILED) {
                     runOnUiThread(() -> Toast.makeText(getApplicationContext(), "Connection to peer failed!", Toast.LENGTH_LONG).show());
                 } else if (iceConnectionState == PeerConnection.IceConnectionState.CONNECTED) {
@@ -666,45 +942,11 @@ public class WebRtcActivity extends AppCompatActivity {
             public void onDataChannel(final DataChannel dataChannel) {
                 super.onDataChannel(dataChannel);
 
-                dataChannel.registerObserver(new DataChannel.Observer() {
-                    @Override
-                    public void onBufferedAmountChange(long l) {
-                        // no op on receiver side
-                    }
-
-                    @Override
-                    public void onStateChange() {
-                        Log.d(TAG, "Remote Data Channel onStateChange: state: " + dataChannel.state().toString());
-                    }
+                if (transferService.onDataChannel(dataChannel)) {
+                    return;
+                }
 
-                    @Override
-                    public void onMessage(DataChannel.Buffer buffer) {
-                        runOnUiThread(() -> {
-                            final byte[] bytes;
-                            if (buffer.data.hasArray()) {
-                                bytes = buffer.data.array();
-                            } else {
-                                bytes = new byte[buffer.data.remaining()];
-                                buffer.data.get(bytes);
-                            }
-
-                            final NotificationCompat.Builder builder = new NotificationCompat.Builder(getApplicationContext(), CHANNEL_ID)
-                                    .setSmallIcon(R.mipmap.ic_launcher)
-                                    .setLargeIcon(BitmapFactory.decodeResource(getApplicationContext().getResources(),
-                                            R.mipmap.ic_launcher))
-                                    .setContentTitle("Message from Peer!")
-                                    .setContentText(new String(bytes, Charset.defaultCharset()))
-                                    .setPriority(NotificationCompat.PRIORITY_MAX)
-                                    .setAutoCancel(true);
-                            final NotificationManagerCompat notificationManager = NotificationManagerCompat.from(getApplicationContext());
-
-                            // notificationId is a unique int for each notification that you must define
-                            notificationManager.notify(mNotificationId++, builder.build());
-
-                            Toast.makeText(getApplicationContext(), "New message from peer, check notification.", Toast.LENGTH_SHORT).show();
-                        });
-                    }
-                });
+                dataChannelRegistry.onDataChannel(dataChannel, null);
             }
         });
 
@@ -717,31 +959,117 @@ public class WebRtcActivity extends AppCompatActivity {
                     }
                 });
             }, 0, 10, TimeUnit.SECONDS);
+
+            iceRestartMonitor = new IceRestartMonitor(getApplicationContext(), printStatsExecutor, this::restartIce);
+            iceRestartMonitor.start();
         }
 
         addDataChannelToLocalPeer();
+        if (ENABLE_IN_BAND_SIGNALING) {
+            dataChannelSignaling.open(localPeer);
+        }
         addStreamToLocalPeer();
     }
 
-    private Message createIceCandidateMessage(final IceCandidate iceCandidate) {
-        final String sdpMid = iceCandidate.sdpMid;
-        final int sdpMLineIndex = iceCandidate.sdpMLineIndex;
-        final String sdp = iceCandidate.sdp;
-
-        final String messagePayload =
-                "{\"candidate\":\""
-                        + sdp
-                        + "\",\"sdpMid\":\""
-                        + sdpMid
-                        + "\",\"sdpMLineIndex\":"
-                        + sdpMLineIndex
-                        + "}";
+    /**
+     * Starts signaling once the TURN servers being fetched arrived, or after
+     * {@link #ICE_SERVERS_TIMEOUT_MS} with the STUN server only. TURN servers arriving later are
+     * passed to the peer connection like refreshed ones.
+     */
+    private void awaitIceServers() {
+        final CompletableFuture<List<com.amazonaws.services.kinesisvideosignaling.model.IceServer>> pending = iceServersFuture;
+        iceServersFuture = null;
+        if (pending == null) {
+            startSignaling();
+            return;
+        }
+        final ScheduledFuture<?> timeout = printStatsExecutor.schedule(() -> runOnUiThread(() -> {
+            if (!signalingStarted) {
+                Log.w(TAG, "TURN servers not fetched within " + ICE_SERVERS_TIMEOUT_MS + " ms, starting with STUN only");
+                startSignaling();
+            }
+        }), ICE_SERVERS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        pending.whenComplete((iceServers, e) -> runOnUiThread(() -> {
+            timeout.cancel(false);
+            if (isFinishing()) {
+                return;
+            }
+            if (e != null) {
+                final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                Log.e(TAG, "Continuing without TURN servers: " + cause.getMessage());
+            } else if (signalingStarted) {
+                onIceServersRefreshed(iceServers);
+                KinesisVideoWebRtcDemoApp.getIceServerConfigCache().addListener(mChannelKey, iceServerListener);
+            } else {
+                for (final com.amazonaws.services.kinesisvideosignaling.model.IceServer iceServer : iceServers) {
+                    final IceServer turnServer = createTurnServer(iceServer.getUris(), iceServer.getUsername(), iceServer.getPassword());
+                    Log.d(TAG, "IceServer details (TURN) = " + turnServer.toString());
+                    peerIceServers.add(turnServer);
+                }
+                KinesisVideoWebRtcDemoApp.getIceServerConfigCache().addListener(mChannelKey, iceServerListener);
+            }
+            startSignaling();
+        }));
+    }
+
+    private static IceServer createTurnServer(final List<String> uris, final String userName, final String password) {
+        return IceServer.builder(uris.toString().replace("[", "").replace("]", ""))
+                .setUsername(userName)
+                .setPassword(password)
+                .createIceServer();
+    }
 
+    private void onIceServersRefreshed(final List<com.amazonaws.services.kinesisvideosignaling.model.IceServer> iceServers) {
+        final List<IceServer> refreshed = new ArrayList<>();
+        // The STUN server has no credentials
+        refreshed.add(peerIceServers.get(0));
+        for (final com.amazonaws.services.kinesisvideosignaling.model.IceServer iceServer : iceServers) {
+            refreshed.add(createTurnServer(iceServer.getUris(), iceServer.getUsername(), iceServer.getPassword()));
+        }
+        runOnUiThread(() -> {
+            peerIceServers.clear();
+            peerIceServers.addAll(refreshed);
+            if (localPeer == null || rtcConfig == null) {
+                return;
+            }
+            rtcConfig.iceServers = new ArrayList<>(refreshed);
+            if (localPeer.setConfiguration(rtcConfig)) {
+                Log.i(TAG, "Refreshed TURN credentials of " + iceServers.size() + " servers");
+            } else {
+                Log.w(TAG, "Could not refresh TURN credentials");
+            }
+        });
+    }
+
+    private void restartIce(final IceRestartPolicy.Reason reason) {
+        if (localPeer == null) {
+            return;
+        }
+        Log.i(TAG, "Restarting ICE after " + reason);
+        iceRestarting = true;
+        // Gathers new candidates with new credentials on the next offer, the media keeps its transceivers
+        localPeer.restartIce();
+
+        if (!master) {
+            createSdpOffer();
+        } else {
+            // Viewers take offers only from the signaling service, which does not deliver them from the master
+            Log.i(TAG, "Waiting for the viewer to renegotiate after ICE restart");
+        }
+    }
+
+    private void sendToPeer(final Message message) {
+        if (iceRestarting) {
+            sendThroughSignalingService(message);
+        } else {
+            dataChannelSignaling.send(message);
+        }
+    }
+
+    private Message createIceCandidateMessage(final IceCandidate iceCandidate) {
         final String senderClientId = (master) ? "" : mClientId;
 
-        return new Message("ICE_CANDIDATE", recipientClientId, senderClientId,
-                new String(Base64.encode(messagePayload.getBytes(),
-                        Base64.URL_SAFE | Base64.NO_WRAP)));
+        return Message.createIceCandidateMessage(iceCandidate, recipientClientId, senderClientId);
     }
 
     private void addStreamToLocalPeer() {
@@ -752,7 +1080,15 @@ public class WebRtcActivity extends AppCompatActivity {
             Log.e(TAG, "Add video track failed");
         }
 
-        localPeer.addTrack(stream.videoTracks.get(0), Collections.singletonList(stream.getId()));
+        localVideoSender = localPeer.addTrack(stream.videoTracks.get(0), Collections.singletonList(stream.getId()));
+        applyVideoCodecPreferences();
+        if (localVideoSender != null) {
+            adaptiveBitrateManager = new AdaptiveBitrateManager(localPeer, localVideoSender, videoCapturer,
+                    new AdaptiveBitrateController(VideoEncodingLevel.defaultLadder(captureFormat.getWidth(),
+                            captureFormat.getHeight(), captureFormat.getFps())),
+                    printStatsExecutor);
+            adaptiveBitrateManager.start(ADAPTIVE_BITRATE_POLL_MS);
+        }
 
         if (isAudioSent) {
             if (!stream.addTrack(localAudioTrack)) {
@@ -768,43 +1104,74 @@ public class WebRtcActivity extends AppCompatActivity {
 
     }
 
-    private void addDataChannelToLocalPeer() {
-        Log.d(TAG, "Data channel addDataChannelToLocalPeer");
-        final DataChannel localDataChannel = localPeer.createDataChannel("data-channel-of-" + mClientId, new DataChannel.Init());
-        localDataChannel.registerObserver(new DataChannel.Observer() {
-            @Override
-            public void onBufferedAmountChange(long l) {
-                Log.d(TAG, "Local Data Channel onBufferedAmountChange called with amount " + l);
+    private void applyVideoCodecPreferences() {
+        if (localPeer == null || localVideoSender == null) {
+            return;
+        }
+        for (final RtpTransceiver transceiver : localPeer.getTransceivers()) {
+            if (transceiver.getSender() == localVideoSender) {
+                CodecPreferences.apply(transceiver, peerConnectionFactory, codecCapabilityProbe.getResults());
             }
+        }
+    }
 
-            @Override
-            public void onStateChange() {
-                Log.d(TAG, "Local Data Channel onStateChange: state: " + localDataChannel.state().toString());
-
-                if (sendDataChannelButton != null) {
-                    runOnUiThread(() -> {
-                        if (localDataChannel.state() == DataChannel.State.OPEN) {
-                            sendDataChannelButton.setEnabled(true);
-                        } else {
-                            sendDataChannelButton.setEnabled(false);
-                        }
-                    });
-                }
-            }
+    private void onVideoEncoderFailing(final String codecName, final EncoderLatencyMonitor.Reason reason,
+                                       final EncoderMetrics metrics, final boolean softwareFallbackAvailable) {
+        Log.w(TAG, "Hardware " + codecName + " encoder failing (" + reason + "), software fallback "
+                + (softwareFallbackAvailable ? "active" : "unavailable") + ": " + metrics);
 
-            @Override
-            public void onMessage(final DataChannel.Buffer buffer) {
-                // Send out data, no op on sender side
-            }
-        });
+        // Prefer other codecs from now on, including in later sessions on this device
+        codecCapabilityProbe.demote(codecName);
+        if (localPeer == null) {
+            return;
+        }
+        applyVideoCodecPreferences();
+
+        if (!master) {
+            Log.i(TAG, "Renegotiating after " + codecName + " encoder failure");
+            createSdpOffer();
+        } else {
+            // Offers come from the viewer, the new codec order applies to its next offer
+            Log.i(TAG, "Codec preferences updated, waiting for the viewer to renegotiate");
+        }
+    }
+
+    private void notifyPeerMessages(final int count, final String lastText) {
+        if (messageLargeIcon == null) {
+            messageLargeIcon = BitmapFactory.decodeResource(getApplicationContext().getResources(), R.mipmap.ic_launcher);
+        }
+        final String text = lastText != null ? lastText : "Binary data";
+        final NotificationCompat.Builder builder = new NotificationCompat.Builder(getApplicationContext(), CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setLargeIcon(messageLargeIcon)
+                .setContentTitle(count > 1 ? count + " messages from Peer!" : "Message from Peer!")
+                .setContentText(text)
+                .setPriority(NotificationCompat.PRIORITY_MAX)
+                .setOnlyAlertOnce(true)
+                .setAutoCancel(true);
+        final NotificationManagerCompat notificationManager = NotificationManagerCompat.from(getApplicationContext());
+
+        // Bursts update the same notification instead of stacking a new one per message
+        notificationManager.notify(MESSAGE_NOTIFICATION_ID, builder.build());
+
+        Toast.makeText(getApplicationContext(), "New message from peer, check notification.", Toast.LENGTH_SHORT).show();
+    }
+
+    private void addDataChannelToLocalPeer() {
+        Log.d(TAG, "Data channel addDataChannelToLocalPeer");
+        textDataChannelLabel = "data-channel-of-" + mClientId;
+        // Chat is not latency critical, so it keeps the default priority below control traffic
+        dataChannelRegistry.open(localPeer, DataChannelSpec.builder(textDataChannelLabel).build());
 
         sendDataChannelButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                localDataChannel.send(new DataChannel.Buffer(
-                        ByteBuffer.wrap(dataChannelText.getText().toString()
-                                .getBytes(Charset.defaultCharset())), false));
-                dataChannelText.setText("");
+                final byte[] text = dataChannelText.getText().toString().getBytes(StandardCharsets.UTF_8);
+                if (outboundTextQueue.offer(ByteBuffer.wrap(text), false)) {
+                    dataChannelText.setText("");
+                } else {
+                    Toast.makeText(getApplicationContext(), "Too many unsent messages", Toast.LENGTH_SHORT).show();
+                }
             }
         });
     }
@@ -833,8 +1200,8 @@ public class WebRtcActivity extends AppCompatActivity {
 
                 final Message sdpOfferMessage = Message.createOfferMessage(sessionDescription, mClientId);
 
-                if (isValidClient()) {
-                    client.sendSdpOffer(sdpOfferMessage);
+                if (isValidClient() || (!iceRestarting && dataChannelSignaling.isActive())) {
+                    sendToPeer(sdpOfferMessage);
                 } else {
                     notifySignalingConnectionFailed();
                 }
@@ -859,7 +1226,7 @@ public class WebRtcActivity extends AppCompatActivity {
                 super.onCreateSuccess(sessionDescription);
                 localPeer.setLocalDescription(new KinesisVideoSdpObserver(), sessionDescription);
                 final Message answer = Message.createAnswerMessage(sessionDescription, master, recipientClientId);
-                client.sendSdpAnswer(answer);
+                sendToPeer(answer);
 
                 peerConnectionFoundMap.put(recipientClientId, localPeer);
                 handlePendingIceCandidates(recipientClientId);
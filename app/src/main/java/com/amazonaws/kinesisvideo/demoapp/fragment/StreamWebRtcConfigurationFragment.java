@@ -2,10 +2,15 @@ package com.amazonaws.kinesisvideo.demoapp.fragment;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.util.SparseBooleanArray;
 import android.view.LayoutInflater;
@@ -19,6 +24,7 @@ import android.widget.CheckedTextView;
 import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.Spinner;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -28,45 +34,36 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 
+import com.amazonaws.kinesisvideo.controlplane.SessionWarmUp;
+import com.amazonaws.kinesisvideo.controlplane.SignalingBootstrap;
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelInfo;
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
 import com.amazonaws.kinesisvideo.demoapp.KinesisVideoWebRtcDemoApp;
 import com.amazonaws.kinesisvideo.demoapp.R;
 import com.amazonaws.kinesisvideo.demoapp.activity.SimpleNavActivity;
 import com.amazonaws.kinesisvideo.demoapp.activity.WebRtcActivity;
-import com.amazonaws.regions.Region;
-import com.amazonaws.services.kinesisvideo.AWSKinesisVideoClient;
 import com.amazonaws.services.kinesisvideo.model.ChannelRole;
-import com.amazonaws.services.kinesisvideo.model.CreateSignalingChannelRequest;
-import com.amazonaws.services.kinesisvideo.model.CreateSignalingChannelResult;
-import com.amazonaws.services.kinesisvideo.model.DescribeMediaStorageConfigurationRequest;
-import com.amazonaws.services.kinesisvideo.model.DescribeMediaStorageConfigurationResult;
-import com.amazonaws.services.kinesisvideo.model.DescribeSignalingChannelRequest;
-import com.amazonaws.services.kinesisvideo.model.DescribeSignalingChannelResult;
-import com.amazonaws.services.kinesisvideo.model.GetSignalingChannelEndpointRequest;
-import com.amazonaws.services.kinesisvideo.model.GetSignalingChannelEndpointResult;
 import com.amazonaws.services.kinesisvideo.model.ResourceEndpointListItem;
-import com.amazonaws.services.kinesisvideo.model.ResourceNotFoundException;
-import com.amazonaws.services.kinesisvideo.model.SingleMasterChannelEndpointConfiguration;
-import com.amazonaws.services.kinesisvideosignaling.AWSKinesisVideoSignalingClient;
-import com.amazonaws.services.kinesisvideosignaling.model.GetIceServerConfigRequest;
-import com.amazonaws.services.kinesisvideosignaling.model.GetIceServerConfigResult;
-import com.amazonaws.services.kinesisvideosignaling.model.IceServer;
-
-import java.lang.ref.WeakReference;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
 
 public class StreamWebRtcConfigurationFragment extends Fragment {
     private static final String TAG = StreamWebRtcConfigurationFragment.class.getSimpleName();
 
-    private static final String KEY_CHANNEL_NAME = "channelName";
+    public static final String KEY_CHANNEL_NAME = "channelName";
     public static final String KEY_CLIENT_ID = "clientId";
     public static final String KEY_REGION = "region";
     public static final String KEY_CHANNEL_ARN = "channelArn";
     public static final String KEY_STREAM_ARN = "streamArn";
     public static final String KEY_WSS_ENDPOINT = "wssEndpoint";
     public static final String KEY_WEBRTC_ENDPOINT = "webrtcEndpoint";
+    public static final String KEY_HTTPS_ENDPOINT = "httpsEndpoint";
+    public static final String KEY_SIGNED_WSS_URL = "signedWssUrl";
     public static final String KEY_IS_MASTER = "isMaster";
     public static final String KEY_ICE_SERVER_USER_NAME = "iceServerUserName";
     public static final String KEY_ICE_SERVER_PASSWORD = "iceServerPassword";
@@ -77,6 +74,11 @@ public class StreamWebRtcConfigurationFragment extends Fragment {
     private static final String KEY_SEND_VIDEO = "sendVideo";
     public static final String KEY_SEND_AUDIO = "sendAudio";
 
+    private static final String PREFERENCES_NAME = "kvs_stream_webrtc_configuration";
+    private static final String PREFERENCE_LAST_CHANNEL_NAME = "lastChannelName";
+    private static final String PREFERENCE_LAST_REGION = "lastRegion";
+    private static final String PREFERENCE_LAST_ROLE = "lastRole";
+
     private static final String[] WEBRTC_OPTIONS = {
             "Send Video",
             "Send Audio",
@@ -94,10 +96,26 @@ public class StreamWebRtcConfigurationFragment extends Fragment {
     private Spinner mCameras;
     private CheckBox mIngestMedia;
     private final List<ResourceEndpointListItem> mEndpointList = new ArrayList<>();
-    private final List<IceServer> mIceServerList = new ArrayList<>();
     private String mChannelArn = null;
     private String mStreamArn = null;
+    private String mSignedWssUrl = null;
+    private String mWarmClientId = null;
     private ListView mOptions;
+    private Button mStartMasterButton;
+    private Button mStartViewerButton;
+    private TextView mBootstrapProgress;
+    private Button mCancelBootstrapButton;
+
+    /**
+     * The running bootstrap, {@code null} if none. Only accessed on the main thread.
+     */
+    private SignalingBootstrap.Session mBootstrapSession;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private SharedPreferences mPreferences;
+
+    private SessionWarmUp mWarmUp;
 
     private SimpleNavActivity navActivity;
 
@@ -125,10 +143,13 @@ public class StreamWebRtcConfigurationFragment extends Fragment {
 
     @Override
     public void onViewCreated(final View view, Bundle savedInstanceState) {
-        Button mStartMasterButton = view.findViewById(R.id.start_master);
+        mStartMasterButton = view.findViewById(R.id.start_master);
         mStartMasterButton.setOnClickListener(startMasterActivityWhenClicked());
-        Button mStartViewerButton = view.findViewById(R.id.start_viewer);
+        mStartViewerButton = view.findViewById(R.id.start_viewer);
         mStartViewerButton.setOnClickListener(startViewerActivityWhenClicked());
+        mBootstrapProgress = view.findViewById(R.id.bootstrap_progress);
+        mCancelBootstrapButton = view.findViewById(R.id.cancel_bootstrap);
+        mCancelBootstrapButton.setOnClickListener(v -> cancelBootstrap());
 
         mChannelName = view.findViewById(R.id.channel_name);
         mClientId = view.findViewById(R.id.client_id);
@@ -136,6 +157,28 @@ public class StreamWebRtcConfigurationFragment extends Fragment {
         mIngestMedia = view.findViewById(R.id.ingest_media);
         setRegionFromCognito();
 
+        mPreferences = requireContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mWarmUp = KinesisVideoWebRtcDemoApp.getSessionWarmUp(requireContext());
+        setLastUsedChannel();
+        final TextWatcher warmUpWhenChanged = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(final CharSequence text, final int start, final int count, final int after) {
+            }
+
+            @Override
+            public void onTextChanged(final CharSequence text, final int start, final int before, final int count) {
+            }
+
+            @Override
+            public void afterTextChanged(final Editable text) {
+                warmUp();
+            }
+        };
+        mChannelName.addTextChangedListener(warmUpWhenChanged);
+        mClientId.addTextChangedListener(warmUpWhenChanged);
+        mRegion.addTextChangedListener(warmUpWhenChanged);
+        mIngestMedia.setOnCheckedChangeListener((button, checked) -> warmUp());
+
         mOptions = view.findViewById(R.id.webrtc_options);
         mOptions.setAdapter(new ArrayAdapter<String>(getActivity(), android.R.layout.simple_list_item_multiple_choice, WEBRTC_OPTIONS) {
             @NonNull
@@ -178,6 +221,31 @@ public class StreamWebRtcConfigurationFragment extends Fragment {
         }
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        // Again after a session, the last warm-up was used or discarded
+        warmUp();
+        // Only while no session is encoding, the probe drives the same hardware encoders
+        KinesisVideoWebRtcDemoApp.measureCodecsWhileIdle(requireContext());
+    }
+
+    @Override
+    public void onPause() {
+        KinesisVideoWebRtcDemoApp.stopMeasuringCodecs();
+        super.onPause();
+    }
+
+    @Override
+    public void onDestroyView() {
+        cancelBootstrap();
+        mWarmUp.stop();
+        Log.i(TAG, "Warm-ups started " + mWarmUp.getStarted() + ", used " + mWarmUp.getUsed()
+                + ", expired " + mWarmUp.getExpired() + ", failed " + mWarmUp.getFailed()
+                + ", over budget " + mWarmUp.getOverBudget());
+        super.onDestroyView();
+    }
+
     private void setRegionFromCognito() {
         String region = KinesisVideoWebRtcDemoApp.getRegion();
         if (region != null) {
@@ -185,6 +253,32 @@ public class StreamWebRtcConfigurationFragment extends Fragment {
         }
     }
 
+    private void setLastUsedChannel() {
+        final String channelName = mPreferences.getString(PREFERENCE_LAST_CHANNEL_NAME, null);
+        final String region = mPreferences.getString(PREFERENCE_LAST_REGION, null);
+        if (channelName != null && region != null) {
+            mChannelName.setText(channelName);
+            mRegion.setText(region);
+        }
+    }
+
+    /**
+     * Speculatively prepares a session on the channel, for the role it was last used with, see
+     * {@link SessionWarmUp}. Masters are not warmed up for channels that do not exist yet.
+     */
+    private void warmUp() {
+        final String region = mRegion.getText().toString().trim();
+        final String channelName = mChannelName.getText().toString().trim();
+        if (region.isEmpty() || channelName.isEmpty()) {
+            mWarmUp.stop();
+            return;
+        }
+        final ChannelRole role = ChannelRole.valueOf(
+                mPreferences.getString(PREFERENCE_LAST_ROLE, ChannelRole.VIEWER.name()));
+        mWarmUp.onInputsChanged(new SignalingChannelKey(region, channelName, role), mIngestMedia.isChecked(),
+                mClientId.getText().toString());
+    }
+
     private View.OnClickListener startMasterActivityWhenClicked() {
         return new View.OnClickListener() {
             @Override
@@ -211,18 +305,9 @@ public class StreamWebRtcConfigurationFragment extends Fragment {
             }
         }
 
-        if (!updateSignalingChannelInfo(mRegion.getText().toString(),
+        updateSignalingChannelInfo(mRegion.getText().toString(),
                 mChannelName.getText().toString(),
-                ChannelRole.MASTER)) {
-            return;
-        }
-
-        if (mChannelArn != null) {
-            Bundle extras = setExtras(true);
-            Intent intent = new Intent(getActivity(), WebRtcActivity.class);
-            intent.putExtras(extras);
-            startActivity(intent);
-        }
+                ChannelRole.MASTER);
     }
 
     private View.OnClickListener startViewerActivityWhenClicked() {
@@ -235,18 +320,16 @@ public class StreamWebRtcConfigurationFragment extends Fragment {
     }
 
     private void startViewerActivity() {
-        if (!updateSignalingChannelInfo(mRegion.getText().toString(),
+        updateSignalingChannelInfo(mRegion.getText().toString(),
                 mChannelName.getText().toString(),
-                ChannelRole.VIEWER)) {
-            return;
-        }
+                ChannelRole.VIEWER);
+    }
 
-        if (mChannelArn != null) {
-            Bundle extras = setExtras(false);
-            Intent intent = new Intent(getActivity(), WebRtcActivity.class);
-            intent.putExtras(extras);
-            startActivity(intent);
-        }
+    private void startWebRtcActivity(final boolean isMaster) {
+        Bundle extras = setExtras(isMaster);
+        Intent intent = new Intent(getActivity(), WebRtcActivity.class);
+        intent.putExtras(extras);
+        startActivity(intent);
     }
 
     private Bundle setExtras(boolean isMaster) {
@@ -261,33 +344,17 @@ public class StreamWebRtcConfigurationFragment extends Fragment {
         extras.putString(KEY_REGION, region);
         extras.putString(KEY_CHANNEL_ARN, mChannelArn);
         extras.putString(KEY_STREAM_ARN, mStreamArn);
-        extras.putBoolean(KEY_IS_MASTER, isMaster);
-
-        if (mIceServerList.size() > 0) {
-            ArrayList<String> userNames = new ArrayList<>(mIceServerList.size());
-            ArrayList<String> passwords = new ArrayList<>(mIceServerList.size());
-            ArrayList<Integer> ttls = new ArrayList<>(mIceServerList.size());
-            ArrayList<List<String>> urisList = new ArrayList<>();
-            for (final IceServer iceServer : mIceServerList) {
-                userNames.add(iceServer.getUsername());
-                passwords.add(iceServer.getPassword());
-                ttls.add(iceServer.getTtl());
-                urisList.add(iceServer.getUris());
-            }
-            extras.putStringArrayList(KEY_ICE_SERVER_USER_NAME, userNames);
-            extras.putStringArrayList(KEY_ICE_SERVER_PASSWORD, passwords);
-            extras.putIntegerArrayList(KEY_ICE_SERVER_TTL, ttls);
-            extras.putSerializable(KEY_ICE_SERVER_URI, urisList);
-        } else {
-            extras.putStringArrayList(KEY_ICE_SERVER_USER_NAME, null);
-            extras.putStringArrayList(KEY_ICE_SERVER_PASSWORD, null);
-            extras.putIntegerArrayList(KEY_ICE_SERVER_TTL, null);
-            extras.putSerializable(KEY_ICE_SERVER_URI, null);
+        extras.putString(KEY_SIGNED_WSS_URL, mSignedWssUrl);
+        if (mWarmClientId != null) {
+            extras.putString(KEY_CLIENT_ID, mWarmClientId);
         }
+        extras.putBoolean(KEY_IS_MASTER, isMaster);
 
         for (ResourceEndpointListItem endpoint : mEndpointList) {
             if (endpoint.getProtocol().equals("WSS")) {
                 extras.putString(KEY_WSS_ENDPOINT, endpoint.getResourceEndpoint());
+            } else if (endpoint.getProtocol().equals("HTTPS")) {
+                extras.putString(KEY_HTTPS_ENDPOINT, endpoint.getResourceEndpoint());
             } else if (endpoint.getProtocol().equals("WEBRTC")) {
                 extras.putString(KEY_WEBRTC_ENDPOINT, endpoint.getResourceEndpoint());
             }
@@ -303,192 +370,120 @@ public class StreamWebRtcConfigurationFragment extends Fragment {
         return extras;
     }
 
-    private AWSKinesisVideoClient getAwsKinesisVideoClient(final String region) {
-        final AWSKinesisVideoClient awsKinesisVideoClient = new AWSKinesisVideoClient(
-                KinesisVideoWebRtcDemoApp.getCredentialsProvider().getCredentials());
-        awsKinesisVideoClient.setRegion(Region.getRegion(region));
-        awsKinesisVideoClient.setSignerRegionOverride(region);
-        awsKinesisVideoClient.setServiceNameIntern("kinesisvideo");
-        return awsKinesisVideoClient;
-    }
-
-    private AWSKinesisVideoSignalingClient getAwsKinesisVideoSignalingClient(final String region, final String endpoint) {
-        final AWSKinesisVideoSignalingClient client = new AWSKinesisVideoSignalingClient(
-                KinesisVideoWebRtcDemoApp.getCredentialsProvider().getCredentials());
-        client.setRegion(Region.getRegion(region));
-        client.setSignerRegionOverride(region);
-        client.setServiceNameIntern("kinesisvideo");
-        client.setEndpoint(endpoint);
-        return client;
-    }
-
     /**
-     * Fetches info needed to connect to the Amazon Kinesis Video Streams Signaling channel.
+     * Fetches info needed to connect to the Amazon Kinesis Video Streams Signaling channel, and
+     * starts {@link WebRtcActivity} when it is ready. Errors are shown in a Dialog box.
+     * <p>
+     * Steps 1 to 4 fetch the channel ARN and endpoints, step 5 and 6 the ICE servers, see
+     * KinesisVideoControlPlane. The ICE servers are only needed once WebRtcActivity creates the
+     * peer connection, it picks them up when they are ready.
      *
      * @param region      The region the Signaling channel is located in.
      * @param channelName The name of the Amazon Kinesis Video Streams Signaling channel.
      * @param role        The signaling channel role (master or viewer).
-     * @return {@code true} on success. {@code false} if unsuccessful.
      */
-    private boolean updateSignalingChannelInfo(final String region, final String channelName, final ChannelRole role) {
+    private void updateSignalingChannelInfo(final String region, final String channelName, final ChannelRole role) {
+        cancelBootstrap();
         mEndpointList.clear();
-        mIceServerList.clear();
         mChannelArn = null;
-        final UpdateSignalingChannelInfoTask task = new UpdateSignalingChannelInfoTask(this);
-
-        String errorMessage = null;
-        try {
-            errorMessage = task.execute(region, channelName, role).get();
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to wait for response of UpdateSignalingChannelInfoTask", e);
+        mStreamArn = null;
+        mSignedWssUrl = null;
+        mWarmClientId = null;
+
+        final SignalingChannelKey key = new SignalingChannelKey(region, channelName, role);
+        mPreferences.edit()
+                .putString(PREFERENCE_LAST_CHANNEL_NAME, channelName)
+                .putString(PREFERENCE_LAST_REGION, region)
+                .putString(PREFERENCE_LAST_ROLE, role.name())
+                .apply();
+
+        final SessionWarmUp.Warm warm = mWarmUp.take(key, mIngestMedia.isChecked(), mClientId.getText().toString());
+        if (warm != null) {
+            Log.i(TAG, "Starting " + key + " warmed up");
+            setSignalingChannelInfo(warm.getChannelInfo());
+            mSignedWssUrl = warm.getSignedUri().toString();
+            mWarmClientId = warm.getClientId();
+            startWebRtcActivity(role == ChannelRole.MASTER);
+            return;
         }
 
-        if (errorMessage != null) {
-            Log.e(TAG, "updateSignalingChannelInfo() encountered an error: " + errorMessage);
-        }
-        return errorMessage == null;
-    }
+        final SignalingBootstrap.Session session = KinesisVideoWebRtcDemoApp.getSignalingBootstrap(requireContext())
+                .start(key, mIngestMedia.isChecked(),
+                        (stage, finished, total) -> mMainHandler.post(() -> showBootstrapProgress(finished, total)));
+        mBootstrapSession = session;
+        showBootstrapProgress(0, 0);
 
-    /**
-     * Makes backend calls to KVS in order to obtain info needed to start the WebRTC session.
-     * <p>
-     * The task returns {@code null} upon success, otherwise, it returns an error message.
-     */
-    static class UpdateSignalingChannelInfoTask extends AsyncTask<Object, String, String> {
-        final WeakReference<StreamWebRtcConfigurationFragment> mFragment;
+        session.getIceServers().whenComplete((iceServers, e) ->
+                Log.i(TAG, "Bootstrap of " + session.getKey() + ": " + session.getTimings()));
+        session.getChannelInfo().whenComplete((channelInfo, e) -> mMainHandler.post(
+                () -> onSignalingChannelInfo(session, channelInfo, e)));
+    }
 
-        UpdateSignalingChannelInfoTask(final StreamWebRtcConfigurationFragment fragment) {
-            mFragment = new WeakReference<>(fragment);
+    private void onSignalingChannelInfo(final SignalingBootstrap.Session session,
+                                        final SignalingChannelInfo channelInfo,
+                                        final Throwable error) {
+        if (session != mBootstrapSession) {
+            // Cancelled
+            return;
         }
+        mBootstrapSession = null;
+        hideBootstrapProgress();
 
-        @Override
-        protected String doInBackground(final Object... objects) {
-            final String region = (String) objects[0];
-            final String channelName = (String) objects[1];
-            final ChannelRole role = (ChannelRole) objects[2];
-
-            // Step 1. Create Kinesis Video Client
-            final AWSKinesisVideoClient awsKinesisVideoClient;
-            try {
-                awsKinesisVideoClient = mFragment.get().getAwsKinesisVideoClient(region);
-            } catch (Exception e) {
-                return "Create client failed with " + e.getLocalizedMessage();
-            }
-
-            // Step 2. Use the Kinesis Video Client to call DescribeSignalingChannel API.
-            //         If that fails with ResourceNotFoundException, the channel does not exist.
-            //         If we are connecting as Master, if it doesn't exist, we attempt to create
-            //         it by calling CreateSignalingChannel API.
-            try {
-                final DescribeSignalingChannelResult describeSignalingChannelResult = awsKinesisVideoClient.describeSignalingChannel(
-                        new DescribeSignalingChannelRequest()
-                                .withChannelName(channelName));
-
-                Log.i(TAG, "Channel ARN is " + describeSignalingChannelResult.getChannelInfo().getChannelARN());
-                mFragment.get().mChannelArn = describeSignalingChannelResult.getChannelInfo().getChannelARN();
-            } catch (final ResourceNotFoundException e) {
-                if (role.equals(ChannelRole.MASTER)) {
-                    try {
-                        CreateSignalingChannelResult createSignalingChannelResult = awsKinesisVideoClient.createSignalingChannel(
-                                new CreateSignalingChannelRequest()
-                                        .withChannelName(channelName));
-
-                        mFragment.get().mChannelArn = createSignalingChannelResult.getChannelARN();
-                    } catch (Exception ex) {
-                        return "Create Signaling Channel failed with Exception " + ex.getLocalizedMessage();
-                    }
-                } else {
-                    return "Signaling Channel " + channelName + " doesn't exist!";
-                }
-            } catch (Exception ex) {
-                return "Describe Signaling Channel failed with Exception " + ex.getLocalizedMessage();
-            }
-
-            // Step 3. If we are ingesting media, we need to check if the Signaling Channel has a Kinesis Video
-            //         Stream configured to write media to. We can call the DescribeMediaStorageConfiguration API
-            //         to determine this.
-            if (role == ChannelRole.MASTER && mFragment.get().mIngestMedia.isChecked()) {
-                try {
-                    final DescribeMediaStorageConfigurationResult describeMediaStorageConfigurationResult = awsKinesisVideoClient.describeMediaStorageConfiguration(
-                            new DescribeMediaStorageConfigurationRequest()
-                                    .withChannelARN(mFragment.get().mChannelArn));
-
-                    if (!"ENABLED".equalsIgnoreCase(describeMediaStorageConfigurationResult.getMediaStorageConfiguration().getStatus())) {
-                        Log.e(TAG, "Media storage is not enabled for this channel!");
-                        return "Media Storage is DISABLED for this channel!";
-                    }
-                    mFragment.get().mStreamArn = describeMediaStorageConfigurationResult.getMediaStorageConfiguration().getStreamARN();
-                } catch (Exception ex) {
-                    return "Describe Media Storage Configuration failed with Exception " + ex.getLocalizedMessage();
-                }
-            }
-
-            final String[] protocols;
-            if (mFragment.get().mIngestMedia.isChecked()) {
-                protocols = new String[]{"WSS", "HTTPS", "WEBRTC"};
-            } else {
-                protocols = new String[]{"WSS", "HTTPS"};
-            }
-
-            // Step 4. Use the Kinesis Video Client to call GetSignalingChannelEndpoint.
-            //         Each signaling channel is assigned an HTTPS and WSS endpoint to connect
-            //         to for data-plane operations, which we fetch using the GetSignalingChannelEndpoint API,
-            //         and a WEBRTC endpoint to for storage data-plane operations.
-            //         Attempting to obtain the WEBRTC endpoint if the signaling channel is not configured
-            //         will result in an InvalidArgumentException.
-            try {
-                final GetSignalingChannelEndpointResult getSignalingChannelEndpointResult = awsKinesisVideoClient.getSignalingChannelEndpoint(
-                        new GetSignalingChannelEndpointRequest()
-                                .withChannelARN(mFragment.get().mChannelArn)
-                                .withSingleMasterChannelEndpointConfiguration(
-                                        new SingleMasterChannelEndpointConfiguration()
-                                                .withProtocols(protocols)
-                                                .withRole(role)));
-
-                Log.i(TAG, "Endpoints " + getSignalingChannelEndpointResult.toString());
-                mFragment.get().mEndpointList.addAll(getSignalingChannelEndpointResult.getResourceEndpointList());
-            } catch (Exception e) {
-                return "Get Signaling Endpoint failed with Exception " + e.getLocalizedMessage();
+        if (error != null) {
+            final String errorMessage = error instanceof CompletionException ? error.getCause().getMessage() : error.getMessage();
+            Log.e(TAG, "updateSignalingChannelInfo() encountered an error: " + errorMessage);
+            if (getContext() != null) {
+                new AlertDialog.Builder(getContext())
+                        .setPositiveButton("OK", null)
+                        .setMessage(errorMessage)
+                        .create()
+                        .show();
             }
+            return;
+        }
 
-            String dataEndpoint = null;
-            for (ResourceEndpointListItem endpoint : mFragment.get().mEndpointList) {
-                if (endpoint.getProtocol().equals("HTTPS")) {
-                    dataEndpoint = endpoint.getResourceEndpoint();
-                }
-            }
+        setSignalingChannelInfo(channelInfo);
+        if (isAdded()) {
+            startWebRtcActivity(session.getKey().getRole() == ChannelRole.MASTER);
+        }
+    }
 
-            // Step 5. Construct the Kinesis Video Signaling Client. The HTTPS endpoint from the
-            //         GetSignalingChannelEndpoint response above is used with this client. This
-            //         client is just used for getting ICE servers, not for actual signaling.
-            // Step 6. Call GetIceServerConfig in order to obtain TURN ICE server info.
-            //         Note: the STUN endpoint will be `stun:stun.kinesisvideo.${region}.amazonaws.com:443`
-            try {
-                final AWSKinesisVideoSignalingClient awsKinesisVideoSignalingClient = mFragment.get().getAwsKinesisVideoSignalingClient(region, dataEndpoint);
-                GetIceServerConfigResult getIceServerConfigResult = awsKinesisVideoSignalingClient.getIceServerConfig(
-                        new GetIceServerConfigRequest().withChannelARN(mFragment.get().mChannelArn).withClientId(role.name()));
-                mFragment.get().mIceServerList.addAll(getIceServerConfigResult.getIceServerList());
-            } catch (Exception e) {
-                return "Get Ice Server Config failed with Exception " + e.getLocalizedMessage();
-            }
+    private void setSignalingChannelInfo(final SignalingChannelInfo channelInfo) {
+        Log.i(TAG, "Channel ARN is " + channelInfo.getChannelArn());
+        mChannelArn = channelInfo.getChannelArn();
+        mStreamArn = channelInfo.getStreamArn();
+        for (final Map.Entry<String, String> endpoint : channelInfo.getEndpoints().entrySet()) {
+            mEndpointList.add(new ResourceEndpointListItem()
+                    .withProtocol(endpoint.getKey())
+                    .withResourceEndpoint(endpoint.getValue()));
+        }
+    }
 
-            return null;
+    private void cancelBootstrap() {
+        if (mBootstrapSession != null) {
+            mBootstrapSession.cancel();
+            mBootstrapSession = null;
+            hideBootstrapProgress();
         }
+    }
 
-        /**
-         * Shows a Dialog box if any errors were returned in {@link #doInBackground(Object...)}.
-         *
-         * @param result This will be displayed in the Dialog box.
-         */
-        @Override
-        protected void onPostExecute(final String result) {
-            if (result != null) {
-                new AlertDialog.Builder(mFragment.get().getContext())
-                        .setPositiveButton("OK", null)
-                        .setMessage(result)
-                        .create()
-                        .show();
-            }
+    private void showBootstrapProgress(final int finished, final int total) {
+        if (mBootstrapSession == null) {
+            return;
         }
+        mStartMasterButton.setEnabled(false);
+        mStartViewerButton.setEnabled(false);
+        mBootstrapProgress.setText(total > 0
+                ? "Fetching signaling channel info (" + finished + "/" + total + ")"
+                : "Fetching signaling channel info");
+        mBootstrapProgress.setVisibility(View.VISIBLE);
+        mCancelBootstrapButton.setVisibility(View.VISIBLE);
+    }
+
+    private void hideBootstrapProgress() {
+        mStartMasterButton.setEnabled(true);
+        mStartViewerButton.setEnabled(true);
+        mBootstrapProgress.setVisibility(View.GONE);
+        mCancelBootstrapButton.setVisibility(View.GONE);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,240 @@
+package com.amazonaws.kinesisvideo.signaling;
+
+import android.util.Log;
+
+import com.amazonaws.kinesisvideo.signaling.model.Message;
+import com.amazonaws.kinesisvideo.webrtc.datachannel.DataChannelPriority;
+import com.amazonaws.kinesisvideo.webrtc.datachannel.DataChannelSpec;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import org.webrtc.DataChannel;
+import org.webrtc.PeerConnection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Carries signaling messages over a reserved data channel once the peers are connected, so later
+ * offers, answers and ICE candidates skip the round trip through the signaling service and keep
+ * working when its WebSocket is down.
+ * <p>
+ * Both peers create the channel with the same negotiated id, so opening it takes no signaling.
+ * When it opens each side sends a hello, and messages only go in-band after the peer's hello
+ * arrived; a peer without this feature keeps getting everything through the signaling service.
+ * The channel rides the ICE transport it would signal about, so messages also only go in-band
+ * while ICE is connected. While the channel is not ready, or a send fails, messages go to the
+ * fallback.
+ * <p>
+ * Received messages are handed on in the JSON form the signaling service delivers, with the sender
+ * client id the service would have set, so they take the same path through
+ * {@link SignalingListener#handleMessage}.
+ */
+public class DataChannelSignaling {
+
+    private static final String TAG = "KVSDataChannelSignaling";
+
+    public static final String LABEL = "kvs-signaling";
+
+    /**
+     * Stream id both peers create the channel with, clear of the low ids libwebrtc assigns to
+     * channels that are not negotiated.
+     */
+    public static final int CHANNEL_ID = 1000;
+
+    private static final String HELLO = "HELLO";
+
+    /**
+     * Sends a message through the signaling service.
+     */
+    public interface Fallback {
+        void send(Message message);
+    }
+
+    /**
+     * Takes received messages, on a worker thread.
+     */
+    public interface Receiver {
+        void onMessage(String message);
+    }
+
+    private final Fallback fallback;
+
+    private final Receiver receiver;
+
+    private final ExecutorService deliveryExecutor = Executors.newSingleThreadExecutor();
+
+    private final AtomicLong inBandMessages = new AtomicLong();
+
+    private final AtomicLong fallbackMessages = new AtomicLong();
+
+    private volatile DataChannel channel;
+
+    private volatile boolean peerReady;
+
+    private volatile boolean iceConnected;
+
+    private volatile String remoteClientId;
+
+    public DataChannelSignaling(final Fallback fallback, final Receiver receiver) {
+        this.fallback = fallback;
+        this.receiver = receiver;
+    }
+
+    public static DataChannelSpec spec() {
+        return DataChannelSpec.builder(LABEL)
+                .setNegotiatedId(CHANNEL_ID)
+                .setPriority(DataChannelPriority.CONTROL)
+                .build();
+    }
+
+    /**
+     * Creates the reserved channel on {@code peerConnection}, replacing the one of an earlier
+     * connection. Call before the offer or answer is created.
+     */
+    public void open(final PeerConnection peerConnection) {
+        closeChannel();
+        final DataChannel dataChannel = peerConnection.createDataChannel(LABEL, spec().toInit());
+        if (dataChannel == null) {
+            Log.e(TAG, "Could not create signaling data channel");
+            return;
+        }
+        dataChannel.registerObserver(new DataChannel.Observer() {
+            @Override
+            public void onBufferedAmountChange(final long previousAmount) {
+                // Messages are small and sent as they come
+            }
+
+            @Override
+            public void onStateChange() {
+                final DataChannel.State state = dataChannel.state();
+                Log.d(TAG, "Signaling data channel state: " + state);
+                if (state == DataChannel.State.OPEN) {
+                    sendHello(dataChannel);
+                } else {
+                    peerReady = false;
+                }
+            }
+
+            @Override
+            public void onMessage(final DataChannel.Buffer buffer) {
+                final byte[] bytes = new byte[buffer.data.remaining()];
+                buffer.data.get(bytes);
+                onReceived(dataChannel, new String(bytes, StandardCharsets.UTF_8));
+            }
+        });
+        channel = dataChannel;
+    }
+
+    /**
+     * Sets the sender client id received messages are given, as the signaling service reports the
+     * remote peer: the viewer's client id on the master, the id on the master's answer on a viewer.
+     */
+    public void setRemoteClientId(final String remoteClientId) {
+        this.remoteClientId = remoteClientId;
+    }
+
+    /**
+     * Follows the ICE connection state of the peer connection the channel was opened on.
+     */
+    public void onIceConnectionChange(final PeerConnection.IceConnectionState state) {
+        iceConnected = state == PeerConnection.IceConnectionState.CONNECTED
+                || state == PeerConnection.IceConnectionState.COMPLETED;
+    }
+
+    /**
+     * @return {@code true} while messages go in-band.
+     */
+    public boolean isActive() {
+        final DataChannel dataChannel = channel;
+        return peerReady && iceConnected && dataChannel != null && dataChannel.state() == DataChannel.State.OPEN;
+    }
+
+    /**
+     * Sends in-band if possible, otherwise through the fallback.
+     */
+    public void send(final Message message) {
+        if (isActive() && sendJson(channel, toJson(message))) {
+            inBandMessages.incrementAndGet();
+            return;
+        }
+        fallbackMessages.incrementAndGet();
+        fallback.send(message);
+    }
+
+    public long getInBandMessages() {
+        return inBandMessages.get();
+    }
+
+    public long getFallbackMessages() {
+        return fallbackMessages.get();
+    }
+
+    public void close() {
+        closeChannel();
+        deliveryExecutor.shutdownNow();
+    }
+
+    private void closeChannel() {
+        final DataChannel dataChannel = channel;
+        channel = null;
+        peerReady = false;
+        iceConnected = false;
+        if (dataChannel != null) {
+            dataChannel.unregisterObserver();
+            dataChannel.close();
+        }
+    }
+
+    private void onReceived(final DataChannel dataChannel, final String text) {
+        final JsonObject json;
+        try {
+            json = JsonParser.parseString(text).getAsJsonObject();
+        } catch (final JsonParseException | IllegalStateException e) {
+            Log.w(TAG, "Ignoring malformed in-band signaling message");
+            return;
+        }
+        if (!json.has("messageType")) {
+            return;
+        }
+        if (HELLO.equals(json.get("messageType").getAsString())) {
+            if (!peerReady) {
+                peerReady = true;
+                Log.i(TAG, "Peer supports in-band signaling, sending later signaling messages over " + LABEL);
+                // Our hello may have arrived before the peer's end was open, answer so it knows too
+                sendHello(dataChannel);
+            }
+            return;
+        }
+
+        final String sender = remoteClientId;
+        if (sender != null) {
+            json.addProperty("senderClientId", sender);
+        }
+        final String message = json.toString();
+        deliveryExecutor.execute(() -> receiver.onMessage(message));
+    }
+
+    private void sendHello(final DataChannel dataChannel) {
+        final JsonObject hello = new JsonObject();
+        hello.addProperty("messageType", HELLO);
+        sendJson(dataChannel, hello.toString());
+    }
+
+    private static String toJson(final Message message) {
+        final JsonObject json = new JsonObject();
+        json.addProperty("messageType", message.getAction());
+        json.addProperty("senderClientId", message.getSenderClientId());
+        json.addProperty("messagePayload", message.getMessagePayload());
+        return json.toString();
+    }
+
+    private static boolean sendJson(final DataChannel dataChannel, final String json) {
+        return dataChannel != null && dataChannel.send(
+                new DataChannel.Buffer(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)), false));
+    }
+}
@@ -19,47 +19,54 @@ public abstract class SignalingListener implements Signaling {
 
         @Override
         public void onMessage(final String message) {
-            if (message.isEmpty()) {
-                return;
-            }
-
-            Log.d(TAG, "Received message: " + message);
-
-            if (!message.contains("messagePayload")) {
-                return;
-            }
-
-            final Event evt = gson.fromJson(message, Event.class);
-
-            if (evt == null || evt.getMessageType() == null || evt.getMessagePayload().isEmpty()) {
-                return;
-            }
-
-            switch (evt.getMessageType().toUpperCase()) {
-                case "SDP_OFFER":
-                    Log.d(TAG, "Offer received: SenderClientId=" + evt.getSenderClientId());
-                    Log.d(TAG, new String(Base64.decode(evt.getMessagePayload(), 0)));
-
-                    onSdpOffer(evt);
-                    break;
-                case "SDP_ANSWER":
-                    Log.d(TAG, "Answer received: SenderClientId=" + evt.getSenderClientId());
-
-                    onSdpAnswer(evt);
-                    break;
-                case "ICE_CANDIDATE":
-                    Log.d(TAG, "Ice Candidate received: SenderClientId=" + evt.getSenderClientId());
-                    Log.d(TAG, new String(Base64.decode(evt.getMessagePayload(), 0)));
-
-                    onIceCandidate(evt);
-                    break;
-                default:
-                    break;
-            }
+            handleMessage(message);
         }
     };
 
     public MessageHandler getMessageHandler() {
         return messageHandler;
     }
+
+    /**
+     * Dispatches a signaling message in the JSON form the signaling service delivers it.
+     */
+    public void handleMessage(final String message) {
+        if (message.isEmpty()) {
+            return;
+        }
+
+        Log.d(TAG, "Received message: " + message);
+
+        if (!message.contains("messagePayload")) {
+            return;
+        }
+
+        final Event evt = gson.fromJson(message, Event.class);
+
+        if (evt == null || evt.getMessageType() == null || evt.getMessagePayload().isEmpty()) {
+            return;
+        }
+
+        switch (evt.getMessageType().toUpperCase()) {
+            case "SDP_OFFER":
+                Log.d(TAG, "Offer received: SenderClientId=" + evt.getSenderClientId());
+                Log.d(TAG, new String(Base64.decode(evt.getMessagePayload(), 0)));
+
+                onSdpOffer(evt);
+                break;
+            case "SDP_ANSWER":
+                Log.d(TAG, "Answer received: SenderClientId=" + evt.getSenderClientId());
+
+                onSdpAnswer(evt);
+                break;
+            case "ICE_CANDIDATE":
+                Log.d(TAG, "Ice Candidate received: SenderClientId=" + evt.getSenderClientId());
+                Log.d(TAG, new String(Base64.decode(evt.getMessagePayload(), 0)));
+
+                onIceCandidate(evt);
+                break;
+            default:
+                break;
+        }
+    }
 }
@@ -90,17 +90,16 @@ public class Event {
 
         final JsonObject jsonObject = JsonParser.parseString(candidateString).getAsJsonObject();
 
-        final String sdpMid = Optional.ofNullable(jsonObject.get("sdpMid"))
-                .map(Object::toString)
-                // Remove quotes
-                .map(sdpMidStr -> sdpMidStr.length() > 2 ? sdpMidStr.substring(1, sdpMidStr.length() - 1) : sdpMidStr)
-                .orElse("");
+        final String sdpMid = getString(jsonObject, "sdpMid");
 
         int sdpMLineIndex = -1;
-        try {
-            sdpMLineIndex = Integer.parseInt(jsonObject.get("sdpMLineIndex").toString());
-        } catch (final NumberFormatException e) {
-            Log.e(TAG, "Invalid sdpMLineIndex");
+        final JsonElement sdpMLineIndexElement = jsonObject.get("sdpMLineIndex");
+        if (sdpMLineIndexElement != null && !sdpMLineIndexElement.isJsonNull()) {
+            try {
+                sdpMLineIndex = sdpMLineIndexElement.getAsInt();
+            } catch (final NumberFormatException | UnsupportedOperationException e) {
+                Log.e(TAG, "Invalid sdpMLineIndex");
+            }
         }
 
         // Ice Candidate needs one of these two to be present
@@ -108,15 +107,19 @@ public class Event {
             return null;
         }
 
-        final String candidate = Optional.ofNullable(jsonObject.get("candidate"))
-                .map(Object::toString)
-                // Remove quotes
-                .map(candidateStr -> candidateStr.length() > 2 ? candidateStr.substring(1, candidateStr.length() - 1) : candidateStr)
-                .orElse("");
+        final String candidate = getString(jsonObject, "candidate");
 
         return new IceCandidate(sdpMid, sdpMLineIndex == -1 ? 0 : sdpMLineIndex, candidate);
     }
 
+    /**
+     * @return The unescaped value of a string member, empty if it is absent or null.
+     */
+    private static String getString(final JsonObject jsonObject, final String member) {
+        final JsonElement element = jsonObject.get(member);
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : "";
+    }
+
     public static String parseSdpEvent(final Event answerEvent) {
 
         final String message = new String(Base64.decode(answerEvent.getMessagePayload().getBytes(), Base64.DEFAULT));
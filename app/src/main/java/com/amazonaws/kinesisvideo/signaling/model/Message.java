@@ -2,6 +2,7 @@ package com.amazonaws.kinesisvideo.signaling.model;
 
 import android.util.Base64;
 
+import org.webrtc.IceCandidate;
 import org.webrtc.SessionDescription;
 
 public class Message {
@@ -93,4 +94,26 @@ public class Message {
         return new Message("SDP_OFFER", "", clientId, encodedString);
     }
 
+    /**
+     * @param iceCandidate      Local candidate to be sent to the remote peer
+     * @param recipientClientId Client Id of the remote viewer, has to be set to null if this is set as viewer
+     * @param senderClientId    Client Id of this viewer, "" if local is set to be the master
+     * @return ICE candidate message to be sent to signaling service
+     */
+    public static Message createIceCandidateMessage(final IceCandidate iceCandidate, final String recipientClientId,
+                                                    final String senderClientId) {
+        final String messagePayload =
+                "{\"candidate\":\""
+                        + iceCandidate.sdp
+                        + "\",\"sdpMid\":\""
+                        + iceCandidate.sdpMid
+                        + "\",\"sdpMLineIndex\":"
+                        + iceCandidate.sdpMLineIndex
+                        + "}";
+
+        return new Message("ICE_CANDIDATE", recipientClientId, senderClientId,
+                new String(Base64.encode(messagePayload.getBytes(),
+                        Base64.URL_SAFE | Base64.NO_WRAP)));
+    }
+
 }
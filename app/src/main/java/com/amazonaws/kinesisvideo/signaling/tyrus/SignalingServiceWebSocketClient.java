@@ -5,10 +5,12 @@ import android.util.Log;
 
 import com.amazonaws.kinesisvideo.signaling.SignalingListener;
 import com.amazonaws.kinesisvideo.signaling.model.Message;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.Gson;
 
 import org.glassfish.tyrus.client.ClientManager;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -22,15 +24,37 @@ public class SignalingServiceWebSocketClient {
 
     private final WebSocketClient websocketClient;
 
+    private final Executor executor;
+
+    /**
+     * The executor to shut down on {@link #disconnect}, {@code null} if it is shared.
+     */
     private final ExecutorService executorService;
 
     private final Gson gson = new Gson();
 
     public SignalingServiceWebSocketClient(final String uri, final SignalingListener signalingListener,
                                            final ExecutorService executorService) {
+        this(uri, signalingListener, executorService, executorService);
+    }
+
+    private SignalingServiceWebSocketClient(final String uri, final SignalingListener signalingListener,
+                                            final Executor executor, final ExecutorService executorService) {
         Log.d(TAG, "Connecting to URI " + uri + " as master");
-        websocketClient = new WebSocketClient(uri, new ClientManager(), signalingListener, executorService);
+        this.executor = executor;
         this.executorService = executorService;
+        websocketClient = new WebSocketClient(uri, new ClientManager(), signalingListener, executor);
+    }
+
+    /**
+     * Connects using threads of {@code sharedExecutor}, which {@link #disconnect} leaves running.
+     * Messages are still sent one at a time, in order.
+     */
+    public static SignalingServiceWebSocketClient withSharedExecutor(final String uri,
+                                                                     final SignalingListener signalingListener,
+                                                                     final Executor sharedExecutor) {
+        return new SignalingServiceWebSocketClient(uri, signalingListener,
+                MoreExecutors.newSequentialExecutor(sharedExecutor), null);
     }
 
     public boolean isOpen() {
@@ -38,7 +62,7 @@ public class SignalingServiceWebSocketClient {
     }
 
     public void sendSdpOffer(final Message offer) {
-        executorService.submit(new Runnable() {
+        executor.execute(new Runnable() {
             @Override
             public void run() {
                 if (offer.getAction().equalsIgnoreCase("SDP_OFFER")) {
@@ -52,7 +76,7 @@ public class SignalingServiceWebSocketClient {
     }
 
     public void sendSdpAnswer(final Message answer) {
-        executorService.submit(new Runnable() {
+        executor.execute(new Runnable() {
             @Override
             public void run() {
                 if (answer.getAction().equalsIgnoreCase("SDP_ANSWER")) {
@@ -67,7 +91,7 @@ public class SignalingServiceWebSocketClient {
     }
 
     public void sendIceCandidate(final Message candidate) {
-        executorService.submit(() -> {
+        executor.execute(() -> {
             if (candidate.getAction().equalsIgnoreCase("ICE_CANDIDATE")) {
                 send(candidate);
             }
@@ -77,12 +101,15 @@ public class SignalingServiceWebSocketClient {
     }
 
     public void disconnect() {
-        executorService.submit(new Runnable() {
+        executor.execute(new Runnable() {
             @Override
             public void run() {
                 websocketClient.disconnect();
             }
         });
+        if (executorService == null) {
+            return;
+        }
         try {
             executorService.shutdown();
             if (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
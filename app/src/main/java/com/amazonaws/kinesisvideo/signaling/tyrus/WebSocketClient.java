@@ -18,7 +18,7 @@ import java.net.URISyntaxException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import javax.websocket.ClientEndpointConfig;
@@ -38,13 +38,10 @@ class WebSocketClient {
 
     private Session session;
 
-    private final ExecutorService executorService;
-
     WebSocketClient(final String uri, final ClientManager clientManager,
                     final SignalingListener signalingListener,
-                    final ExecutorService executorService) {
+                    final Executor executor) {
 
-        this.executorService = executorService;
         final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create()
                 .configurator(new ClientEndpointConfig.Configurator() {
                     @Override
@@ -90,7 +87,7 @@ class WebSocketClient {
 
         };
 
-        executorService.submit(() -> {
+        executor.execute(() -> {
             try {
                 session = clientManager.connectToServer(endpoint, cec, new URI(uri));
             } catch (final DeploymentException | IOException | URISyntaxException e) {
@@ -136,7 +133,6 @@ class WebSocketClient {
 
         try {
             session.close();
-            executorService.shutdownNow();
             Log.i(TAG, "Disconnected from " + session.getRequestURI() + " successfully!");
         } catch (final IOException e) {
             Log.e(TAG, "Exception closing: " + e.getMessage());
@@ -0,0 +1,34 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sends a blob that is already in memory.
+ */
+public class ByteArrayTransferSource implements TransferSource {
+
+    private final byte[] data;
+
+    public ByteArrayTransferSource(final byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public long size() {
+        return data.length;
+    }
+
+    @Override
+    public int read(final long offset, final ByteBuffer destination) {
+        if (offset >= data.length) {
+            return -1;
+        }
+        final int length = (int) Math.min(destination.remaining(), data.length - offset);
+        destination.put(data, (int) offset, length);
+        return length;
+    }
+
+    @Override
+    public void close() {
+    }
+}
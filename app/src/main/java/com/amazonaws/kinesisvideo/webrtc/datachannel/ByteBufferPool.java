@@ -0,0 +1,101 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Pool of heap buffers in power-of-two size classes.
+ * <p>
+ * Buffers larger than the largest size class are allocated on demand and not pooled. Each size
+ * class keeps a bounded number of free buffers, so a burst does not pin its peak memory forever.
+ */
+public class ByteBufferPool {
+
+    private static final int MIN_SIZE_SHIFT = 8;
+
+    private final int maxPooledSize;
+
+    private final int maxFreeBuffersPerSize;
+
+    private final ArrayDeque<ByteBuffer>[] free;
+
+    private long allocations;
+
+    private long reuses;
+
+    /**
+     * @param maxPooledSize         Largest buffer size that is pooled, rounded up to a power of two.
+     * @param maxFreeBuffersPerSize How many free buffers each size class keeps.
+     */
+    @SuppressWarnings("unchecked")
+    public ByteBufferPool(final int maxPooledSize, final int maxFreeBuffersPerSize) {
+        if (maxPooledSize <= 0 || maxFreeBuffersPerSize < 0) {
+            throw new IllegalArgumentException("Invalid pool size " + maxPooledSize + "/" + maxFreeBuffersPerSize);
+        }
+        this.maxPooledSize = Math.max(1 << MIN_SIZE_SHIFT, Integer.highestOneBit(maxPooledSize - 1) << 1);
+        this.maxFreeBuffersPerSize = maxFreeBuffersPerSize;
+        this.free = new ArrayDeque[sizeClass(this.maxPooledSize) + 1];
+        for (int i = 0; i < free.length; i++) {
+            free[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * @return A buffer with position 0 and limit {@code size}.
+     */
+    public ByteBuffer acquire(final int size) {
+        if (size > maxPooledSize) {
+            synchronized (this) {
+                allocations++;
+            }
+            return ByteBuffer.allocate(size);
+        }
+        final int sizeClass = sizeClass(size);
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = free[sizeClass].pollFirst();
+            if (buffer != null) {
+                reuses++;
+            } else {
+                allocations++;
+            }
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(1 << (sizeClass + MIN_SIZE_SHIFT));
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #acquire}. It must not be used afterwards.
+     */
+    public void release(final ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        if (capacity > maxPooledSize || Integer.bitCount(capacity) != 1 || capacity < (1 << MIN_SIZE_SHIFT)) {
+            return;
+        }
+        final ArrayDeque<ByteBuffer> sizeClassFree = free[sizeClass(capacity)];
+        synchronized (this) {
+            if (sizeClassFree.size() < maxFreeBuffersPerSize) {
+                sizeClassFree.addFirst(buffer);
+            }
+        }
+    }
+
+    public synchronized long getAllocations() {
+        return allocations;
+    }
+
+    public synchronized long getReuses() {
+        return reuses;
+    }
+
+    private static int sizeClass(final int size) {
+        if (size <= 1 << MIN_SIZE_SHIFT) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_SHIFT;
+    }
+}
@@ -0,0 +1,150 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.util.BitSet;
+
+/**
+ * Receiving side bookkeeping of a transfer: whether an offer is acceptable, which chunks arrived,
+ * what to do with the next chunk and where the sender should resume. Has no I/O, the
+ * {@link IncomingTransfer} does the reading and writing.
+ */
+final class ChunkTracker {
+
+    static final int MAX_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * What to do with a received chunk.
+     */
+    enum Verdict {
+        /**
+         * Write it, then {@link #markReceived}.
+         */
+        WRITE,
+        /**
+         * It arrived before, drop it.
+         */
+        DUPLICATE,
+        /**
+         * It failed its CRC, ask the sender to resume from its offset.
+         */
+        DAMAGED,
+        /**
+         * Its offset or length does not fit the offer.
+         */
+        INVALID
+    }
+
+    private final long totalSize;
+
+    private final int chunkSize;
+
+    private final int chunkCount;
+
+    /**
+     * Grows with the chunks received rather than being sized for the offer up front.
+     */
+    private final BitSet received = new BitSet();
+
+    private int receivedCount;
+
+    private ChunkTracker(final long totalSize, final int chunkSize, final int chunkCount) {
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.chunkCount = chunkCount;
+    }
+
+    /**
+     * @param maxTotalSize   The largest payload accepted.
+     * @param availableBytes Disk space the payload may take.
+     * @throws IllegalArgumentException if the offer is not acceptable.
+     */
+    static ChunkTracker forOffer(final TransferFrame offer, final long maxTotalSize, final long availableBytes) {
+        if (offer.totalSize < 0) {
+            throw new IllegalArgumentException("Payload size " + offer.totalSize + " is negative");
+        }
+        if (offer.chunkSize <= 0 || offer.chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size " + offer.chunkSize + " is out of range");
+        }
+        if (offer.totalSize > maxTotalSize) {
+            throw new IllegalArgumentException("Payload of " + offer.totalSize + " bytes exceeds the limit of "
+                    + maxTotalSize + " bytes");
+        }
+        if (offer.totalSize > availableBytes) {
+            throw new IllegalArgumentException("Payload of " + offer.totalSize + " bytes does not fit the "
+                    + availableBytes + " bytes available");
+        }
+        // Not (totalSize + chunkSize - 1) / chunkSize, which overflows for sizes near Long.MAX_VALUE
+        final long chunks = offer.totalSize / offer.chunkSize + (offer.totalSize % offer.chunkSize == 0 ? 0 : 1);
+        if (chunks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Payload of " + offer.totalSize + " bytes has too many chunks");
+        }
+        return new ChunkTracker(offer.totalSize, offer.chunkSize, (int) chunks);
+    }
+
+    long getTotalSize() {
+        return totalSize;
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    int getChunkCount() {
+        return chunkCount;
+    }
+
+    int getReceivedCount() {
+        return receivedCount;
+    }
+
+    boolean isComplete() {
+        return receivedCount == chunkCount;
+    }
+
+    /**
+     * Takes over the chunks a previous attempt saved. Bits beyond the offer's chunks are ignored.
+     */
+    void restore(final BitSet saved) {
+        received.clear();
+        received.or(saved);
+        if (received.length() > chunkCount) {
+            received.clear(chunkCount, received.length());
+        }
+        receivedCount = received.cardinality();
+    }
+
+    /**
+     * @return A copy of which chunks arrived, for saving.
+     */
+    BitSet getReceived() {
+        return (BitSet) received.clone();
+    }
+
+    /**
+     * @return The offset of the first chunk missing, {@link #getTotalSize} or more once complete.
+     */
+    long getResumeOffset() {
+        return (long) received.nextClearBit(0) * chunkSize;
+    }
+
+    Verdict check(final TransferFrame chunk) {
+        if (chunk.offset < 0 || chunk.offset % chunkSize != 0 || chunk.offset / chunkSize >= chunkCount
+                || chunk.payload.remaining() != Math.min(chunkSize, totalSize - chunk.offset)) {
+            return Verdict.INVALID;
+        }
+        if (!chunk.isIntact()) {
+            return Verdict.DAMAGED;
+        }
+        return received.get((int) (chunk.offset / chunkSize)) ? Verdict.DUPLICATE : Verdict.WRITE;
+    }
+
+    /**
+     * Records a chunk {@link #check} returned {@link Verdict#WRITE} for as written.
+     */
+    void markReceived(final long offset) {
+        final int index = (int) (offset / chunkSize);
+        if (!received.get(index)) {
+            received.set(index);
+            receivedCount++;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import android.util.Log;
+
+import org.webrtc.DataChannel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary commands with request/response correlation over one data channel.
+ * <p>
+ * Sending is done in place: {@code begin...} returns a writer on a per-thread buffer, the fields
+ * are written, and {@link #send()} hands the frame to {@link DataChannel#send}:
+ * <pre>
+ * commands.beginRequest(GET_ZOOM, 500, listener).send();
+ * commands.beginMessage(PTZ).putSInt(pan).putSInt(tilt).putUInt(zoom);
+ * commands.send();
+ * </pre>
+ * Requests in flight are kept in a fixed table indexed by correlation id and checked for timeouts
+ * at a fixed resolution while any are pending, so neither sending nor receiving allocates.
+ * <p>
+ * Incoming commands are decoded on the WebRTC signaling thread; the handler and response listeners
+ * must not block.
+ */
+public class CommandChannel {
+
+    private static final String TAG = "KVSCommandChannel";
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    public static final int DEFAULT_SEND_BUFFER_SIZE = 16 * 1024;
+
+    private static final long TIMEOUT_RESOLUTION_MS = 10;
+
+    public enum Failure {
+        /** No response within the request's timeout. */
+        TIMEOUT,
+        /** The data channel did not accept the request. */
+        SEND_FAILED,
+        /** The channel closed before the response arrived. */
+        CLOSED
+    }
+
+    /**
+     * Receives {@link CommandKind#MESSAGE} and {@link CommandKind#REQUEST} frames of known commands.
+     */
+    public interface Handler {
+        /**
+         * @param command Positioned at the first field, only valid during the call. Answer a request
+         *                with {@link #beginResponse} and {@link #send()}.
+         */
+        void onCommand(CommandReader command);
+    }
+
+    public interface ResponseListener {
+        /**
+         * @param response Positioned at the first field, only valid during the call.
+         */
+        void onResponse(CommandReader response);
+
+        void onFailure(int commandId, Failure failure);
+    }
+
+    private final class Sender {
+        final ByteBuffer buffer;
+
+        final DataChannel.Buffer message;
+
+        final CommandWriter writer = new CommandWriter(schema);
+
+        int requestSlot = -1;
+
+        Sender() {
+            buffer = ByteBuffer.allocateDirect(sendBufferSize);
+            message = new DataChannel.Buffer(buffer, true);
+        }
+    }
+
+    private final DataChannel channel;
+
+    private final CommandSchema schema;
+
+    private final ScheduledExecutorService timeoutExecutor;
+
+    private final Handler handler;
+
+    private final int sendBufferSize;
+
+    private final ThreadLocal<Sender> senders = ThreadLocal.withInitial(Sender::new);
+
+    private final CommandReader reader;
+
+    private final int slotMask;
+
+    private final ResponseListener[] listeners;
+
+    private final int[] correlationIds;
+
+    private final int[] commandIds;
+
+    private final long[] deadlinesNs;
+
+    private int inFlight;
+
+    private int nextCorrelationId = 1;
+
+    private ScheduledFuture<?> timeoutCheck;
+
+    private boolean closed;
+
+    public CommandChannel(final DataChannel channel, final CommandSchema schema,
+                          final ScheduledExecutorService timeoutExecutor, final Handler handler) {
+        this(channel, schema, timeoutExecutor, handler, DEFAULT_MAX_IN_FLIGHT, DEFAULT_SEND_BUFFER_SIZE);
+    }
+
+    /**
+     * Registers itself as {@code channel}'s observer.
+     *
+     * @param maxInFlight    Requests that may await a response at once, rounded up to a power of two.
+     * @param sendBufferSize Largest data channel message this side sends.
+     */
+    public CommandChannel(final DataChannel channel, final CommandSchema schema,
+                          final ScheduledExecutorService timeoutExecutor, final Handler handler,
+                          final int maxInFlight, final int sendBufferSize) {
+        if (maxInFlight <= 0 || maxInFlight > (1 << 16) || sendBufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid command channel configuration");
+        }
+        this.channel = channel;
+        this.schema = schema;
+        this.timeoutExecutor = timeoutExecutor;
+        this.handler = handler;
+        this.sendBufferSize = sendBufferSize;
+        this.reader = new CommandReader(schema);
+
+        int capacity = 1;
+        while (capacity < maxInFlight) {
+            capacity <<= 1;
+        }
+        slotMask = capacity - 1;
+        listeners = new ResponseListener[capacity];
+        correlationIds = new int[capacity];
+        commandIds = new int[capacity];
+        deadlinesNs = new long[capacity];
+
+        channel.registerObserver(new DataChannel.Observer() {
+            @Override
+            public void onBufferedAmountChange(final long previousAmount) {
+                // Nothing queued on this side
+            }
+
+            @Override
+            public void onStateChange() {
+                if (channel.state() == DataChannel.State.CLOSED) {
+                    failAll(Failure.CLOSED);
+                }
+            }
+
+            @Override
+            public void onMessage(final DataChannel.Buffer buffer) {
+                CommandChannel.this.onMessage(buffer.data);
+            }
+        });
+    }
+
+    public CommandSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Starts a command that expects no response.
+     */
+    public CommandWriter beginMessage(final int commandId) {
+        final Sender sender = begin();
+        return sender.writer.begin(sender.buffer, commandId, CommandKind.MESSAGE, 0);
+    }
+
+    /**
+     * Starts a request. {@code listener} gets the response or the failure exactly once.
+     *
+     * @throws IllegalArgumentException if the command is not in the schema.
+     * @throws IllegalStateException    if the channel is closed or too many requests are in flight.
+     */
+    public CommandWriter beginRequest(final int commandId, final long timeoutMs, final ResponseListener listener) {
+        if (!schema.isDefined(commandId)) {
+            throw new IllegalArgumentException("Unknown command " + commandId);
+        }
+        final Sender sender = begin();
+        final int correlationId;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Command channel is closed");
+            }
+            correlationId = nextCorrelationId;
+            nextCorrelationId = nextCorrelationId == Integer.MAX_VALUE ? 1 : nextCorrelationId + 1;
+            final int slot = correlationId & slotMask;
+            if (listeners[slot] != null) {
+                throw new IllegalStateException("Too many requests in flight");
+            }
+            listeners[slot] = listener;
+            correlationIds[slot] = correlationId;
+            commandIds[slot] = commandId;
+            deadlinesNs[slot] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            if (inFlight++ == 0 && timeoutCheck == null) {
+                timeoutCheck = timeoutExecutor.scheduleAtFixedRate(this::expireRequests,
+                        TIMEOUT_RESOLUTION_MS, TIMEOUT_RESOLUTION_MS, TimeUnit.MILLISECONDS);
+            }
+            sender.requestSlot = slot;
+        }
+        return sender.writer.begin(sender.buffer, commandId, CommandKind.REQUEST, correlationId);
+    }
+
+    /**
+     * Starts the response to the request with {@code correlationId}.
+     */
+    public CommandWriter beginResponse(final int commandId, final int correlationId) {
+        final Sender sender = begin();
+        return sender.writer.begin(sender.buffer, commandId, CommandKind.RESPONSE, correlationId);
+    }
+
+    /**
+     * Completes the command begun on this thread and sends it.
+     *
+     * @return {@code false} if the data channel did not accept it. A request's listener is then
+     * told {@link Failure#SEND_FAILED}.
+     */
+    public boolean send() {
+        final Sender sender = senders.get();
+        final int requestSlot = sender.requestSlot;
+        sender.requestSlot = -1;
+        sender.writer.end();
+        sender.buffer.flip();
+        final boolean sent = channel.state() == DataChannel.State.OPEN && channel.send(sender.message);
+        if (!sent && requestSlot >= 0) {
+            complete(requestSlot, correlationIdAt(requestSlot), Failure.SEND_FAILED);
+        }
+        return sent;
+    }
+
+    /**
+     * Fails all pending requests with {@link Failure#CLOSED}. The data channel itself is left open.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        channel.unregisterObserver();
+        failAll(Failure.CLOSED);
+    }
+
+    /**
+     * Decodes one data channel message. Called by the channel observer, exposed for tests.
+     */
+    void onMessage(final ByteBuffer data) {
+        reader.reset(data);
+        try {
+            while (reader.next()) {
+                try {
+                    dispatch();
+                } catch (final RuntimeException e) {
+                    // E.g. a handler reading the wrong field type; must not reach libwebrtc's thread
+                    Log.w(TAG, "Dropping command " + reader.getCommandId() + " that failed to dispatch", e);
+                }
+            }
+        } catch (final IllegalArgumentException e) {
+            Log.w(TAG, "Dropping malformed command message", e);
+        }
+    }
+
+    private void dispatch() {
+        if (!reader.isKnownCommand()) {
+            // Its fields cannot be read; a request answered with it is left to time out
+            return;
+        }
+        if (reader.getKind() == CommandKind.RESPONSE) {
+            final ResponseListener listener = take(reader.getCorrelationId() & slotMask, reader.getCorrelationId());
+            if (listener != null) {
+                listener.onResponse(reader);
+            }
+        } else if (handler != null) {
+            handler.onCommand(reader);
+        }
+    }
+
+    private Sender begin() {
+        final Sender sender = senders.get();
+        if (sender.requestSlot >= 0) {
+            // The previous request on this thread was never sent
+            complete(sender.requestSlot, correlationIdAt(sender.requestSlot), Failure.SEND_FAILED);
+            sender.requestSlot = -1;
+        }
+        sender.buffer.clear();
+        return sender;
+    }
+
+    private synchronized int correlationIdAt(final int slot) {
+        return correlationIds[slot];
+    }
+
+    private synchronized ResponseListener take(final int slot, final int correlationId) {
+        final ResponseListener listener = listeners[slot];
+        if (listener == null || correlationIds[slot] != correlationId) {
+            return null;
+        }
+        listeners[slot] = null;
+        inFlight--;
+        return listener;
+    }
+
+    private void complete(final int slot, final int correlationId, final Failure failure) {
+        final int commandId;
+        final ResponseListener listener;
+        synchronized (this) {
+            commandId = commandIds[slot];
+            listener = take(slot, correlationId);
+        }
+        if (listener != null) {
+            listener.onFailure(commandId, failure);
+        }
+    }
+
+    private void expireRequests() {
+        final long nowNs = System.nanoTime();
+        for (int slot = 0; slot <= slotMask; slot++) {
+            final int correlationId;
+            synchronized (this) {
+                if (listeners[slot] == null || deadlinesNs[slot] - nowNs > 0) {
+                    continue;
+                }
+                correlationId = correlationIds[slot];
+            }
+            complete(slot, correlationId, Failure.TIMEOUT);
+        }
+        synchronized (this) {
+            if (inFlight == 0 && timeoutCheck != null) {
+                timeoutCheck.cancel(false);
+                timeoutCheck = null;
+            }
+        }
+    }
+
+    private void failAll(final Failure failure) {
+        for (int slot = 0; slot <= slotMask; slot++) {
+            complete(slot, correlationIdAt(slot), failure);
+        }
+        synchronized (this) {
+            if (timeoutCheck != null) {
+                timeoutCheck.cancel(false);
+                timeoutCheck = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+/**
+ * Wire type of a command field. Fields carry no tags, a command's fields are written in the order
+ * its schema declares them.
+ */
+public enum CommandFieldType {
+    /** Non-negative integer as a base 128 varint. */
+    UINT,
+    /** Signed integer, zigzag encoded so small negative values stay short. */
+    SINT,
+    /** One byte. */
+    BOOL,
+    /** Four bytes. */
+    FLOAT,
+    /** Eight bytes. */
+    DOUBLE,
+    /** UTF-8, prefixed with its length as a varint. */
+    STRING,
+    /** Raw bytes, prefixed with their length as a varint. */
+    BYTES
+}
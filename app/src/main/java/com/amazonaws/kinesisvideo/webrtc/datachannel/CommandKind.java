@@ -0,0 +1,22 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+/**
+ * Role of a command frame in the request/response exchange.
+ */
+public enum CommandKind {
+    /** Needs no answer, e.g. telemetry. */
+    MESSAGE,
+    /** Expects a {@link #RESPONSE} with the same correlation id. */
+    REQUEST,
+    /** Answers the {@link #REQUEST} with the same correlation id. */
+    RESPONSE;
+
+    private static final CommandKind[] VALUES = values();
+
+    static CommandKind fromWire(final int value) {
+        if (value < 0 || value >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown command kind " + value);
+        }
+        return VALUES[value];
+    }
+}
@@ -0,0 +1,225 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the frames written by {@link CommandWriter} without allocating.
+ * <pre>
+ * reader.reset(message);
+ * while (reader.next()) {
+ *     if (reader.getCommandId() == PTZ) {
+ *         move(reader.getSInt(), reader.getSInt(), reader.getUInt());
+ *     }
+ * }
+ * </pre>
+ * Fields a reader does not consume, including fields appended by a newer schema, are skipped by
+ * {@link #next()}. Malformed input throws {@link IllegalArgumentException}, reading a field with
+ * the wrong type throws {@link IllegalStateException}. Not thread safe.
+ */
+public final class CommandReader {
+
+    private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+
+    private final CommandSchema schema;
+
+    private ByteBuffer buffer;
+
+    private int frameEnd;
+
+    private int commandId;
+
+    private CommandKind kind;
+
+    private int correlationId;
+
+    private CommandFieldType[] fields;
+
+    private int fieldIndex;
+
+    public CommandReader(final CommandSchema schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * Reads frames from {@code buffer}'s position to its limit. The buffer's position is moved.
+     */
+    public void reset(final ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.frameEnd = buffer.position();
+        this.fields = null;
+    }
+
+    /**
+     * Moves to the next frame.
+     *
+     * @return {@code false} at the end of the buffer.
+     */
+    public boolean next() {
+        buffer.position(frameEnd);
+        if (!buffer.hasRemaining()) {
+            return false;
+        }
+        final long length = Varint.get(buffer, buffer.limit());
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("Frame of " + length + " bytes, " + buffer.remaining() + " remaining");
+        }
+        frameEnd = buffer.position() + (int) length;
+        final long header = Varint.get(buffer, frameEnd);
+        commandId = (int) (header >>> 2);
+        kind = CommandKind.fromWire((int) (header & 0x3));
+        correlationId = kind == CommandKind.MESSAGE ? 0 : (int) Varint.get(buffer, frameEnd);
+        fields = schema.isDefined(commandId) ? schema.fieldsOf(commandId) : null;
+        fieldIndex = 0;
+        return true;
+    }
+
+    public int getCommandId() {
+        return commandId;
+    }
+
+    public CommandKind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return The correlation id, 0 for {@link CommandKind#MESSAGE}.
+     */
+    public int getCorrelationId() {
+        return correlationId;
+    }
+
+    /**
+     * @return {@code false} if the command is not in this reader's schema; its fields cannot be read.
+     */
+    public boolean isKnownCommand() {
+        return fields != null;
+    }
+
+    /**
+     * @return {@code true} if the next field of the schema is present. A peer with an older schema
+     * does not send fields appended since.
+     */
+    public boolean hasField() {
+        return fields != null && fieldIndex < fields.length && buffer.position() < frameEnd;
+    }
+
+    public long getUInt() {
+        expect(CommandFieldType.UINT);
+        return Varint.get(buffer, frameEnd);
+    }
+
+    public long getSInt() {
+        expect(CommandFieldType.SINT);
+        return Varint.unzigzag(Varint.get(buffer, frameEnd));
+    }
+
+    public boolean getBool() {
+        expect(CommandFieldType.BOOL);
+        require(1);
+        return buffer.get() != 0;
+    }
+
+    public float getFloat() {
+        expect(CommandFieldType.FLOAT);
+        require(Float.BYTES);
+        return buffer.getFloat();
+    }
+
+    public double getDouble() {
+        expect(CommandFieldType.DOUBLE);
+        require(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    /**
+     * Appends the string field to {@code destination}. Invalid UTF-8 is replaced by U+FFFD.
+     *
+     * @return {@code destination}.
+     */
+    public StringBuilder getString(final StringBuilder destination) {
+        expect(CommandFieldType.STRING);
+        final int length = lengthPrefix();
+        final int end = buffer.position() + length;
+        while (buffer.position() < end) {
+            final int b = buffer.get() & 0xFF;
+            if (b < 0x80) {
+                destination.append((char) b);
+            } else if (b >= 0xC2 && b < 0xE0) {
+                appendSequence(destination, b & 0x1F, 1, 0x80, end);
+            } else if (b >= 0xE0 && b < 0xF0) {
+                appendSequence(destination, b & 0x0F, 2, 0x800, end);
+            } else if (b >= 0xF0 && b < 0xF5) {
+                appendSequence(destination, b & 0x07, 3, 0x10000, end);
+            } else {
+                destination.append(REPLACEMENT_CHARACTER);
+            }
+        }
+        return destination;
+    }
+
+    /**
+     * Copies the bytes field into {@code destination}.
+     *
+     * @return The number of bytes copied.
+     * @throws BufferOverflowException if {@code destination} is too small.
+     */
+    public int getBytes(final ByteBuffer destination) {
+        expect(CommandFieldType.BYTES);
+        final int length = lengthPrefix();
+        if (destination.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        for (int i = 0; i < length; i++) {
+            destination.put(buffer.get());
+        }
+        return length;
+    }
+
+    private int lengthPrefix() {
+        final long length = Varint.get(buffer, frameEnd);
+        if (length > frameEnd - buffer.position()) {
+            throw new IllegalArgumentException("Field of " + length + " bytes exceeds frame");
+        }
+        return (int) length;
+    }
+
+    private void appendSequence(final StringBuilder destination, final int lead, final int continuationBytes,
+                                final int minimum, final int end) {
+        int codePoint = lead;
+        for (int i = 0; i < continuationBytes; i++) {
+            if (buffer.position() >= end || (buffer.get(buffer.position()) & 0xC0) != 0x80) {
+                destination.append(REPLACEMENT_CHARACTER);
+                return;
+            }
+            codePoint = (codePoint << 6) | (buffer.get() & 0x3F);
+        }
+        if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            destination.append(REPLACEMENT_CHARACTER);
+        } else {
+            destination.appendCodePoint(codePoint);
+        }
+    }
+
+    private void require(final int bytes) {
+        if (frameEnd - buffer.position() < bytes) {
+            throw new IllegalArgumentException("Truncated field");
+        }
+    }
+
+    private void expect(final CommandFieldType type) {
+        if (fields == null) {
+            throw new IllegalStateException("Unknown command " + commandId);
+        }
+        if (fieldIndex >= fields.length) {
+            throw new IllegalStateException("Command " + schema.getName(commandId) + " has only "
+                    + fields.length + " fields");
+        }
+        if (fields[fieldIndex] != type) {
+            throw new IllegalStateException("Field " + fieldIndex + " of " + schema.getName(commandId)
+                    + " is " + fields[fieldIndex] + ", not " + type);
+        }
+        fieldIndex++;
+    }
+}
@@ -0,0 +1,91 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.util.Arrays;
+
+/**
+ * The commands both peers agree on: a numeric id, a name for logs and the types of its fields in
+ * wire order.
+ * <p>
+ * A schema may only grow by appending fields to existing commands or adding new commands. Readers
+ * skip fields they do not know, so an older peer still understands a newer one.
+ */
+public final class CommandSchema {
+
+    public static final int MAX_COMMAND_ID = 1023;
+
+    private final String[] names;
+
+    private final CommandFieldType[][] fields;
+
+    private CommandSchema(final Builder builder) {
+        this.names = Arrays.copyOf(builder.names, builder.names.length);
+        this.fields = Arrays.copyOf(builder.fields, builder.fields.length);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isDefined(final int commandId) {
+        return commandId > 0 && commandId < fields.length && fields[commandId] != null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the command is not defined.
+     */
+    public String getName(final int commandId) {
+        check(commandId);
+        return names[commandId];
+    }
+
+    /**
+     * @throws IllegalArgumentException if the command is not defined.
+     */
+    public int getFieldCount(final int commandId) {
+        check(commandId);
+        return fields[commandId].length;
+    }
+
+    CommandFieldType[] fieldsOf(final int commandId) {
+        check(commandId);
+        return fields[commandId];
+    }
+
+    private void check(final int commandId) {
+        if (!isDefined(commandId)) {
+            throw new IllegalArgumentException("Unknown command " + commandId);
+        }
+    }
+
+    public static final class Builder {
+        private String[] names = new String[0];
+
+        private CommandFieldType[][] fields = new CommandFieldType[0][];
+
+        private Builder() {
+        }
+
+        /**
+         * @throws IllegalArgumentException if the id is out of range or already defined.
+         */
+        public Builder define(final int commandId, final String name, final CommandFieldType... fieldTypes) {
+            if (commandId <= 0 || commandId > MAX_COMMAND_ID) {
+                throw new IllegalArgumentException("Command id must be in 1.." + MAX_COMMAND_ID + ": " + commandId);
+            }
+            if (commandId >= fields.length) {
+                names = Arrays.copyOf(names, commandId + 1);
+                fields = Arrays.copyOf(fields, commandId + 1);
+            }
+            if (fields[commandId] != null) {
+                throw new IllegalArgumentException("Command " + commandId + " is already defined as " + names[commandId]);
+            }
+            names[commandId] = name;
+            fields[commandId] = fieldTypes.clone();
+            return this;
+        }
+
+        public CommandSchema build() {
+            return new CommandSchema(this);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes commands into a caller-owned buffer without allocating.
+ * <p>
+ * A frame is the body length as a varint followed by the body: a varint holding the command id and
+ * {@link CommandKind}, the correlation id as a varint unless the kind is {@link CommandKind#MESSAGE},
+ * then the fields in schema order. Several frames may share one data channel message.
+ * <pre>
+ * writer.begin(buffer, PTZ, CommandKind.MESSAGE, 0).putSInt(pan).putSInt(tilt).putUInt(zoom).end();
+ * </pre>
+ * Not thread safe.
+ */
+public final class CommandWriter {
+
+    private final CommandSchema schema;
+
+    private ByteBuffer buffer;
+
+    private int commandId;
+
+    private CommandFieldType[] fields;
+
+    private int fieldIndex;
+
+    private int frameStart;
+
+    private int bodyStart;
+
+    public CommandWriter(final CommandSchema schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * Starts a frame at {@code buffer}'s position. A frame that was begun but not ended is abandoned,
+     * its bytes stay in that buffer.
+     *
+     * @throws IllegalArgumentException if the command is not in the schema.
+     */
+    public CommandWriter begin(final ByteBuffer buffer, final int commandId, final CommandKind kind,
+                               final int correlationId) {
+        this.fields = schema.fieldsOf(commandId);
+        this.buffer = buffer;
+        this.commandId = commandId;
+        this.fieldIndex = 0;
+        frameStart = buffer.position();
+        // One byte for the length, moved along in end() if the body turns out longer than 127 bytes
+        buffer.put((byte) 0);
+        bodyStart = buffer.position();
+        Varint.put(buffer, ((long) commandId << 2) | kind.ordinal());
+        if (kind != CommandKind.MESSAGE) {
+            Varint.put(buffer, correlationId & 0xFFFFFFFFL);
+        }
+        return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code value} is negative.
+     */
+    public CommandWriter putUInt(final long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value for unsigned field: " + value);
+        }
+        expect(CommandFieldType.UINT);
+        Varint.put(buffer, value);
+        return this;
+    }
+
+    public CommandWriter putSInt(final long value) {
+        expect(CommandFieldType.SINT);
+        Varint.put(buffer, Varint.zigzag(value));
+        return this;
+    }
+
+    public CommandWriter putBool(final boolean value) {
+        expect(CommandFieldType.BOOL);
+        buffer.put(value ? (byte) 1 : (byte) 0);
+        return this;
+    }
+
+    public CommandWriter putFloat(final float value) {
+        expect(CommandFieldType.FLOAT);
+        buffer.putFloat(value);
+        return this;
+    }
+
+    public CommandWriter putDouble(final double value) {
+        expect(CommandFieldType.DOUBLE);
+        buffer.putDouble(value);
+        return this;
+    }
+
+    /**
+     * Writes {@code value} as UTF-8. Unpaired surrogates are written as {@code '?'}.
+     */
+    public CommandWriter putString(final CharSequence value) {
+        expect(CommandFieldType.STRING);
+        Varint.put(buffer, utf8Length(value));
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes the remaining bytes of {@code value} without moving its position.
+     */
+    public CommandWriter putBytes(final ByteBuffer value) {
+        expect(CommandFieldType.BYTES);
+        Varint.put(buffer, value.remaining());
+        for (int i = value.position(); i < value.limit(); i++) {
+            buffer.put(value.get(i));
+        }
+        return this;
+    }
+
+    /**
+     * Completes the frame; the buffer's position is after it.
+     *
+     * @return The frame's length in bytes.
+     * @throws IllegalStateException if not all fields were written.
+     */
+    public int end() {
+        if (fieldIndex != fields.length) {
+            throw new IllegalStateException("Command " + schema.getName(commandId) + " has " + fields.length
+                    + " fields, " + fieldIndex + " written");
+        }
+        final int bodyEnd = buffer.position();
+        final int bodyLength = bodyEnd - bodyStart;
+        final int shift = Varint.size(bodyLength) - 1;
+        if (shift > 0) {
+            if (buffer.remaining() < shift) {
+                throw new BufferOverflowException();
+            }
+            for (int i = bodyEnd - 1; i >= bodyStart; i--) {
+                buffer.put(i + shift, buffer.get(i));
+            }
+        }
+        buffer.position(frameStart);
+        Varint.put(buffer, bodyLength);
+        buffer.position(bodyEnd + shift);
+        buffer = null;
+        return bodyEnd + shift - frameStart;
+    }
+
+    private void expect(final CommandFieldType type) {
+        if (fieldIndex >= fields.length) {
+            throw new IllegalStateException("Command " + schema.getName(commandId) + " has only "
+                    + fields.length + " fields");
+        }
+        if (fields[fieldIndex] != type) {
+            throw new IllegalStateException("Field " + fieldIndex + " of " + schema.getName(commandId)
+                    + " is " + fields[fieldIndex] + ", not " + type);
+        }
+        fieldIndex++;
+    }
+
+    private static int utf8Length(final CharSequence value) {
+        final int length = value.length();
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes += 1;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
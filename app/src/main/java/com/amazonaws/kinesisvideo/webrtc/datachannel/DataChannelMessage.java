@@ -0,0 +1,62 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message received on a data channel.
+ * <p>
+ * The data lives in a pooled buffer that is reused once delivery of the batch returns. Subscribers
+ * that keep a message must copy what they need.
+ */
+public final class DataChannelMessage {
+
+    private final String label;
+
+    private final boolean binary;
+
+    private final ByteBuffer data;
+
+    private final long receivedAtNs;
+
+    DataChannelMessage(final String label, final boolean binary, final ByteBuffer data, final long receivedAtNs) {
+        this.label = label;
+        this.binary = binary;
+        this.data = data;
+        this.receivedAtNs = receivedAtNs;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * @return A read-only view of the message data.
+     */
+    public ByteBuffer getData() {
+        return data.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return The data decoded as UTF-8, which is what text messages are sent as.
+     */
+    public String getText() {
+        return new String(data.array(), data.arrayOffset() + data.position(), data.remaining(),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the message was taken off the data channel.
+     */
+    public long getReceivedAtNs() {
+        return receivedAtNs;
+    }
+
+    ByteBuffer buffer() {
+        return data;
+    }
+}
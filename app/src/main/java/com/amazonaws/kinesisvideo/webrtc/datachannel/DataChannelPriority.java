@@ -0,0 +1,30 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+/**
+ * Send priority of a data channel, highest first.
+ * <p>
+ * All data channels of a peer connection share one SCTP association, so data buffered for one
+ * channel delays every other channel. Each priority therefore caps how much its channels may have
+ * buffered before their next message is held back.
+ */
+public enum DataChannelPriority {
+    /** Small latency sensitive messages, never held back. */
+    CONTROL(Long.MAX_VALUE),
+    /** Regular application traffic such as telemetry. */
+    NORMAL(1024 * 1024),
+    /** Large payloads that should only use what is left. */
+    BULK(256 * 1024);
+
+    private final long bufferedAmountLimit;
+
+    DataChannelPriority(final long bufferedAmountLimit) {
+        this.bufferedAmountLimit = bufferedAmountLimit;
+    }
+
+    /**
+     * @return A channel's buffered amount above which its next message waits.
+     */
+    public long getBufferedAmountLimit() {
+        return bufferedAmountLimit;
+    }
+}
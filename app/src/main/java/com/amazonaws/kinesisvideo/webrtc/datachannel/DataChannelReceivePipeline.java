@@ -0,0 +1,186 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import android.util.Log;
+
+import org.webrtc.DataChannel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes data channel messages off the WebRTC signaling thread and delivers them to subscribers in
+ * batches on a worker thread.
+ * <p>
+ * {@code onMessage} only copies the message into a pooled buffer and queues it. The worker waits up
+ * to the linger time for more messages after the first one, so a burst is delivered as one batch.
+ * When the queue is full, new messages are dropped and counted rather than blocking the signaling
+ * thread.
+ */
+public class DataChannelReceivePipeline {
+
+    private static final String TAG = "KVSDataChannelReceive";
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    public static final long DEFAULT_LINGER_MS = 16;
+
+    private static final int POOLED_BUFFER_SIZE = 64 * 1024;
+
+    private static final int FREE_BUFFERS_PER_SIZE = 64;
+
+    private static final long LOG_DROPS_EVERY = 1000;
+
+    /**
+     * Receives batches of messages on the pipeline's worker thread.
+     */
+    public interface Subscriber {
+        /**
+         * @param messages Messages in arrival order. They are only valid during this call.
+         */
+        void onMessages(List<DataChannelMessage> messages);
+    }
+
+    private final BlockingQueue<DataChannelMessage> queue;
+
+    private final int maxBatchSize;
+
+    private final long lingerNs;
+
+    private final ByteBufferPool pool = new ByteBufferPool(POOLED_BUFFER_SIZE, FREE_BUFFERS_PER_SIZE);
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong droppedMessages = new AtomicLong();
+
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    public DataChannelReceivePipeline() {
+        this(DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_LINGER_MS);
+    }
+
+    public DataChannelReceivePipeline(final int queueCapacity, final int maxBatchSize, final long lingerMs) {
+        if (queueCapacity <= 0 || maxBatchSize <= 0 || lingerMs < 0) {
+            throw new IllegalArgumentException("Invalid pipeline configuration");
+        }
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNs = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.worker = new Thread(this::deliverLoop, TAG);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public void subscribe(final Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(final Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * @return An observer that feeds {@code channel}'s messages into this pipeline.
+     */
+    public DataChannel.Observer observerFor(final DataChannel channel) {
+        final String label = channel.label();
+        return new DataChannel.Observer() {
+            @Override
+            public void onBufferedAmountChange(final long previousAmount) {
+                // Receive only
+            }
+
+            @Override
+            public void onStateChange() {
+                Log.d(TAG, "Data channel " + label + " state: " + channel.state());
+            }
+
+            @Override
+            public void onMessage(final DataChannel.Buffer buffer) {
+                DataChannelReceivePipeline.this.onMessage(label, buffer);
+            }
+        };
+    }
+
+    /**
+     * Queues a message. Safe to call from the data channel observer, the buffer is copied.
+     */
+    public void onMessage(final String label, final DataChannel.Buffer buffer) {
+        if (!running) {
+            return;
+        }
+        final ByteBuffer data = pool.acquire(buffer.data.remaining());
+        data.put(buffer.data);
+        data.flip();
+        if (!queue.offer(new DataChannelMessage(label, buffer.binary, data, System.nanoTime()))) {
+            pool.release(data);
+            final long dropped = droppedMessages.incrementAndGet();
+            if (dropped % LOG_DROPS_EVERY == 1) {
+                Log.w(TAG, "Receive queue full, dropped " + dropped + " messages so far");
+            }
+        }
+    }
+
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    public ByteBufferPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Stops delivery. Queued messages are discarded.
+     */
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void deliverLoop() {
+        final List<DataChannelMessage> batch = new ArrayList<>(maxBatchSize);
+        final List<DataChannelMessage> readOnlyBatch = Collections.unmodifiableList(batch);
+        try {
+            while (running) {
+                batch.add(queue.take());
+                final long deadlineNs = System.nanoTime() + lingerNs;
+                while (batch.size() < maxBatchSize) {
+                    final long remainingNs = deadlineNs - System.nanoTime();
+                    if (remainingNs <= 0) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+                    final DataChannelMessage next = queue.poll(remainingNs, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                for (final Subscriber subscriber : subscribers) {
+                    try {
+                        subscriber.onMessages(readOnlyBatch);
+                    } catch (final RuntimeException e) {
+                        Log.e(TAG, "Subscriber failed to handle " + batch.size() + " messages", e);
+                    }
+                }
+                for (final DataChannelMessage message : batch) {
+                    pool.release(message.buffer());
+                }
+                batch.clear();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import android.util.Log;
+
+import org.webrtc.DataChannel;
+import org.webrtc.PeerConnection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The data channels of a peer connection, by label.
+ * <p>
+ * Each channel is opened with its own reliability settings, so control commands, telemetry and
+ * bulk data no longer share one ordered, reliable stream. Sends go through a priority scheduler:
+ * control messages are sent right away, lower priorities only while the channels ahead of them are
+ * not backed up. Messages received on any registered channel are fed into the receive pipeline.
+ */
+public class DataChannelRegistry {
+
+    private static final String TAG = "KVSDataChannelRegistry";
+
+    public static final long DEFAULT_MAX_QUEUED_BYTES_PER_PRIORITY = 16 * 1024 * 1024;
+
+    /**
+     * Told about state changes of registered channels, on the WebRTC signaling thread.
+     */
+    public interface StateListener {
+        void onStateChange(String label, DataChannel.State state);
+    }
+
+    /**
+     * Takes back messages that were queued when their channel closed, in the order they were sent,
+     * on the registry's send thread. {@code data} is only valid during the call.
+     */
+    public interface UndeliveredListener {
+        void onUndelivered(String label, ByteBuffer data, boolean binary);
+    }
+
+    private static final class Entry {
+        final DataChannelSpec spec;
+        final DataChannel channel;
+
+        Entry(final DataChannelSpec spec, final DataChannel channel) {
+            this.spec = spec;
+            this.channel = channel;
+        }
+    }
+
+    private final DataChannelReceivePipeline receivePipeline;
+
+    private final StateListener stateListener;
+
+    private final ExecutorService sendExecutor = Executors.newSingleThreadExecutor();
+
+    private final DataChannelSendScheduler scheduler;
+
+    private final Map<String, Entry> channels = new ConcurrentHashMap<>();
+
+    /**
+     * @param receivePipeline Receives the messages of all registered channels.
+     * @param stateListener   Told about channel state changes, may be {@code null}.
+     */
+    public DataChannelRegistry(final DataChannelReceivePipeline receivePipeline, final StateListener stateListener) {
+        this(receivePipeline, stateListener, null);
+    }
+
+    /**
+     * @param undeliveredListener Takes back messages whose channel closed before they were sent,
+     *                            {@code null} to drop them.
+     */
+    public DataChannelRegistry(final DataChannelReceivePipeline receivePipeline, final StateListener stateListener,
+                               final UndeliveredListener undeliveredListener) {
+        this.receivePipeline = receivePipeline;
+        this.stateListener = stateListener;
+        this.scheduler = new DataChannelSendScheduler(sendExecutor, DEFAULT_MAX_QUEUED_BYTES_PER_PRIORITY,
+                undeliveredListener == null ? null
+                        : (channel, data, binary) -> undeliveredListener.onUndelivered(channel.label(), data, binary));
+    }
+
+    /**
+     * Creates a data channel on {@code peerConnection} and registers it.
+     *
+     * @return The channel, {@code null} if it could not be created.
+     * @throws IllegalStateException if a channel with the same label is registered.
+     */
+    public DataChannel open(final PeerConnection peerConnection, final DataChannelSpec spec) {
+        if (channels.containsKey(spec.getLabel())) {
+            throw new IllegalStateException("Data channel " + spec.getLabel() + " is already open");
+        }
+        final DataChannel channel = peerConnection.createDataChannel(spec.getLabel(), spec.toInit());
+        if (channel == null) {
+            Log.e(TAG, "Could not create data channel " + spec);
+            return null;
+        }
+        register(spec, channel);
+        Log.d(TAG, "Opened " + spec);
+        return channel;
+    }
+
+    /**
+     * Registers a channel the peer announced. It is sent on with {@link DataChannelPriority#NORMAL}
+     * priority unless a spec with its label is given.
+     */
+    public void onDataChannel(final DataChannel channel, final DataChannelSpec spec) {
+        final String label = channel.label();
+        register(spec != null ? spec : DataChannelSpec.builder(label).build(), channel);
+        Log.d(TAG, "Registered remote data channel " + label);
+    }
+
+    public DataChannel get(final String label) {
+        final Entry entry = channels.get(label);
+        return entry != null ? entry.channel : null;
+    }
+
+    /**
+     * Queues a message on the channel with {@code label}. The data is copied.
+     *
+     * @return {@code false} if no such channel is registered, it is closing or its priority's queue
+     * is full.
+     */
+    public boolean send(final String label, final ByteBuffer data, final boolean binary) {
+        final Entry entry = channels.get(label);
+        if (entry == null) {
+            Log.w(TAG, "No data channel " + label);
+            return false;
+        }
+        if (!scheduler.submit(entry.channel, entry.spec.getPriority(), data, binary)) {
+            Log.w(TAG, "Data channel " + label + " is closing or the send queue for "
+                    + entry.spec.getPriority() + " is full, not queueing message");
+            return false;
+        }
+        return true;
+    }
+
+    public boolean sendText(final String label, final String text) {
+        return send(label, ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    /**
+     * Closes all registered channels and stops sending.
+     */
+    public void close() {
+        for (final Entry entry : channels.values()) {
+            entry.channel.unregisterObserver();
+            entry.channel.close();
+        }
+        channels.clear();
+        sendExecutor.shutdownNow();
+    }
+
+    private void register(final DataChannelSpec spec, final DataChannel channel) {
+        final String label = spec.getLabel();
+        final Entry entry = new Entry(spec, channel);
+        channels.put(label, entry);
+        channel.registerObserver(new DataChannel.Observer() {
+            @Override
+            public void onBufferedAmountChange(final long previousAmount) {
+                if (channel.bufferedAmount() < previousAmount) {
+                    scheduler.scheduleDrain();
+                }
+            }
+
+            @Override
+            public void onStateChange() {
+                final DataChannel.State state = channel.state();
+                Log.d(TAG, "Data channel " + label + " state: " + state);
+                if (state == DataChannel.State.CLOSED) {
+                    channels.remove(label, entry);
+                }
+                scheduler.scheduleDrain();
+                if (stateListener != null) {
+                    stateListener.onStateChange(label, state);
+                }
+            }
+
+            @Override
+            public void onMessage(final DataChannel.Buffer buffer) {
+                receivePipeline.onMessage(label, buffer);
+            }
+        });
+    }
+}
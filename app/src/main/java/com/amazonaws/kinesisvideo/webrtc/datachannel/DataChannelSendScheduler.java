@@ -0,0 +1,174 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import android.util.Log;
+
+import org.webrtc.DataChannel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends queued data channel messages in strict priority order.
+ * <p>
+ * A message of a lower priority is only sent when no higher priority message is waiting for its
+ * channel to drain. Messages of one channel keep their order. Messages for channels that are not
+ * open yet wait without holding up other channels. Messages still queued when their channel closes
+ * are handed back rather than dropped.
+ */
+class DataChannelSendScheduler {
+
+    private static final String TAG = "KVSDataChannelSend";
+
+    /**
+     * Takes back messages whose channel closed before they were sent, in the order they were
+     * queued. Called on the executor, {@code data} is only valid during the call.
+     */
+    interface UndeliveredListener {
+        void onUndelivered(DataChannel channel, ByteBuffer data, boolean binary);
+    }
+
+    private static final class PendingSend {
+        final DataChannel channel;
+        final ByteBuffer data;
+        final boolean binary;
+
+        PendingSend(final DataChannel channel, final ByteBuffer data, final boolean binary) {
+            this.channel = channel;
+            this.data = data;
+            this.binary = binary;
+        }
+    }
+
+    private final Executor executor;
+
+    private final long maxQueuedBytesPerPriority;
+
+    private final UndeliveredListener undeliveredListener;
+
+    private final ByteBufferPool pool = new ByteBufferPool(64 * 1024, 32);
+
+    private final ArrayDeque<PendingSend>[] queues;
+
+    private final long[] queuedBytes;
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    @SuppressWarnings("unchecked")
+    /**
+     * @param undeliveredListener {@code null} to drop messages whose channel closed.
+     */
+    DataChannelSendScheduler(final Executor executor, final long maxQueuedBytesPerPriority,
+                             final UndeliveredListener undeliveredListener) {
+        this.executor = executor;
+        this.maxQueuedBytesPerPriority = maxQueuedBytesPerPriority;
+        this.undeliveredListener = undeliveredListener;
+        final int priorities = DataChannelPriority.values().length;
+        this.queues = new ArrayDeque[priorities];
+        this.queuedBytes = new long[priorities];
+        for (int i = 0; i < priorities; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Queues a copy of {@code data}.
+     *
+     * @return {@code false} if the channel is closing or the priority's queue is full.
+     */
+    boolean submit(final DataChannel channel, final DataChannelPriority priority, final ByteBuffer data,
+                   final boolean binary) {
+        if (isClosing(channel.state())) {
+            return false;
+        }
+        final int size = data.remaining();
+        synchronized (this) {
+            if (queuedBytes[priority.ordinal()] + size > maxQueuedBytesPerPriority) {
+                return false;
+            }
+            final ByteBuffer copy = pool.acquire(size);
+            copy.put(data.duplicate());
+            copy.flip();
+            queues[priority.ordinal()].addLast(new PendingSend(channel, copy, binary));
+            queuedBytes[priority.ordinal()] += size;
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Called when a channel's state or buffered amount changed.
+     */
+    void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    synchronized int getQueuedMessages(final DataChannelPriority priority) {
+        return queues[priority.ordinal()].size();
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        PendingSend next;
+        while ((next = next()) != null) {
+            if (isClosing(next.channel.state())) {
+                if (undeliveredListener != null) {
+                    undeliveredListener.onUndelivered(next.channel, next.data.duplicate(), next.binary);
+                }
+            } else if (!next.channel.send(new DataChannel.Buffer(next.data, next.binary))) {
+                Log.w(TAG, "Data channel " + next.channel.label() + " refused a message of "
+                        + next.data.remaining() + " bytes");
+            }
+            release(next);
+        }
+    }
+
+    private synchronized PendingSend next() {
+        for (final DataChannelPriority priority : DataChannelPriority.values()) {
+            final Set<DataChannel> waitingChannels = new HashSet<>();
+            boolean congested = false;
+            final Iterator<PendingSend> iterator = queues[priority.ordinal()].iterator();
+            while (iterator.hasNext()) {
+                final PendingSend pending = iterator.next();
+                if (waitingChannels.contains(pending.channel)) {
+                    continue;
+                }
+                final DataChannel.State state = pending.channel.state();
+                if (isClosing(state)) {
+                    // Handed back by drain
+                    iterator.remove();
+                    queuedBytes[priority.ordinal()] -= pending.data.remaining();
+                    return pending;
+                }
+                if (state == DataChannel.State.OPEN) {
+                    if (pending.channel.bufferedAmount() < priority.getBufferedAmountLimit()) {
+                        iterator.remove();
+                        queuedBytes[priority.ordinal()] -= pending.data.remaining();
+                        return pending;
+                    }
+                    congested = true;
+                }
+                waitingChannels.add(pending.channel);
+            }
+            if (congested) {
+                // Lower priorities would only add to the buffered data this priority waits on
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isClosing(final DataChannel.State state) {
+        return state == DataChannel.State.CLOSING || state == DataChannel.State.CLOSED;
+    }
+
+    private void release(final PendingSend pending) {
+        pool.release(pending.data);
+    }
+}
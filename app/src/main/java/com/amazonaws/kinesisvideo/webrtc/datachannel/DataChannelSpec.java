@@ -0,0 +1,172 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import org.webrtc.DataChannel;
+
+/**
+ * Label, reliability and send priority of a data channel.
+ */
+public final class DataChannelSpec {
+
+    private static final int MAX_STREAM_ID = 65534;
+
+    private final String label;
+
+    private final boolean ordered;
+
+    private final int maxRetransmits;
+
+    private final int maxRetransmitTimeMs;
+
+    private final int negotiatedId;
+
+    private final String protocol;
+
+    private final DataChannelPriority priority;
+
+    private DataChannelSpec(final Builder builder) {
+        this.label = builder.label;
+        this.ordered = builder.ordered;
+        this.maxRetransmits = builder.maxRetransmits;
+        this.maxRetransmitTimeMs = builder.maxRetransmitTimeMs;
+        this.negotiatedId = builder.negotiatedId;
+        this.protocol = builder.protocol;
+        this.priority = builder.priority;
+    }
+
+    public static Builder builder(final String label) {
+        return new Builder(label);
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * @return -1 if retransmissions are not limited by count.
+     */
+    public int getMaxRetransmits() {
+        return maxRetransmits;
+    }
+
+    /**
+     * @return -1 if retransmissions are not limited by time.
+     */
+    public int getMaxRetransmitTimeMs() {
+        return maxRetransmitTimeMs;
+    }
+
+    /**
+     * @return The SCTP stream id both peers agreed on out of band, -1 if the channel is announced
+     * in-band.
+     */
+    public int getNegotiatedId() {
+        return negotiatedId;
+    }
+
+    public DataChannelPriority getPriority() {
+        return priority;
+    }
+
+    public boolean isReliable() {
+        return maxRetransmits < 0 && maxRetransmitTimeMs < 0;
+    }
+
+    public DataChannel.Init toInit() {
+        final DataChannel.Init init = new DataChannel.Init();
+        init.ordered = ordered;
+        init.maxRetransmits = maxRetransmits;
+        init.maxRetransmitTimeMs = maxRetransmitTimeMs;
+        init.protocol = protocol;
+        if (negotiatedId >= 0) {
+            init.negotiated = true;
+            init.id = negotiatedId;
+        }
+        return init;
+    }
+
+    @Override
+    public String toString() {
+        return "DataChannelSpec(label=" + label + ", ordered=" + ordered + ", maxRetransmits=" + maxRetransmits
+                + ", maxRetransmitTimeMs=" + maxRetransmitTimeMs + ", negotiatedId=" + negotiatedId
+                + ", protocol=" + protocol + ", priority=" + priority + ")";
+    }
+
+    public static final class Builder {
+        private final String label;
+
+        private boolean ordered = true;
+
+        private int maxRetransmits = -1;
+
+        private int maxRetransmitTimeMs = -1;
+
+        private int negotiatedId = -1;
+
+        private String protocol = "";
+
+        private DataChannelPriority priority = DataChannelPriority.NORMAL;
+
+        private Builder(final String label) {
+            this.label = label;
+        }
+
+        public Builder setOrdered(final boolean ordered) {
+            this.ordered = ordered;
+            return this;
+        }
+
+        /**
+         * Makes the channel partially reliable: a message is given up after this many retransmissions.
+         */
+        public Builder setMaxRetransmits(final int maxRetransmits) {
+            this.maxRetransmits = maxRetransmits;
+            return this;
+        }
+
+        /**
+         * Makes the channel partially reliable: a message is given up after this long.
+         */
+        public Builder setMaxRetransmitTimeMs(final int maxRetransmitTimeMs) {
+            this.maxRetransmitTimeMs = maxRetransmitTimeMs;
+            return this;
+        }
+
+        /**
+         * Uses a pre-agreed SCTP stream id. The peer must create a channel with the same id itself.
+         */
+        public Builder setNegotiatedId(final int negotiatedId) {
+            this.negotiatedId = negotiatedId;
+            return this;
+        }
+
+        public Builder setProtocol(final String protocol) {
+            this.protocol = protocol;
+            return this;
+        }
+
+        public Builder setPriority(final DataChannelPriority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        public DataChannelSpec build() {
+            if (label == null || label.isEmpty()) {
+                throw new IllegalArgumentException("Data channel label must not be empty");
+            }
+            if (maxRetransmits >= 0 && maxRetransmitTimeMs >= 0) {
+                throw new IllegalArgumentException("Only one of maxRetransmits and maxRetransmitTimeMs can be set");
+            }
+            if (negotiatedId > MAX_STREAM_ID) {
+                throw new IllegalArgumentException("Negotiated id must be at most " + MAX_STREAM_ID);
+            }
+            if (protocol == null || priority == null) {
+                throw new IllegalArgumentException("Protocol and priority must not be null");
+            }
+            return new DataChannelSpec(this);
+        }
+    }
+}
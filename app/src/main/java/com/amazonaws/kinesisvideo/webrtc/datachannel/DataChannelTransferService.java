@@ -0,0 +1,173 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import android.util.Log;
+
+import org.webrtc.DataChannel;
+import org.webrtc.PeerConnection;
+
+import java.io.File;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Moves files and blobs between peers over data channels.
+ * <p>
+ * Each transfer gets its own data channel, labeled with {@link #LABEL_PREFIX}, so that ordered
+ * and unordered transfers can run side by side and a transfer never blocks the application's
+ * other channels. Payloads are split into CRC-checked chunks and sent only while the channel
+ * buffers less than the high watermark, then resumed once it drained to the low watermark. The
+ * receiver checks the SHA-256 of the whole payload before reporting it complete. A transfer that
+ * broke off is resumed by sending the same payload again. Offers larger than the receive limit, or
+ * than the free space of the receive directory, are rejected.
+ * <p>
+ * Reading, writing and hashing happen on a single thread owned by the service. Listener methods
+ * are called on that thread.
+ */
+public class DataChannelTransferService {
+
+    private static final String TAG = "KVSDataChannelTransfer";
+
+    public static final String LABEL_PREFIX = "kvs-transfer-";
+
+    public static final long DEFAULT_MAX_RECEIVE_SIZE = 1024L * 1024 * 1024;
+
+    static final long PROGRESS_INTERVAL_MS = 250;
+
+    /**
+     * Receives transfer events, in- and outgoing alike.
+     */
+    public interface Listener {
+        void onTransferProgress(TransferStats stats);
+
+        /**
+         * @param receivedFile Where an incoming payload was stored, {@code null} for outgoing transfers.
+         */
+        void onTransferCompleted(TransferStats stats, File receivedFile);
+
+        void onTransferFailed(TransferStats stats, String reason);
+    }
+
+    private final File receiveDirectory;
+
+    private final long maxReceiveSize;
+
+    private final Listener listener;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * What the transfers run on. Channel callbacks that arrive after {@link #close()} are dropped,
+     * throwing on libwebrtc's signaling thread would abort the process.
+     */
+    private final Executor transferExecutor = task -> {
+        try {
+            executor.execute(task);
+        } catch (final RejectedExecutionException e) {
+            Log.d(TAG, "Service closed, dropping transfer task");
+        }
+    };
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final Map<String, OutgoingTransfer> outgoing = new ConcurrentHashMap<>();
+
+    private final Map<String, IncomingTransfer> incoming = new ConcurrentHashMap<>();
+
+    /**
+     * @param receiveDirectory Where incoming payloads and the state of partial ones are stored.
+     */
+    public DataChannelTransferService(final File receiveDirectory, final Listener listener) {
+        this(receiveDirectory, DEFAULT_MAX_RECEIVE_SIZE, listener);
+    }
+
+    /**
+     * @param receiveDirectory Where incoming payloads and the state of partial ones are stored.
+     * @param maxReceiveSize   The largest payload the peer may send.
+     */
+    public DataChannelTransferService(final File receiveDirectory, final long maxReceiveSize,
+                                      final Listener listener) {
+        if (!receiveDirectory.isDirectory() && !receiveDirectory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create receive directory " + receiveDirectory);
+        }
+        if (maxReceiveSize < 0) {
+            throw new IllegalArgumentException("Invalid maximum receive size " + maxReceiveSize);
+        }
+        this.receiveDirectory = receiveDirectory;
+        this.maxReceiveSize = maxReceiveSize;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts sending {@code source} to the peer. The source is closed when the transfer ends.
+     *
+     * @param peerConnection Connection to the receiving peer.
+     * @param name           File name suggested to the receiver.
+     * @return Label of the transfer's data channel, {@code null} if the channel could not be created.
+     */
+    public String send(final PeerConnection peerConnection, final TransferSource source, final String name,
+                       final TransferOptions options) {
+        final String label = LABEL_PREFIX + Long.toHexString(random.nextLong());
+        final DataChannel.Init init = new DataChannel.Init();
+        init.ordered = options.isOrdered();
+        final DataChannel channel = peerConnection.createDataChannel(label, init);
+        if (channel == null) {
+            Log.e(TAG, "Could not create data channel for transfer of " + name);
+            return null;
+        }
+
+        final OutgoingTransfer transfer = new OutgoingTransfer(label, channel, source, name, options, transferExecutor,
+                listener, () -> outgoing.remove(label));
+        outgoing.put(label, transfer);
+        transfer.start();
+        return label;
+    }
+
+    /**
+     * Hands a data channel opened by the peer to the service.
+     *
+     * @return {@code true} if the channel carries a transfer and is now owned by the service.
+     */
+    public boolean onDataChannel(final DataChannel dataChannel) {
+        final String label = dataChannel.label();
+        if (label == null || !label.startsWith(LABEL_PREFIX)) {
+            return false;
+        }
+        final IncomingTransfer transfer = new IncomingTransfer(label, dataChannel, receiveDirectory, maxReceiveSize,
+                transferExecutor, listener, () -> incoming.remove(label));
+        incoming.put(label, transfer);
+        transfer.start();
+        return true;
+    }
+
+    public void cancel(final String label) {
+        final OutgoingTransfer outgoingTransfer = outgoing.get(label);
+        if (outgoingTransfer != null) {
+            outgoingTransfer.cancel();
+        }
+        final IncomingTransfer incomingTransfer = incoming.get(label);
+        if (incomingTransfer != null) {
+            incomingTransfer.cancel();
+        }
+    }
+
+    /**
+     * Cancels all transfers. Partially received payloads are kept for resuming.
+     * <p>
+     * Call it after closing the peer connections that carry transfers, so that the channels are
+     * still disposed once they report CLOSED.
+     */
+    public void close() {
+        for (final String label : outgoing.keySet()) {
+            cancel(label);
+        }
+        for (final String label : incoming.keySet()) {
+            cancel(label);
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,45 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sends a file. Reads are positional, so resuming does not re-read the start of the file.
+ */
+public class FileTransferSource implements TransferSource {
+
+    private final FileInputStream inputStream;
+
+    private final FileChannel channel;
+
+    public FileTransferSource(final File file) throws IOException {
+        inputStream = new FileInputStream(file);
+        channel = inputStream.getChannel();
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public int read(final long offset, final ByteBuffer destination) throws IOException {
+        int total = 0;
+        while (destination.hasRemaining()) {
+            final int read = channel.read(destination, offset + total);
+            if (read < 0) {
+                return total > 0 ? total : -1;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -0,0 +1,394 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.webrtc.DataChannel;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.Executor;
+
+/**
+ * Receiving side of a transfer.
+ * <p>
+ * Chunks are written at their offset into a part file named after the payload's SHA-256, so it
+ * does not matter whether they arrive in order. Which chunks arrived is saved next to the part
+ * file, and an offer of the same payload later picks up where the previous attempt stopped.
+ * <p>
+ * As on the sending side, the observer stays registered until the channel reports CLOSED and the
+ * channel is disposed then.
+ */
+class IncomingTransfer implements DataChannel.Observer {
+
+    private static final String TAG = "KVSIncomingTransfer";
+
+    private static final String PART_SUFFIX = ".part";
+
+    private static final String STATE_SUFFIX = ".state";
+
+    private static final int STATE_VERSION = 1;
+
+    private static final int SAVE_STATE_EVERY_CHUNKS = 256;
+
+    private static final int HASH_BUFFER_SIZE = 1024 * 1024;
+
+    private final String label;
+
+    private final DataChannel channel;
+
+    private final File directory;
+
+    private final long maxTotalSize;
+
+    private final Executor executor;
+
+    private final DataChannelTransferService.Listener listener;
+
+    private final Runnable onFinished;
+
+    private boolean done;
+
+    private String name;
+
+    private byte[] digest;
+
+    private ChunkTracker chunks;
+
+    private File partFile;
+
+    private File stateFile;
+
+    private RandomAccessFile file;
+
+    private int chunksSinceSave;
+
+    private long bytesReceived;
+
+    private long startMs;
+
+    private long lastProgressMs;
+
+    /**
+     * @param maxTotalSize Offers of larger payloads are rejected.
+     */
+    IncomingTransfer(final String label, final DataChannel channel, final File directory, final long maxTotalSize,
+                     final Executor executor, final DataChannelTransferService.Listener listener,
+                     final Runnable onFinished) {
+        this.label = label;
+        this.channel = channel;
+        this.directory = directory;
+        this.maxTotalSize = maxTotalSize;
+        this.executor = executor;
+        this.listener = listener;
+        this.onFinished = onFinished;
+    }
+
+    void start() {
+        channel.registerObserver(this);
+    }
+
+    void cancel() {
+        executor.execute(() -> {
+            if (!done) {
+                channel.send(new DataChannel.Buffer(TransferFrame.cancel(), true));
+                fail("Cancelled");
+            }
+        });
+    }
+
+    @Override
+    public void onBufferedAmountChange(final long previousAmount) {
+        // Only control frames are sent from this side
+    }
+
+    @Override
+    public void onStateChange() {
+        if (channel.state() == DataChannel.State.CLOSED) {
+            executor.execute(() -> {
+                if (!done) {
+                    fail("Data channel closed");
+                }
+                channel.dispose();
+            });
+        }
+    }
+
+    @Override
+    public void onMessage(final DataChannel.Buffer buffer) {
+        // The buffer is only valid during this callback
+        final ByteBuffer copy = ByteBuffer.allocate(buffer.data.remaining());
+        copy.put(buffer.data);
+        copy.flip();
+        executor.execute(() -> handle(copy));
+    }
+
+    private void handle(final ByteBuffer data) {
+        if (done) {
+            return;
+        }
+        final TransferFrame frame;
+        try {
+            frame = TransferFrame.decode(data);
+        } catch (final IllegalArgumentException e) {
+            fail("Malformed frame from sender: " + e.getMessage());
+            return;
+        }
+        try {
+            switch (frame.type) {
+                case TransferFrame.TYPE_OFFER:
+                    onOffer(frame);
+                    break;
+                case TransferFrame.TYPE_CHUNK:
+                    onChunk(frame);
+                    break;
+                case TransferFrame.TYPE_CANCEL:
+                    fail("Cancelled by sender");
+                    break;
+                default:
+                    fail("Unexpected frame type " + frame.type + " from sender");
+                    break;
+            }
+        } catch (final IOException e) {
+            fail("Could not write the payload: " + e.getMessage());
+        }
+    }
+
+    private void onOffer(final TransferFrame offer) throws IOException {
+        if (file != null) {
+            fail("Sender offered twice");
+            return;
+        }
+        final String fileName = new File(offer.name).getName();
+        name = fileName.isEmpty() ? label : fileName;
+        digest = offer.digest;
+
+        final String baseName = toHex(digest);
+        partFile = new File(directory, baseName + PART_SUFFIX);
+        stateFile = new File(directory, baseName + STATE_SUFFIX);
+        try {
+            // A part file of the same payload already takes its share of the space
+            chunks = ChunkTracker.forOffer(offer, maxTotalSize, directory.getUsableSpace() + partFile.length());
+        } catch (final IllegalArgumentException e) {
+            send(TransferFrame.cancel());
+            fail("Rejected offer: " + e.getMessage());
+            return;
+        }
+        chunks.restore(loadState());
+
+        file = new RandomAccessFile(partFile, "rw");
+        file.setLength(chunks.getTotalSize());
+        startMs = SystemClock.elapsedRealtime();
+
+        final long resumeOffset = chunks.getResumeOffset();
+        if (resumeOffset > 0) {
+            Log.i(TAG, "Resuming " + name + " with " + chunks.getReceivedCount() + " of "
+                    + chunks.getChunkCount() + " chunks");
+        }
+        if (chunks.isComplete()) {
+            verify();
+        } else {
+            send(TransferFrame.resume(resumeOffset));
+        }
+    }
+
+    private void onChunk(final TransferFrame chunk) throws IOException {
+        if (file == null) {
+            fail("Chunk before offer");
+            return;
+        }
+        switch (chunks.check(chunk)) {
+            case INVALID:
+                fail("Chunk at " + chunk.offset + " with " + chunk.payload.remaining() + " bytes does not fit the offer");
+                return;
+            case DAMAGED:
+                Log.w(TAG, "Chunk at " + chunk.offset + " of " + name + " failed its CRC, asking for it again");
+                send(TransferFrame.resume(chunk.offset));
+                return;
+            case DUPLICATE:
+                return;
+            default:
+                break;
+        }
+
+        final FileChannel fileChannel = file.getChannel();
+        final ByteBuffer payload = chunk.payload;
+        final int length = payload.remaining();
+        long position = chunk.offset;
+        while (payload.hasRemaining()) {
+            position += fileChannel.write(payload, position);
+        }
+        chunks.markReceived(chunk.offset);
+        bytesReceived += length;
+        if (++chunksSinceSave >= SAVE_STATE_EVERY_CHUNKS) {
+            saveState();
+        }
+
+        if (chunks.isComplete()) {
+            verify();
+        } else {
+            reportProgress();
+        }
+    }
+
+    private void verify() throws IOException {
+        final boolean verified = Arrays.equals(digest, sha256());
+        send(TransferFrame.complete(verified));
+        file.close();
+        file = null;
+
+        if (!verified) {
+            deletePartialFiles();
+            fail("Payload checksum mismatch");
+            return;
+        }
+
+        final File target = uniqueTarget();
+        if (!partFile.renameTo(target)) {
+            fail("Could not move the payload to " + target);
+            return;
+        }
+        if (stateFile.exists() && !stateFile.delete()) {
+            Log.w(TAG, "Could not delete " + stateFile);
+        }
+        done = true;
+        final TransferStats stats = stats();
+        // The sender closes the channel once it got COMPLETE
+        onFinished.run();
+        Log.i(TAG, "Received " + stats + " into " + target);
+        if (listener != null) {
+            listener.onTransferCompleted(stats, target);
+        }
+    }
+
+    private byte[] sha256() throws IOException {
+        final MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final FileChannel fileChannel = file.getChannel();
+        final ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        long position = 0;
+        int read;
+        while ((read = fileChannel.read(buffer, position)) > 0) {
+            buffer.flip();
+            sha256.update(buffer);
+            buffer.clear();
+            position += read;
+        }
+        return sha256.digest();
+    }
+
+    private File uniqueTarget() {
+        File target = new File(directory, name);
+        for (int i = 1; target.exists(); i++) {
+            target = new File(directory, i + "-" + name);
+        }
+        return target;
+    }
+
+    private BitSet loadState() {
+        if (!stateFile.exists() || !partFile.exists()) {
+            return new BitSet();
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(stateFile))) {
+            if (in.readInt() == STATE_VERSION && in.readInt() == chunks.getChunkSize()
+                    && in.readLong() == chunks.getTotalSize()) {
+                final byte[] bits = new byte[in.readInt()];
+                in.readFully(bits);
+                return BitSet.valueOf(bits);
+            }
+        } catch (final IOException e) {
+            Log.w(TAG, "Discarding unreadable transfer state " + stateFile, e);
+        }
+        return new BitSet();
+    }
+
+    private void saveState() {
+        chunksSinceSave = 0;
+        try {
+            // Chunks counted as received must be on disk before the state says so
+            file.getChannel().force(false);
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(stateFile))) {
+                final byte[] bits = chunks.getReceived().toByteArray();
+                out.writeInt(STATE_VERSION);
+                out.writeInt(chunks.getChunkSize());
+                out.writeLong(chunks.getTotalSize());
+                out.writeInt(bits.length);
+                out.write(bits);
+            }
+        } catch (final IOException e) {
+            Log.w(TAG, "Could not save transfer state " + stateFile, e);
+        }
+    }
+
+    private void deletePartialFiles() {
+        if (partFile.exists() && !partFile.delete()) {
+            Log.w(TAG, "Could not delete " + partFile);
+        }
+        if (stateFile.exists() && !stateFile.delete()) {
+            Log.w(TAG, "Could not delete " + stateFile);
+        }
+    }
+
+    private void send(final ByteBuffer frame) {
+        if (!channel.send(new DataChannel.Buffer(frame, true))) {
+            Log.w(TAG, "Could not send control frame on " + label);
+        }
+    }
+
+    private void reportProgress() {
+        final long nowMs = SystemClock.elapsedRealtime();
+        if (listener != null && nowMs - lastProgressMs >= DataChannelTransferService.PROGRESS_INTERVAL_MS) {
+            lastProgressMs = nowMs;
+            listener.onTransferProgress(stats());
+        }
+    }
+
+    private TransferStats stats() {
+        return new TransferStats(label, name, false, bytesReceived, chunks != null ? chunks.getTotalSize() : 0,
+                startMs > 0 ? SystemClock.elapsedRealtime() - startMs : 0);
+    }
+
+    private void fail(final String reason) {
+        done = true;
+        if (file != null) {
+            // Keep what arrived so that offering the same payload again resumes it
+            saveState();
+            try {
+                file.close();
+            } catch (final IOException e) {
+                Log.w(TAG, "Failed to close " + partFile, e);
+            }
+            file = null;
+        }
+        final TransferStats stats = stats();
+        channel.close();
+        onFinished.run();
+        Log.w(TAG, "Transfer " + label + " failed: " + reason);
+        if (listener != null) {
+            listener.onTransferFailed(stats, reason);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
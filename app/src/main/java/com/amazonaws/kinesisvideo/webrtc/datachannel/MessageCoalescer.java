@@ -0,0 +1,86 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns a stream of messages into at most one summary per interval, for user-visible
+ * notifications that must not fire per message.
+ * <p>
+ * The first message after a quiet period is reported right away, later ones are summarized when
+ * the interval ends.
+ */
+public class MessageCoalescer implements DataChannelReceivePipeline.Subscriber {
+
+    /**
+     * Called on the scheduler's thread.
+     */
+    public interface Callback {
+        /**
+         * @param count    Messages received since the previous summary.
+         * @param lastText The most recent text message, {@code null} if only binary messages arrived.
+         */
+        void onMessagesCoalesced(int count, String lastText);
+    }
+
+    private final ScheduledExecutorService scheduler;
+
+    private final long intervalMs;
+
+    private final Callback callback;
+
+    private int pendingCount;
+
+    private String pendingLastText;
+
+    private boolean flushScheduled;
+
+    private long lastFlushMs = Long.MIN_VALUE / 2;
+
+    public MessageCoalescer(final ScheduledExecutorService scheduler, final long intervalMs,
+                            final Callback callback) {
+        this.scheduler = scheduler;
+        this.intervalMs = intervalMs;
+        this.callback = callback;
+    }
+
+    @Override
+    public void onMessages(final List<DataChannelMessage> messages) {
+        String lastText = null;
+        for (int i = messages.size() - 1; i >= 0 && lastText == null; i--) {
+            if (!messages.get(i).isBinary()) {
+                lastText = messages.get(i).getText();
+            }
+        }
+
+        synchronized (this) {
+            pendingCount += messages.size();
+            if (lastText != null) {
+                pendingLastText = lastText;
+            }
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+            final long sinceLastFlushMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()) - lastFlushMs;
+            scheduler.schedule(this::flush, Math.max(0, intervalMs - sinceLastFlushMs), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        final int count;
+        final String lastText;
+        synchronized (this) {
+            count = pendingCount;
+            lastText = pendingLastText;
+            pendingCount = 0;
+            pendingLastText = null;
+            flushScheduled = false;
+            lastFlushMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        }
+        if (count > 0) {
+            callback.onMessagesCoalesced(count, lastText);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import android.util.Log;
+
+import org.webrtc.DataChannel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbound messages for a data channel that may not be open, e.g. while the peer connection is
+ * being set up again.
+ * <p>
+ * Messages are held in memory up to a budget. Beyond it they go to an optional memory-mapped spill
+ * file, and once both are full new messages are rejected. While the channel is open the queue
+ * drains in order, paced by a token bucket and held back while the channel has too much buffered.
+ * Messages the sink took but could not deliver can be {@link #requeue requeued}. Messages in the
+ * spill file survive a restart of the app; those in memory do not.
+ */
+public class OfflineSendQueue implements Closeable {
+
+    private static final String TAG = "KVSOfflineSendQueue";
+
+    public static final long DEFAULT_MEMORY_BUDGET_BYTES = 1024 * 1024;
+
+    public static final long DEFAULT_DRAIN_BYTES_PER_SECOND = 1024 * 1024;
+
+    public static final long DEFAULT_MAX_BUFFERED_AMOUNT = 1024 * 1024;
+
+    private static final long DRAIN_INTERVAL_MS = 10;
+
+    /**
+     * Bytes that may be sent at once after the queue was idle, as time at the drain rate.
+     */
+    private static final long BURST_MS = 100;
+
+    /**
+     * Where drained messages go, usually a {@link DataChannelRegistry} channel.
+     */
+    public interface Sink {
+        /**
+         * @param data Only valid during the call.
+         * @return {@code false} if the message was not accepted; it is retried later.
+         */
+        boolean send(ByteBuffer data, boolean binary);
+
+        long getBufferedAmount();
+    }
+
+    private static final class Entry {
+        final ByteBuffer data;
+        final boolean binary;
+
+        Entry(final ByteBuffer data, final boolean binary) {
+            this.data = data;
+            this.binary = binary;
+        }
+    }
+
+    private final Sink sink;
+
+    private final ScheduledExecutorService executor;
+
+    private final long memoryBudgetBytes;
+
+    private final long drainBytesPerSecond;
+
+    private final long burstBytes;
+
+    private final long maxBufferedAmount;
+
+    private final SpillFile spillFile;
+
+    private final ArrayDeque<Entry> memory = new ArrayDeque<>();
+
+    /**
+     * Messages given back by {@link #requeue}, sent before everything else.
+     */
+    private final ArrayDeque<Entry> requeued = new ArrayDeque<>();
+
+    private long memoryBytes;
+
+    private long droppedMessages;
+
+    private long tokens;
+
+    private long lastRefillNs;
+
+    private boolean open;
+
+    private boolean closed;
+
+    private ScheduledFuture<?> drainTask;
+
+    private OfflineSendQueue(final Builder builder, final Sink sink, final ScheduledExecutorService executor) {
+        this.sink = sink;
+        this.executor = executor;
+        this.memoryBudgetBytes = builder.memoryBudgetBytes;
+        this.drainBytesPerSecond = builder.drainBytesPerSecond;
+        this.burstBytes = Math.max(1, drainBytesPerSecond * BURST_MS / 1000);
+        this.maxBufferedAmount = builder.maxBufferedAmount;
+        this.tokens = burstBytes;
+
+        SpillFile spill = null;
+        if (builder.spillFile != null) {
+            try {
+                spill = new SpillFile(builder.spillFile, builder.spillCapacityBytes, builder.spillSession);
+            } catch (final IOException e) {
+                Log.e(TAG, "Could not open spill file " + builder.spillFile + ", queueing in memory only", e);
+            }
+        }
+        this.spillFile = spill;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Queues a copy of the remaining bytes of {@code data}, sending right away if the channel is
+     * open and nothing is queued ahead of it.
+     *
+     * @return {@code false} if the queue is full or closed and the message was dropped.
+     */
+    public synchronized boolean offer(final ByteBuffer data, final boolean binary) {
+        if (closed) {
+            return false;
+        }
+        final int length = data.remaining();
+        final boolean spilling = spillFile != null && !spillFile.isEmpty();
+        if (!spilling && memoryBytes + length <= memoryBudgetBytes) {
+            final ByteBuffer copy = ByteBuffer.allocate(length);
+            copy.put(data.duplicate());
+            copy.flip();
+            memory.addLast(new Entry(copy, binary));
+            memoryBytes += length;
+        } else if (spillFile == null || !spillFile.append(data, binary)) {
+            droppedMessages++;
+            return false;
+        }
+        drain();
+        return true;
+    }
+
+    /**
+     * Takes back a message the sink accepted but could not deliver, e.g. because the channel closed
+     * before it went out. Requeued messages are sent again before all others, in the order they were
+     * requeued. They count against the memory budget but are never rejected.
+     */
+    public synchronized void requeue(final ByteBuffer data, final boolean binary) {
+        if (closed) {
+            droppedMessages++;
+            return;
+        }
+        final int length = data.remaining();
+        final ByteBuffer copy = ByteBuffer.allocate(length);
+        copy.put(data.duplicate());
+        copy.flip();
+        requeued.addLast(new Entry(copy, binary));
+        memoryBytes += length;
+        drain();
+    }
+
+    /**
+     * Call with the channel's state. Draining runs while it is {@link DataChannel.State#OPEN}.
+     */
+    public synchronized void onStateChange(final DataChannel.State state) {
+        final boolean wasOpen = open;
+        open = state == DataChannel.State.OPEN;
+        if (open && !wasOpen) {
+            lastRefillNs = System.nanoTime();
+        }
+        drain();
+    }
+
+    public synchronized int size() {
+        return requeued.size() + memory.size() + (spillFile != null ? spillFile.size() : 0);
+    }
+
+    public synchronized long getQueuedBytes() {
+        return memoryBytes + (spillFile != null ? spillFile.getUsedBytes() : 0);
+    }
+
+    /**
+     * @return Messages in the spill file, including those recovered from a previous session.
+     */
+    public synchronized int getSpilledMessages() {
+        return spillFile != null ? spillFile.size() : 0;
+    }
+
+    public synchronized long getDroppedMessages() {
+        return droppedMessages;
+    }
+
+    /**
+     * Stops draining. Messages in the spill file are kept for the next queue on the same file.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        cancelDrainTask();
+        if (spillFile != null) {
+            try {
+                spillFile.close();
+            } catch (final IOException e) {
+                Log.w(TAG, "Could not close spill file", e);
+            }
+        }
+    }
+
+    private void drain() {
+        if (closed || !open) {
+            cancelDrainTask();
+            return;
+        }
+        final long nowNs = System.nanoTime();
+        final long elapsedNs = Math.min(nowNs - lastRefillNs, TimeUnit.SECONDS.toNanos(1));
+        tokens = Math.min(burstBytes, tokens + elapsedNs * drainBytesPerSecond / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNs = nowNs;
+
+        while (tokens > 0 && sink.getBufferedAmount() < maxBufferedAmount) {
+            final int length;
+            if (!requeued.isEmpty() || !memory.isEmpty()) {
+                final ArrayDeque<Entry> queue = !requeued.isEmpty() ? requeued : memory;
+                final Entry entry = queue.peekFirst();
+                length = entry.data.remaining();
+                if (!sink.send(entry.data.duplicate(), entry.binary)) {
+                    break;
+                }
+                queue.pollFirst();
+                memoryBytes -= length;
+            } else if (spillFile != null && !spillFile.isEmpty()) {
+                length = spillFile.peekLength();
+                if (!sink.send(spillFile.peek(), spillFile.isPeekBinary())) {
+                    break;
+                }
+                spillFile.remove();
+            } else {
+                break;
+            }
+            // May go below zero for a message larger than the burst; the debt is paid off over time
+            tokens -= length;
+        }
+
+        if (size() == 0) {
+            cancelDrainTask();
+        } else if (drainTask == null) {
+            drainTask = executor.scheduleAtFixedRate(this::drainLocked, DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void drainLocked() {
+        drain();
+    }
+
+    private void cancelDrainTask() {
+        if (drainTask != null) {
+            drainTask.cancel(false);
+            drainTask = null;
+        }
+    }
+
+    public static final class Builder {
+        private long memoryBudgetBytes = DEFAULT_MEMORY_BUDGET_BYTES;
+
+        private File spillFile;
+
+        private int spillCapacityBytes;
+
+        private long spillSession;
+
+        private long drainBytesPerSecond = DEFAULT_DRAIN_BYTES_PER_SECOND;
+
+        private long maxBufferedAmount = DEFAULT_MAX_BUFFERED_AMOUNT;
+
+        private Builder() {
+        }
+
+        public Builder setMemoryBudgetBytes(final long memoryBudgetBytes) {
+            this.memoryBudgetBytes = memoryBudgetBytes;
+            return this;
+        }
+
+        /**
+         * Spills messages beyond the memory budget to {@code file}, which is mapped at
+         * {@code capacityBytes}. Messages spilled by a queue of another {@code session} are
+         * discarded rather than sent to this queue's peer.
+         */
+        public Builder setSpillFile(final File file, final int capacityBytes, final long session) {
+            this.spillFile = file;
+            this.spillCapacityBytes = capacityBytes;
+            this.spillSession = session;
+            return this;
+        }
+
+        public Builder setDrainBytesPerSecond(final long drainBytesPerSecond) {
+            this.drainBytesPerSecond = drainBytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Draining pauses while the sink has this many bytes or more buffered.
+         */
+        public Builder setMaxBufferedAmount(final long maxBufferedAmount) {
+            this.maxBufferedAmount = maxBufferedAmount;
+            return this;
+        }
+
+        /**
+         * @param executor Runs the paced drain.
+         * @throws IllegalArgumentException if a limit is not positive.
+         */
+        public OfflineSendQueue build(final Sink sink, final ScheduledExecutorService executor) {
+            if (memoryBudgetBytes < 0 || drainBytesPerSecond <= 0 || maxBufferedAmount <= 0) {
+                throw new IllegalArgumentException("Invalid offline send queue configuration");
+            }
+            if (spillFile != null && spillCapacityBytes <= 0) {
+                throw new IllegalArgumentException("Spill file capacity must be positive");
+            }
+            return new OfflineSendQueue(this, sink, executor);
+        }
+    }
+}
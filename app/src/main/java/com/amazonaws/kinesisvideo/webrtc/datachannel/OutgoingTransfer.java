@@ -0,0 +1,299 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.webrtc.DataChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sending side of a transfer. Everything but the observer callbacks runs on the service executor.
+ * <p>
+ * The observer stays registered after the transfer ended, and the channel is disposed once it
+ * reports CLOSED, its last callback. Disposing it any earlier would free it under callbacks that
+ * libwebrtc already dispatched.
+ */
+class OutgoingTransfer implements DataChannel.Observer {
+
+    private static final String TAG = "KVSOutgoingTransfer";
+
+    private static final int HASH_BUFFER_SIZE = 1024 * 1024;
+
+    private enum State {
+        PREPARING, PREPARED, OFFERED, SENDING, AWAITING_COMPLETE, DONE
+    }
+
+    private final String label;
+
+    private final DataChannel channel;
+
+    private final TransferSource source;
+
+    private final String name;
+
+    private final TransferOptions options;
+
+    private final Executor executor;
+
+    private final DataChannelTransferService.Listener listener;
+
+    private final Runnable onFinished;
+
+    private final AtomicBoolean pumpScheduled = new AtomicBoolean();
+
+    private final ByteBuffer frameBuffer;
+
+    private State state = State.PREPARING;
+
+    private long size;
+
+    private byte[] digest;
+
+    private long nextOffset;
+
+    private long bytesSent;
+
+    private long startMs;
+
+    private long lastProgressMs;
+
+    OutgoingTransfer(final String label, final DataChannel channel, final TransferSource source, final String name,
+                     final TransferOptions options, final Executor executor,
+                     final DataChannelTransferService.Listener listener, final Runnable onFinished) {
+        this.label = label;
+        this.channel = channel;
+        this.source = source;
+        this.name = name;
+        this.options = options;
+        this.executor = executor;
+        this.listener = listener;
+        this.onFinished = onFinished;
+        this.frameBuffer = ByteBuffer.allocate(TransferFrame.CHUNK_HEADER_LENGTH + options.getChunkSize());
+    }
+
+    void start() {
+        channel.registerObserver(this);
+        executor.execute(this::prepare);
+    }
+
+    void cancel() {
+        executor.execute(() -> {
+            if (state != State.DONE) {
+                channel.send(new DataChannel.Buffer(TransferFrame.cancel(), true));
+                fail("Cancelled");
+            }
+        });
+    }
+
+    @Override
+    public void onBufferedAmountChange(final long previousAmount) {
+        if (channel.bufferedAmount() <= options.getLowWatermark()) {
+            schedulePump();
+        }
+    }
+
+    @Override
+    public void onStateChange() {
+        final DataChannel.State channelState = channel.state();
+        executor.execute(() -> {
+            if (channelState == DataChannel.State.OPEN && state == State.PREPARED) {
+                sendOffer();
+            } else if (channelState == DataChannel.State.CLOSED) {
+                if (state != State.DONE) {
+                    fail("Data channel closed");
+                }
+                channel.dispose();
+            }
+        });
+    }
+
+    @Override
+    public void onMessage(final DataChannel.Buffer buffer) {
+        final TransferFrame frame;
+        try {
+            frame = TransferFrame.decode(buffer.data);
+        } catch (final IllegalArgumentException e) {
+            executor.execute(() -> fail("Malformed frame from receiver: " + e.getMessage()));
+            return;
+        }
+        // Frames from the receiver are control frames and do not reference the callback's buffer
+        executor.execute(() -> handle(frame));
+    }
+
+    private void prepare() {
+        try {
+            size = source.size();
+            digest = sha256();
+        } catch (final IOException e) {
+            fail("Could not read the payload: " + e.getMessage());
+            return;
+        }
+        state = State.PREPARED;
+        if (channel.state() == DataChannel.State.OPEN) {
+            sendOffer();
+        }
+    }
+
+    private byte[] sha256() throws IOException {
+        final MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        long offset = 0;
+        int read;
+        while ((read = source.read(offset, buffer)) > 0) {
+            buffer.flip();
+            sha256.update(buffer);
+            buffer.clear();
+            offset += read;
+        }
+        return sha256.digest();
+    }
+
+    private void sendOffer() {
+        if (!channel.send(new DataChannel.Buffer(TransferFrame.offer(size, options.getChunkSize(), digest, name), true))) {
+            fail("Could not send the offer");
+            return;
+        }
+        state = State.OFFERED;
+        Log.d(TAG, "Offered " + name + " (" + size + " bytes) on " + label + " with " + options);
+    }
+
+    private void handle(final TransferFrame frame) {
+        if (state == State.DONE) {
+            return;
+        }
+        switch (frame.type) {
+            case TransferFrame.TYPE_RESUME:
+                if (frame.offset < 0 || frame.offset > size) {
+                    fail("Receiver asked for offset " + frame.offset + " of " + size);
+                    return;
+                }
+                if (state == State.OFFERED) {
+                    if (frame.offset > 0) {
+                        Log.i(TAG, "Resuming " + name + " at " + frame.offset + " of " + size);
+                    }
+                    nextOffset = frame.offset;
+                    startMs = SystemClock.elapsedRealtime();
+                } else {
+                    // A chunk arrived damaged, send again from there
+                    nextOffset = Math.min(nextOffset, frame.offset);
+                }
+                state = State.SENDING;
+                pump();
+                break;
+            case TransferFrame.TYPE_COMPLETE:
+                if (frame.verified) {
+                    finish();
+                } else {
+                    fail("Receiver rejected the payload checksum");
+                }
+                break;
+            case TransferFrame.TYPE_CANCEL:
+                fail("Cancelled by receiver");
+                break;
+            default:
+                fail("Unexpected frame type " + frame.type + " from receiver");
+                break;
+        }
+    }
+
+    private void schedulePump() {
+        if (pumpScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                pumpScheduled.set(false);
+                if (state == State.SENDING) {
+                    pump();
+                }
+            });
+        }
+    }
+
+    private void pump() {
+        try {
+            while (nextOffset < size) {
+                if (channel.bufferedAmount() >= options.getHighWatermark()) {
+                    // onBufferedAmountChange resumes once the channel drained to the low watermark
+                    return;
+                }
+                frameBuffer.clear();
+                frameBuffer.position(TransferFrame.CHUNK_HEADER_LENGTH);
+                frameBuffer.limit(TransferFrame.CHUNK_HEADER_LENGTH
+                        + (int) Math.min(options.getChunkSize(), size - nextOffset));
+                final int read = source.read(nextOffset, frameBuffer);
+                if (read <= 0) {
+                    fail("Payload ended at " + nextOffset + " of " + size + " bytes");
+                    return;
+                }
+                frameBuffer.limit(frameBuffer.position());
+                TransferFrame.chunk(frameBuffer, nextOffset);
+                if (!channel.send(new DataChannel.Buffer(frameBuffer, true))) {
+                    fail("Data channel refused chunk at " + nextOffset);
+                    return;
+                }
+                nextOffset += read;
+                bytesSent += read;
+                reportProgress(false);
+            }
+        } catch (final IOException e) {
+            fail("Could not read the payload: " + e.getMessage());
+            return;
+        }
+        state = State.AWAITING_COMPLETE;
+        reportProgress(true);
+    }
+
+    private void reportProgress(final boolean force) {
+        final long nowMs = SystemClock.elapsedRealtime();
+        if (listener != null && (force || nowMs - lastProgressMs >= DataChannelTransferService.PROGRESS_INTERVAL_MS)) {
+            lastProgressMs = nowMs;
+            listener.onTransferProgress(stats());
+        }
+    }
+
+    private TransferStats stats() {
+        return new TransferStats(label, name, true, bytesSent, size,
+                startMs > 0 ? SystemClock.elapsedRealtime() - startMs : 0);
+    }
+
+    private void finish() {
+        final TransferStats stats = stats();
+        close();
+        Log.i(TAG, "Sent " + stats);
+        if (listener != null) {
+            listener.onTransferCompleted(stats, null);
+        }
+    }
+
+    private void fail(final String reason) {
+        if (state == State.DONE) {
+            return;
+        }
+        final TransferStats stats = stats();
+        close();
+        Log.w(TAG, "Transfer " + label + " failed: " + reason);
+        if (listener != null) {
+            listener.onTransferFailed(stats, reason);
+        }
+    }
+
+    private void close() {
+        state = State.DONE;
+        channel.close();
+        try {
+            source.close();
+        } catch (final IOException e) {
+            Log.w(TAG, "Failed to close transfer source", e);
+        }
+        onFinished.run();
+    }
+}
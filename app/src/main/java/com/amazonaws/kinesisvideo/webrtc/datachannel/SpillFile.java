@@ -0,0 +1,224 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A FIFO of messages in a memory-mapped file of fixed size.
+ * <p>
+ * The file starts with a header holding the session the records belong to and the offsets of the
+ * first and past the last record; each record is its length, a binary flag and the data. The
+ * records form a ring: one that does not fit before the end of the file starts over behind the
+ * header, after a wrap marker. Records are only ever written to free space, and each change is
+ * then committed by rewriting a single offset, so the queue survives the process being killed at
+ * any point. The offsets are reset to the start once the queue drained, leaving the whole file
+ * to the next record.
+ */
+final class SpillFile implements Closeable {
+
+    private static final int MAGIC = 0x4B565352;
+
+    private static final int HEADER_LENGTH = 24;
+
+    /**
+     * Followed by the tail, so that both can be reset with one aligned write.
+     */
+    private static final int HEAD_OFFSET = 8;
+
+    private static final int TAIL_OFFSET = 12;
+
+    private static final int SESSION_OFFSET = 16;
+
+    /**
+     * Record length marking that the next record starts behind the header.
+     */
+    private static final int WRAP = -1;
+
+    static final int RECORD_HEADER_LENGTH = Integer.BYTES + 1;
+
+    private final RandomAccessFile file;
+
+    private final MappedByteBuffer map;
+
+    /**
+     * Reused to hand out the head record without copying.
+     */
+    private final ByteBuffer view;
+
+    private final int capacity;
+
+    /**
+     * Equal to {@link #tail} when the queue is empty, kept apart by at least one byte otherwise.
+     */
+    private int head;
+
+    private int tail;
+
+    private int count;
+
+    /**
+     * Opens {@code path}, keeping the records of a previous session if it holds a valid queue of
+     * the same {@code session}. Records of other sessions are discarded.
+     */
+    SpillFile(final File path, final int capacity, final long session) throws IOException {
+        if (capacity <= HEADER_LENGTH + RECORD_HEADER_LENGTH) {
+            throw new IllegalArgumentException("Spill file capacity too small: " + capacity);
+        }
+        this.capacity = capacity;
+        this.file = new RandomAccessFile(path, "rw");
+        try {
+            this.map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (final IOException e) {
+            file.close();
+            throw e;
+        }
+        this.view = map.duplicate();
+
+        head = map.getInt(HEAD_OFFSET);
+        tail = map.getInt(TAIL_OFFSET);
+        count = map.getInt(0) == MAGIC && map.getLong(SESSION_OFFSET) == session ? countRecords() : -1;
+        if (count < 0) {
+            map.putInt(0, MAGIC);
+            map.putLong(SESSION_OFFSET, session);
+            reset();
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return Bytes taken by queued records, including space skipped at a wrap.
+     */
+    int getUsedBytes() {
+        return tail >= head ? tail - head : capacity - head + tail - HEADER_LENGTH;
+    }
+
+    /**
+     * Appends the remaining bytes of {@code data} without moving its position.
+     *
+     * @return {@code false} if the file has no room for it.
+     */
+    boolean append(final ByteBuffer data, final boolean binary) {
+        final int recordLength = RECORD_HEADER_LENGTH + data.remaining();
+        final int start;
+        if (tail >= head && capacity - tail >= recordLength) {
+            start = tail;
+        } else if (tail >= head && head - HEADER_LENGTH > recordLength) {
+            if (capacity - tail >= Integer.BYTES) {
+                map.putInt(tail, WRAP);
+            }
+            start = HEADER_LENGTH;
+        } else if (tail < head && head - tail > recordLength) {
+            start = tail;
+        } else {
+            return false;
+        }
+        map.putInt(start, data.remaining());
+        map.put(start + Integer.BYTES, binary ? (byte) 1 : (byte) 0);
+        int offset = start + RECORD_HEADER_LENGTH;
+        for (int i = data.position(); i < data.limit(); i++) {
+            map.put(offset++, data.get(i));
+        }
+        // The record is complete before the tail covers it
+        tail = start + recordLength;
+        map.putInt(TAIL_OFFSET, tail);
+        count++;
+        return true;
+    }
+
+    /**
+     * @return The data of the first record, valid until the next call on this file.
+     */
+    ByteBuffer peek() {
+        final int start = firstRecord();
+        final int length = map.getInt(start);
+        view.limit(start + RECORD_HEADER_LENGTH + length);
+        view.position(start + RECORD_HEADER_LENGTH);
+        return view;
+    }
+
+    boolean isPeekBinary() {
+        return map.get(firstRecord() + Integer.BYTES) != 0;
+    }
+
+    int peekLength() {
+        return map.getInt(firstRecord());
+    }
+
+    void remove() {
+        if (--count == 0) {
+            reset();
+            return;
+        }
+        final int start = firstRecord();
+        head = start + RECORD_HEADER_LENGTH + map.getInt(start);
+        map.putInt(HEAD_OFFSET, head);
+    }
+
+    @Override
+    public void close() throws IOException {
+        map.force();
+        file.close();
+    }
+
+    private void reset() {
+        head = HEADER_LENGTH;
+        tail = HEADER_LENGTH;
+        count = 0;
+        map.putLong(HEAD_OFFSET, (long) HEADER_LENGTH << Integer.SIZE | HEADER_LENGTH);
+    }
+
+    /**
+     * @return Where the record at {@link #head} starts, behind the header if it wrapped.
+     */
+    private int firstRecord() {
+        return wrapsAt(head) ? HEADER_LENGTH : head;
+    }
+
+    private boolean wrapsAt(final int position) {
+        return capacity - position < RECORD_HEADER_LENGTH || map.getInt(position) == WRAP;
+    }
+
+    /**
+     * @return The number of records between head and tail, -1 if they do not chain up.
+     */
+    private int countRecords() {
+        if (head < HEADER_LENGTH || head > capacity || tail < HEADER_LENGTH || tail > capacity) {
+            return -1;
+        }
+        int records = 0;
+        int position = head;
+        boolean wrapped = false;
+        while (position != tail) {
+            if (wrapsAt(position)) {
+                if (wrapped) {
+                    return -1;
+                }
+                wrapped = true;
+                position = HEADER_LENGTH;
+                continue;
+            }
+            final int length = map.getInt(position);
+            if (length < 0 || length > capacity - position - RECORD_HEADER_LENGTH) {
+                return -1;
+            }
+            position += RECORD_HEADER_LENGTH + length;
+            records++;
+            if (wrapped && position > head) {
+                return -1;
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,192 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Binary frames of the chunked transfer protocol.
+ * <p>
+ * Every transfer runs on its own data channel, so frames carry no transfer id. All numbers are
+ * big-endian.
+ * <pre>
+ * OFFER    type(1) version(1) totalSize(8) chunkSize(4) sha256(32) nameLength(2) name(UTF-8)
+ * CHUNK    type(1) offset(8) crc32(4) payload
+ * RESUME   type(1) offset(8)
+ * COMPLETE type(1) verified(1)
+ * CANCEL   type(1)
+ * </pre>
+ * The sender offers the transfer, the receiver answers RESUME with the offset it wants the chunks
+ * from. The receiver also sends RESUME when a chunk fails its CRC, and COMPLETE once every chunk
+ * arrived and the SHA-256 of the whole payload was checked.
+ */
+final class TransferFrame {
+
+    static final byte TYPE_OFFER = 1;
+
+    static final byte TYPE_CHUNK = 2;
+
+    static final byte TYPE_RESUME = 3;
+
+    static final byte TYPE_COMPLETE = 4;
+
+    static final byte TYPE_CANCEL = 5;
+
+    static final byte VERSION = 1;
+
+    static final int DIGEST_LENGTH = 32;
+
+    static final int CHUNK_HEADER_LENGTH = 1 + 8 + 4;
+
+    private static final int MAX_NAME_LENGTH = 1024;
+
+    final byte type;
+
+    final long offset;
+
+    final long totalSize;
+
+    final int chunkSize;
+
+    final byte[] digest;
+
+    final String name;
+
+    final int crc;
+
+    final boolean verified;
+
+    /**
+     * Chunk data. Only valid while the buffer the frame was decoded from is.
+     */
+    final ByteBuffer payload;
+
+    private TransferFrame(final byte type, final long offset, final long totalSize, final int chunkSize,
+                          final byte[] digest, final String name, final int crc, final boolean verified,
+                          final ByteBuffer payload) {
+        this.type = type;
+        this.offset = offset;
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.digest = digest;
+        this.name = name;
+        this.crc = crc;
+        this.verified = verified;
+        this.payload = payload;
+    }
+
+    static ByteBuffer offer(final long totalSize, final int chunkSize, final byte[] digest, final String name) {
+        if (digest.length != DIGEST_LENGTH) {
+            throw new IllegalArgumentException("Expected a SHA-256 digest, got " + digest.length + " bytes");
+        }
+        final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Transfer name is longer than " + MAX_NAME_LENGTH + " bytes");
+        }
+        final ByteBuffer frame = ByteBuffer.allocate(1 + 1 + 8 + 4 + DIGEST_LENGTH + 2 + nameBytes.length);
+        frame.put(TYPE_OFFER)
+                .put(VERSION)
+                .putLong(totalSize)
+                .putInt(chunkSize)
+                .put(digest)
+                .putShort((short) nameBytes.length)
+                .put(nameBytes);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Writes a chunk frame into {@code frame}, whose position must be at
+     * {@link #CHUNK_HEADER_LENGTH} with the payload between there and its limit.
+     */
+    static void chunk(final ByteBuffer frame, final long offset) {
+        final ByteBuffer payload = frame.duplicate();
+        payload.position(CHUNK_HEADER_LENGTH);
+        frame.put(0, TYPE_CHUNK)
+                .putLong(1, offset)
+                .putInt(9, crc(payload));
+        frame.position(0);
+    }
+
+    static ByteBuffer resume(final long offset) {
+        final ByteBuffer frame = ByteBuffer.allocate(1 + 8);
+        frame.put(TYPE_RESUME).putLong(offset);
+        frame.flip();
+        return frame;
+    }
+
+    static ByteBuffer complete(final boolean verified) {
+        final ByteBuffer frame = ByteBuffer.allocate(2);
+        frame.put(TYPE_COMPLETE).put((byte) (verified ? 1 : 0));
+        frame.flip();
+        return frame;
+    }
+
+    static ByteBuffer cancel() {
+        final ByteBuffer frame = ByteBuffer.allocate(1);
+        frame.put(TYPE_CANCEL);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame is malformed.
+     */
+    static TransferFrame decode(final ByteBuffer buffer) {
+        final ByteBuffer frame = buffer.slice();
+        if (!frame.hasRemaining()) {
+            throw new IllegalArgumentException("Empty frame");
+        }
+        try {
+            final byte type = frame.get();
+            switch (type) {
+                case TYPE_OFFER: {
+                    final byte version = frame.get();
+                    if (version != VERSION) {
+                        throw new IllegalArgumentException("Unsupported transfer protocol version " + version);
+                    }
+                    final long totalSize = frame.getLong();
+                    final int chunkSize = frame.getInt();
+                    final byte[] digest = new byte[DIGEST_LENGTH];
+                    frame.get(digest);
+                    final byte[] nameBytes = new byte[frame.getShort() & 0xffff];
+                    frame.get(nameBytes);
+                    if (totalSize < 0 || chunkSize <= 0) {
+                        throw new IllegalArgumentException("Invalid offer: size " + totalSize + ", chunk size " + chunkSize);
+                    }
+                    return new TransferFrame(type, 0, totalSize, chunkSize, digest,
+                            new String(nameBytes, StandardCharsets.UTF_8), 0, false, null);
+                }
+                case TYPE_CHUNK: {
+                    final long offset = frame.getLong();
+                    final int crc = frame.getInt();
+                    return new TransferFrame(type, offset, 0, 0, null, null, crc, false, frame.slice());
+                }
+                case TYPE_RESUME:
+                    return new TransferFrame(type, frame.getLong(), 0, 0, null, null, 0, false, null);
+                case TYPE_COMPLETE:
+                    return new TransferFrame(type, 0, 0, 0, null, null, 0, frame.get() != 0, null);
+                case TYPE_CANCEL:
+                    return new TransferFrame(type, 0, 0, 0, null, null, 0, false, null);
+                default:
+                    throw new IllegalArgumentException("Unknown frame type " + type);
+            }
+        } catch (final BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated frame", e);
+        }
+    }
+
+    /**
+     * @return {@code true} if the chunk payload matches its CRC.
+     */
+    boolean isIntact() {
+        return type == TYPE_CHUNK && crc(payload.duplicate()) == crc;
+    }
+
+    private static int crc(final ByteBuffer data) {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(data);
+        return (int) crc32.getValue();
+    }
+}
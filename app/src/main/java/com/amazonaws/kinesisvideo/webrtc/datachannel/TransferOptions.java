@@ -0,0 +1,77 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+/**
+ * How a single transfer is sent.
+ */
+public class TransferOptions {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * libwebrtc closes a data channel whose send buffer exceeds 16 MiB, stay well below it.
+     */
+    public static final long DEFAULT_HIGH_WATERMARK = 4 * 1024 * 1024;
+
+    public static final long DEFAULT_LOW_WATERMARK = 1024 * 1024;
+
+    private static final int MAX_CHUNK_SIZE = 256 * 1024 - TransferFrame.CHUNK_HEADER_LENGTH;
+
+    private final boolean ordered;
+
+    private final int chunkSize;
+
+    private final long highWatermark;
+
+    private final long lowWatermark;
+
+    /**
+     * @param ordered       {@code false} lets chunks arrive out of order, which keeps a lost packet
+     *                      from stalling the chunks behind it. Delivery is reliable either way.
+     * @param chunkSize     Payload bytes per frame.
+     * @param highWatermark Sending pauses while the channel buffers this many bytes or more.
+     * @param lowWatermark  Sending resumes once the buffered amount dropped to this.
+     */
+    public TransferOptions(final boolean ordered, final int chunkSize, final long highWatermark,
+                           final long lowWatermark) {
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+        if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+            throw new IllegalArgumentException("High watermark must be above the low watermark");
+        }
+        this.ordered = ordered;
+        this.chunkSize = chunkSize;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+    }
+
+    public static TransferOptions ordered() {
+        return new TransferOptions(true, DEFAULT_CHUNK_SIZE, DEFAULT_HIGH_WATERMARK, DEFAULT_LOW_WATERMARK);
+    }
+
+    public static TransferOptions unordered() {
+        return new TransferOptions(false, DEFAULT_CHUNK_SIZE, DEFAULT_HIGH_WATERMARK, DEFAULT_LOW_WATERMARK);
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public long getHighWatermark() {
+        return highWatermark;
+    }
+
+    public long getLowWatermark() {
+        return lowWatermark;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferOptions(ordered=" + ordered + ", chunkSize=" + chunkSize
+                + ", highWatermark=" + highWatermark + ", lowWatermark=" + lowWatermark + ")";
+    }
+}
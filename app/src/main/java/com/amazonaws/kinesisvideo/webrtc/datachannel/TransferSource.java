@@ -0,0 +1,22 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Random access to the payload of an outgoing transfer. Reads happen on the transfer executor.
+ */
+public interface TransferSource {
+
+    long size() throws IOException;
+
+    /**
+     * Reads bytes starting at {@code offset} into {@code destination} until it is full or the
+     * payload ends.
+     *
+     * @return Number of bytes read, -1 at the end of the payload.
+     */
+    int read(long offset, ByteBuffer destination) throws IOException;
+
+    void close() throws IOException;
+}
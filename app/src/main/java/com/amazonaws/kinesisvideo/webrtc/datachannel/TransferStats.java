@@ -0,0 +1,74 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+/**
+ * Progress of a transfer at one point in time.
+ */
+public class TransferStats {
+
+    private final String label;
+
+    private final String name;
+
+    private final boolean outgoing;
+
+    private final long bytesTransferred;
+
+    private final long totalBytes;
+
+    private final long elapsedMs;
+
+    TransferStats(final String label, final String name, final boolean outgoing, final long bytesTransferred,
+                  final long totalBytes, final long elapsedMs) {
+        this.label = label;
+        this.name = name;
+        this.outgoing = outgoing;
+        this.bytesTransferred = bytesTransferred;
+        this.totalBytes = totalBytes;
+        this.elapsedMs = elapsedMs;
+    }
+
+    /**
+     * @return Label of the data channel carrying the transfer, which identifies it on both peers.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isOutgoing() {
+        return outgoing;
+    }
+
+    /**
+     * @return Bytes moved in this session. A resumed transfer does not count the bytes it skipped.
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    /**
+     * @return Throughput in bytes per second, 0 before any time passed.
+     */
+    public double getThroughputBytesPerSecond() {
+        return elapsedMs > 0 ? bytesTransferred * 1000.0 / elapsedMs : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferStats(label=" + label + ", name=" + name + ", outgoing=" + outgoing
+                + ", bytesTransferred=" + bytesTransferred + ", totalBytes=" + totalBytes
+                + ", elapsedMs=" + elapsedMs
+                + ", throughputMBps=" + String.format("%.2f", getThroughputBytesPerSecond() / (1024 * 1024)) + ")";
+    }
+}
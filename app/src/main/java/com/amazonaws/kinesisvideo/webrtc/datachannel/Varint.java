@@ -0,0 +1,61 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base 128 varints, least significant group first, as used by protocol buffers.
+ */
+final class Varint {
+
+    static final int MAX_LENGTH = 10;
+
+    private Varint() {
+    }
+
+    static int size(final long value) {
+        int size = 1;
+        long remaining = value >>> 7;
+        while (remaining != 0) {
+            size++;
+            remaining >>>= 7;
+        }
+        return size;
+    }
+
+    static void put(final ByteBuffer buffer, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    /**
+     * Reads a varint that must end before {@code limit}.
+     *
+     * @throws IllegalArgumentException if it does not, or is longer than {@link #MAX_LENGTH} bytes.
+     */
+    static long get(final ByteBuffer buffer, final int limit) {
+        long value = 0;
+        for (int shift = 0; shift < 7 * MAX_LENGTH; shift += 7) {
+            if (buffer.position() >= limit) {
+                throw new IllegalArgumentException("Truncated varint");
+            }
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
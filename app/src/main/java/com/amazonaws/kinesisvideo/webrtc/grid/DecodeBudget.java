@@ -0,0 +1,159 @@
+package com.amazonaws.kinesisvideo.webrtc.grid;
+
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which tiles of a {@link ViewerGrid} are connected, and how they are rendered, so the
+ * feeds decoded at once stay within a budget of decoded pixels per second.
+ * <p>
+ * Decoding cannot be thinned out on the viewer, every frame of a feed received is decoded, so the
+ * budget is kept by not receiving feeds at all:
+ * <ul>
+ *     <li>Tiles off screen for {@link #DEFAULT_PARK_AFTER_MS} are parked, i.e. disconnected. Until
+ *     then they stay connected but are not rendered, so scrolling past does not reconnect them.</li>
+ *     <li>The other tiles are admitted while their decode cost fits the budget, visible ones before
+ *     off-screen ones and larger ones first; the rest is parked. The largest visible tile is always
+ *     admitted. A parked tile must fit with {@link #ADMISSION_HEADROOM} to spare, so a tile on the
+ *     edge of the budget does not flap as the measured costs vary.</li>
+ *     <li>Visible tiles smaller than {@link #DEFAULT_SMALL_TILE_AREA_PX} are rendered at
+ *     {@link #REDUCED_FPS}: they are scaled down by the GPU anyway, and too small for the motion to show.</li>
+ * </ul>
+ * A tile's cost is its measured decoded pixels per second, or {@link #DEFAULT_TILE_COST} before it
+ * was measured. Not thread safe.
+ */
+public class DecodeBudget {
+
+    /**
+     * About four 720p feeds at 30 fps, which mid-range phones decode in hardware.
+     */
+    public static final long DEFAULT_BUDGET_PIXELS_PER_SECOND = 4L * 1280 * 720 * 30;
+
+    public static final long DEFAULT_TILE_COST = 1280L * 720 * 30;
+
+    public static final long DEFAULT_SMALL_TILE_AREA_PX = 320L * 240;
+
+    public static final long DEFAULT_PARK_AFTER_MS = 5000;
+
+    public static final float REDUCED_FPS = 15;
+
+    static final double ADMISSION_HEADROOM = 0.1;
+
+    public enum Mode {
+        /** Connected and rendered at the feed's frame rate. */
+        FULL,
+        /** Connected and rendered at {@link #REDUCED_FPS}. */
+        REDUCED,
+        /** Connected but not rendered. */
+        PAUSED,
+        /** Not connected. */
+        PARKED
+    }
+
+    /**
+     * What the budget is planned from for one tile.
+     */
+    public static final class Tile {
+        private final SignalingChannelKey key;
+
+        private final boolean visible;
+
+        private final long areaPx;
+
+        private final long offScreenMs;
+
+        private final boolean connected;
+
+        private final long decodedPixelsPerSecond;
+
+        /**
+         * @param areaPx                 Size of the tile on screen.
+         * @param offScreenMs            How long the tile has not been visible, 0 if it is.
+         * @param decodedPixelsPerSecond Measured while connected, 0 if unknown.
+         */
+        public Tile(final SignalingChannelKey key, final boolean visible, final long areaPx, final long offScreenMs,
+                    final boolean connected, final long decodedPixelsPerSecond) {
+            this.key = key;
+            this.visible = visible;
+            this.areaPx = areaPx;
+            this.offScreenMs = offScreenMs;
+            this.connected = connected;
+            this.decodedPixelsPerSecond = decodedPixelsPerSecond;
+        }
+
+        public SignalingChannelKey getKey() {
+            return key;
+        }
+    }
+
+    private final long budgetPixelsPerSecond;
+
+    private final long defaultTileCost;
+
+    private final long smallTileAreaPx;
+
+    private final long parkAfterMs;
+
+    public DecodeBudget() {
+        this(DEFAULT_BUDGET_PIXELS_PER_SECOND, DEFAULT_TILE_COST, DEFAULT_SMALL_TILE_AREA_PX, DEFAULT_PARK_AFTER_MS);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the budget or the default cost is not positive.
+     */
+    public DecodeBudget(final long budgetPixelsPerSecond, final long defaultTileCost, final long smallTileAreaPx,
+                        final long parkAfterMs) {
+        if (budgetPixelsPerSecond <= 0 || defaultTileCost <= 0 || smallTileAreaPx < 0 || parkAfterMs < 0) {
+            throw new IllegalArgumentException("Invalid decode budget configuration");
+        }
+        this.budgetPixelsPerSecond = budgetPixelsPerSecond;
+        this.defaultTileCost = defaultTileCost;
+        this.smallTileAreaPx = smallTileAreaPx;
+        this.parkAfterMs = parkAfterMs;
+    }
+
+    public long getBudgetPixelsPerSecond() {
+        return budgetPixelsPerSecond;
+    }
+
+    /**
+     * @return The mode of each tile, in the order given.
+     */
+    public Map<SignalingChannelKey, Mode> plan(final List<Tile> tiles) {
+        final Map<SignalingChannelKey, Mode> modes = new LinkedHashMap<>();
+        final List<Tile> candidates = new ArrayList<>();
+        for (final Tile tile : tiles) {
+            modes.put(tile.key, Mode.PARKED);
+            if (tile.visible || tile.offScreenMs < parkAfterMs) {
+                candidates.add(tile);
+            }
+        }
+        // Stable, so tiles alike keep the order given
+        candidates.sort(Comparator.comparing((Tile tile) -> !tile.visible)
+                .thenComparing(tile -> -tile.areaPx));
+
+        long spent = 0;
+        for (final Tile tile : candidates) {
+            final long cost = tile.decodedPixelsPerSecond > 0 ? tile.decodedPixelsPerSecond : defaultTileCost;
+            final long available = tile.connected
+                    ? budgetPixelsPerSecond : (long) (budgetPixelsPerSecond * (1 - ADMISSION_HEADROOM));
+            if (spent > 0 && spent + cost > available) {
+                continue;
+            }
+            spent += cost;
+            if (!tile.visible) {
+                modes.put(tile.key, Mode.PAUSED);
+            } else if (tile.areaPx < smallTileAreaPx) {
+                modes.put(tile.key, Mode.REDUCED);
+            } else {
+                modes.put(tile.key, Mode.FULL);
+            }
+        }
+        return modes;
+    }
+}
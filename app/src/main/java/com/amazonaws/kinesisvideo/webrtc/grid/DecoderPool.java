@@ -0,0 +1,159 @@
+package com.amazonaws.kinesisvideo.webrtc.grid;
+
+import org.webrtc.EglBase;
+import org.webrtc.EncodedImage;
+import org.webrtc.HardwareVideoDecoderFactory;
+import org.webrtc.SoftwareVideoDecoderFactory;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoCodecStatus;
+import org.webrtc.VideoDecoder;
+import org.webrtc.VideoDecoderFactory;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+/**
+ * Decoder factory shared by the peer connections of a {@link ViewerGrid}, which hands out at most
+ * {@link #DEFAULT_MAX_HARDWARE_DECODERS} hardware decoders at a time. Devices only have a few
+ * hardware decoder instances, and fail to create more or slow all of them down; further feeds are
+ * decoded in software.
+ * <p>
+ * A codec without a software decoder, e.g. H.264 in most libwebrtc builds, still gets a hardware
+ * decoder over the limit rather than no video; {@link #getOverLimit} counts those.
+ */
+public class DecoderPool implements VideoDecoderFactory {
+
+    public static final int DEFAULT_MAX_HARDWARE_DECODERS = 4;
+
+    private final VideoDecoderFactory hardwareFactory;
+
+    private final VideoDecoderFactory softwareFactory;
+
+    private final int maxHardwareDecoders;
+
+    private int hardwareDecoders;
+
+    private long softwareDecoders;
+
+    private long overLimit;
+
+    public DecoderPool(final EglBase.Context eglContext) {
+        this(new HardwareVideoDecoderFactory(eglContext), new SoftwareVideoDecoderFactory(),
+                DEFAULT_MAX_HARDWARE_DECODERS);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code maxHardwareDecoders} is negative.
+     */
+    public DecoderPool(final VideoDecoderFactory hardwareFactory, final VideoDecoderFactory softwareFactory,
+                       final int maxHardwareDecoders) {
+        if (maxHardwareDecoders < 0) {
+            throw new IllegalArgumentException("Invalid decoder pool configuration");
+        }
+        this.hardwareFactory = hardwareFactory;
+        this.softwareFactory = softwareFactory;
+        this.maxHardwareDecoders = maxHardwareDecoders;
+    }
+
+    @Override
+    public synchronized VideoDecoder createDecoder(final VideoCodecInfo info) {
+        if (hardwareDecoders < maxHardwareDecoders) {
+            final VideoDecoder hardwareDecoder = hardwareFactory.createDecoder(info);
+            if (hardwareDecoder != null) {
+                hardwareDecoders++;
+                return new PooledDecoder(hardwareDecoder);
+            }
+        }
+        final VideoDecoder softwareDecoder = softwareFactory.createDecoder(info);
+        if (softwareDecoder != null) {
+            softwareDecoders++;
+            return softwareDecoder;
+        }
+        final VideoDecoder hardwareDecoder = hardwareDecoders >= maxHardwareDecoders
+                ? hardwareFactory.createDecoder(info) : null;
+        if (hardwareDecoder == null) {
+            return null;
+        }
+        hardwareDecoders++;
+        overLimit++;
+        return new PooledDecoder(hardwareDecoder);
+    }
+
+    @Override
+    public VideoCodecInfo[] getSupportedCodecs() {
+        final LinkedHashSet<VideoCodecInfo> supportedCodecInfos = new LinkedHashSet<>();
+        supportedCodecInfos.addAll(Arrays.asList(softwareFactory.getSupportedCodecs()));
+        supportedCodecInfos.addAll(Arrays.asList(hardwareFactory.getSupportedCodecs()));
+        return supportedCodecInfos.toArray(new VideoCodecInfo[0]);
+    }
+
+    /**
+     * @return Hardware decoders created and not released yet.
+     */
+    public synchronized int getHardwareDecoders() {
+        return hardwareDecoders;
+    }
+
+    /**
+     * @return Software decoders created because the hardware decoders were taken.
+     */
+    public synchronized long getSoftwareDecoders() {
+        return softwareDecoders;
+    }
+
+    /**
+     * @return Hardware decoders created over the limit, for want of a software decoder.
+     */
+    public synchronized long getOverLimit() {
+        return overLimit;
+    }
+
+    private synchronized void onReleased() {
+        hardwareDecoders--;
+    }
+
+    /**
+     * Gives its slot back once released.
+     */
+    private final class PooledDecoder implements VideoDecoder {
+        private final VideoDecoder delegate;
+
+        private boolean released;
+
+        PooledDecoder(final VideoDecoder delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long createNativeVideoDecoder() {
+            return delegate.createNativeVideoDecoder();
+        }
+
+        @Override
+        public VideoCodecStatus initDecode(final Settings settings, final Callback callback) {
+            return delegate.initDecode(settings, callback);
+        }
+
+        @Override
+        public VideoCodecStatus release() {
+            final VideoCodecStatus status = delegate.release();
+            synchronized (this) {
+                if (!released) {
+                    released = true;
+                    onReleased();
+                }
+            }
+            return status;
+        }
+
+        @Override
+        public VideoCodecStatus decode(final EncodedImage frame, final DecodeInfo info) {
+            return delegate.decode(frame, info);
+        }
+
+        @Override
+        public String getImplementationName() {
+            return delegate.getImplementationName();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.amazonaws.kinesisvideo.webrtc.grid;
+
+/**
+ * Snapshot of how a {@link ViewerGrid} spends its decode budget.
+ */
+public final class GridStats {
+
+    private final int tiles;
+
+    private final int full;
+
+    private final int reduced;
+
+    private final int paused;
+
+    private final int parked;
+
+    private final long decodedPixelsPerSecond;
+
+    private final long budgetPixelsPerSecond;
+
+    private final int hardwareDecoders;
+
+    private final long softwareDecoders;
+
+    public GridStats(final int tiles, final int full, final int reduced, final int paused, final int parked,
+                     final long decodedPixelsPerSecond, final long budgetPixelsPerSecond, final int hardwareDecoders,
+                     final long softwareDecoders) {
+        this.tiles = tiles;
+        this.full = full;
+        this.reduced = reduced;
+        this.paused = paused;
+        this.parked = parked;
+        this.decodedPixelsPerSecond = decodedPixelsPerSecond;
+        this.budgetPixelsPerSecond = budgetPixelsPerSecond;
+        this.hardwareDecoders = hardwareDecoders;
+        this.softwareDecoders = softwareDecoders;
+    }
+
+    public int getTiles() {
+        return tiles;
+    }
+
+    public int getFull() {
+        return full;
+    }
+
+    public int getReduced() {
+        return reduced;
+    }
+
+    public int getPaused() {
+        return paused;
+    }
+
+    public int getParked() {
+        return parked;
+    }
+
+    /**
+     * @return Measured over the connected tiles.
+     */
+    public long getDecodedPixelsPerSecond() {
+        return decodedPixelsPerSecond;
+    }
+
+    public long getBudgetPixelsPerSecond() {
+        return budgetPixelsPerSecond;
+    }
+
+    /**
+     * @return Hardware decoders in use.
+     */
+    public int getHardwareDecoders() {
+        return hardwareDecoders;
+    }
+
+    /**
+     * @return Software decoders created because the hardware decoders were taken.
+     */
+    public long getSoftwareDecoders() {
+        return softwareDecoders;
+    }
+
+    @Override
+    public String toString() {
+        return "GridStats(tiles=" + tiles + ", full=" + full + ", reduced=" + reduced + ", paused=" + paused
+                + ", parked=" + parked + ", decodedPixelsPerSecond=" + decodedPixelsPerSecond
+                + ", budgetPixelsPerSecond=" + budgetPixelsPerSecond + ", hardwareDecoders=" + hardwareDecoders
+                + ", softwareDecoders=" + softwareDecoders + ")";
+    }
+}
@@ -0,0 +1,369 @@
+package com.amazonaws.kinesisvideo.webrtc.grid;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.amazonaws.kinesisvideo.controlplane.SessionWarmUp;
+import com.amazonaws.kinesisvideo.controlplane.SignalingBootstrap;
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+
+import org.webrtc.DefaultVideoEncoderFactory;
+import org.webrtc.EglBase;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.SurfaceViewRenderer;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+import org.webrtc.audio.JavaAudioDeviceModule;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Shows the feeds of up to {@link #MAX_TILES} channels at once, each as a viewer rendering into its
+ * own tile. The sessions share the peer connection factory, its {@link DecoderPool}, the EGL
+ * context and the I/O executor.
+ * <p>
+ * Every {@link #REBALANCE_INTERVAL_MS} the grid measures the pixels each tile decodes, and lets a
+ * {@link DecodeBudget} decide which tiles stay connected and how they are rendered. The app reports
+ * where the tiles are with {@link #setTileLayout}, e.g. from the grid's scroll listener.
+ */
+public class ViewerGrid {
+
+    private static final String TAG = "KVSViewerGrid";
+
+    public static final int MAX_TILES = 16;
+
+    public static final long REBALANCE_INTERVAL_MS = 1000;
+
+    /**
+     * How long a tile whose session failed waits before connecting again.
+     */
+    public static final long RECONNECT_DELAY_MS = 5000;
+
+    /**
+     * Counts the pixels decoded for a tile and renders them.
+     */
+    private static final class CountingSink implements VideoSink {
+        private final SurfaceViewRenderer renderer;
+
+        private final AtomicLong pixels = new AtomicLong();
+
+        CountingSink(final SurfaceViewRenderer renderer) {
+            this.renderer = renderer;
+        }
+
+        @Override
+        public void onFrame(final VideoFrame frame) {
+            pixels.addAndGet((long) frame.getRotatedWidth() * frame.getRotatedHeight());
+            renderer.onFrame(frame);
+        }
+    }
+
+    private static final class Tile {
+        final SignalingChannelKey key;
+
+        final SurfaceViewRenderer renderer;
+
+        final CountingSink sink;
+
+        boolean visible;
+
+        long areaPx;
+
+        long hiddenSinceMs;
+
+        ViewerSession session;
+
+        long connectAfterMs;
+
+        DecodeBudget.Mode mode;
+
+        long measuredSinceMs;
+
+        long decodedPixelsPerSecond;
+
+        Tile(final SignalingChannelKey key, final SurfaceViewRenderer renderer, final long nowMs) {
+            this.key = key;
+            this.renderer = renderer;
+            this.sink = new CountingSink(renderer);
+            this.hiddenSinceMs = nowMs;
+        }
+    }
+
+    private final PeerConnectionFactory peerConnectionFactory;
+
+    private final EglBase eglBase;
+
+    private final DecoderPool decoderPool;
+
+    private final ExecutorService ioExecutor;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final SignalingBootstrap bootstrap;
+
+    private final SessionWarmUp.UrlSigner signer;
+
+    private final DecodeBudget budget;
+
+    private final LongSupplier clock;
+
+    private final Map<SignalingChannelKey, Tile> tiles = new LinkedHashMap<>();
+
+    private ScheduledFuture<?> rebalancing;
+
+    private boolean closed;
+
+    /**
+     * @param peerConnectionFactory Decoding with {@code decoderPool}.
+     * @param ioExecutor            Must not bound its threads, see
+     *                              {@link com.amazonaws.kinesisvideo.webrtc.host.ChannelHost}.
+     *                              Shut down on {@link #close}, like {@code scheduler}.
+     * @param clock                 Time in ms to measure decoding with.
+     */
+    public ViewerGrid(final PeerConnectionFactory peerConnectionFactory, final EglBase eglBase,
+                      final DecoderPool decoderPool, final ExecutorService ioExecutor,
+                      final ScheduledExecutorService scheduler, final SignalingBootstrap bootstrap,
+                      final SessionWarmUp.UrlSigner signer, final DecodeBudget budget, final LongSupplier clock) {
+        this.peerConnectionFactory = peerConnectionFactory;
+        this.eglBase = eglBase;
+        this.decoderPool = decoderPool;
+        this.ioExecutor = ioExecutor;
+        this.scheduler = scheduler;
+        this.bootstrap = bootstrap;
+        this.signer = signer;
+        this.budget = budget;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a grid with the default decode budget, whose peer connection factory decodes with a
+     * {@link DecoderPool} on a new EGL context.
+     */
+    public static ViewerGrid create(final Context context, final SignalingBootstrap bootstrap,
+                                    final SessionWarmUp.UrlSigner signer) {
+        final Context applicationContext = context.getApplicationContext();
+        PeerConnectionFactory.initialize(PeerConnectionFactory
+                .InitializationOptions
+                .builder(applicationContext)
+                .createInitializationOptions());
+        final EglBase eglBase = EglBase.create();
+        final DecoderPool decoderPool = new DecoderPool(eglBase.getEglBaseContext());
+        final PeerConnectionFactory peerConnectionFactory = PeerConnectionFactory.builder()
+                .setVideoDecoderFactory(decoderPool)
+                .setVideoEncoderFactory(new DefaultVideoEncoderFactory(eglBase.getEglBaseContext(), true, true))
+                .setAudioDeviceModule(JavaAudioDeviceModule.builder(applicationContext)
+                        .createAudioDeviceModule())
+                .createPeerConnectionFactory();
+        return new ViewerGrid(peerConnectionFactory, eglBase, decoderPool, Executors.newCachedThreadPool(),
+                Executors.newSingleThreadScheduledExecutor(), bootstrap, signer, new DecodeBudget(),
+                SystemClock::elapsedRealtime);
+    }
+
+    public EglBase getEglBase() {
+        return eglBase;
+    }
+
+    /**
+     * Starts rebalancing; tiles are connected from the first rebalance on.
+     */
+    public synchronized void start() {
+        if (closed || rebalancing != null) {
+            return;
+        }
+        rebalancing = scheduler.scheduleWithFixedDelay(this::rebalance, 0, REBALANCE_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a tile for the channel, off screen until {@link #setTileLayout} tells otherwise. Call on
+     * the main thread: the renderer is initialized with the grid's EGL context.
+     *
+     * @throws IllegalArgumentException if {@code key} is not for a viewer.
+     * @throws IllegalStateException    if the channel has a tile already, the grid is full or closed.
+     */
+    public void addTile(final SignalingChannelKey key, final SurfaceViewRenderer renderer) {
+        if (key.getRole() != ChannelRole.VIEWER) {
+            throw new IllegalArgumentException("Only viewer channels can be shown in the grid: " + key);
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Viewer grid is closed");
+            }
+            if (tiles.containsKey(key)) {
+                throw new IllegalStateException("Channel has a tile already: " + key);
+            }
+            if (tiles.size() >= MAX_TILES) {
+                throw new IllegalStateException("Viewer grid is full, " + MAX_TILES + " tiles");
+            }
+            tiles.put(key, new Tile(key, renderer, clock.getAsLong()));
+        }
+        renderer.init(eglBase.getEglBaseContext(), null);
+    }
+
+    /**
+     * Disconnects the channel and releases its renderer. Call on the main thread.
+     *
+     * @return {@code false} if the channel has no tile.
+     */
+    public boolean removeTile(final SignalingChannelKey key) {
+        final Tile tile;
+        synchronized (this) {
+            tile = tiles.remove(key);
+            if (tile != null && tile.session != null) {
+                tile.session.stop();
+                tile.session = null;
+            }
+        }
+        if (tile == null) {
+            return false;
+        }
+        tile.renderer.release();
+        return true;
+    }
+
+    /**
+     * @param visible  Whether any part of the tile is on screen.
+     * @param widthPx  Size of the tile on screen.
+     * @param heightPx Size of the tile on screen.
+     */
+    public synchronized void setTileLayout(final SignalingChannelKey key, final boolean visible, final int widthPx,
+                                           final int heightPx) {
+        final Tile tile = tiles.get(key);
+        if (tile == null) {
+            return;
+        }
+        if (tile.visible && !visible) {
+            tile.hiddenSinceMs = clock.getAsLong();
+        }
+        tile.visible = visible;
+        tile.areaPx = (long) widthPx * heightPx;
+    }
+
+    public synchronized GridStats getStats() {
+        final int[] modes = new int[DecodeBudget.Mode.values().length];
+        long decodedPixelsPerSecond = 0;
+        for (final Tile tile : tiles.values()) {
+            modes[(tile.mode != null ? tile.mode : DecodeBudget.Mode.PARKED).ordinal()]++;
+            if (tile.session != null) {
+                decodedPixelsPerSecond += tile.decodedPixelsPerSecond;
+            }
+        }
+        return new GridStats(tiles.size(), modes[DecodeBudget.Mode.FULL.ordinal()],
+                modes[DecodeBudget.Mode.REDUCED.ordinal()], modes[DecodeBudget.Mode.PAUSED.ordinal()],
+                modes[DecodeBudget.Mode.PARKED.ordinal()], decodedPixelsPerSecond,
+                budget.getBudgetPixelsPerSecond(), decoderPool.getHardwareDecoders(), decoderPool.getSoftwareDecoders());
+    }
+
+    /**
+     * Disconnects all tiles and releases what they shared. Call on the main thread; the grid
+     * cannot be used afterwards.
+     */
+    public void close() {
+        final List<Tile> removed;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (rebalancing != null) {
+                rebalancing.cancel(false);
+                rebalancing = null;
+            }
+            removed = new ArrayList<>(tiles.values());
+            tiles.clear();
+        }
+        for (final Tile tile : removed) {
+            if (tile.session != null) {
+                tile.session.stop();
+            }
+            tile.renderer.release();
+        }
+        scheduler.shutdown();
+        ioExecutor.shutdown();
+        peerConnectionFactory.dispose();
+        eglBase.release();
+    }
+
+    private synchronized void rebalance() {
+        if (closed) {
+            return;
+        }
+        final long nowMs = clock.getAsLong();
+        final List<DecodeBudget.Tile> planned = new ArrayList<>();
+        for (final Tile tile : tiles.values()) {
+            measure(tile, nowMs);
+            planned.add(new DecodeBudget.Tile(tile.key, tile.visible, tile.areaPx,
+                    tile.visible ? 0 : nowMs - tile.hiddenSinceMs, tile.session != null, tile.decodedPixelsPerSecond));
+        }
+
+        for (final Map.Entry<SignalingChannelKey, DecodeBudget.Mode> entry : budget.plan(planned).entrySet()) {
+            final Tile tile = tiles.get(entry.getKey());
+            final DecodeBudget.Mode mode = entry.getValue();
+            if (mode == DecodeBudget.Mode.PARKED) {
+                if (tile.session != null) {
+                    tile.session.stop();
+                    tile.session = null;
+                }
+            } else if (tile.session == null && nowMs >= tile.connectAfterMs) {
+                tile.session = new ViewerSession(tile.key, tile.sink, peerConnectionFactory, ioExecutor, bootstrap,
+                        signer);
+                tile.session.start();
+                tile.sink.pixels.set(0);
+                tile.measuredSinceMs = nowMs;
+            }
+            if (mode != tile.mode) {
+                render(tile, mode);
+            }
+        }
+    }
+
+    /**
+     * Updates the tile's decoded pixels per second, and replaces a failed session.
+     */
+    private void measure(final Tile tile, final long nowMs) {
+        if (tile.session == null) {
+            return;
+        }
+        if (tile.session.isFailed()) {
+            Log.w(TAG, tile.key + ": session failed, connecting again in " + RECONNECT_DELAY_MS + " ms");
+            tile.session.stop();
+            tile.session = null;
+            tile.connectAfterMs = nowMs + RECONNECT_DELAY_MS;
+            return;
+        }
+        final long elapsedMs = nowMs - tile.measuredSinceMs;
+        final long pixels = tile.sink.pixels.getAndSet(0);
+        tile.measuredSinceMs = nowMs;
+        if (elapsedMs > 0 && pixels > 0) {
+            // Until the first frame, the tile keeps its previous measurement or the default cost
+            tile.decodedPixelsPerSecond = pixels * 1000 / elapsedMs;
+        }
+    }
+
+    private void render(final Tile tile, final DecodeBudget.Mode mode) {
+        tile.mode = mode;
+        switch (mode) {
+            case FULL:
+                tile.renderer.disableFpsReduction();
+                break;
+            case REDUCED:
+                tile.renderer.setFpsReduction(DecodeBudget.REDUCED_FPS);
+                break;
+            default:
+                tile.renderer.pauseVideo();
+                break;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.amazonaws.kinesisvideo.webrtc.grid;
+
+import android.util.Log;
+
+import com.amazonaws.kinesisvideo.controlplane.ControlPlaneException;
+import com.amazonaws.kinesisvideo.controlplane.SessionWarmUp;
+import com.amazonaws.kinesisvideo.controlplane.SignalingBootstrap;
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelInfo;
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
+import com.amazonaws.kinesisvideo.signaling.SignalingListener;
+import com.amazonaws.kinesisvideo.signaling.model.Event;
+import com.amazonaws.kinesisvideo.signaling.model.Message;
+import com.amazonaws.kinesisvideo.signaling.tyrus.SignalingServiceWebSocketClient;
+import com.amazonaws.kinesisvideo.webrtc.KinesisVideoPeerConnection;
+import com.amazonaws.kinesisvideo.webrtc.KinesisVideoSdpObserver;
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.PeerConnection;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.RtpTransceiver;
+import org.webrtc.SessionDescription;
+import org.webrtc.VideoSink;
+import org.webrtc.VideoTrack;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Receives the feed of one channel of a {@link ViewerGrid} as a viewer, over the grid's peer
+ * connection factory and I/O executor. Only video is rendered; the wall is silent, so audio is
+ * received but its tracks are disabled.
+ * <p>
+ * A session is used once: after {@link #stop}, or once {@link #isFailed}, the grid starts a new one.
+ */
+class ViewerSession {
+
+    private static final String TAG = "KVSViewerSession";
+
+    private final SignalingChannelKey key;
+
+    private final VideoSink sink;
+
+    private final PeerConnectionFactory peerConnectionFactory;
+
+    private final Executor ioExecutor;
+
+    private final SignalingBootstrap bootstrap;
+
+    private final SessionWarmUp.UrlSigner signer;
+
+    private final String clientId = UUID.randomUUID().toString();
+
+    /**
+     * Remote candidates received before the answer.
+     */
+    private final List<IceCandidate> pendingIceCandidates = new ArrayList<>();
+
+    private final SignalingListener signalingListener = new SignalingListener() {
+
+        @Override
+        public void onSdpOffer(final Event offerEvent) {
+            Log.w(TAG, key + ": ignoring SDP offer, the viewer offers");
+        }
+
+        @Override
+        public void onSdpAnswer(final Event answerEvent) {
+            onAnswer(Event.parseSdpEvent(answerEvent));
+        }
+
+        @Override
+        public void onIceCandidate(final Event message) {
+            final IceCandidate iceCandidate = Event.parseIceCandidate(message);
+            if (iceCandidate == null) {
+                Log.e(TAG, key + ": invalid ICE candidate: " + message);
+                return;
+            }
+            addRemoteIceCandidate(iceCandidate);
+        }
+
+        @Override
+        public void onError(final Event errorMessage) {
+            Log.e(TAG, key + ": received error message: " + errorMessage);
+        }
+
+        @Override
+        public void onException(final Exception e) {
+            Log.e(TAG, key + ": signaling client returned exception: " + e.getMessage());
+            fail();
+        }
+    };
+
+    private SignalingBootstrap.Session session;
+
+    private SignalingServiceWebSocketClient client;
+
+    private PeerConnection peer;
+
+    private VideoTrack videoTrack;
+
+    private boolean answered;
+
+    private boolean failed;
+
+    private boolean stopped;
+
+    ViewerSession(final SignalingChannelKey key, final VideoSink sink, final PeerConnectionFactory peerConnectionFactory,
+                  final Executor ioExecutor, final SignalingBootstrap bootstrap, final SessionWarmUp.UrlSigner signer) {
+        if (key.getRole() != ChannelRole.VIEWER) {
+            throw new IllegalArgumentException("Only viewer channels can be shown in the grid: " + key);
+        }
+        this.key = key;
+        this.sink = sink;
+        this.peerConnectionFactory = peerConnectionFactory;
+        this.ioExecutor = ioExecutor;
+        this.bootstrap = bootstrap;
+        this.signer = signer;
+    }
+
+    SignalingChannelKey getKey() {
+        return key;
+    }
+
+    /**
+     * @return Whether signaling or the peer connection failed; the session does not recover.
+     */
+    synchronized boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Fetches the channel info and ICE servers, then connects and offers on the I/O executor.
+     * Continues without TURN servers if they cannot be fetched.
+     */
+    synchronized void start() {
+        final SignalingBootstrap.Session started = bootstrap.start(key, false);
+        session = started;
+        started.getChannelInfo()
+                .thenCombine(started.getIceServers().exceptionally(e -> {
+                    Log.e(TAG, key + ": continuing without TURN servers: " + e.getMessage());
+                    return Collections.emptyList();
+                }), (info, iceServers) -> {
+                    final List<PeerConnection.IceServer> peerIceServers = new ArrayList<>();
+                    peerIceServers.add(PeerConnection.IceServer
+                            .builder(String.format("stun:stun.kinesisvideo.%s.amazonaws.com:443", key.getRegion()))
+                            .createIceServer());
+                    for (final com.amazonaws.services.kinesisvideosignaling.model.IceServer iceServer : iceServers) {
+                        peerIceServers.add(PeerConnection.IceServer.builder(iceServer.getUris())
+                                .setUsername(iceServer.getUsername())
+                                .setPassword(iceServer.getPassword())
+                                .createIceServer());
+                    }
+                    final URI signedUri = sign(info);
+                    // Blocks until connected, so it runs on the I/O executor rather than the bootstrap's
+                    ioExecutor.execute(() -> connect(signedUri, peerIceServers));
+                    return null;
+                })
+                .exceptionally(e -> {
+                    Log.e(TAG, key + ": could not start: " + (e instanceof CompletionException ? e.getCause() : e));
+                    fail();
+                    return null;
+                });
+    }
+
+    /**
+     * Disconnects and closes the peer connection. Peer connection calls block on libwebrtc's
+     * signaling thread, which also runs the observers, so they are made without holding the lock.
+     */
+    void stop() {
+        final PeerConnection closed;
+        final VideoTrack track;
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            if (session != null) {
+                session.cancel();
+                session = null;
+            }
+            if (client != null) {
+                client.disconnect();
+                client = null;
+            }
+            closed = peer;
+            peer = null;
+            track = videoTrack;
+            videoTrack = null;
+            pendingIceCandidates.clear();
+        }
+        if (track != null) {
+            track.removeSink(sink);
+        }
+        if (closed != null) {
+            closed.dispose();
+        }
+    }
+
+    private URI sign(final SignalingChannelInfo info) {
+        try {
+            return signer.sign(key, info, clientId);
+        } catch (final ControlPlaneException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void connect(final URI signedUri, final List<PeerConnection.IceServer> iceServers) {
+        final PeerConnection.RTCConfiguration rtcConfig = new PeerConnection.RTCConfiguration(iceServers);
+        rtcConfig.bundlePolicy = PeerConnection.BundlePolicy.MAXBUNDLE;
+        rtcConfig.sdpSemantics = PeerConnection.SdpSemantics.UNIFIED_PLAN;
+        rtcConfig.continualGatheringPolicy = PeerConnection.ContinualGatheringPolicy.GATHER_CONTINUALLY;
+        rtcConfig.keyType = PeerConnection.KeyType.ECDSA;
+        rtcConfig.rtcpMuxPolicy = PeerConnection.RtcpMuxPolicy.REQUIRE;
+        rtcConfig.tcpCandidatePolicy = PeerConnection.TcpCandidatePolicy.ENABLED;
+
+        final PeerConnection created = peerConnectionFactory.createPeerConnection(rtcConfig, new KinesisVideoPeerConnection() {
+
+            @Override
+            public void onIceCandidate(final IceCandidate iceCandidate) {
+                super.onIceCandidate(iceCandidate);
+                final SignalingServiceWebSocketClient connected;
+                synchronized (ViewerSession.this) {
+                    connected = client;
+                }
+                if (connected != null) {
+                    connected.sendIceCandidate(Message.createIceCandidateMessage(iceCandidate, "", clientId));
+                }
+            }
+
+            @Override
+            public void onIceConnectionChange(final PeerConnection.IceConnectionState iceConnectionState) {
+                super.onIceConnectionChange(iceConnectionState);
+                if (iceConnectionState == PeerConnection.IceConnectionState.FAILED) {
+                    fail();
+                }
+            }
+
+            @Override
+            public void onTrack(final RtpTransceiver transceiver) {
+                super.onTrack(transceiver);
+                onRemoteTrack(transceiver.getReceiver().track());
+            }
+        });
+        if (created == null) {
+            Log.e(TAG, key + ": could not create a peer connection");
+            fail();
+            return;
+        }
+        created.addTransceiver(MediaStreamTrack.MediaType.MEDIA_TYPE_VIDEO,
+                new RtpTransceiver.RtpTransceiverInit(RtpTransceiver.RtpTransceiverDirection.RECV_ONLY));
+        created.addTransceiver(MediaStreamTrack.MediaType.MEDIA_TYPE_AUDIO,
+                new RtpTransceiver.RtpTransceiverInit(RtpTransceiver.RtpTransceiverDirection.RECV_ONLY));
+
+        final SignalingServiceWebSocketClient connected;
+        try {
+            connected = SignalingServiceWebSocketClient.withSharedExecutor(signedUri.toString(),
+                    signalingListener, ioExecutor);
+        } catch (final Exception e) {
+            Log.e(TAG, key + ": could not connect to signaling: " + e);
+            created.dispose();
+            fail();
+            return;
+        }
+
+        final boolean open = connected.isOpen();
+        final boolean adopted;
+        synchronized (this) {
+            adopted = !stopped && open;
+            if (adopted) {
+                peer = created;
+                client = connected;
+            }
+        }
+        if (!adopted) {
+            connected.disconnect();
+            created.dispose();
+            if (!open) {
+                Log.e(TAG, key + ": could not connect to signaling");
+                fail();
+            }
+            return;
+        }
+
+        final MediaConstraints sdpMediaConstraints = new MediaConstraints();
+        sdpMediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo", "true"));
+        sdpMediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
+        created.createOffer(new KinesisVideoSdpObserver() {
+
+            @Override
+            public void onCreateSuccess(final SessionDescription sessionDescription) {
+                super.onCreateSuccess(sessionDescription);
+                created.setLocalDescription(new KinesisVideoSdpObserver(), sessionDescription);
+                connected.sendSdpOffer(Message.createOfferMessage(sessionDescription, clientId));
+            }
+
+            @Override
+            public void onCreateFailure(final String error) {
+                super.onCreateFailure(error);
+                fail();
+            }
+        }, sdpMediaConstraints);
+    }
+
+    private void onAnswer(final String sdp) {
+        final PeerConnection answeredPeer;
+        final List<IceCandidate> pending;
+        synchronized (this) {
+            if (peer == null || answered) {
+                return;
+            }
+            answered = true;
+            answeredPeer = peer;
+            pending = new ArrayList<>(pendingIceCandidates);
+            pendingIceCandidates.clear();
+        }
+        answeredPeer.setRemoteDescription(new KinesisVideoSdpObserver(),
+                new SessionDescription(SessionDescription.Type.ANSWER, sdp));
+        for (final IceCandidate iceCandidate : pending) {
+            answeredPeer.addIceCandidate(iceCandidate);
+        }
+    }
+
+    private void addRemoteIceCandidate(final IceCandidate iceCandidate) {
+        final PeerConnection answeredPeer;
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            if (!answered) {
+                pendingIceCandidates.add(iceCandidate);
+                return;
+            }
+            answeredPeer = peer;
+        }
+        answeredPeer.addIceCandidate(iceCandidate);
+    }
+
+    private void onRemoteTrack(final MediaStreamTrack track) {
+        if (!(track instanceof VideoTrack)) {
+            track.setEnabled(false);
+            return;
+        }
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            videoTrack = (VideoTrack) track;
+        }
+        ((VideoTrack) track).addSink(sink);
+    }
+
+    private synchronized void fail() {
+        failed = true;
+    }
+}
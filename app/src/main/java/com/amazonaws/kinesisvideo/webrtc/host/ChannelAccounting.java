@@ -0,0 +1,93 @@
+package com.amazonaws.kinesisvideo.webrtc.host;
+
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts what one channel of a {@link ChannelHost} uses. Thread safe.
+ * <p>
+ * Media bytes are reported per peer as the totals of its transports, so they are not counted twice
+ * when reported again; the totals of closed peers are kept.
+ */
+public class ChannelAccounting {
+
+    private final SignalingChannelKey key;
+
+    /**
+     * Latest transport totals of the open peers by their client id: bytes received, bytes sent.
+     */
+    private final Map<String, long[]> peerBytes = new HashMap<>();
+
+    private long peersCreated;
+
+    private long messagesReceived;
+
+    private long messagesSent;
+
+    private long signalingBytesReceived;
+
+    private long signalingBytesSent;
+
+    private long closedBytesReceived;
+
+    private long closedBytesSent;
+
+    private long failures;
+
+    public ChannelAccounting(final SignalingChannelKey key) {
+        this.key = key;
+    }
+
+    public synchronized void onMessageReceived(final int payloadBytes) {
+        messagesReceived++;
+        signalingBytesReceived += payloadBytes;
+    }
+
+    public synchronized void onMessageSent(final int payloadBytes) {
+        messagesSent++;
+        signalingBytesSent += payloadBytes;
+    }
+
+    public synchronized void onPeerCreated(final String peerId) {
+        if (peerBytes.put(peerId, new long[2]) == null) {
+            peersCreated++;
+        }
+    }
+
+    /**
+     * @param bytesReceived Total received over the peer's transports so far.
+     * @param bytesSent     Total sent over the peer's transports so far.
+     */
+    public synchronized void onPeerBytes(final String peerId, final long bytesReceived, final long bytesSent) {
+        final long[] bytes = peerBytes.get(peerId);
+        if (bytes != null) {
+            bytes[0] = bytesReceived;
+            bytes[1] = bytesSent;
+        }
+    }
+
+    public synchronized void onPeerClosed(final String peerId) {
+        final long[] bytes = peerBytes.remove(peerId);
+        if (bytes != null) {
+            closedBytesReceived += bytes[0];
+            closedBytesSent += bytes[1];
+        }
+    }
+
+    public synchronized void onFailure() {
+        failures++;
+    }
+
+    public synchronized ChannelStats getStats() {
+        long mediaBytesReceived = closedBytesReceived;
+        long mediaBytesSent = closedBytesSent;
+        for (final long[] bytes : peerBytes.values()) {
+            mediaBytesReceived += bytes[0];
+            mediaBytesSent += bytes[1];
+        }
+        return new ChannelStats(key, peerBytes.size(), peersCreated, messagesReceived, messagesSent,
+                signalingBytesReceived, signalingBytesSent, mediaBytesReceived, mediaBytesSent, failures);
+    }
+}
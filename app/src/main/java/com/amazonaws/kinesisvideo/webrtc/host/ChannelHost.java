@@ -0,0 +1,229 @@
+package com.amazonaws.kinesisvideo.webrtc.host;
+
+import android.content.Context;
+
+import com.amazonaws.kinesisvideo.controlplane.SessionWarmUp;
+import com.amazonaws.kinesisvideo.controlplane.SignalingBootstrap;
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.webrtc.DefaultVideoDecoderFactory;
+import org.webrtc.DefaultVideoEncoderFactory;
+import org.webrtc.EglBase;
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.audio.AudioDeviceModule;
+import org.webrtc.audio.JavaAudioDeviceModule;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves several master signaling channels from one process. Each channel is a
+ * {@link ChannelSession} with its own signaling connection, URL signer and peer connections, so a
+ * channel failing or being stopped leaves the others alone. They share what is costly to have more
+ * than one of: the peer connection factory with its codecs and audio device, the EGL context, and
+ * the I/O executor signaling connections are opened and written on.
+ * <p>
+ * {@link #getStats} accounts what each channel uses, to find the channel that loads the device.
+ * The viewers of all channels share the uplink, which {@link #getUplinkAllocator} splits among them.
+ * Both are updated from the peer connections' stats every {@link #STATS_INTERVAL_MS} while channels
+ * are served.
+ * <p>
+ * A host created with {@link #create} has its own peer connection factory and audio device, so it
+ * is not meant to run next to a {@code WebRtcActivity} session, which has its own as well: the two
+ * audio devices would contend for the microphone. Stop one before starting the other.
+ */
+public class ChannelHost {
+
+    public static final long STATS_INTERVAL_MS = 2000;
+
+    private final PeerConnectionFactory peerConnectionFactory;
+
+    private final EglBase eglBase;
+
+    private final ExecutorService ioExecutor;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final AudioDeviceModule audioDeviceModule;
+
+    private final SignalingBootstrap bootstrap;
+
+    private final SessionWarmUp.UrlSigner signer;
+
+    private final UplinkAllocator uplinkAllocator;
+
+    private final Map<SignalingChannelKey, ChannelSession> sessions = new LinkedHashMap<>();
+
+    private ScheduledFuture<?> statsCollection;
+
+    private boolean closed;
+
+    /**
+     * @param audioDeviceModule The one {@code peerConnectionFactory} was created with, released on
+     *                          {@link #close}; {@code null} if the caller releases it.
+     * @param ioExecutor        Must not bound its threads: opening a signaling connection blocks one
+     *                          until it is connected, while the connection needs another. Shut down
+     *                          on {@link #close}, like {@code scheduler}.
+     */
+    public ChannelHost(final PeerConnectionFactory peerConnectionFactory, final AudioDeviceModule audioDeviceModule,
+                       final EglBase eglBase, final ExecutorService ioExecutor,
+                       final ScheduledExecutorService scheduler, final SignalingBootstrap bootstrap,
+                       final SessionWarmUp.UrlSigner signer) {
+        this.peerConnectionFactory = peerConnectionFactory;
+        this.audioDeviceModule = audioDeviceModule;
+        this.eglBase = eglBase;
+        this.ioExecutor = ioExecutor;
+        this.scheduler = scheduler;
+        this.bootstrap = bootstrap;
+        this.signer = signer;
+        this.uplinkAllocator = new UplinkAllocator(MoreExecutors.newSequentialExecutor(ioExecutor));
+    }
+
+    /**
+     * Creates a host with a peer connection factory using the hardware codecs on a new EGL context.
+     */
+    public static ChannelHost create(final Context context, final SignalingBootstrap bootstrap,
+                                     final SessionWarmUp.UrlSigner signer) {
+        final Context applicationContext = context.getApplicationContext();
+        PeerConnectionFactory.initialize(PeerConnectionFactory
+                .InitializationOptions
+                .builder(applicationContext)
+                .createInitializationOptions());
+        final EglBase eglBase = EglBase.create();
+        final AudioDeviceModule audioDeviceModule = JavaAudioDeviceModule.builder(applicationContext)
+                .createAudioDeviceModule();
+        final PeerConnectionFactory peerConnectionFactory = PeerConnectionFactory.builder()
+                .setVideoDecoderFactory(new DefaultVideoDecoderFactory(eglBase.getEglBaseContext()))
+                .setVideoEncoderFactory(new DefaultVideoEncoderFactory(eglBase.getEglBaseContext(), true, true))
+                .setAudioDeviceModule(audioDeviceModule)
+                .createPeerConnectionFactory();
+        return new ChannelHost(peerConnectionFactory, audioDeviceModule, eglBase, Executors.newCachedThreadPool(),
+                Executors.newSingleThreadScheduledExecutor(), bootstrap, signer);
+    }
+
+    /**
+     * For creating the tracks to {@link #start} channels with.
+     */
+    public PeerConnectionFactory getPeerConnectionFactory() {
+        return peerConnectionFactory;
+    }
+
+    public EglBase getEglBase() {
+        return eglBase;
+    }
+
+    /**
+     * For configuring the uplink budget and the priorities of channels and viewers.
+     */
+    public UplinkAllocator getUplinkAllocator() {
+        return uplinkAllocator;
+    }
+
+    /**
+     * Starts serving {@code tracks} to the viewers of the channel. The same tracks may be served on
+     * several channels.
+     *
+     * @throws IllegalArgumentException if {@code key} is not for a master.
+     * @throws IllegalStateException    if the channel is served already, or the host is closed.
+     */
+    public synchronized ChannelSession start(final SignalingChannelKey key, final List<MediaStreamTrack> tracks) {
+        if (closed) {
+            throw new IllegalStateException("Channel host is closed");
+        }
+        if (sessions.containsKey(key)) {
+            throw new IllegalStateException("Channel is served already: " + key);
+        }
+        final ChannelSession session = new ChannelSession(key, tracks, peerConnectionFactory, ioExecutor,
+                scheduler, bootstrap, signer, uplinkAllocator);
+        sessions.put(key, session);
+        session.start();
+        if (statsCollection == null) {
+            statsCollection = scheduler.scheduleWithFixedDelay(this::collectStats, STATS_INTERVAL_MS,
+                    STATS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        return session;
+    }
+
+    /**
+     * Stops serving the channel, closing its viewers' peer connections.
+     *
+     * @return {@code false} if it was not served.
+     */
+    public boolean stop(final SignalingChannelKey key) {
+        final ChannelSession session;
+        synchronized (this) {
+            session = sessions.remove(key);
+        }
+        if (session == null) {
+            return false;
+        }
+        session.stop();
+        uplinkAllocator.onChannelStopped(key);
+        return true;
+    }
+
+    public synchronized List<ChannelSession> getSessions() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    /**
+     * @return What each channel served uses, in the order they were started.
+     */
+    public Map<SignalingChannelKey, ChannelStats> getStats() {
+        final Map<SignalingChannelKey, ChannelStats> stats = new LinkedHashMap<>();
+        for (final ChannelSession session : getSessions()) {
+            stats.put(session.getKey(), session.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Requests the peer connections' stats, updating the media bytes {@link #getStats} reports, and
+     * the bandwidth estimates the uplink is measured with, once they arrive. Runs periodically on
+     * its own, call it for fresher stats in between.
+     */
+    public void collectStats() {
+        for (final ChannelSession session : getSessions()) {
+            session.collectStats();
+        }
+    }
+
+    /**
+     * Stops all channels and releases what they shared. The host cannot be used afterwards.
+     */
+    public void close() {
+        final List<ChannelSession> stopped;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (statsCollection != null) {
+                statsCollection.cancel(false);
+                statsCollection = null;
+            }
+            stopped = new ArrayList<>(sessions.values());
+            sessions.clear();
+        }
+        for (final ChannelSession session : stopped) {
+            session.stop();
+        }
+        scheduler.shutdown();
+        ioExecutor.shutdown();
+        peerConnectionFactory.dispose();
+        if (audioDeviceModule != null) {
+            audioDeviceModule.release();
+        }
+        eglBase.release();
+    }
+}
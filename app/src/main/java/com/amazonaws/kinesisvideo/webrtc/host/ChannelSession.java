@@ -0,0 +1,519 @@
+package com.amazonaws.kinesisvideo.webrtc.host;
+
+import android.util.Log;
+
+import com.amazonaws.kinesisvideo.controlplane.ControlPlaneException;
+import com.amazonaws.kinesisvideo.controlplane.SessionWarmUp;
+import com.amazonaws.kinesisvideo.controlplane.SignalingBootstrap;
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelInfo;
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
+import com.amazonaws.kinesisvideo.signaling.SignalingListener;
+import com.amazonaws.kinesisvideo.signaling.model.Event;
+import com.amazonaws.kinesisvideo.signaling.model.Message;
+import com.amazonaws.kinesisvideo.signaling.tyrus.SignalingServiceWebSocketClient;
+import com.amazonaws.kinesisvideo.webrtc.KinesisVideoPeerConnection;
+import com.amazonaws.kinesisvideo.webrtc.KinesisVideoSdpObserver;
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.PeerConnection;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.RTCStats;
+import org.webrtc.RtpParameters;
+import org.webrtc.RtpSender;
+import org.webrtc.SessionDescription;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One master signaling channel of a {@link ChannelHost}: its own signaling connection and URL
+ * signer, and a peer connection per viewer sending the channel's tracks. The peer connection
+ * factory, the I/O executor and the {@link UplinkAllocator} capping the viewers' video belong to
+ * the host.
+ */
+public class ChannelSession {
+
+    private static final String TAG = "KVSChannelSession";
+
+    /**
+     * How long a viewer may stay disconnected before its peer connection is closed, freeing its
+     * share of the uplink. It has to send a new offer to come back.
+     */
+    static final long DISCONNECTED_TIMEOUT_MS = 15000;
+
+    private static final String STATS_TYPE_TRANSPORT = "transport";
+
+    private static final String STATS_SELECTED_CANDIDATE_PAIR_ID = "selectedCandidatePairId";
+
+    private static final String STATS_AVAILABLE_OUTGOING_BITRATE = "availableOutgoingBitrate";
+
+    private final SignalingChannelKey key;
+
+    private final List<MediaStreamTrack> tracks;
+
+    private final PeerConnectionFactory peerConnectionFactory;
+
+    private final Executor ioExecutor;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final SignalingBootstrap bootstrap;
+
+    private final SessionWarmUp.UrlSigner signer;
+
+    private final UplinkAllocator uplinkAllocator;
+
+    private final ChannelAccounting accounting;
+
+    /**
+     * Peer connections by the viewer's client id.
+     */
+    private final Map<String, PeerConnection> peers = new HashMap<>();
+
+    /**
+     * Candidates of viewers whose offer has not been answered yet.
+     */
+    private final Map<String, List<IceCandidate>> pendingIceCandidates = new HashMap<>();
+
+    private final SignalingListener signalingListener = new SignalingListener() {
+
+        @Override
+        public void handleMessage(final String message) {
+            accounting.onMessageReceived(message.length());
+            super.handleMessage(message);
+        }
+
+        @Override
+        public void onSdpOffer(final Event offerEvent) {
+            answer(offerEvent.getSenderClientId(), Event.parseOfferEvent(offerEvent));
+        }
+
+        @Override
+        public void onSdpAnswer(final Event answerEvent) {
+            Log.w(TAG, key + ": ignoring SDP answer, the master only answers");
+        }
+
+        @Override
+        public void onIceCandidate(final Event message) {
+            final IceCandidate iceCandidate = Event.parseIceCandidate(message);
+            if (iceCandidate == null) {
+                Log.e(TAG, key + ": invalid ICE candidate: " + message);
+                return;
+            }
+            addRemoteIceCandidate(message.getSenderClientId(), iceCandidate);
+        }
+
+        @Override
+        public void onError(final Event errorMessage) {
+            Log.e(TAG, key + ": received error message: " + errorMessage);
+        }
+
+        @Override
+        public void onException(final Exception e) {
+            Log.e(TAG, key + ": signaling client returned exception: " + e.getMessage());
+            accounting.onFailure();
+        }
+    };
+
+    private PeerConnection.RTCConfiguration rtcConfig;
+
+    private SignalingBootstrap.Session session;
+
+    private SignalingServiceWebSocketClient client;
+
+    private boolean stopped;
+
+    /**
+     * @param tracks    Sent to every viewer, in a stream named after the channel.
+     * @param scheduler Runs the host's stats collection. Viewers that left are closed on it, so that
+     *                  a peer connection is not disposed while its stats are requested.
+     * @throws IllegalArgumentException if {@code key} is not for a master.
+     */
+    ChannelSession(final SignalingChannelKey key, final List<MediaStreamTrack> tracks,
+                   final PeerConnectionFactory peerConnectionFactory, final Executor ioExecutor,
+                   final ScheduledExecutorService scheduler, final SignalingBootstrap bootstrap,
+                   final SessionWarmUp.UrlSigner signer, final UplinkAllocator uplinkAllocator) {
+        if (key.getRole() != ChannelRole.MASTER) {
+            throw new IllegalArgumentException("Only master channels can be hosted: " + key);
+        }
+        this.key = key;
+        this.tracks = new ArrayList<>(tracks);
+        this.peerConnectionFactory = peerConnectionFactory;
+        this.ioExecutor = ioExecutor;
+        this.scheduler = scheduler;
+        this.bootstrap = bootstrap;
+        this.signer = signer;
+        this.uplinkAllocator = uplinkAllocator;
+        this.accounting = new ChannelAccounting(key);
+    }
+
+    public SignalingChannelKey getKey() {
+        return key;
+    }
+
+    public ChannelStats getStats() {
+        return accounting.getStats();
+    }
+
+    /**
+     * Fetches the channel info and ICE servers, then connects to signaling on the I/O executor.
+     * Continues without TURN servers if they cannot be fetched.
+     */
+    synchronized void start() {
+        final SignalingBootstrap.Session started = bootstrap.start(key, false);
+        session = started;
+        started.getChannelInfo()
+                .thenCombine(started.getIceServers().exceptionally(e -> {
+                    Log.e(TAG, key + ": continuing without TURN servers: " + e.getMessage());
+                    return Collections.emptyList();
+                }), (info, iceServers) -> {
+                    final List<PeerConnection.IceServer> peerIceServers = new ArrayList<>();
+                    peerIceServers.add(PeerConnection.IceServer
+                            .builder(String.format("stun:stun.kinesisvideo.%s.amazonaws.com:443", key.getRegion()))
+                            .createIceServer());
+                    for (final com.amazonaws.services.kinesisvideosignaling.model.IceServer iceServer : iceServers) {
+                        peerIceServers.add(PeerConnection.IceServer.builder(iceServer.getUris())
+                                .setUsername(iceServer.getUsername())
+                                .setPassword(iceServer.getPassword())
+                                .createIceServer());
+                    }
+                    connect(info, peerIceServers);
+                    return null;
+                })
+                .exceptionally(e -> {
+                    Log.e(TAG, key + ": could not start: " + (e instanceof CompletionException ? e.getCause() : e));
+                    accounting.onFailure();
+                    return null;
+                });
+    }
+
+    /**
+     * Closes the viewers' peer connections and the signaling connection.
+     */
+    void stop() {
+        final List<PeerConnection> closed = new ArrayList<>();
+        synchronized (this) {
+            stopped = true;
+            if (session != null) {
+                session.cancel();
+                session = null;
+            }
+            if (client != null) {
+                client.disconnect();
+                client = null;
+            }
+            for (final String peerId : new ArrayList<>(peers.keySet())) {
+                closed.add(removePeer(peerId));
+            }
+            pendingIceCandidates.clear();
+        }
+        for (final PeerConnection peer : closed) {
+            peer.dispose();
+        }
+    }
+
+    /**
+     * Updates the media bytes of the open peer connections in the accounting, and their bandwidth
+     * estimates in the uplink allocator, from their stats.
+     */
+    void collectStats() {
+        final Map<String, PeerConnection> open;
+        synchronized (this) {
+            open = new HashMap<>(peers);
+        }
+        for (final Map.Entry<String, PeerConnection> entry : open.entrySet()) {
+            final String peerId = entry.getKey();
+            entry.getValue().getStats(report -> {
+                final Map<String, RTCStats> statsMap = report.getStatsMap();
+                long bytesReceived = 0;
+                long bytesSent = 0;
+                long availableOutgoingBitrate = 0;
+                for (final RTCStats stats : statsMap.values()) {
+                    if (STATS_TYPE_TRANSPORT.equals(stats.getType())) {
+                        bytesReceived += longMember(stats, "bytesReceived");
+                        bytesSent += longMember(stats, "bytesSent");
+                        final RTCStats candidatePair =
+                                statsMap.get(stats.getMembers().get(STATS_SELECTED_CANDIDATE_PAIR_ID));
+                        if (candidatePair != null) {
+                            availableOutgoingBitrate += longMember(candidatePair, STATS_AVAILABLE_OUTGOING_BITRATE);
+                        }
+                    }
+                }
+                accounting.onPeerBytes(peerId, bytesReceived, bytesSent);
+                if (availableOutgoingBitrate > 0) {
+                    uplinkAllocator.onEstimate(key, peerId, availableOutgoingBitrate);
+                }
+            });
+        }
+    }
+
+    private void connect(final SignalingChannelInfo info, final List<PeerConnection.IceServer> iceServers) {
+        final URI signedUri;
+        try {
+            signedUri = signer.sign(key, info, "");
+        } catch (final ControlPlaneException e) {
+            throw new CompletionException(e);
+        }
+
+        final PeerConnection.RTCConfiguration config = new PeerConnection.RTCConfiguration(iceServers);
+        config.bundlePolicy = PeerConnection.BundlePolicy.MAXBUNDLE;
+        config.sdpSemantics = PeerConnection.SdpSemantics.UNIFIED_PLAN;
+        config.continualGatheringPolicy = PeerConnection.ContinualGatheringPolicy.GATHER_CONTINUALLY;
+        config.keyType = PeerConnection.KeyType.ECDSA;
+        config.rtcpMuxPolicy = PeerConnection.RtcpMuxPolicy.REQUIRE;
+        config.tcpCandidatePolicy = PeerConnection.TcpCandidatePolicy.ENABLED;
+
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            rtcConfig = config;
+        }
+        // Blocks until connected, so it runs on the I/O executor rather than the bootstrap's
+        ioExecutor.execute(() -> {
+            final SignalingServiceWebSocketClient connected;
+            try {
+                connected = SignalingServiceWebSocketClient.withSharedExecutor(signedUri.toString(),
+                        signalingListener, ioExecutor);
+            } catch (final Exception e) {
+                Log.e(TAG, key + ": could not connect to signaling: " + e);
+                accounting.onFailure();
+                return;
+            }
+            if (!connected.isOpen()) {
+                Log.e(TAG, key + ": could not connect to signaling");
+                accounting.onFailure();
+                return;
+            }
+            synchronized (this) {
+                if (stopped) {
+                    connected.disconnect();
+                    return;
+                }
+                client = connected;
+            }
+            Log.i(TAG, key + ": connected to signaling");
+        });
+    }
+
+    /**
+     * Peer connection calls block on libwebrtc's signaling thread, which also runs the observers,
+     * so they are made without holding the lock.
+     */
+    private void answer(final String peerId, final String sdp) {
+        final PeerConnection.RTCConfiguration config;
+        final PeerConnection previous;
+        synchronized (this) {
+            if (stopped || rtcConfig == null) {
+                return;
+            }
+            config = rtcConfig;
+            // Set if the viewer reconnected
+            previous = removePeer(peerId);
+        }
+        if (previous != null) {
+            previous.dispose();
+        }
+
+        // Set once created, the observer only closes this one and not a later connection of the viewer
+        final AtomicReference<PeerConnection> created = new AtomicReference<>();
+        final PeerConnection peer = peerConnectionFactory.createPeerConnection(config, new KinesisVideoPeerConnection() {
+
+            /**
+             * Changes with each state change, so a timeout only closes the disconnect it was set for.
+             */
+            private volatile int stateChanges;
+
+            @Override
+            public void onIceCandidate(final IceCandidate iceCandidate) {
+                super.onIceCandidate(iceCandidate);
+                send(Message.createIceCandidateMessage(iceCandidate, peerId, ""));
+            }
+
+            @Override
+            public void onIceConnectionChange(final PeerConnection.IceConnectionState iceConnectionState) {
+                super.onIceConnectionChange(iceConnectionState);
+                final int change = ++stateChanges;
+                if (iceConnectionState == PeerConnection.IceConnectionState.FAILED
+                        || iceConnectionState == PeerConnection.IceConnectionState.CLOSED) {
+                    // Not disposed on the thread reporting the change, nor while the host collects stats
+                    scheduler.execute(() -> closePeer(peerId, created.get()));
+                } else if (iceConnectionState == PeerConnection.IceConnectionState.DISCONNECTED) {
+                    scheduler.schedule(() -> {
+                        if (stateChanges == change) {
+                            Log.i(TAG, key + ": " + peerId + " disconnected for " + DISCONNECTED_TIMEOUT_MS + " ms");
+                            closePeer(peerId, created.get());
+                        }
+                    }, DISCONNECTED_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+        if (peer == null) {
+            Log.e(TAG, key + ": could not create a peer connection for " + peerId);
+            accounting.onFailure();
+            return;
+        }
+        created.set(peer);
+        final boolean added;
+        synchronized (this) {
+            added = !stopped;
+            if (added) {
+                peers.put(peerId, peer);
+                accounting.onPeerCreated(peerId);
+            }
+        }
+        if (!added) {
+            peer.dispose();
+            return;
+        }
+        final List<RtpSender> videoSenders = new ArrayList<>();
+        for (final MediaStreamTrack track : tracks) {
+            final RtpSender sender = peer.addTrack(track, Collections.singletonList(key.getChannelName()));
+            if (sender != null && MediaStreamTrack.VIDEO_TRACK_KIND.equals(track.kind())) {
+                videoSenders.add(sender);
+            }
+        }
+        if (!videoSenders.isEmpty()) {
+            uplinkAllocator.onViewerJoined(key, peerId,
+                    maxBitrateBps -> setMaxBitrate(peerId, peer, videoSenders, maxBitrateBps));
+        }
+
+        peer.setRemoteDescription(new KinesisVideoSdpObserver(), new SessionDescription(SessionDescription.Type.OFFER, sdp));
+
+        final MediaConstraints sdpMediaConstraints = new MediaConstraints();
+        sdpMediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo", "true"));
+        sdpMediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
+        peer.createAnswer(new KinesisVideoSdpObserver() {
+
+            @Override
+            public void onCreateSuccess(final SessionDescription sessionDescription) {
+                super.onCreateSuccess(sessionDescription);
+                peer.setLocalDescription(new KinesisVideoSdpObserver(), sessionDescription);
+                send(Message.createAnswerMessage(sessionDescription, true, peerId));
+                addPendingIceCandidates(peerId, peer);
+            }
+
+            @Override
+            public void onCreateFailure(final String error) {
+                super.onCreateFailure(error);
+                accounting.onFailure();
+            }
+        }, sdpMediaConstraints);
+    }
+
+    private void addRemoteIceCandidate(final String peerId, final IceCandidate iceCandidate) {
+        final PeerConnection peer;
+        synchronized (this) {
+            peer = pendingIceCandidates.containsKey(peerId) ? null : peers.get(peerId);
+            if (peer == null) {
+                if (!stopped) {
+                    // Added once the viewer's offer is answered
+                    pendingIceCandidates.computeIfAbsent(peerId, id -> new ArrayList<>()).add(iceCandidate);
+                }
+                return;
+            }
+        }
+        peer.addIceCandidate(iceCandidate);
+    }
+
+    private void addPendingIceCandidates(final String peerId, final PeerConnection peer) {
+        final List<IceCandidate> pending;
+        synchronized (this) {
+            if (peers.get(peerId) != peer) {
+                return;
+            }
+            pending = pendingIceCandidates.remove(peerId);
+        }
+        if (pending != null) {
+            for (final IceCandidate iceCandidate : pending) {
+                peer.addIceCandidate(iceCandidate);
+            }
+        }
+    }
+
+    /**
+     * Closes {@code peer} if it still is the viewer's peer connection.
+     */
+    private void closePeer(final String peerId, final PeerConnection peer) {
+        synchronized (this) {
+            if (peer == null || peers.get(peerId) != peer) {
+                return;
+            }
+            removePeer(peerId);
+        }
+        peer.dispose();
+        Log.i(TAG, key + ": closed peer connection of " + peerId);
+    }
+
+    /**
+     * @return The removed peer connection for the caller to dispose, {@code null} if none.
+     */
+    private PeerConnection removePeer(final String peerId) {
+        final PeerConnection peer = peers.remove(peerId);
+        if (peer != null) {
+            pendingIceCandidates.remove(peerId);
+            accounting.onPeerClosed(peerId);
+            uplinkAllocator.onViewerLeft(key, peerId);
+        }
+        return peer;
+    }
+
+    /**
+     * Caps the viewer's video to its share of the uplink, split evenly among its video senders.
+     */
+    private void setMaxBitrate(final String peerId, final PeerConnection peer, final List<RtpSender> videoSenders,
+                               final int maxBitrateBps) {
+        synchronized (this) {
+            if (peers.get(peerId) != peer) {
+                return;
+            }
+        }
+        try {
+            for (final RtpSender sender : videoSenders) {
+                final RtpParameters parameters = sender.getParameters();
+                for (final RtpParameters.Encoding encoding : parameters.encodings) {
+                    encoding.maxBitrateBps = maxBitrateBps / videoSenders.size();
+                }
+                if (!sender.setParameters(parameters)) {
+                    Log.e(TAG, key + ": failed to cap the video of " + peerId + " to " + maxBitrateBps + " bps");
+                }
+            }
+        } catch (final IllegalStateException e) {
+            // The peer connection was closed meanwhile
+            Log.d(TAG, key + ": not capping the video of closed " + peerId);
+        }
+    }
+
+    private void send(final Message message) {
+        final SignalingServiceWebSocketClient connected;
+        synchronized (this) {
+            connected = client;
+        }
+        if (connected == null) {
+            return;
+        }
+        accounting.onMessageSent(message.getMessagePayload().length());
+        if ("SDP_ANSWER".equals(message.getAction())) {
+            connected.sendSdpAnswer(message);
+        } else {
+            connected.sendIceCandidate(message);
+        }
+    }
+
+    private static long longMember(final RTCStats stats, final String name) {
+        final Object value = stats.getMembers().get(name);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+}
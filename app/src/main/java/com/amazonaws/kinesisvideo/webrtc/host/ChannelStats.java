@@ -0,0 +1,108 @@
+package com.amazonaws.kinesisvideo.webrtc.host;
+
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
+
+/**
+ * Snapshot of what one channel of a {@link ChannelHost} uses: its peer connections, signaling
+ * traffic and media traffic.
+ */
+public final class ChannelStats {
+
+    private final SignalingChannelKey key;
+
+    private final int peers;
+
+    private final long peersCreated;
+
+    private final long messagesReceived;
+
+    private final long messagesSent;
+
+    private final long signalingBytesReceived;
+
+    private final long signalingBytesSent;
+
+    private final long mediaBytesReceived;
+
+    private final long mediaBytesSent;
+
+    private final long failures;
+
+    public ChannelStats(final SignalingChannelKey key, final int peers, final long peersCreated,
+                        final long messagesReceived, final long messagesSent, final long signalingBytesReceived,
+                        final long signalingBytesSent, final long mediaBytesReceived, final long mediaBytesSent,
+                        final long failures) {
+        this.key = key;
+        this.peers = peers;
+        this.peersCreated = peersCreated;
+        this.messagesReceived = messagesReceived;
+        this.messagesSent = messagesSent;
+        this.signalingBytesReceived = signalingBytesReceived;
+        this.signalingBytesSent = signalingBytesSent;
+        this.mediaBytesReceived = mediaBytesReceived;
+        this.mediaBytesSent = mediaBytesSent;
+        this.failures = failures;
+    }
+
+    public SignalingChannelKey getKey() {
+        return key;
+    }
+
+    /**
+     * @return Peer connections currently open.
+     */
+    public int getPeers() {
+        return peers;
+    }
+
+    public long getPeersCreated() {
+        return peersCreated;
+    }
+
+    public long getMessagesReceived() {
+        return messagesReceived;
+    }
+
+    public long getMessagesSent() {
+        return messagesSent;
+    }
+
+    /**
+     * @return Size of the signaling message payloads received.
+     */
+    public long getSignalingBytesReceived() {
+        return signalingBytesReceived;
+    }
+
+    public long getSignalingBytesSent() {
+        return signalingBytesSent;
+    }
+
+    /**
+     * @return Bytes received over the peer connections' transports, including closed ones, as of the
+     * latest {@link ChannelHost#collectStats}.
+     */
+    public long getMediaBytesReceived() {
+        return mediaBytesReceived;
+    }
+
+    public long getMediaBytesSent() {
+        return mediaBytesSent;
+    }
+
+    /**
+     * @return Failures to connect to signaling or to answer a viewer.
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelStats(key=" + key + ", peers=" + peers + ", peersCreated=" + peersCreated
+                + ", messagesReceived=" + messagesReceived + ", messagesSent=" + messagesSent
+                + ", signalingBytesReceived=" + signalingBytesReceived + ", signalingBytesSent=" + signalingBytesSent
+                + ", mediaBytesReceived=" + mediaBytesReceived + ", mediaBytesSent=" + mediaBytesSent
+                + ", failures=" + failures + ")";
+    }
+}
@@ -0,0 +1,296 @@
+package com.amazonaws.kinesisvideo.webrtc.host;
+
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Shares the device's uplink among the viewers of a {@link ChannelHost}, which would otherwise each
+ * run their own congestion control and together oversubscribe the uplink. The budget is split with
+ * {@link UplinkSplitter} by the viewers' priorities and weights, and each viewer's share is applied
+ * as the max bitrate of its senders. The split is redone when viewers join or leave, priorities or
+ * the budget change, or the measured uplink moves by more than {@link #REBALANCE_THRESHOLD}.
+ * <p>
+ * The budget is the configured one, or the uplink measured from the viewers' bandwidth estimates,
+ * whichever is lower. While the viewers are capped their estimates tend to stay near the caps, so
+ * the measurement is taken with {@link #PROBE_HEADROOM} to let the split grow back. Without either,
+ * {@link #DEFAULT_BUDGET_BPS} is split.
+ * <p>
+ * Targets are applied on the given executor, which must run tasks one at a time.
+ */
+public class UplinkAllocator {
+
+    public static final long DEFAULT_BUDGET_BPS = 4_000_000;
+
+    public static final long DEFAULT_MIN_BPS = 150_000;
+
+    public static final long DEFAULT_MAX_BPS = 2_500_000;
+
+    static final double PROBE_HEADROOM = 1.1;
+
+    /**
+     * Below the margin of {@link #PROBE_HEADROOM}, or estimates at the caps would never grow the budget.
+     */
+    static final double REBALANCE_THRESHOLD = 0.05;
+
+    /**
+     * Where a viewer's share is applied, e.g. the max bitrate of its video sender.
+     */
+    public interface Target {
+        void setMaxBitrateBps(int maxBitrateBps);
+    }
+
+    private static final class ViewerId {
+        final SignalingChannelKey key;
+
+        final String peerId;
+
+        ViewerId(final SignalingChannelKey key, final String peerId) {
+            this.key = key;
+            this.peerId = peerId;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ViewerId)) {
+                return false;
+            }
+            final ViewerId other = (ViewerId) o;
+            return key.equals(other.key) && peerId.equals(other.peerId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, peerId);
+        }
+
+        @Override
+        public String toString() {
+            return key.getChannelName() + "/" + peerId;
+        }
+    }
+
+    private static final class Priority {
+        final int priority;
+
+        final double weight;
+
+        Priority(final int priority, final double weight) {
+            if (!(weight > 0)) {
+                throw new IllegalArgumentException("Invalid uplink weight " + weight);
+            }
+            this.priority = priority;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Viewer {
+        final Target target;
+
+        long estimateBps;
+
+        long appliedBps = -1;
+
+        Viewer(final Target target) {
+            this.target = target;
+        }
+    }
+
+    private static final Priority DEFAULT_PRIORITY = new Priority(0, 1);
+
+    private final Executor executor;
+
+    private final long minBps;
+
+    private final long maxBps;
+
+    private final Map<ViewerId, Viewer> viewers = new LinkedHashMap<>();
+
+    private final Map<SignalingChannelKey, Priority> channelPriorities = new HashMap<>();
+
+    private final Map<ViewerId, Priority> viewerPriorities = new HashMap<>();
+
+    private long configuredBudgetBps;
+
+    /**
+     * The budget the current split was made for.
+     */
+    private long budgetBps;
+
+    private boolean rebalancePending;
+
+    private long rebalances;
+
+    public UplinkAllocator(final Executor executor) {
+        this(executor, 0, DEFAULT_MIN_BPS, DEFAULT_MAX_BPS);
+    }
+
+    /**
+     * @param configuredBudgetBps 0 to measure the uplink.
+     * @param minBps              What each viewer is given first, if the budget allows.
+     * @param maxBps              What no viewer is given more than.
+     * @throws IllegalArgumentException if the bitrates are negative or out of order.
+     */
+    public UplinkAllocator(final Executor executor, final long configuredBudgetBps, final long minBps,
+                           final long maxBps) {
+        if (configuredBudgetBps < 0 || minBps < 0 || maxBps < minBps || maxBps > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid uplink allocator configuration");
+        }
+        this.executor = executor;
+        this.configuredBudgetBps = configuredBudgetBps;
+        this.minBps = minBps;
+        this.maxBps = maxBps;
+    }
+
+    /**
+     * @param budgetBps 0 to measure the uplink.
+     */
+    public synchronized void setBudgetBps(final long budgetBps) {
+        if (budgetBps < 0) {
+            throw new IllegalArgumentException("Invalid uplink budget " + budgetBps);
+        }
+        configuredBudgetBps = budgetBps;
+        scheduleRebalance();
+    }
+
+    /**
+     * Sets the priority and weight of the channel's viewers that have none of their own.
+     *
+     * @param priority Higher is served first, 0 by default.
+     * @param weight   Share within the priority, 1 by default.
+     */
+    public synchronized void setChannelPriority(final SignalingChannelKey key, final int priority, final double weight) {
+        channelPriorities.put(key, new Priority(priority, weight));
+        scheduleRebalance();
+    }
+
+    /**
+     * Sets the priority and weight of one viewer, before or after it joined, until it leaves.
+     */
+    public synchronized void setViewerPriority(final SignalingChannelKey key, final String peerId, final int priority,
+                                               final double weight) {
+        viewerPriorities.put(new ViewerId(key, peerId), new Priority(priority, weight));
+        scheduleRebalance();
+    }
+
+    public synchronized void onViewerJoined(final SignalingChannelKey key, final String peerId, final Target target) {
+        viewers.put(new ViewerId(key, peerId), new Viewer(target));
+        scheduleRebalance();
+    }
+
+    public synchronized void onViewerLeft(final SignalingChannelKey key, final String peerId) {
+        final ViewerId id = new ViewerId(key, peerId);
+        viewerPriorities.remove(id);
+        if (viewers.remove(id) != null) {
+            scheduleRebalance();
+        }
+    }
+
+    /**
+     * Channels stopped drop their priority with their viewers.
+     */
+    public synchronized void onChannelStopped(final SignalingChannelKey key) {
+        channelPriorities.remove(key);
+        viewers.keySet().removeIf(id -> id.key.equals(key));
+        viewerPriorities.keySet().removeIf(id -> id.key.equals(key));
+        scheduleRebalance();
+    }
+
+    /**
+     * @param availableOutgoingBitrateBps The viewer's bandwidth estimate, from its candidate pair stats.
+     */
+    public synchronized void onEstimate(final SignalingChannelKey key, final String peerId,
+                                        final long availableOutgoingBitrateBps) {
+        final Viewer viewer = viewers.get(new ViewerId(key, peerId));
+        if (viewer == null) {
+            return;
+        }
+        viewer.estimateBps = availableOutgoingBitrateBps;
+        final long next = effectiveBudgetBps();
+        if (Math.abs(next - budgetBps) > budgetBps * REBALANCE_THRESHOLD) {
+            scheduleRebalance();
+        }
+    }
+
+    public synchronized UplinkStats getStats() {
+        long allocatedBps = 0;
+        for (final Viewer viewer : viewers.values()) {
+            allocatedBps += Math.max(viewer.appliedBps, 0);
+        }
+        return new UplinkStats(viewers.size(), configuredBudgetBps, measuredBudgetBps(), budgetBps, allocatedBps,
+                rebalances);
+    }
+
+    private void scheduleRebalance() {
+        if (!rebalancePending) {
+            rebalancePending = true;
+            executor.execute(this::rebalance);
+        }
+    }
+
+    private void rebalance() {
+        final Map<Target, Long> changed = new LinkedHashMap<>();
+        synchronized (this) {
+            rebalancePending = false;
+            rebalances++;
+            budgetBps = effectiveBudgetBps();
+            final List<UplinkSplitter.Demand> demands = new ArrayList<>();
+            final Map<String, Viewer> byDemandId = new HashMap<>();
+            for (final Map.Entry<ViewerId, Viewer> entry : viewers.entrySet()) {
+                final ViewerId id = entry.getKey();
+                Priority priority = viewerPriorities.get(id);
+                if (priority == null) {
+                    priority = channelPriorities.getOrDefault(id.key, DEFAULT_PRIORITY);
+                }
+                final String demandId = id.toString();
+                demands.add(new UplinkSplitter.Demand(demandId, priority.priority, priority.weight, minBps, maxBps));
+                byDemandId.put(demandId, entry.getValue());
+            }
+            for (final Map.Entry<String, Long> split : UplinkSplitter.split(budgetBps, demands).entrySet()) {
+                final Viewer viewer = byDemandId.get(split.getKey());
+                if (viewer.appliedBps != split.getValue()) {
+                    viewer.appliedBps = split.getValue();
+                    changed.put(viewer.target, split.getValue());
+                }
+            }
+        }
+        // Applied without the lock, senders block on libwebrtc's threads
+        for (final Map.Entry<Target, Long> entry : changed.entrySet()) {
+            entry.getKey().setMaxBitrateBps((int) (long) entry.getValue());
+        }
+    }
+
+    private long effectiveBudgetBps() {
+        final long measured = measuredBudgetBps();
+        if (configuredBudgetBps > 0 && measured > 0) {
+            return Math.min(configuredBudgetBps, measured);
+        }
+        if (configuredBudgetBps > 0) {
+            return configuredBudgetBps;
+        }
+        return measured > 0 ? measured : DEFAULT_BUDGET_BPS;
+    }
+
+    /**
+     * @return The sum of the viewers' estimates with {@link #PROBE_HEADROOM}, 0 until all reported one.
+     */
+    private long measuredBudgetBps() {
+        long sum = 0;
+        for (final Viewer viewer : viewers.values()) {
+            if (viewer.estimateBps <= 0) {
+                return 0;
+            }
+            sum += viewer.estimateBps;
+        }
+        return (long) (sum * PROBE_HEADROOM);
+    }
+}
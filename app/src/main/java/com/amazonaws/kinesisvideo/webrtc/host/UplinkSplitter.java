@@ -0,0 +1,127 @@
+package com.amazonaws.kinesisvideo.webrtc.host;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits an uplink budget across the viewers of a master:
+ * <ol>
+ *     <li>Each viewer gets its minimum, higher priorities first, while the budget lasts.</li>
+ *     <li>The rest goes to the highest priority first, shared in proportion to the weights and up
+ *     to each viewer's maximum; what a priority cannot use goes to the next one.</li>
+ * </ol>
+ * Viewers of the same priority with room to grow thus end up with bitrates proportional to their
+ * weights. Has no dependency on libwebrtc.
+ */
+public final class UplinkSplitter {
+
+    /**
+     * What one viewer asks for.
+     */
+    public static final class Demand {
+        private final String id;
+
+        private final int priority;
+
+        private final double weight;
+
+        private final long minBps;
+
+        private final long maxBps;
+
+        /**
+         * @param priority Higher is served first.
+         * @throws IllegalArgumentException if the weight is not positive, or the bitrates are out of order.
+         */
+        public Demand(final String id, final int priority, final double weight, final long minBps, final long maxBps) {
+            if (!(weight > 0) || minBps < 0 || maxBps < minBps) {
+                throw new IllegalArgumentException("Invalid uplink demand for " + id);
+            }
+            this.id = id;
+            this.priority = priority;
+            this.weight = weight;
+            this.minBps = minBps;
+            this.maxBps = maxBps;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    private UplinkSplitter() {
+    }
+
+    /**
+     * @return The bitrate of each viewer by its id; they add up to at most {@code budgetBps}.
+     */
+    public static Map<String, Long> split(final long budgetBps, final List<Demand> demands) {
+        final List<Demand> byPriority = new ArrayList<>(demands);
+        // Stable, so viewers of the same priority keep the order given
+        byPriority.sort(Comparator.comparingInt((Demand demand) -> -demand.priority));
+
+        final Map<String, Long> bitrates = new HashMap<>();
+        long remaining = Math.max(budgetBps, 0);
+        for (final Demand demand : byPriority) {
+            final long bps = Math.min(demand.minBps, remaining);
+            bitrates.put(demand.id, bps);
+            remaining -= bps;
+        }
+
+        int start = 0;
+        while (start < byPriority.size() && remaining > 0) {
+            int end = start;
+            while (end < byPriority.size() && byPriority.get(end).priority == byPriority.get(start).priority) {
+                end++;
+            }
+            remaining = fill(byPriority.subList(start, end), bitrates, remaining);
+            start = end;
+        }
+        return bitrates;
+    }
+
+    /**
+     * Shares {@code remaining} among viewers of one priority by weight, up to their maximums.
+     *
+     * @return What is left over.
+     */
+    private static long fill(final List<Demand> level, final Map<String, Long> bitrates, long remaining) {
+        final List<Demand> growing = new ArrayList<>();
+        for (final Demand demand : level) {
+            if (bitrates.get(demand.id) < demand.maxBps) {
+                growing.add(demand);
+            }
+        }
+        while (remaining > 0 && !growing.isEmpty()) {
+            double totalWeight = 0;
+            for (final Demand demand : growing) {
+                totalWeight += demand.weight;
+            }
+            // Viewers whose share exceeds their maximum are capped first, the others share what they leave
+            final List<Demand> capped = new ArrayList<>();
+            for (final Demand demand : growing) {
+                if (bitrates.get(demand.id) + remaining * demand.weight / totalWeight >= demand.maxBps) {
+                    capped.add(demand);
+                }
+            }
+            if (capped.isEmpty()) {
+                long given = 0;
+                for (final Demand demand : growing) {
+                    final long share = (long) (remaining * demand.weight / totalWeight);
+                    bitrates.put(demand.id, bitrates.get(demand.id) + share);
+                    given += share;
+                }
+                return remaining - given;
+            }
+            for (final Demand demand : capped) {
+                remaining -= demand.maxBps - bitrates.get(demand.id);
+                bitrates.put(demand.id, demand.maxBps);
+            }
+            growing.removeAll(capped);
+        }
+        return remaining;
+    }
+}
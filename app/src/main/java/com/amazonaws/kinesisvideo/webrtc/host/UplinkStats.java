@@ -0,0 +1,72 @@
+package com.amazonaws.kinesisvideo.webrtc.host;
+
+/**
+ * Snapshot of how an {@link UplinkAllocator} splits the uplink.
+ */
+public final class UplinkStats {
+
+    private final int viewers;
+
+    private final long configuredBudgetBps;
+
+    private final long measuredBudgetBps;
+
+    private final long budgetBps;
+
+    private final long allocatedBps;
+
+    private final long rebalances;
+
+    public UplinkStats(final int viewers, final long configuredBudgetBps, final long measuredBudgetBps,
+                       final long budgetBps, final long allocatedBps, final long rebalances) {
+        this.viewers = viewers;
+        this.configuredBudgetBps = configuredBudgetBps;
+        this.measuredBudgetBps = measuredBudgetBps;
+        this.budgetBps = budgetBps;
+        this.allocatedBps = allocatedBps;
+        this.rebalances = rebalances;
+    }
+
+    public int getViewers() {
+        return viewers;
+    }
+
+    /**
+     * @return 0 if the uplink is measured.
+     */
+    public long getConfiguredBudgetBps() {
+        return configuredBudgetBps;
+    }
+
+    /**
+     * @return 0 until every viewer reported a bandwidth estimate.
+     */
+    public long getMeasuredBudgetBps() {
+        return measuredBudgetBps;
+    }
+
+    /**
+     * @return The budget of the latest split.
+     */
+    public long getBudgetBps() {
+        return budgetBps;
+    }
+
+    /**
+     * @return The max bitrates applied to the viewers, added up.
+     */
+    public long getAllocatedBps() {
+        return allocatedBps;
+    }
+
+    public long getRebalances() {
+        return rebalances;
+    }
+
+    @Override
+    public String toString() {
+        return "UplinkStats(viewers=" + viewers + ", configuredBudgetBps=" + configuredBudgetBps
+                + ", measuredBudgetBps=" + measuredBudgetBps + ", budgetBps=" + budgetBps
+                + ", allocatedBps=" + allocatedBps + ", rebalances=" + rebalances + ")";
+    }
+}
@@ -0,0 +1,188 @@
+package com.amazonaws.kinesisvideo.webrtc.ice;
+
+import org.webrtc.PeerConnection;
+
+/**
+ * Restricts the ICE candidates a peer connection uses, e.g. to relayed candidates only.
+ * <p>
+ * {@link #applyTo} makes libwebrtc skip gathering the excluded local candidates; {@link #acceptLocal}
+ * is for local candidates the configuration cannot exclude, and {@link #acceptRemote} for
+ * candidates received from the remote peer. Every candidate dropped is a candidate pair less to
+ * check, so connectivity checks finish sooner.
+ * <p>
+ * The preferred network only applies to local candidates: it is about which of this device's
+ * networks to use, and says nothing about the networks the remote peer is on.
+ * <p>
+ * Candidates that do not parse are accepted and left for libwebrtc to reject.
+ */
+public final class IceCandidateFilter {
+
+    /**
+     * Network cost libwebrtc gives candidates on an adapter type, see {@code rtc::Network::GetCost}.
+     */
+    private static final int COST_WIRED = 0;
+
+    private static final int COST_WIFI = 10;
+
+    private static final int COST_UNKNOWN = 50;
+
+    private static final int COST_CELLULAR = 900;
+
+    public static final IceCandidateFilter ALLOW_ALL = builder().build();
+
+    private final boolean relayOnly;
+
+    private final boolean allowTcp;
+
+    private final boolean allowIpv6;
+
+    private final PeerConnection.AdapterType preferredNetwork;
+
+    private final ThreadLocal<IceCandidateLine> lines = ThreadLocal.withInitial(IceCandidateLine::new);
+
+    private IceCandidateFilter(final Builder builder) {
+        this.relayOnly = builder.relayOnly;
+        this.allowTcp = builder.allowTcp;
+        this.allowIpv6 = builder.allowIpv6;
+        this.preferredNetwork = builder.preferredNetwork;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Configures gathering of local candidates to match this filter.
+     */
+    public void applyTo(final PeerConnection.RTCConfiguration rtcConfig) {
+        if (relayOnly) {
+            rtcConfig.iceTransportsType = PeerConnection.IceTransportsType.RELAY;
+        }
+        if (!allowTcp) {
+            rtcConfig.tcpCandidatePolicy = PeerConnection.TcpCandidatePolicy.DISABLED;
+        }
+        if (!allowIpv6) {
+            rtcConfig.maxIPv6Networks = 0;
+        }
+        if (preferredNetwork != null) {
+            rtcConfig.networkPreference = preferredNetwork;
+            if (costOf(preferredNetwork) < COST_CELLULAR) {
+                // Leaves out cellular networks while a cheaper one is up
+                rtcConfig.candidateNetworkPolicy = PeerConnection.CandidateNetworkPolicy.LOW_COST;
+            }
+        }
+    }
+
+    /**
+     * @param candidate The {@code candidate} attribute of a local candidate, as in
+     *                  {@link org.webrtc.IceCandidate#sdp}.
+     */
+    public boolean acceptLocal(final String candidate) {
+        if (this == ALLOW_ALL || candidate == null) {
+            return true;
+        }
+        final IceCandidateLine line = lines.get();
+        return !line.parse(candidate) || acceptLocal(line);
+    }
+
+    public boolean acceptLocal(final IceCandidateLine candidate) {
+        return acceptRemote(candidate) && (preferredNetwork == null || candidate.getNetworkCost() < 0
+                || candidate.getNetworkCost() <= costOf(preferredNetwork));
+    }
+
+    /**
+     * @param candidate The {@code candidate} attribute of a remote candidate, as in
+     *                  {@link org.webrtc.IceCandidate#sdp}.
+     */
+    public boolean acceptRemote(final String candidate) {
+        if (this == ALLOW_ALL || candidate == null) {
+            return true;
+        }
+        final IceCandidateLine line = lines.get();
+        return !line.parse(candidate) || acceptRemote(line);
+    }
+
+    /**
+     * Checks the candidate's type and transport only.
+     */
+    public boolean acceptRemote(final IceCandidateLine candidate) {
+        if (relayOnly && candidate.getType() != IceCandidateLine.Type.RELAY) {
+            return false;
+        }
+        if (!allowTcp && candidate.getProtocol() == IceCandidateLine.Protocol.TCP) {
+            return false;
+        }
+        return allowIpv6 || !candidate.isIpv6();
+    }
+
+    @Override
+    public String toString() {
+        return "IceCandidateFilter(relayOnly=" + relayOnly + ", allowTcp=" + allowTcp + ", allowIpv6=" + allowIpv6
+                + ", preferredNetwork=" + preferredNetwork + ")";
+    }
+
+    private static int costOf(final PeerConnection.AdapterType adapterType) {
+        switch (adapterType) {
+            case ETHERNET:
+            case LOOPBACK:
+                return COST_WIRED;
+            case WIFI:
+                return COST_WIFI;
+            case CELLULAR:
+            case CELLULAR_2G:
+            case CELLULAR_3G:
+            case CELLULAR_4G:
+            case CELLULAR_5G:
+                return COST_CELLULAR;
+            default:
+                return COST_UNKNOWN;
+        }
+    }
+
+    public static final class Builder {
+        private boolean relayOnly;
+
+        private boolean allowTcp = true;
+
+        private boolean allowIpv6 = true;
+
+        private PeerConnection.AdapterType preferredNetwork;
+
+        private Builder() {
+        }
+
+        /**
+         * Uses only candidates relayed through a TURN server, which hides the peers' addresses from
+         * each other and skips checks that cannot succeed behind restrictive firewalls.
+         */
+        public Builder setRelayOnly(final boolean relayOnly) {
+            this.relayOnly = relayOnly;
+            return this;
+        }
+
+        public Builder setAllowTcp(final boolean allowTcp) {
+            this.allowTcp = allowTcp;
+            return this;
+        }
+
+        public Builder setAllowIpv6(final boolean allowIpv6) {
+            this.allowIpv6 = allowIpv6;
+            return this;
+        }
+
+        /**
+         * Drops local candidates on networks that cost more than {@code preferredNetwork}, e.g.
+         * cellular candidates when Wi-Fi is preferred. Candidates without a network cost are kept.
+         *
+         * @param preferredNetwork {@code null} for no preference.
+         */
+        public Builder setPreferredNetwork(final PeerConnection.AdapterType preferredNetwork) {
+            this.preferredNetwork = preferredNetwork;
+            return this;
+        }
+
+        public IceCandidateFilter build() {
+            return new IceCandidateFilter(this);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.amazonaws.kinesisvideo.webrtc.ice;
+
+/**
+ * Parses the {@code candidate} attribute of an ICE candidate (RFC 8839) in place:
+ * <pre>
+ * candidate:842163049 1 udp 1677729535 203.0.113.7 50000 typ srflx raddr 10.0.0.2 rport 50000 network-cost 10
+ * </pre>
+ * Numbers and enumerated fields are decoded while scanning, strings are kept as ranges of the
+ * parsed line and only copied when asked for, so parsing and filtering do not allocate. Instances
+ * are reused across candidates and are not thread safe.
+ */
+public final class IceCandidateLine {
+
+    public enum Protocol {
+        UDP,
+        TCP
+    }
+
+    public enum Type {
+        HOST("host"),
+        SRFLX("srflx"),
+        PRFLX("prflx"),
+        RELAY("relay");
+
+        private final String token;
+
+        Type(final String token) {
+            this.token = token;
+        }
+
+        public String getToken() {
+            return token;
+        }
+    }
+
+    private static final String ATTRIBUTE_PREFIX = "a=";
+
+    private static final String CANDIDATE_PREFIX = "candidate:";
+
+    private static final String NETWORK_COST = "network-cost";
+
+    private static final Protocol[] PROTOCOLS = Protocol.values();
+
+    private static final Type[] TYPES = Type.values();
+
+    private String line;
+
+    private int position;
+
+    private int tokenStart;
+
+    private int tokenEnd;
+
+    private int foundationStart;
+
+    private int foundationEnd;
+
+    private int component;
+
+    private Protocol protocol;
+
+    private long priority;
+
+    private int addressStart;
+
+    private int addressEnd;
+
+    private boolean ipv6;
+
+    private int port;
+
+    private Type type;
+
+    private int networkCost;
+
+    /**
+     * @param candidate The attribute, with or without the leading {@code a=}.
+     * @return {@code false} if it is not a well-formed candidate; the getters are then undefined.
+     */
+    public boolean parse(final String candidate) {
+        line = candidate;
+        position = candidate.startsWith(ATTRIBUTE_PREFIX) ? ATTRIBUTE_PREFIX.length() : 0;
+        if (!candidate.startsWith(CANDIDATE_PREFIX, position)) {
+            return false;
+        }
+        position += CANDIDATE_PREFIX.length();
+        networkCost = -1;
+
+        if (!nextToken()) {
+            return false;
+        }
+        foundationStart = tokenStart;
+        foundationEnd = tokenEnd;
+
+        long value;
+        if (!nextToken() || (value = tokenNumber()) < 1 || value > 256) {
+            return false;
+        }
+        component = (int) value;
+
+        if (!nextToken() || (protocol = tokenEnum(PROTOCOLS)) == null) {
+            return false;
+        }
+
+        if (!nextToken() || (priority = tokenNumber()) < 0 || priority > 0xFFFFFFFFL) {
+            return false;
+        }
+
+        if (!nextToken()) {
+            return false;
+        }
+        addressStart = tokenStart;
+        addressEnd = tokenEnd;
+        final int colon = line.indexOf(':', addressStart);
+        ipv6 = colon >= 0 && colon < addressEnd;
+
+        if (!nextToken() || (value = tokenNumber()) < 0 || value > 0xFFFF) {
+            return false;
+        }
+        port = (int) value;
+
+        if (!nextToken() || !tokenEquals("typ") || !nextToken() || (type = tokenType()) == null) {
+            return false;
+        }
+
+        // Extension attributes come in name value pairs
+        while (nextToken()) {
+            final boolean isNetworkCost = tokenEquals(NETWORK_COST);
+            if (!nextToken()) {
+                return false;
+            }
+            if (isNetworkCost) {
+                final long cost = tokenNumber();
+                networkCost = cost >= 0 && cost <= Integer.MAX_VALUE ? (int) cost : -1;
+            }
+        }
+        return true;
+    }
+
+    public String getFoundation() {
+        return line.substring(foundationStart, foundationEnd);
+    }
+
+    public int getComponent() {
+        return component;
+    }
+
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    public long getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return The connection address: an IP address, or an mDNS host name for obfuscated host candidates.
+     */
+    public String getAddress() {
+        return line.substring(addressStart, addressEnd);
+    }
+
+    public boolean isIpv6() {
+        return ipv6;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The {@code network-cost} libwebrtc adds to its candidates, -1 if absent.
+     */
+    public int getNetworkCost() {
+        return networkCost;
+    }
+
+    private boolean nextToken() {
+        final int length = line.length();
+        while (position < length && line.charAt(position) == ' ') {
+            position++;
+        }
+        if (position >= length) {
+            return false;
+        }
+        tokenStart = position;
+        while (position < length && line.charAt(position) != ' ') {
+            position++;
+        }
+        tokenEnd = position;
+        return true;
+    }
+
+    /**
+     * @return The token as a decimal number, -1 if it is not one.
+     */
+    private long tokenNumber() {
+        if (tokenEnd - tokenStart > 10) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = tokenStart; i < tokenEnd; i++) {
+            final char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private boolean tokenEquals(final String token) {
+        return tokenEnd - tokenStart == token.length() && line.regionMatches(true, tokenStart, token, 0, token.length());
+    }
+
+    private <T extends Enum<T>> T tokenEnum(final T[] values) {
+        for (final T value : values) {
+            if (tokenEquals(value.name())) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private Type tokenType() {
+        for (final Type value : TYPES) {
+            if (tokenEquals(value.token)) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
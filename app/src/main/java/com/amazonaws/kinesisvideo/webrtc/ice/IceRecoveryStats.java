@@ -0,0 +1,69 @@
+package com.amazonaws.kinesisvideo.webrtc.ice;
+
+/**
+ * Snapshot of the ICE restarts of a peer connection and how long it took to recover.
+ */
+public final class IceRecoveryStats {
+
+    private final long restarts;
+
+    private final long recoveries;
+
+    private final long lastRecoveryMs;
+
+    private final double meanRecoveryMs;
+
+    private final long maxRecoveryMs;
+
+    private final boolean recovering;
+
+    public IceRecoveryStats(final long restarts, final long recoveries, final long lastRecoveryMs,
+                            final double meanRecoveryMs, final long maxRecoveryMs, final boolean recovering) {
+        this.restarts = restarts;
+        this.recoveries = recoveries;
+        this.lastRecoveryMs = lastRecoveryMs;
+        this.meanRecoveryMs = meanRecoveryMs;
+        this.maxRecoveryMs = maxRecoveryMs;
+        this.recovering = recovering;
+    }
+
+    public long getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * @return Times ICE was connected again after losing connectivity.
+     */
+    public long getRecoveries() {
+        return recoveries;
+    }
+
+    /**
+     * @return Time from losing connectivity until connected again for the latest recovery, -1 if none.
+     */
+    public long getLastRecoveryMs() {
+        return lastRecoveryMs;
+    }
+
+    public double getMeanRecoveryMs() {
+        return meanRecoveryMs;
+    }
+
+    public long getMaxRecoveryMs() {
+        return maxRecoveryMs;
+    }
+
+    /**
+     * @return {@code true} while connectivity is lost.
+     */
+    public boolean isRecovering() {
+        return recovering;
+    }
+
+    @Override
+    public String toString() {
+        return "IceRecoveryStats(restarts=" + restarts + ", recoveries=" + recoveries
+                + ", lastRecoveryMs=" + lastRecoveryMs + ", meanRecoveryMs=" + String.format("%.1f", meanRecoveryMs)
+                + ", maxRecoveryMs=" + maxRecoveryMs + ", recovering=" + recovering + ")";
+    }
+}
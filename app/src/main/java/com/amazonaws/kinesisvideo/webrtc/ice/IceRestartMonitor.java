@@ -0,0 +1,127 @@
+package com.amazonaws.kinesisvideo.webrtc.ice;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.webrtc.PeerConnection;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the ICE connection state and the device's default network and asks for an ICE restart
+ * as decided by {@link IceRestartPolicy}, e.g. on a handover from Wi-Fi to cellular.
+ * <p>
+ * The listener is called on the executor and must restart ICE on the peer connection with
+ * {@link PeerConnection#restartIce()} and send a new offer, or have the remote peer send one.
+ */
+public class IceRestartMonitor {
+
+    private static final String TAG = "KVSIceRestartMonitor";
+
+    private static final long POLL_INTERVAL_MS = 500;
+
+    public interface Listener {
+        void onIceRestartNeeded(IceRestartPolicy.Reason reason);
+    }
+
+    private final ConnectivityManager connectivityManager;
+
+    private final ScheduledExecutorService executor;
+
+    private final IceRestartPolicy policy;
+
+    private final Listener listener;
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(final Network network) {
+            onDefaultNetwork(network);
+        }
+    };
+
+    private Network defaultNetwork;
+
+    private ScheduledFuture<?> pollTask;
+
+    public IceRestartMonitor(final Context context, final ScheduledExecutorService executor, final Listener listener) {
+        this(context, executor, new IceRestartPolicy(), listener);
+    }
+
+    public IceRestartMonitor(final Context context, final ScheduledExecutorService executor,
+                             final IceRestartPolicy policy, final Listener listener) {
+        this.connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.executor = executor;
+        this.policy = policy;
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (pollTask != null) {
+            return;
+        }
+        connectivityManager.registerDefaultNetworkCallback(networkCallback);
+        pollTask = executor.scheduleWithFixedDelay(this::poll, POLL_INTERVAL_MS, POLL_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (pollTask == null) {
+            return;
+        }
+        pollTask.cancel(false);
+        pollTask = null;
+        try {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+        } catch (final IllegalArgumentException e) {
+            Log.w(TAG, "Network callback was not registered", e);
+        }
+        defaultNetwork = null;
+    }
+
+    /**
+     * Call from {@link PeerConnection.Observer#onIceConnectionChange}.
+     */
+    public void onIceConnectionChange(final PeerConnection.IceConnectionState state) {
+        policy.onIceConnectionChange(state, SystemClock.elapsedRealtime());
+        if (state == PeerConnection.IceConnectionState.FAILED) {
+            pollSoon();
+        }
+    }
+
+    public IceRecoveryStats getStats() {
+        return policy.getStats();
+    }
+
+    private void onDefaultNetwork(final Network network) {
+        final boolean changed;
+        synchronized (this) {
+            // The first callback reports the network the connection was set up on
+            changed = defaultNetwork != null && !defaultNetwork.equals(network);
+            defaultNetwork = network;
+        }
+        if (changed) {
+            Log.i(TAG, "Default network changed to " + network);
+            policy.onNetworkChange(SystemClock.elapsedRealtime());
+            pollSoon();
+        }
+    }
+
+    private synchronized void pollSoon() {
+        if (pollTask != null) {
+            executor.execute(this::poll);
+        }
+    }
+
+    private void poll() {
+        final IceRestartPolicy.Reason reason = policy.poll(SystemClock.elapsedRealtime());
+        if (reason != null) {
+            Log.i(TAG, "Restarting ICE (" + reason + "), " + policy.getStats());
+            listener.onIceRestartNeeded(reason);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.amazonaws.kinesisvideo.webrtc.ice;
+
+import org.webrtc.PeerConnection;
+
+/**
+ * Decides when to restart ICE on a peer connection that lost or may lose connectivity.
+ * <p>
+ * A restart is wanted when the ICE connection failed, when it stayed disconnected for longer than
+ * {@link #DEFAULT_DISCONNECTED_TIMEOUT_MS} after having been connected, or when the device switched
+ * networks. Restarts are spaced at least {@link #DEFAULT_MIN_RESTART_INTERVAL_MS} apart, doubling
+ * for every restart that does not bring the connection back, up to
+ * {@link #DEFAULT_MAX_RESTART_INTERVAL_MS}. The time from losing connectivity until ICE is
+ * connected again is recorded as the recovery time.
+ * <p>
+ * Times are passed in so that the policy can be tested without a real peer connection.
+ */
+public class IceRestartPolicy {
+
+    /**
+     * Why a restart is wanted.
+     */
+    public enum Reason {
+        /** The device's default network changed. */
+        NETWORK_CHANGE,
+        /** ICE was disconnected for longer than the threshold. */
+        DISCONNECTED_TIMEOUT,
+        /** ICE failed. */
+        FAILED
+    }
+
+    public static final long DEFAULT_DISCONNECTED_TIMEOUT_MS = 3000;
+
+    public static final long DEFAULT_MIN_RESTART_INTERVAL_MS = 5000;
+
+    public static final long DEFAULT_MAX_RESTART_INTERVAL_MS = 60000;
+
+    private final long disconnectedTimeoutMs;
+
+    private final long minRestartIntervalMs;
+
+    private final long maxRestartIntervalMs;
+
+    private PeerConnection.IceConnectionState state = PeerConnection.IceConnectionState.NEW;
+
+    private boolean everConnected;
+
+    private long notConnectedSinceMs = -1;
+
+    private boolean networkChanged;
+
+    private long lastRestartMs = -1;
+
+    private int consecutiveRestarts;
+
+    private long recoveryStartMs = -1;
+
+    private long restarts;
+
+    private long recoveries;
+
+    private long totalRecoveryMs;
+
+    private long lastRecoveryMs = -1;
+
+    private long maxRecoveryMs;
+
+    public IceRestartPolicy() {
+        this(DEFAULT_DISCONNECTED_TIMEOUT_MS, DEFAULT_MIN_RESTART_INTERVAL_MS, DEFAULT_MAX_RESTART_INTERVAL_MS);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a time is not positive or the intervals are out of order.
+     */
+    public IceRestartPolicy(final long disconnectedTimeoutMs, final long minRestartIntervalMs,
+                            final long maxRestartIntervalMs) {
+        if (disconnectedTimeoutMs <= 0 || minRestartIntervalMs <= 0 || maxRestartIntervalMs < minRestartIntervalMs) {
+            throw new IllegalArgumentException("Invalid ICE restart policy configuration");
+        }
+        this.disconnectedTimeoutMs = disconnectedTimeoutMs;
+        this.minRestartIntervalMs = minRestartIntervalMs;
+        this.maxRestartIntervalMs = maxRestartIntervalMs;
+    }
+
+    public synchronized void onIceConnectionChange(final PeerConnection.IceConnectionState newState,
+                                                   final long nowMs) {
+        state = newState;
+        switch (newState) {
+            case CONNECTED:
+            case COMPLETED:
+                if (recoveryStartMs >= 0) {
+                    lastRecoveryMs = nowMs - recoveryStartMs;
+                    totalRecoveryMs += lastRecoveryMs;
+                    maxRecoveryMs = Math.max(maxRecoveryMs, lastRecoveryMs);
+                    recoveries++;
+                    recoveryStartMs = -1;
+                }
+                everConnected = true;
+                notConnectedSinceMs = -1;
+                networkChanged = false;
+                consecutiveRestarts = 0;
+                break;
+            case CHECKING:
+            case DISCONNECTED:
+            case FAILED:
+                if (everConnected && notConnectedSinceMs < 0) {
+                    notConnectedSinceMs = nowMs;
+                }
+                if (everConnected && recoveryStartMs < 0) {
+                    recoveryStartMs = nowMs;
+                }
+                break;
+            case CLOSED:
+                notConnectedSinceMs = -1;
+                networkChanged = false;
+                recoveryStartMs = -1;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Call when the device's default network changed. Ignored until ICE was connected once, the
+     * first connection attempt gathers on the new network anyway.
+     */
+    public synchronized void onNetworkChange(final long nowMs) {
+        if (!everConnected || state == PeerConnection.IceConnectionState.CLOSED) {
+            return;
+        }
+        networkChanged = true;
+        if (!isConnected() && recoveryStartMs < 0) {
+            recoveryStartMs = nowMs;
+        }
+    }
+
+    /**
+     * @return The reason to restart ICE now, or {@code null} if no restart is due. A returned reason
+     * counts as a restart, the caller must restart ICE and renegotiate.
+     */
+    public synchronized Reason poll(final long nowMs) {
+        final Reason reason;
+        if (state == PeerConnection.IceConnectionState.FAILED) {
+            reason = Reason.FAILED;
+        } else if (networkChanged) {
+            reason = Reason.NETWORK_CHANGE;
+        } else if (notConnectedSinceMs >= 0 && !isConnected() && nowMs - notConnectedSinceMs >= disconnectedTimeoutMs) {
+            reason = Reason.DISCONNECTED_TIMEOUT;
+        } else {
+            return null;
+        }
+        if (lastRestartMs >= 0 && nowMs - lastRestartMs < getRestartIntervalMs()) {
+            return null;
+        }
+
+        lastRestartMs = nowMs;
+        consecutiveRestarts++;
+        restarts++;
+        networkChanged = false;
+        if (notConnectedSinceMs >= 0) {
+            // Give the restart as long as the original disconnect before trying again
+            notConnectedSinceMs = nowMs;
+        }
+        return reason;
+    }
+
+    public synchronized IceRecoveryStats getStats() {
+        return new IceRecoveryStats(restarts, recoveries, lastRecoveryMs,
+                recoveries > 0 ? (double) totalRecoveryMs / recoveries : 0, maxRecoveryMs,
+                recoveryStartMs >= 0);
+    }
+
+    /**
+     * @return The minimum time since the last restart before the next one.
+     */
+    synchronized long getRestartIntervalMs() {
+        final int doublings = Math.min(Math.max(consecutiveRestarts - 1, 0), 20);
+        return Math.min(maxRestartIntervalMs, minRestartIntervalMs << doublings);
+    }
+
+    private boolean isConnected() {
+        return state == PeerConnection.IceConnectionState.CONNECTED
+                || state == PeerConnection.IceConnectionState.COMPLETED;
+    }
+}
@@ -0,0 +1,76 @@
+package com.amazonaws.kinesisvideo.webrtc.sdp;
+
+/**
+ * {@code a=extmap:<id>[/<direction>] <uri> [<attributes>]}, an RTP header extension (RFC 8285).
+ */
+public final class ExtMap {
+
+    private final int id;
+
+    private final String direction;
+
+    private final String uri;
+
+    private final String attributes;
+
+    public ExtMap(final int id, final String direction, final String uri, final String attributes) {
+        this.id = id;
+        this.direction = direction;
+        this.uri = uri;
+        this.attributes = attributes;
+    }
+
+    /**
+     * @param value The attribute value, e.g. {@code 3 http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time}.
+     * @return {@code null} if it is malformed.
+     */
+    public static ExtMap parse(final String value) {
+        final int space = value.indexOf(' ');
+        if (space <= 0 || space == value.length() - 1) {
+            return null;
+        }
+        final int slash = value.indexOf('/');
+        final int idEnd = slash >= 0 && slash < space ? slash : space;
+        final int uriEnd = value.indexOf(' ', space + 1);
+        try {
+            return new ExtMap(Integer.parseInt(value.substring(0, idEnd)),
+                    idEnd < space ? value.substring(idEnd + 1, space) : null,
+                    value.substring(space + 1, uriEnd < 0 ? value.length() : uriEnd),
+                    uriEnd < 0 ? null : value.substring(uriEnd + 1));
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return {@code sendonly}, {@code recvonly}, {@code sendrecv} or {@code inactive}, {@code null} if not given.
+     */
+    public String getDirection() {
+        return direction;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * @return Extension attributes after the URI, {@code null} if none.
+     */
+    public String getAttributes() {
+        return attributes;
+    }
+
+    public SdpLine toLine() {
+        return SdpLine.attribute("extmap", id + (direction != null ? "/" + direction : "") + " " + uri
+                + (attributes != null ? " " + attributes : ""));
+    }
+
+    @Override
+    public String toString() {
+        return "ExtMap(id=" + id + ", direction=" + direction + ", uri=" + uri + ", attributes=" + attributes + ")";
+    }
+}
@@ -0,0 +1,91 @@
+package com.amazonaws.kinesisvideo.webrtc.sdp;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code a=fmtp:<payload type> <parameters>}, with the parameters as {@code key=value} pairs
+ * separated by semicolons in their original order.
+ */
+public final class Fmtp {
+
+    private final int payloadType;
+
+    private final Map<String, String> parameters;
+
+    public Fmtp(final int payloadType, final Map<String, String> parameters) {
+        this.payloadType = payloadType;
+        this.parameters = Collections.unmodifiableMap(new LinkedHashMap<>(parameters));
+    }
+
+    /**
+     * @param value The attribute value, e.g. {@code 97 apt=96}. A parameter without {@code =} is
+     *              kept with an empty value.
+     * @return {@code null} if it is malformed.
+     */
+    public static Fmtp parse(final String value) {
+        final int space = value.indexOf(' ');
+        if (space <= 0) {
+            return null;
+        }
+        final int payloadType;
+        try {
+            payloadType = Integer.parseInt(value.substring(0, space));
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+        final Map<String, String> parameters = new LinkedHashMap<>();
+        int start = space + 1;
+        while (start < value.length()) {
+            int end = value.indexOf(';', start);
+            if (end < 0) {
+                end = value.length();
+            }
+            final int equals = value.indexOf('=', start);
+            if (equals >= 0 && equals < end) {
+                parameters.put(value.substring(start, equals).trim(), value.substring(equals + 1, end).trim());
+            } else if (end > start) {
+                parameters.put(value.substring(start, end).trim(), "");
+            }
+            start = end + 1;
+        }
+        return new Fmtp(payloadType, parameters);
+    }
+
+    public int getPayloadType() {
+        return payloadType;
+    }
+
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return The value of {@code key}, {@code null} if absent.
+     */
+    public String getParameter(final String key) {
+        return parameters.get(key);
+    }
+
+    public SdpLine toLine() {
+        final StringBuilder value = new StringBuilder().append(payloadType).append(' ');
+        boolean first = true;
+        for (final Map.Entry<String, String> parameter : parameters.entrySet()) {
+            if (!first) {
+                value.append(';');
+            }
+            first = false;
+            value.append(parameter.getKey());
+            if (!parameter.getValue().isEmpty()) {
+                value.append('=').append(parameter.getValue());
+            }
+        }
+        return SdpLine.attribute("fmtp", value.toString());
+    }
+
+    @Override
+    public String toString() {
+        return "Fmtp(payloadType=" + payloadType + ", parameters=" + parameters + ")";
+    }
+}
@@ -0,0 +1,72 @@
+package com.amazonaws.kinesisvideo.webrtc.sdp;
+
+/**
+ * {@code a=rtpmap:<payload type> <encoding name>/<clock rate>[/<channels>]}.
+ */
+public final class RtpMap {
+
+    private final int payloadType;
+
+    private final String encodingName;
+
+    private final int clockRate;
+
+    private final int channels;
+
+    public RtpMap(final int payloadType, final String encodingName, final int clockRate, final int channels) {
+        this.payloadType = payloadType;
+        this.encodingName = encodingName;
+        this.clockRate = clockRate;
+        this.channels = channels;
+    }
+
+    /**
+     * @param value The attribute value, e.g. {@code 111 opus/48000/2}.
+     * @return {@code null} if it is malformed.
+     */
+    public static RtpMap parse(final String value) {
+        final int space = value.indexOf(' ');
+        final int slash = value.indexOf('/', space + 1);
+        if (space <= 0 || slash < 0) {
+            return null;
+        }
+        final int secondSlash = value.indexOf('/', slash + 1);
+        try {
+            return new RtpMap(Integer.parseInt(value.substring(0, space)), value.substring(space + 1, slash),
+                    Integer.parseInt(value.substring(slash + 1, secondSlash < 0 ? value.length() : secondSlash)),
+                    secondSlash < 0 ? 0 : Integer.parseInt(value.substring(secondSlash + 1)));
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public int getPayloadType() {
+        return payloadType;
+    }
+
+    public String getEncodingName() {
+        return encodingName;
+    }
+
+    public int getClockRate() {
+        return clockRate;
+    }
+
+    /**
+     * @return The number of audio channels, 0 if not given.
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    public SdpLine toLine() {
+        return SdpLine.attribute("rtpmap", payloadType + " " + encodingName + "/" + clockRate
+                + (channels > 0 ? "/" + channels : ""));
+    }
+
+    @Override
+    public String toString() {
+        return "RtpMap(payloadType=" + payloadType + ", encodingName=" + encodingName + ", clockRate=" + clockRate
+                + ", channels=" + channels + ")";
+    }
+}
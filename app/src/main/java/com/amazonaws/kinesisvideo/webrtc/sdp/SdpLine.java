@@ -0,0 +1,88 @@
+package com.amazonaws.kinesisvideo.webrtc.sdp;
+
+/**
+ * One line of a session description, {@code <type>=<value>}, kept as received together with its
+ * line ending so that an unmodified description serializes to exactly the same text.
+ */
+public final class SdpLine {
+
+    static final String CRLF = "\r\n";
+
+    static final String LF = "\n";
+
+    static final String NO_ENDING = "";
+
+    private final String text;
+
+    /**
+     * {@code null} for lines created here, which take the line ending of their description.
+     */
+    private final String ending;
+
+    SdpLine(final String text, final String ending) {
+        this.text = text;
+        this.ending = ending;
+    }
+
+    public static SdpLine of(final char type, final String value) {
+        return new SdpLine(type + "=" + value, null);
+    }
+
+    public static SdpLine attribute(final String name, final String value) {
+        return of('a', value == null ? name : name + ":" + value);
+    }
+
+    /**
+     * @return The line type, {@code 0} if the line is not of the form {@code <type>=<value>}.
+     */
+    public char getType() {
+        return text.length() >= 2 && text.charAt(1) == '=' ? text.charAt(0) : 0;
+    }
+
+    public String getValue() {
+        return getType() != 0 ? text.substring(2) : text;
+    }
+
+    /**
+     * @return The line without its line ending.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return {@code true} for {@code a=<name>} and {@code a=<name>:<value>}.
+     */
+    public boolean isAttribute(final String name) {
+        final int end = 2 + name.length();
+        return getType() == 'a' && text.startsWith(name, 2)
+                && (text.length() == end || text.charAt(end) == ':');
+    }
+
+    /**
+     * @return The attribute's value after the colon, {@code null} for a flag attribute.
+     */
+    public String getAttributeValue() {
+        final int colon = text.indexOf(':', 2);
+        return colon >= 0 ? text.substring(colon + 1) : null;
+    }
+
+    /**
+     * @return {@code true} if the attribute's value starts with {@code prefix} followed by a space,
+     * e.g. the payload type of {@code a=rtpmap:96 VP8/90000}.
+     */
+    boolean isAttributeFor(final String name, final String prefix) {
+        final int start = 3 + name.length();
+        return isAttribute(name) && text.startsWith(prefix, start)
+                && text.length() > start + prefix.length() && text.charAt(start + prefix.length()) == ' ';
+    }
+
+    String getEnding() {
+        return ending;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,333 @@
+package com.amazonaws.kinesisvideo.webrtc.sdp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A media section of a session description: the {@code m=} line and the lines up to the next one.
+ * <p>
+ * Typed attributes are parsed from the lines when asked for. Changes replace, insert or remove
+ * lines; all other lines are kept as they are.
+ */
+public final class SdpMedia {
+
+    private static final String[] DIRECTIONS = {"sendrecv", "sendonly", "recvonly", "inactive"};
+
+    private final List<SdpLine> lines;
+
+    SdpMedia(final List<SdpLine> lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * @return The lines of this section, starting with the {@code m=} line.
+     */
+    public List<SdpLine> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * @return {@code audio}, {@code video}, {@code application}, ...
+     */
+    public String getType() {
+        return mediaField(0);
+    }
+
+    public int getPort() {
+        try {
+            final String port = mediaField(1);
+            final int slash = port.indexOf('/');
+            return Integer.parseInt(slash >= 0 ? port.substring(0, slash) : port);
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public String getProtocol() {
+        return mediaField(2);
+    }
+
+    /**
+     * @return The formats of the {@code m=} line in order of preference: RTP payload types, or e.g.
+     * {@code webrtc-datachannel} for data channels.
+     */
+    public List<String> getFormats() {
+        final String[] fields = lines.get(0).getValue().split(" ");
+        final List<String> formats = new ArrayList<>(Math.max(0, fields.length - 3));
+        for (int i = 3; i < fields.length; i++) {
+            if (!fields[i].isEmpty()) {
+                formats.add(fields[i]);
+            }
+        }
+        return formats;
+    }
+
+    /**
+     * @return The value of {@code a=mid}, {@code null} if absent.
+     */
+    public String getMid() {
+        return getAttribute("mid");
+    }
+
+    /**
+     * @return The direction attribute, {@code sendrecv} if none is given.
+     */
+    public String getDirection() {
+        for (final SdpLine line : lines) {
+            for (final String direction : DIRECTIONS) {
+                if (line.isAttribute(direction)) {
+                    return direction;
+                }
+            }
+        }
+        return DIRECTIONS[0];
+    }
+
+    /**
+     * @return The value of the first {@code a=<name>} attribute, empty for a flag attribute,
+     * {@code null} if absent.
+     */
+    public String getAttribute(final String name) {
+        for (final SdpLine line : lines) {
+            if (line.isAttribute(name)) {
+                final String value = line.getAttributeValue();
+                return value != null ? value : "";
+            }
+        }
+        return null;
+    }
+
+    public List<String> getAttributes(final String name) {
+        final List<String> values = new ArrayList<>();
+        for (final SdpLine line : lines) {
+            if (line.isAttribute(name)) {
+                final String value = line.getAttributeValue();
+                values.add(value != null ? value : "");
+            }
+        }
+        return values;
+    }
+
+    public List<RtpMap> getRtpMaps() {
+        final List<RtpMap> rtpMaps = new ArrayList<>();
+        for (final SdpLine line : lines) {
+            if (line.isAttribute("rtpmap")) {
+                final RtpMap rtpMap = RtpMap.parse(line.getAttributeValue());
+                if (rtpMap != null) {
+                    rtpMaps.add(rtpMap);
+                }
+            }
+        }
+        return rtpMaps;
+    }
+
+    /**
+     * @return The {@code a=rtpmap} of {@code payloadType}, {@code null} if absent.
+     */
+    public RtpMap getRtpMap(final int payloadType) {
+        final int index = indexOfAttribute("rtpmap", Integer.toString(payloadType));
+        return index >= 0 ? RtpMap.parse(lines.get(index).getAttributeValue()) : null;
+    }
+
+    /**
+     * @return The {@code a=fmtp} of {@code payloadType}, {@code null} if absent.
+     */
+    public Fmtp getFmtp(final int payloadType) {
+        final int index = indexOfAttribute("fmtp", Integer.toString(payloadType));
+        return index >= 0 ? Fmtp.parse(lines.get(index).getAttributeValue()) : null;
+    }
+
+    /**
+     * Replaces the {@code a=fmtp} of its payload type, or adds it after the {@code a=rtpmap}.
+     */
+    public void setFmtp(final Fmtp fmtp) {
+        final String payloadType = Integer.toString(fmtp.getPayloadType());
+        final int index = indexOfAttribute("fmtp", payloadType);
+        if (index >= 0) {
+            lines.set(index, fmtp.toLine());
+        } else {
+            final int rtpMap = indexOfAttribute("rtpmap", payloadType);
+            lines.add(rtpMap >= 0 ? rtpMap + 1 : lines.size(), fmtp.toLine());
+        }
+    }
+
+    public List<ExtMap> getExtMaps() {
+        final List<ExtMap> extMaps = new ArrayList<>();
+        for (final SdpLine line : lines) {
+            if (line.isAttribute("extmap")) {
+                final ExtMap extMap = ExtMap.parse(line.getAttributeValue());
+                if (extMap != null) {
+                    extMaps.add(extMap);
+                }
+            }
+        }
+        return extMaps;
+    }
+
+    /**
+     * Removes the {@code a=extmap} lines of the header extension {@code uri}.
+     *
+     * @return {@code true} if any was removed.
+     */
+    public boolean removeExtMap(final String uri) {
+        boolean removed = false;
+        for (int i = lines.size() - 1; i > 0; i--) {
+            if (lines.get(i).isAttribute("extmap")) {
+                final ExtMap extMap = ExtMap.parse(lines.get(i).getAttributeValue());
+                if (extMap != null && extMap.getUri().equals(uri)) {
+                    lines.remove(i);
+                    removed = true;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @param modifier E.g. {@code AS} for kbps or {@code TIAS} for bps.
+     * @return The value of the {@code b=<modifier>} line, -1 if absent.
+     */
+    public long getBandwidth(final String modifier) {
+        final int index = indexOfBandwidth(modifier);
+        if (index < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(lines.get(index).getValue().substring(modifier.length() + 1));
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Sets the {@code b=<modifier>} line, adding it where RFC 8866 puts bandwidth lines.
+     */
+    public void setBandwidth(final String modifier, final long value) {
+        final SdpLine line = SdpLine.of('b', modifier + ":" + value);
+        final int index = indexOfBandwidth(modifier);
+        if (index >= 0) {
+            lines.set(index, line);
+            return;
+        }
+        // After the m=, i=, c= and other b= lines
+        int insert = 1;
+        while (insert < lines.size()) {
+            final char type = lines.get(insert).getType();
+            if (type != 'i' && type != 'c' && type != 'b') {
+                break;
+            }
+            insert++;
+        }
+        lines.add(insert, line);
+    }
+
+    public boolean removeBandwidth(final String modifier) {
+        final int index = indexOfBandwidth(modifier);
+        if (index >= 0) {
+            lines.remove(index);
+        }
+        return index >= 0;
+    }
+
+    /**
+     * Moves {@code preferred} to the front of the {@code m=} line, in the given order. Formats not
+     * in the section are ignored, the others keep their order behind them.
+     */
+    public void setFormatOrder(final List<String> preferred) {
+        final List<String> formats = getFormats();
+        final List<String> ordered = new ArrayList<>(formats.size());
+        for (final String format : preferred) {
+            if (formats.contains(format) && !ordered.contains(format)) {
+                ordered.add(format);
+            }
+        }
+        for (final String format : formats) {
+            if (!ordered.contains(format)) {
+                ordered.add(format);
+            }
+        }
+        setFormats(ordered);
+    }
+
+    /**
+     * Removes a payload type from the {@code m=} line together with its rtpmap, fmtp and rtcp-fb
+     * lines.
+     *
+     * @return {@code true} if it was offered.
+     */
+    public boolean removeFormat(final String payloadType) {
+        final List<String> formats = getFormats();
+        if (!formats.remove(payloadType)) {
+            return false;
+        }
+        setFormats(formats);
+        for (int i = lines.size() - 1; i > 0; i--) {
+            final SdpLine line = lines.get(i);
+            if (line.isAttributeFor("rtpmap", payloadType) || line.isAttributeFor("fmtp", payloadType)
+                    || line.isAttributeFor("rtcp-fb", payloadType)) {
+                lines.remove(i);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds {@code line} at the end of the section.
+     */
+    public void addLine(final SdpLine line) {
+        lines.add(line);
+    }
+
+    List<SdpLine> lines() {
+        return lines;
+    }
+
+    private void setFormats(final List<String> formats) {
+        final StringBuilder value = new StringBuilder()
+                .append(getType()).append(' ').append(mediaField(1)).append(' ').append(getProtocol());
+        for (final String format : formats) {
+            value.append(' ').append(format);
+        }
+        lines.set(0, new SdpLine("m=" + value, lines.get(0).getEnding()));
+    }
+
+    private String mediaField(final int index) {
+        final String value = lines.get(0).getValue();
+        int start = 0;
+        for (int i = 0; i < index; i++) {
+            start = value.indexOf(' ', start) + 1;
+            if (start == 0) {
+                return "";
+            }
+        }
+        final int end = value.indexOf(' ', start);
+        return value.substring(start, end < 0 ? value.length() : end);
+    }
+
+    private int indexOfAttribute(final String name, final String payloadType) {
+        for (int i = 1; i < lines.size(); i++) {
+            if (lines.get(i).isAttributeFor(name, payloadType)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfBandwidth(final String modifier) {
+        for (int i = 1; i < lines.size(); i++) {
+            final SdpLine line = lines.get(i);
+            final String text = line.getText();
+            if (line.getType() == 'b' && text.startsWith(modifier, 2) && text.length() > 2 + modifier.length()
+                    && text.charAt(2 + modifier.length()) == ':') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return lines.get(0).getText();
+    }
+}
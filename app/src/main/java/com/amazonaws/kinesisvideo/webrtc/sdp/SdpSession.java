@@ -0,0 +1,150 @@
+package com.amazonaws.kinesisvideo.webrtc.sdp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A session description (RFC 8866) as session-level lines followed by media sections.
+ * <pre>
+ * final SdpSession sdp = SdpSession.parse(offer.description);
+ * for (final SdpMedia media : sdp.getMedia("video")) {
+ *     media.setBandwidth("AS", 1500);
+ * }
+ * final String munged = sdp.toString();
+ * </pre>
+ * Parsing is one pass over the text and keeps every line with its line ending, so
+ * {@code parse(sdp).toString()} returns {@code sdp} unchanged, whatever it contains. Lines added
+ * later take the line ending of the first line. Not thread safe.
+ */
+public final class SdpSession {
+
+    private final List<SdpLine> sessionLines;
+
+    private final List<SdpMedia> media;
+
+    private final String lineEnding;
+
+    private final int length;
+
+    private SdpSession(final List<SdpLine> sessionLines, final List<SdpMedia> media, final String lineEnding,
+                       final int length) {
+        this.sessionLines = sessionLines;
+        this.media = media;
+        this.lineEnding = lineEnding;
+        this.length = length;
+    }
+
+    public static SdpSession parse(final String sdp) {
+        final List<SdpLine> sessionLines = new ArrayList<>();
+        final List<SdpMedia> media = new ArrayList<>();
+        List<SdpLine> current = sessionLines;
+        String firstEnding = null;
+
+        int start = 0;
+        while (start < sdp.length()) {
+            final int newline = sdp.indexOf('\n', start);
+            final int end;
+            final String ending;
+            if (newline < 0) {
+                end = sdp.length();
+                ending = SdpLine.NO_ENDING;
+            } else if (newline > start && sdp.charAt(newline - 1) == '\r') {
+                end = newline - 1;
+                ending = SdpLine.CRLF;
+            } else {
+                end = newline;
+                ending = SdpLine.LF;
+            }
+            final SdpLine line = new SdpLine(sdp.substring(start, end), ending);
+            if (line.getType() == 'm') {
+                current = new ArrayList<>();
+                media.add(new SdpMedia(current));
+            }
+            current.add(line);
+            if (firstEnding == null && ending != SdpLine.NO_ENDING) {
+                firstEnding = ending;
+            }
+            start = newline < 0 ? sdp.length() : newline + 1;
+        }
+        return new SdpSession(sessionLines, media, firstEnding != null ? firstEnding : SdpLine.CRLF, sdp.length());
+    }
+
+    /**
+     * @return The lines before the first media section, starting with {@code v=}.
+     */
+    public List<SdpLine> getSessionLines() {
+        return Collections.unmodifiableList(sessionLines);
+    }
+
+    /**
+     * @return The value of the first session-level {@code a=<name>} attribute, e.g. {@code group},
+     * empty for a flag attribute, {@code null} if absent.
+     */
+    public String getAttribute(final String name) {
+        for (final SdpLine line : sessionLines) {
+            if (line.isAttribute(name)) {
+                final String value = line.getAttributeValue();
+                return value != null ? value : "";
+            }
+        }
+        return null;
+    }
+
+    public List<SdpMedia> getMedia() {
+        return Collections.unmodifiableList(media);
+    }
+
+    /**
+     * @return The media sections of {@code type}, e.g. {@code video}.
+     */
+    public List<SdpMedia> getMedia(final String type) {
+        final List<SdpMedia> matching = new ArrayList<>();
+        for (final SdpMedia section : media) {
+            if (section.getType().equals(type)) {
+                matching.add(section);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * @return The media section with {@code a=mid:<mid>}, {@code null} if none.
+     */
+    public SdpMedia findMedia(final String mid) {
+        for (final SdpMedia section : media) {
+            if (mid.equals(section.getMid())) {
+                return section;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The description as text.
+     */
+    @Override
+    public String toString() {
+        // Munging adds a few lines at most
+        final StringBuilder builder = new StringBuilder(length + 256);
+        boolean terminated = append(builder, sessionLines, true);
+        for (final SdpMedia section : media) {
+            terminated = append(builder, section.lines(), terminated);
+        }
+        return builder.toString();
+    }
+
+    private boolean append(final StringBuilder builder, final List<SdpLine> lines, final boolean terminated) {
+        boolean lineTerminated = terminated;
+        for (final SdpLine line : lines) {
+            if (!lineTerminated) {
+                // A line was added after the last line of a description without a final line ending
+                builder.append(lineEnding);
+            }
+            final String ending = line.getEnding() != null ? line.getEnding() : lineEnding;
+            builder.append(line.getText()).append(ending);
+            lineTerminated = !ending.isEmpty();
+        }
+        return lineTerminated;
+    }
+}
@@ -0,0 +1,162 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import java.util.List;
+
+/**
+ * Closed-loop controller that picks a {@link VideoEncodingLevel} from periodic sender statistics.
+ * <p>
+ * The controller steps down quickly and steps up slowly:
+ * <ul>
+ *     <li>After {@link #DOWNGRADE_AFTER_SAMPLES} consecutive congested samples (high loss, high RTT,
+ *     or a bandwidth estimate below the current level's bitrate) it drops directly to the best level
+ *     that fits in the estimated bandwidth, at least one level.</li>
+ *     <li>After {@link #UPGRADE_AFTER_SAMPLES} consecutive clear samples, with enough headroom for the
+ *     next level and the hold time elapsed since the last change, it moves up one level. A sample is
+ *     only clear if it measured loss, RTT or the bandwidth estimate; without stats it never upgrades.</li>
+ *     <li>If an upgrade is followed by congestion within the hold time, the hold time doubles (up to
+ *     {@link #MAX_UPGRADE_HOLD_MS}) so that a link sitting on a level boundary does not oscillate.</li>
+ * </ul>
+ * The controller has no dependency on libwebrtc, so it can be driven by recorded stats traces.
+ * It is not thread safe; feed it from a single thread.
+ */
+public class AdaptiveBitrateController {
+
+    static final double CONGESTED_FRACTION_LOST = 0.08;
+    static final double CONGESTED_RTT_MS = 450;
+    static final double CLEAR_FRACTION_LOST = 0.02;
+    static final double CLEAR_RTT_MS = 300;
+
+    /**
+     * The current level is considered congested once the estimate falls below this share of its bitrate.
+     */
+    static final double BANDWIDTH_SHORTFALL = 0.9;
+
+    /**
+     * The estimate must exceed the next level's bitrate by this factor before upgrading.
+     */
+    static final double UPGRADE_HEADROOM = 1.25;
+
+    static final int DOWNGRADE_AFTER_SAMPLES = 2;
+    static final int UPGRADE_AFTER_SAMPLES = 5;
+    static final long MIN_UPGRADE_HOLD_MS = 8_000;
+    static final long MAX_UPGRADE_HOLD_MS = 64_000;
+
+    private final List<VideoEncodingLevel> ladder;
+
+    private int levelIndex = 0;
+
+    private int congestedSamples = 0;
+
+    private int clearSamples = 0;
+
+    private long lastChangeMs = -1;
+
+    private boolean lastChangeWasUpgrade = false;
+
+    private long upgradeHoldMs = MIN_UPGRADE_HOLD_MS;
+
+    /**
+     * @param ladder Levels ordered from highest to lowest quality. The controller starts at the first one.
+     */
+    public AdaptiveBitrateController(final List<VideoEncodingLevel> ladder) {
+        if (ladder == null || ladder.isEmpty()) {
+            throw new IllegalArgumentException("At least one encoding level is required");
+        }
+        this.ladder = ladder;
+    }
+
+    public VideoEncodingLevel getCurrentLevel() {
+        return ladder.get(levelIndex);
+    }
+
+    public int getCurrentLevelIndex() {
+        return levelIndex;
+    }
+
+    /**
+     * Feeds one stats sample into the controller.
+     *
+     * @param stats The latest sender statistics.
+     * @return The new level if the controller decided to switch, {@code null} otherwise.
+     */
+    public VideoEncodingLevel onStats(final VideoSenderStats stats) {
+        final long now = stats.getTimestampMs();
+
+        if (isCongested(stats)) {
+            clearSamples = 0;
+            if (++congestedSamples >= DOWNGRADE_AFTER_SAMPLES && levelIndex < ladder.size() - 1) {
+                if (lastChangeWasUpgrade && now - lastChangeMs < upgradeHoldMs) {
+                    // The last probe up did not hold, wait longer before trying again
+                    upgradeHoldMs = Math.min(MAX_UPGRADE_HOLD_MS, upgradeHoldMs * 2);
+                }
+                return switchTo(downgradeTarget(stats), now);
+            }
+            return null;
+        }
+
+        congestedSamples = 0;
+        if (!isClear(stats)) {
+            clearSamples = 0;
+            return null;
+        }
+
+        if (++clearSamples >= UPGRADE_AFTER_SAMPLES
+                && levelIndex > 0
+                && now - lastChangeMs >= upgradeHoldMs
+                && hasHeadroomFor(ladder.get(levelIndex - 1), stats)) {
+            if (lastChangeWasUpgrade) {
+                // The previous upgrade held for a full hold period, so the link is stable again
+                upgradeHoldMs = MIN_UPGRADE_HOLD_MS;
+            }
+            return switchTo(levelIndex - 1, now);
+        }
+        return null;
+    }
+
+    private boolean isCongested(final VideoSenderStats stats) {
+        final double bandwidth = stats.getAvailableOutgoingBitrateBps();
+        return stats.getFractionLost() >= CONGESTED_FRACTION_LOST
+                || stats.getRoundTripTimeMs() >= CONGESTED_RTT_MS
+                || (bandwidth != VideoSenderStats.UNKNOWN
+                && bandwidth < getCurrentLevel().getMaxBitrateBps() * BANDWIDTH_SHORTFALL);
+    }
+
+    private boolean isClear(final VideoSenderStats stats) {
+        final double fractionLost = stats.getFractionLost();
+        final double roundTripTime = stats.getRoundTripTimeMs();
+        if (fractionLost == VideoSenderStats.UNKNOWN && roundTripTime == VideoSenderStats.UNKNOWN
+                && stats.getAvailableOutgoingBitrateBps() == VideoSenderStats.UNKNOWN) {
+            // Nothing was measured, which is no evidence that the link has room
+            return false;
+        }
+        return (fractionLost == VideoSenderStats.UNKNOWN || fractionLost <= CLEAR_FRACTION_LOST)
+                && (roundTripTime == VideoSenderStats.UNKNOWN || roundTripTime < CLEAR_RTT_MS);
+    }
+
+    private boolean hasHeadroomFor(final VideoEncodingLevel level, final VideoSenderStats stats) {
+        final double bandwidth = stats.getAvailableOutgoingBitrateBps();
+        // Without a bandwidth estimate, the measured loss and RTT are the only signal we have
+        return bandwidth == VideoSenderStats.UNKNOWN || bandwidth >= level.getMaxBitrateBps() * UPGRADE_HEADROOM;
+    }
+
+    private int downgradeTarget(final VideoSenderStats stats) {
+        int target = levelIndex + 1;
+        final double bandwidth = stats.getAvailableOutgoingBitrateBps();
+        if (bandwidth != VideoSenderStats.UNKNOWN) {
+            while (target < ladder.size() - 1
+                    && ladder.get(target).getMaxBitrateBps() > bandwidth * BANDWIDTH_SHORTFALL) {
+                target++;
+            }
+        }
+        return target;
+    }
+
+    private VideoEncodingLevel switchTo(final int index, final long now) {
+        lastChangeWasUpgrade = index < levelIndex;
+        levelIndex = index;
+        lastChangeMs = now;
+        congestedSamples = 0;
+        clearSamples = 0;
+        return ladder.get(levelIndex);
+    }
+}
@@ -0,0 +1,109 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import android.util.Log;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.RtpParameters;
+import org.webrtc.RtpSender;
+import org.webrtc.VideoCapturer;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the stats of a {@link PeerConnection}, feeds them to an {@link AdaptiveBitrateController}
+ * and applies its decisions to the video {@link RtpSender} and the {@link VideoCapturer}.
+ */
+public class AdaptiveBitrateManager {
+
+    private static final String TAG = "KVSAdaptiveBitrate";
+
+    private final PeerConnection peerConnection;
+
+    private final RtpSender videoSender;
+
+    private final VideoCapturer videoCapturer;
+
+    private final AdaptiveBitrateController controller;
+
+    private final ScheduledExecutorService executor;
+
+    private ScheduledFuture<?> pollTask;
+
+    private VideoEncodingLevel appliedLevel;
+
+    public AdaptiveBitrateManager(final PeerConnection peerConnection,
+                                  final RtpSender videoSender,
+                                  final VideoCapturer videoCapturer,
+                                  final AdaptiveBitrateController controller,
+                                  final ScheduledExecutorService executor) {
+        this.peerConnection = peerConnection;
+        this.videoSender = videoSender;
+        this.videoCapturer = videoCapturer;
+        this.controller = controller;
+        this.executor = executor;
+    }
+
+    /**
+     * Applies the controller's current level and starts polling stats. The capturer is expected to
+     * already be running at the capture format of the controller's current level.
+     *
+     * @param periodMs How often to sample the stats.
+     */
+    public synchronized void start(final long periodMs) {
+        if (pollTask != null) {
+            return;
+        }
+        appliedLevel = controller.getCurrentLevel();
+        apply(appliedLevel);
+        pollTask = executor.scheduleWithFixedDelay(this::poll, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (pollTask != null) {
+            pollTask.cancel(false);
+            pollTask = null;
+        }
+    }
+
+    private void poll() {
+        peerConnection.getStats(report -> {
+            final VideoSenderStats stats = VideoSenderStats.fromReport(report);
+            final VideoEncodingLevel level;
+            synchronized (this) {
+                if (pollTask == null) {
+                    return;
+                }
+                level = controller.onStats(stats);
+            }
+            if (level != null) {
+                Log.i(TAG, "Switching to " + level + " after " + stats);
+                apply(level);
+            }
+        });
+    }
+
+    private synchronized void apply(final VideoEncodingLevel level) {
+        final RtpParameters parameters = videoSender.getParameters();
+        if (parameters == null || parameters.encodings.isEmpty()) {
+            Log.w(TAG, "Video sender has no encodings yet, skipping " + level);
+            return;
+        }
+
+        for (final RtpParameters.Encoding encoding : parameters.encodings) {
+            encoding.maxBitrateBps = level.getMaxBitrateBps();
+            encoding.maxFramerate = level.getMaxFramerate();
+            encoding.scaleResolutionDownBy = level.getScaleResolutionDownBy();
+        }
+        if (!videoSender.setParameters(parameters)) {
+            Log.e(TAG, "Failed to set encoding parameters for " + level);
+            return;
+        }
+
+        if (videoCapturer != null && !level.hasSameCaptureFormat(appliedLevel)) {
+            videoCapturer.changeCaptureFormat(level.getCaptureWidth(), level.getCaptureHeight(), level.getCaptureFps());
+        }
+        appliedLevel = level;
+    }
+}
@@ -0,0 +1,89 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+/**
+ * A camera capture format: resolution plus the frame rate to request from the camera.
+ */
+public class CameraCaptureFormat {
+
+    private final int width;
+
+    private final int height;
+
+    private final int fps;
+
+    public CameraCaptureFormat(final int width, final int height, final int fps) {
+        this.width = width;
+        this.height = height;
+        this.fps = fps;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFps() {
+        return fps;
+    }
+
+    /**
+     * @return Pixels per second delivered by the camera in this format.
+     */
+    public long getPixelRate() {
+        return (long) width * height * fps;
+    }
+
+    /**
+     * @return The format in the {@code WIDTHxHEIGHT@FPS} form used by {@link #parse(String)}.
+     */
+    public String serialize() {
+        return width + "x" + height + "@" + fps;
+    }
+
+    /**
+     * @param value A value produced by {@link #serialize()}.
+     * @return The format, or {@code null} if the value is malformed.
+     */
+    public static CameraCaptureFormat parse(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final int x = value.indexOf('x');
+        final int at = value.indexOf('@');
+        if (x <= 0 || at <= x) {
+            return null;
+        }
+        try {
+            return new CameraCaptureFormat(Integer.parseInt(value.substring(0, x)),
+                    Integer.parseInt(value.substring(x + 1, at)),
+                    Integer.parseInt(value.substring(at + 1)));
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CameraCaptureFormat)) {
+            return false;
+        }
+        final CameraCaptureFormat that = (CameraCaptureFormat) o;
+        return width == that.width && height == that.height && fps == that.fps;
+    }
+
+    @Override
+    public int hashCode() {
+        return (width * 31 + height) * 31 + fps;
+    }
+
+    @Override
+    public String toString() {
+        return "CameraCaptureFormat(" + serialize() + ')';
+    }
+}
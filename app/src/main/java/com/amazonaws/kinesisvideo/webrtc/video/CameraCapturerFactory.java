@@ -0,0 +1,128 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import org.webrtc.Camera1Enumerator;
+import org.webrtc.Camera2Enumerator;
+import org.webrtc.CameraEnumerationAndroid;
+import org.webrtc.CameraEnumerator;
+import org.webrtc.VideoCapturer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates camera capturers and chooses their capture format from what the camera supports.
+ * <p>
+ * Camera2 is used whenever the device supports it. Both Camera2 and the Camera1 fallback deliver
+ * frames as textures, which avoids a copy to byte buffers before encoding. The format chosen for a
+ * camera and target is persisted, so later sessions skip enumerating the supported formats. The
+ * cache is dropped when the OS build changes.
+ */
+public class CameraCapturerFactory {
+
+    private static final String TAG = "KVSCameraCapturerFactory";
+
+    private static final String PREFERENCES_NAME = "kvs_capture_formats";
+
+    private static final String KEY_BUILD_FINGERPRINT = "buildFingerprint";
+
+    /**
+     * A capturer together with the format it should be started with.
+     */
+    public static class CameraCapture {
+        private final VideoCapturer capturer;
+        private final CameraCaptureFormat format;
+
+        CameraCapture(final VideoCapturer capturer, final CameraCaptureFormat format) {
+            this.capturer = capturer;
+            this.format = format;
+        }
+
+        public VideoCapturer getCapturer() {
+            return capturer;
+        }
+
+        public CameraCaptureFormat getFormat() {
+            return format;
+        }
+
+        public void startCapture() {
+            capturer.startCapture(format.getWidth(), format.getHeight(), format.getFps());
+        }
+    }
+
+    private final CameraEnumerator enumerator;
+
+    private final SharedPreferences preferences;
+
+    private final CaptureFormatSelector selector = new CaptureFormatSelector();
+
+    public CameraCapturerFactory(final Context context) {
+        if (Camera2Enumerator.isSupported(context)) {
+            enumerator = new Camera2Enumerator(context);
+        } else {
+            Log.i(TAG, "Camera2 is not supported on this device, falling back to Camera1");
+            enumerator = new Camera1Enumerator(true);
+        }
+
+        preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        if (!Build.FINGERPRINT.equals(preferences.getString(KEY_BUILD_FINGERPRINT, null))) {
+            preferences.edit()
+                    .clear()
+                    .putString(KEY_BUILD_FINGERPRINT, Build.FINGERPRINT)
+                    .apply();
+        }
+    }
+
+    /**
+     * Creates a capturer for the first camera facing the requested direction.
+     *
+     * @param frontFacing {@code true} for the front camera, {@code false} for the back camera.
+     * @param target      The format we would like to capture in.
+     * @return The capturer and the supported format closest to {@code target}. {@code null} if no
+     * camera faces the requested direction.
+     */
+    public CameraCapture create(final boolean frontFacing, final CameraCaptureFormat target) {
+        for (final String deviceName : enumerator.getDeviceNames()) {
+            if (frontFacing ? enumerator.isFrontFacing(deviceName) : enumerator.isBackFacing(deviceName)) {
+                final VideoCapturer capturer = enumerator.createCapturer(deviceName, null);
+                if (capturer != null) {
+                    final CameraCaptureFormat format = selectFormat(deviceName, target);
+                    Log.d(TAG, "Created capturer for " + deviceName + " with " + format);
+                    return new CameraCapture(capturer, format);
+                }
+            }
+        }
+        return null;
+    }
+
+    private CameraCaptureFormat selectFormat(final String deviceName, final CameraCaptureFormat target) {
+        final String key = deviceName + "/" + target.serialize();
+        final CameraCaptureFormat cached = CameraCaptureFormat.parse(preferences.getString(key, null));
+        if (cached != null) {
+            return cached;
+        }
+
+        final List<CameraEnumerationAndroid.CaptureFormat> supportedFormats = enumerator.getSupportedFormats(deviceName);
+        final List<CaptureFormatSelector.Candidate> candidates = new ArrayList<>();
+        if (supportedFormats != null) {
+            for (final CameraEnumerationAndroid.CaptureFormat format : supportedFormats) {
+                // Frame rates are reported in units of 1/1000 fps
+                candidates.add(new CaptureFormatSelector.Candidate(format.width, format.height,
+                        (format.framerate.min + 999) / 1000, format.framerate.max / 1000));
+            }
+        }
+
+        final CameraCaptureFormat selected = selector.select(candidates, target);
+        if (selected == null) {
+            Log.w(TAG, "No supported formats reported for " + deviceName + ", using " + target);
+            return target;
+        }
+        preferences.edit().putString(key, selected.serialize()).apply();
+        return selected;
+    }
+}
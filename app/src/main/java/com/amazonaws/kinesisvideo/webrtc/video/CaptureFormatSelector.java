@@ -0,0 +1,87 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import java.util.List;
+
+/**
+ * Picks the supported camera format closest to a requested target.
+ * <p>
+ * Candidates are compared by a cost built from the camera's pixel rate (width x height x fps): any
+ * pixel rate above the target is wasted work for the camera pipeline and encoder, while falling short
+ * of the target resolution or frame rate loses quality and is penalized more heavily. A different
+ * aspect ratio is penalized as well, since it ends up cropped or letterboxed.
+ */
+public class CaptureFormatSelector {
+
+    /**
+     * A format supported by the camera, with its frame rate range in frames per second.
+     */
+    public static class Candidate {
+        final int width;
+        final int height;
+        final int minFps;
+        final int maxFps;
+
+        public Candidate(final int width, final int height, final int minFps, final int maxFps) {
+            this.width = width;
+            this.height = height;
+            this.minFps = minFps;
+            this.maxFps = maxFps;
+        }
+    }
+
+    static final double UNDERSIZE_PENALTY = 2.0;
+    static final double ASPECT_RATIO_PENALTY = 1.0;
+    static final double FRAMERATE_PENALTY = 1.5;
+
+    /**
+     * @param candidates Formats supported by the camera.
+     * @param target     The requested format.
+     * @return The lowest cost candidate, with the frame rate clamped to what it supports. {@code null}
+     * if there are no candidates.
+     */
+    public CameraCaptureFormat select(final List<Candidate> candidates, final CameraCaptureFormat target) {
+        Candidate best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (final Candidate candidate : candidates) {
+            final double cost = cost(candidate, target);
+            if (cost < bestCost) {
+                best = candidate;
+                bestCost = cost;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        return new CameraCaptureFormat(best.width, best.height, clampFps(best, target.getFps()));
+    }
+
+    double cost(final Candidate candidate, final CameraCaptureFormat target) {
+        final int fps = clampFps(candidate, target.getFps());
+        double cost = 0;
+
+        // Every pixel captured beyond what was asked for costs camera, scaler and encoder time
+        final double pixelRate = (double) candidate.width * candidate.height * fps;
+        if (pixelRate > target.getPixelRate()) {
+            cost += Math.log(pixelRate / target.getPixelRate());
+        }
+
+        final long pixels = (long) candidate.width * candidate.height;
+        final long targetPixels = (long) target.getWidth() * target.getHeight();
+        if (pixels < targetPixels) {
+            cost += UNDERSIZE_PENALTY * Math.log((double) targetPixels / pixels);
+        }
+
+        if (fps < target.getFps()) {
+            cost += FRAMERATE_PENALTY * Math.log((double) target.getFps() / fps);
+        }
+
+        final double aspect = (double) candidate.width / candidate.height;
+        final double targetAspect = (double) target.getWidth() / target.getHeight();
+        cost += ASPECT_RATIO_PENALTY * Math.abs(Math.log(aspect / targetAspect));
+        return cost;
+    }
+
+    private static int clampFps(final Candidate candidate, final int fps) {
+        return Math.max(Math.max(1, candidate.minFps), Math.min(candidate.maxFps, fps));
+    }
+}
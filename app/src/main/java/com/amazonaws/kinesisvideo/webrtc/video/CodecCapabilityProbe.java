@@ -0,0 +1,301 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import org.webrtc.EncodedImage;
+import org.webrtc.HardwareVideoEncoderFactory;
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.SoftwareVideoEncoderFactory;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoCodecStatus;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoFrame;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Finds out which video encoders on this device are hardware backed and how fast they are.
+ * <p>
+ * Which encoders are hardware backed is cheap to find out and is always available. The encode cost
+ * is measured by feeding each hardware encoder a short run of synthetic frames, which takes long
+ * enough that it should run in the background. It competes with a live encoder for the same
+ * hardware, so it must not run while a session encodes. The measurement is persisted and only
+ * repeated when the OS build changes. Software encoders live in native code and cannot be driven from Java, so
+ * their cost stays {@link CodecProbeResult#UNKNOWN}.
+ */
+public class CodecCapabilityProbe {
+
+    private static final String TAG = "KVSCodecCapabilityProbe";
+
+    private static final String PREFERENCES_NAME = "kvs_codec_probe";
+
+    private static final String KEY_BUILD_FINGERPRINT = "buildFingerprint";
+
+    private static final String KEY_RESULTS = "results";
+
+    private static final int PROBE_WIDTH = 640;
+
+    private static final int PROBE_HEIGHT = 480;
+
+    private static final int PROBE_FPS = 30;
+
+    private static final int PROBE_BITRATE_KBPS = 1000;
+
+    private static final int PROBE_FRAMES = 30;
+
+    private static final long PROBE_TIMEOUT_MS = 3000;
+
+    private static final Type RESULTS_TYPE = new TypeToken<List<CodecProbeResult>>() {
+    }.getType();
+
+    private final Gson gson = new Gson();
+
+    private final SharedPreferences preferences;
+
+    private final HardwareVideoEncoderFactory hardwareFactory;
+
+    private final SoftwareVideoEncoderFactory softwareFactory = new SoftwareVideoEncoderFactory();
+
+    private List<CodecProbeResult> results;
+
+    /**
+     * Lower case names of the codecs demoted in this process, applied again to a measurement that
+     * finishes after them.
+     */
+    private final Set<String> demotedCodecs = new HashSet<>();
+
+    private boolean measured;
+
+    /**
+     * Must be created after {@code PeerConnectionFactory.initialize}, since listing the software
+     * encoders needs the native library.
+     */
+    public CodecCapabilityProbe(final Context context, final boolean enableIntelVp8Encoder,
+                                final boolean enableH264HighProfile) {
+        // No shared EGL context, the probe feeds the encoders byte buffers
+        hardwareFactory = new HardwareVideoEncoderFactory(null, enableIntelVp8Encoder, enableH264HighProfile);
+
+        preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        if (Build.FINGERPRINT.equals(preferences.getString(KEY_BUILD_FINGERPRINT, null))) {
+            results = load();
+            measured = results != null;
+        }
+    }
+
+    /**
+     * @return The measured results if available, otherwise which encoders are hardware backed
+     * without their cost.
+     */
+    public synchronized List<CodecProbeResult> getResults() {
+        if (results == null) {
+            results = enumerate();
+        }
+        return results;
+    }
+
+    public synchronized boolean isMeasured() {
+        return measured;
+    }
+
+    /**
+     * Measures the encoders on {@code executor} unless a measurement for this OS build exists.
+     * The results are picked up by the next {@link #getResults()} call.
+     *
+     * @return The measurement, cancel it with interruption before a session starts encoding.
+     * {@code null} if already measured.
+     */
+    public Future<?> measureInBackground(final ExecutorService executor) {
+        if (isMeasured()) {
+            return null;
+        }
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final List<CodecProbeResult> measuredResults = measure();
+                if (Thread.currentThread().isInterrupted()) {
+                    // Partial measurement, try again next time
+                    return;
+                }
+                final List<CodecProbeResult> stored;
+                synchronized (CodecCapabilityProbe.this) {
+                    stored = applyDemotions(measuredResults);
+                    results = stored;
+                    measured = true;
+                }
+                save(stored);
+                Log.i(TAG, "Codec probe results: " + stored);
+            }
+        });
+    }
+
+    /**
+     * Stops treating the hardware encoders of {@code codecName} as hardware backed, e.g. because
+     * they could not keep up in a session. The demotion is persisted for this OS build.
+     */
+    public void demote(final String codecName) {
+        final List<CodecProbeResult> demoted;
+        final boolean persist;
+        synchronized (this) {
+            demotedCodecs.add(codecName.toLowerCase(Locale.ROOT));
+            demoted = applyDemotions(getResults());
+            results = demoted;
+            persist = measured;
+        }
+        // Unmeasured results are saved with the demotion once the measurement is stored
+        if (persist) {
+            save(demoted);
+        }
+        Log.i(TAG, "Demoted " + codecName + " hardware encoders");
+    }
+
+    private List<CodecProbeResult> applyDemotions(final List<CodecProbeResult> probed) {
+        final List<CodecProbeResult> demoted = new ArrayList<>();
+        for (final CodecProbeResult result : probed) {
+            demoted.add(result.isHardware() && demotedCodecs.contains(result.getName().toLowerCase(Locale.ROOT))
+                    ? result.asSoftware()
+                    : result);
+        }
+        return Collections.unmodifiableList(demoted);
+    }
+
+    private void save(final List<CodecProbeResult> results) {
+        preferences.edit()
+                .putString(KEY_BUILD_FINGERPRINT, Build.FINGERPRINT)
+                .putString(KEY_RESULTS, gson.toJson(results, RESULTS_TYPE))
+                .apply();
+    }
+
+    private List<CodecProbeResult> load() {
+        final String json = preferences.getString(KEY_RESULTS, null);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return gson.fromJson(json, RESULTS_TYPE);
+        } catch (final JsonParseException e) {
+            Log.w(TAG, "Discarding unreadable codec probe results", e);
+            return null;
+        }
+    }
+
+    private List<CodecProbeResult> enumerate() {
+        final List<CodecProbeResult> enumerated = new ArrayList<>();
+        for (final VideoCodecInfo info : hardwareFactory.getSupportedCodecs()) {
+            enumerated.add(new CodecProbeResult(info.name, info.params, true, CodecProbeResult.UNKNOWN));
+        }
+        addSoftwareCodecs(enumerated);
+        return Collections.unmodifiableList(enumerated);
+    }
+
+    private List<CodecProbeResult> measure() {
+        final List<CodecProbeResult> measuredResults = new ArrayList<>();
+        for (final VideoCodecInfo info : hardwareFactory.getSupportedCodecs()) {
+            measuredResults.add(new CodecProbeResult(info.name, info.params, true, measureEncodeCost(info)));
+        }
+        addSoftwareCodecs(measuredResults);
+        return Collections.unmodifiableList(measuredResults);
+    }
+
+    private void addSoftwareCodecs(final List<CodecProbeResult> results) {
+        for (final VideoCodecInfo info : softwareFactory.getSupportedCodecs()) {
+            boolean hardwareBacked = false;
+            for (final CodecProbeResult result : results) {
+                hardwareBacked |= result.matches(info.name, info.params);
+            }
+            if (!hardwareBacked) {
+                results.add(new CodecProbeResult(info.name, info.params, false, CodecProbeResult.UNKNOWN));
+            }
+        }
+    }
+
+    /**
+     * @return Mean milliseconds from {@code encode} until the encoded frame is delivered,
+     * {@link CodecProbeResult#UNKNOWN} if the encoder could not be driven.
+     */
+    private double measureEncodeCost(final VideoCodecInfo info) {
+        final VideoEncoder encoder = hardwareFactory.createEncoder(info);
+        if (encoder == null) {
+            return CodecProbeResult.UNKNOWN;
+        }
+
+        final Map<Long, Long> encodeStartNs = new ConcurrentHashMap<>();
+        final AtomicLong totalEncodeNs = new AtomicLong();
+        final CountDownLatch encodedFrames = new CountDownLatch(PROBE_FRAMES);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        try {
+            final VideoCodecStatus initStatus = encoder.initEncode(
+                    new VideoEncoder.Settings(1, PROBE_WIDTH, PROBE_HEIGHT, PROBE_BITRATE_KBPS, PROBE_FPS, 1,
+                            false, new VideoEncoder.Capabilities(false)),
+                    new VideoEncoder.Callback() {
+                        @Override
+                        public void onEncodedFrame(final EncodedImage frame,
+                                                   final VideoEncoder.CodecSpecificInfo codecSpecificInfo) {
+                            final Long startNs = encodeStartNs.remove(frame.captureTimeNs);
+                            if (startNs != null) {
+                                totalEncodeNs.addAndGet(System.nanoTime() - startNs);
+                                encodedFrames.countDown();
+                            }
+                        }
+                    });
+            if (initStatus != VideoCodecStatus.OK) {
+                Log.w(TAG, "Could not initialize " + info.name + " encoder for probing: " + initStatus);
+                return CodecProbeResult.UNKNOWN;
+            }
+
+            final long frameIntervalNs = TimeUnit.SECONDS.toNanos(1) / PROBE_FPS;
+            for (int i = 0; i < PROBE_FRAMES; i++) {
+                final long timestampNs = i * frameIntervalNs;
+                final VideoFrame frame = new VideoFrame(JavaI420Buffer.allocate(PROBE_WIDTH, PROBE_HEIGHT), 0,
+                        timestampNs);
+                encodeStartNs.put(timestampNs, System.nanoTime());
+                final VideoCodecStatus status = encoder.encode(frame, new VideoEncoder.EncodeInfo(
+                        new EncodedImage.FrameType[]{i == 0
+                                ? EncodedImage.FrameType.VideoFrameKey
+                                : EncodedImage.FrameType.VideoFrameDelta}));
+                frame.release();
+                if (status != VideoCodecStatus.OK) {
+                    failure.set("encode returned " + status);
+                    encodeStartNs.remove(timestampNs);
+                    encodedFrames.countDown();
+                }
+                Thread.sleep(TimeUnit.NANOSECONDS.toMillis(frameIntervalNs));
+            }
+
+            if (!encodedFrames.await(PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS) || failure.get() != null) {
+                Log.w(TAG, "Probing " + info.name + " encoder failed: "
+                        + (failure.get() != null ? failure.get() : "timed out"));
+                return CodecProbeResult.UNKNOWN;
+            }
+            return (double) totalEncodeNs.get() / TimeUnit.MILLISECONDS.toNanos(1) / PROBE_FRAMES;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CodecProbeResult.UNKNOWN;
+        } catch (final RuntimeException e) {
+            Log.w(TAG, "Probing " + info.name + " encoder failed", e);
+            return CodecProbeResult.UNKNOWN;
+        } finally {
+            encoder.release();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import android.util.Log;
+
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.RtpCapabilities;
+import org.webrtc.RtpTransceiver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Orders the video codecs offered in SDP so that the peer settles on a hardware encoder.
+ * <p>
+ * Codecs backed by a hardware encoder come first, fastest measured encoder first. Software codecs
+ * keep libwebrtc's order behind them, and the resiliency formats (RTX, RED, FEC) go last.
+ */
+public final class CodecPreferences {
+
+    private static final String TAG = "KVSCodecPreferences";
+
+    private static final int RANK_HARDWARE = 0;
+
+    private static final int RANK_SOFTWARE = 1;
+
+    private static final int RANK_RESILIENCY = 2;
+
+    private CodecPreferences() {
+    }
+
+    /**
+     * Sets the codec preferences of a video transceiver from the probe results.
+     *
+     * @return {@code true} if preferences were set.
+     */
+    public static boolean apply(final RtpTransceiver transceiver, final PeerConnectionFactory factory,
+                                final List<CodecProbeResult> probeResults) {
+        if (transceiver == null || transceiver.getMediaType() != MediaStreamTrack.MediaType.MEDIA_TYPE_VIDEO) {
+            return false;
+        }
+        final RtpCapabilities senderCapabilities =
+                factory.getRtpSenderCapabilities(MediaStreamTrack.MediaType.MEDIA_TYPE_VIDEO);
+        final RtpCapabilities receiverCapabilities =
+                factory.getRtpReceiverCapabilities(MediaStreamTrack.MediaType.MEDIA_TYPE_VIDEO);
+        if (senderCapabilities == null || receiverCapabilities == null) {
+            return false;
+        }
+
+        // A send-receive transceiver only accepts codecs we can both encode and decode
+        final List<RtpCapabilities.CodecCapability> codecs = new ArrayList<>();
+        for (final RtpCapabilities.CodecCapability codec : senderCapabilities.getCodecs()) {
+            if (contains(receiverCapabilities.getCodecs(), codec)) {
+                codecs.add(codec);
+            }
+        }
+
+        final List<RtpCapabilities.CodecCapability> ordered = order(codecs, probeResults);
+        if (ordered.isEmpty()) {
+            return false;
+        }
+        try {
+            transceiver.setCodecPreferences(ordered);
+        } catch (final IllegalStateException | IllegalArgumentException e) {
+            Log.e(TAG, "Failed to set codec preferences", e);
+            return false;
+        }
+        Log.d(TAG, "Video codec preferences: " + describe(ordered));
+        return true;
+    }
+
+    /**
+     * @return {@code codecs} reordered by preference. The input list is not modified.
+     */
+    public static List<RtpCapabilities.CodecCapability> order(final List<RtpCapabilities.CodecCapability> codecs,
+                                                              final List<CodecProbeResult> probeResults) {
+        final List<RtpCapabilities.CodecCapability> ordered = new ArrayList<>(codecs);
+        // Collections.sort is stable, ties keep libwebrtc's order
+        Collections.sort(ordered, new Comparator<RtpCapabilities.CodecCapability>() {
+            @Override
+            public int compare(final RtpCapabilities.CodecCapability a, final RtpCapabilities.CodecCapability b) {
+                final CodecProbeResult resultA = find(probeResults, a);
+                final CodecProbeResult resultB = find(probeResults, b);
+                final int byRank = Integer.compare(rank(a, resultA), rank(b, resultB));
+                if (byRank != 0 || resultA == null || resultB == null) {
+                    return byRank;
+                }
+                return Double.compare(sortableCost(resultA), sortableCost(resultB));
+            }
+        });
+        return ordered;
+    }
+
+    private static int rank(final RtpCapabilities.CodecCapability codec, final CodecProbeResult result) {
+        if (isResiliencyFormat(codec.name)) {
+            return RANK_RESILIENCY;
+        }
+        return result != null && result.isHardware() ? RANK_HARDWARE : RANK_SOFTWARE;
+    }
+
+    private static double sortableCost(final CodecProbeResult result) {
+        return result.getEncodeMsPerFrame() == CodecProbeResult.UNKNOWN
+                ? Double.MAX_VALUE
+                : result.getEncodeMsPerFrame();
+    }
+
+    private static boolean isResiliencyFormat(final String name) {
+        return "rtx".equalsIgnoreCase(name)
+                || "red".equalsIgnoreCase(name)
+                || "ulpfec".equalsIgnoreCase(name)
+                || (name != null && name.toLowerCase().startsWith("flexfec"));
+    }
+
+    private static CodecProbeResult find(final List<CodecProbeResult> probeResults,
+                                         final RtpCapabilities.CodecCapability codec) {
+        if (probeResults == null) {
+            return null;
+        }
+        for (final CodecProbeResult result : probeResults) {
+            if (result.matches(codec.name, codec.parameters)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private static boolean contains(final List<RtpCapabilities.CodecCapability> codecs,
+                                    final RtpCapabilities.CodecCapability codec) {
+        for (final RtpCapabilities.CodecCapability other : codecs) {
+            if (Objects.equals(other.mimeType, codec.mimeType)
+                    && Objects.equals(other.clockRate, codec.clockRate)
+                    && Objects.equals(other.parameters, codec.parameters)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String describe(final List<RtpCapabilities.CodecCapability> codecs) {
+        final StringBuilder sb = new StringBuilder();
+        for (final RtpCapabilities.CodecCapability codec : codecs) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(codec.name);
+            if (codec.parameters != null && codec.parameters.containsKey(CodecProbeResult.PROFILE_LEVEL_ID)) {
+                sb.append('/').append(codec.parameters.get(CodecProbeResult.PROFILE_LEVEL_ID));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import java.util.Map;
+
+/**
+ * What the codec capability probe found out about one video encoder.
+ */
+public class CodecProbeResult {
+
+    public static final double UNKNOWN = -1;
+
+    static final String PROFILE_LEVEL_ID = "profile-level-id";
+
+    private final String name;
+
+    /**
+     * profile_idc of H264 encoders as two hex digits, e.g. "42" for (constrained) baseline and
+     * "64" for high profile. {@code null} for other codecs.
+     */
+    private final String profile;
+
+    private final boolean hardware;
+
+    private final double encodeMsPerFrame;
+
+    public CodecProbeResult(final String name, final Map<String, String> params, final boolean hardware,
+                            final double encodeMsPerFrame) {
+        this.name = name;
+        this.profile = profileOf(params);
+        this.hardware = hardware;
+        this.encodeMsPerFrame = encodeMsPerFrame;
+    }
+
+    private CodecProbeResult(final String name, final String profile, final double encodeMsPerFrame) {
+        this.name = name;
+        this.profile = profile;
+        this.hardware = false;
+        this.encodeMsPerFrame = encodeMsPerFrame;
+    }
+
+    /**
+     * @return This result with the encoder treated as a software encoder.
+     */
+    public CodecProbeResult asSoftware() {
+        return new CodecProbeResult(name, profile, encodeMsPerFrame);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isHardware() {
+        return hardware;
+    }
+
+    /**
+     * @return Mean time from handing a frame to the encoder until it was encoded, {@link #UNKNOWN}
+     * if the encoder was not measured.
+     */
+    public double getEncodeMsPerFrame() {
+        return encodeMsPerFrame;
+    }
+
+    /**
+     * @return {@code true} if this result describes the codec negotiated with {@code codecName}
+     * and format parameters {@code params}.
+     */
+    public boolean matches(final String codecName, final Map<String, String> params) {
+        if (!name.equalsIgnoreCase(codecName)) {
+            return false;
+        }
+        final String otherProfile = profileOf(params);
+        return profile == null || otherProfile == null || profile.equalsIgnoreCase(otherProfile);
+    }
+
+    private static String profileOf(final Map<String, String> params) {
+        if (params == null) {
+            return null;
+        }
+        final String profileLevelId = params.get(PROFILE_LEVEL_ID);
+        return profileLevelId != null && profileLevelId.length() >= 2 ? profileLevelId.substring(0, 2) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "CodecProbeResult(name=" + name + ", profile=" + profile + ", hardware=" + hardware
+                + ", encodeMsPerFrame=" + encodeMsPerFrame + ")";
+    }
+}
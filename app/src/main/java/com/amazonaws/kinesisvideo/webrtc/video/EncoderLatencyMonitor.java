@@ -0,0 +1,163 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tracks how long an encoder takes per frame and decides when it is too slow to keep using.
+ * <p>
+ * Frames are tracked by capture timestamp from the moment they are handed to the encoder until
+ * the encoded frame comes back. Encoders deliver frames in order, so frames still pending when a
+ * later frame comes out were dropped by the encoder. The statistics are evaluated in windows of
+ * {@link #WINDOW_MS}; the encoder is reported as failing once {@link #SUSTAINED_WINDOWS}
+ * consecutive windows are bad, so a single slow key frame does not trigger a fallback.
+ * <p>
+ * Times are passed in so that the policy can be tested without a real encoder.
+ */
+public class EncoderLatencyMonitor {
+
+    /**
+     * Why an encoder was considered failing.
+     */
+    public enum Reason {
+        /** Mean time from submitting a frame until it is encoded exceeded the threshold. */
+        ENCODE_LATENCY,
+        /** Too many frames waited inside the encoder. */
+        QUEUE_DEPTH,
+        /** The encoder dropped too large a share of the frames. */
+        DROPPED_FRAMES
+    }
+
+    static final long WINDOW_MS = 1000;
+
+    static final long WARM_UP_MS = 2000;
+
+    static final int SUSTAINED_WINDOWS = 3;
+
+    static final double LATENCY_THRESHOLD_MS = 100;
+
+    static final int QUEUE_DEPTH_THRESHOLD = 8;
+
+    static final double DROP_RATIO_THRESHOLD = 0.25;
+
+    private final String codecName;
+
+    private final Map<Long, Long> pendingSubmitMs = new LinkedHashMap<>();
+
+    private long startMs = -1;
+
+    private long windowStartMs;
+
+    private int windowFrames;
+
+    private long windowEncodeMs;
+
+    private int windowDropped;
+
+    private int windowMaxQueueDepth;
+
+    private int badWindows;
+
+    private long framesSubmitted;
+
+    private long framesEncoded;
+
+    private long framesDropped;
+
+    private long totalEncodeMs;
+
+    private long maxEncodeMs;
+
+    private int maxQueueDepth;
+
+    public EncoderLatencyMonitor(final String codecName) {
+        this.codecName = codecName;
+    }
+
+    public synchronized void onFrameSubmitted(final long timestampNs, final long nowMs) {
+        if (startMs < 0) {
+            startMs = nowMs;
+            windowStartMs = nowMs;
+        }
+        framesSubmitted++;
+        pendingSubmitMs.put(timestampNs, nowMs);
+        windowMaxQueueDepth = Math.max(windowMaxQueueDepth, pendingSubmitMs.size());
+        maxQueueDepth = Math.max(maxQueueDepth, pendingSubmitMs.size());
+    }
+
+    public synchronized void onFrameEncoded(final long timestampNs, final long nowMs) {
+        if (!pendingSubmitMs.containsKey(timestampNs)) {
+            return;
+        }
+        final Iterator<Map.Entry<Long, Long>> iterator = pendingSubmitMs.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Long, Long> pending = iterator.next();
+            iterator.remove();
+            if (pending.getKey() == timestampNs) {
+                final long encodeMs = nowMs - pending.getValue();
+                framesEncoded++;
+                totalEncodeMs += encodeMs;
+                maxEncodeMs = Math.max(maxEncodeMs, encodeMs);
+                windowFrames++;
+                windowEncodeMs += encodeMs;
+                return;
+            }
+            // Submitted before the frame that just came out, the encoder skipped it
+            recordDrop();
+        }
+    }
+
+    /**
+     * Records a frame the encoder refused, e.g. because its input queue was full.
+     */
+    public synchronized void onFrameDropped(final long timestampNs) {
+        if (pendingSubmitMs.remove(timestampNs) != null) {
+            recordDrop();
+        }
+    }
+
+    /**
+     * Closes the current window if it has ended.
+     *
+     * @return The reason the encoder should be abandoned, {@code null} while it keeps up.
+     */
+    public synchronized Reason check(final long nowMs) {
+        if (startMs < 0 || nowMs - windowStartMs < WINDOW_MS) {
+            return null;
+        }
+
+        Reason reason = null;
+        final int windowTotal = windowFrames + windowDropped;
+        if (nowMs - startMs >= WARM_UP_MS) {
+            // A stalled encoder produces nothing at all, only its queue shows it
+            if (windowMaxQueueDepth > QUEUE_DEPTH_THRESHOLD) {
+                reason = Reason.QUEUE_DEPTH;
+            } else if (windowTotal > 0 && (double) windowDropped / windowTotal > DROP_RATIO_THRESHOLD) {
+                reason = Reason.DROPPED_FRAMES;
+            } else if (windowFrames > 0 && (double) windowEncodeMs / windowFrames > LATENCY_THRESHOLD_MS) {
+                reason = Reason.ENCODE_LATENCY;
+            }
+        }
+        badWindows = reason != null ? badWindows + 1 : 0;
+
+        windowStartMs = nowMs;
+        windowFrames = 0;
+        windowEncodeMs = 0;
+        windowDropped = 0;
+        windowMaxQueueDepth = pendingSubmitMs.size();
+
+        return badWindows >= SUSTAINED_WINDOWS ? reason : null;
+    }
+
+    public synchronized EncoderMetrics getMetrics() {
+        return new EncoderMetrics(codecName, framesSubmitted, framesEncoded, framesDropped,
+                framesEncoded > 0 ? (double) totalEncodeMs / framesEncoded : 0, maxEncodeMs,
+                pendingSubmitMs.size(), maxQueueDepth);
+    }
+
+    private void recordDrop() {
+        framesDropped++;
+        windowDropped++;
+    }
+}
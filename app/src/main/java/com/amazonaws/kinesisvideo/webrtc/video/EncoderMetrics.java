@@ -0,0 +1,79 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+/**
+ * Snapshot of what an encoder did since it was initialized.
+ */
+public class EncoderMetrics {
+
+    private final String codecName;
+
+    private final long framesSubmitted;
+
+    private final long framesEncoded;
+
+    private final long framesDropped;
+
+    private final double meanEncodeMs;
+
+    private final long maxEncodeMs;
+
+    private final int queueDepth;
+
+    private final int maxQueueDepth;
+
+    EncoderMetrics(final String codecName, final long framesSubmitted, final long framesEncoded,
+                   final long framesDropped, final double meanEncodeMs, final long maxEncodeMs,
+                   final int queueDepth, final int maxQueueDepth) {
+        this.codecName = codecName;
+        this.framesSubmitted = framesSubmitted;
+        this.framesEncoded = framesEncoded;
+        this.framesDropped = framesDropped;
+        this.meanEncodeMs = meanEncodeMs;
+        this.maxEncodeMs = maxEncodeMs;
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    public String getCodecName() {
+        return codecName;
+    }
+
+    public long getFramesSubmitted() {
+        return framesSubmitted;
+    }
+
+    public long getFramesEncoded() {
+        return framesEncoded;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    public double getMeanEncodeMs() {
+        return meanEncodeMs;
+    }
+
+    public long getMaxEncodeMs() {
+        return maxEncodeMs;
+    }
+
+    /**
+     * @return Frames handed to the encoder that are neither encoded nor dropped yet.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    @Override
+    public String toString() {
+        return "EncoderMetrics(codecName=" + codecName + ", framesSubmitted=" + framesSubmitted
+                + ", framesEncoded=" + framesEncoded + ", framesDropped=" + framesDropped
+                + ", meanEncodeMs=" + String.format("%.1f", meanEncodeMs) + ", maxEncodeMs=" + maxEncodeMs
+                + ", queueDepth=" + queueDepth + ", maxQueueDepth=" + maxQueueDepth + ")";
+    }
+}
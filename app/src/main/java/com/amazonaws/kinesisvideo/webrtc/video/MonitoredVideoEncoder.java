@@ -0,0 +1,138 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.webrtc.EncodedImage;
+import org.webrtc.VideoCodecStatus;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoFrame;
+
+/**
+ * Hardware encoder wrapper that measures the encoder and gives up on it when it stops keeping up.
+ * <p>
+ * When a software fallback exists, this encoder is the primary of a {@link org.webrtc.VideoEncoderFallback}
+ * and giving up means returning {@link VideoCodecStatus#FALLBACK_SOFTWARE}, after which libwebrtc
+ * continues on the software encoder in place. Without a fallback the encoder keeps running and only
+ * the listener is told.
+ */
+class MonitoredVideoEncoder implements VideoEncoder {
+
+    private static final String TAG = "KVSMonitoredVideoEncoder";
+
+    private final VideoEncoder delegate;
+
+    private final String codecName;
+
+    private final boolean softwareFallbackAvailable;
+
+    private final MonitoredVideoEncoderFactory.Listener listener;
+
+    private volatile EncoderLatencyMonitor monitor;
+
+    private EncoderLatencyMonitor.Reason failure;
+
+    MonitoredVideoEncoder(final VideoEncoder delegate, final String codecName,
+                          final boolean softwareFallbackAvailable,
+                          final MonitoredVideoEncoderFactory.Listener listener) {
+        this.delegate = delegate;
+        this.codecName = codecName;
+        this.softwareFallbackAvailable = softwareFallbackAvailable;
+        this.listener = listener;
+        this.monitor = new EncoderLatencyMonitor(codecName);
+    }
+
+    String getCodecName() {
+        return codecName;
+    }
+
+    EncoderMetrics getMetrics() {
+        return monitor.getMetrics();
+    }
+
+    @Override
+    public long createNativeVideoEncoder() {
+        return delegate.createNativeVideoEncoder();
+    }
+
+    @Override
+    public boolean isHardwareEncoder() {
+        return delegate.isHardwareEncoder();
+    }
+
+    @Override
+    public VideoCodecStatus initEncode(final Settings settings, final Callback callback) {
+        final EncoderLatencyMonitor sessionMonitor = new EncoderLatencyMonitor(codecName);
+        monitor = sessionMonitor;
+        return delegate.initEncode(settings, new Callback() {
+            @Override
+            public void onEncodedFrame(final EncodedImage frame, final CodecSpecificInfo info) {
+                sessionMonitor.onFrameEncoded(frame.captureTimeNs, SystemClock.elapsedRealtime());
+                callback.onEncodedFrame(frame, info);
+            }
+        });
+    }
+
+    @Override
+    public VideoCodecStatus release() {
+        return delegate.release();
+    }
+
+    @Override
+    public VideoCodecStatus encode(final VideoFrame frame, final EncodeInfo info) {
+        if (failure != null && softwareFallbackAvailable) {
+            return VideoCodecStatus.FALLBACK_SOFTWARE;
+        }
+
+        final long nowMs = SystemClock.elapsedRealtime();
+        final EncoderLatencyMonitor.Reason reason = monitor.check(nowMs);
+        if (reason != null && failure == null) {
+            failure = reason;
+            final EncoderMetrics metrics = monitor.getMetrics();
+            Log.w(TAG, "Abandoning " + delegate.getImplementationName() + " because of " + reason + ": " + metrics);
+            if (listener != null) {
+                listener.onEncoderFailing(codecName, reason, metrics, softwareFallbackAvailable);
+            }
+            if (softwareFallbackAvailable) {
+                return VideoCodecStatus.FALLBACK_SOFTWARE;
+            }
+        }
+
+        monitor.onFrameSubmitted(frame.getTimestampNs(), nowMs);
+        final VideoCodecStatus status = delegate.encode(frame, info);
+        if (status != VideoCodecStatus.OK) {
+            monitor.onFrameDropped(frame.getTimestampNs());
+        }
+        return status;
+    }
+
+    @Override
+    public VideoCodecStatus setRateAllocation(final BitrateAllocation allocation, final int framerate) {
+        return delegate.setRateAllocation(allocation, framerate);
+    }
+
+    @Override
+    public VideoCodecStatus setRates(final RateControlParameters parameters) {
+        return delegate.setRates(parameters);
+    }
+
+    @Override
+    public ScalingSettings getScalingSettings() {
+        return delegate.getScalingSettings();
+    }
+
+    @Override
+    public ResolutionBitrateLimits[] getResolutionBitrateLimits() {
+        return delegate.getResolutionBitrateLimits();
+    }
+
+    @Override
+    public String getImplementationName() {
+        return delegate.getImplementationName();
+    }
+
+    @Override
+    public EncoderInfo getEncoderInfo() {
+        return delegate.getEncoderInfo();
+    }
+}
@@ -0,0 +1,92 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import org.webrtc.EglBase;
+import org.webrtc.HardwareVideoEncoderFactory;
+import org.webrtc.SoftwareVideoEncoderFactory;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoEncoderFactory;
+import org.webrtc.VideoEncoderFallback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Drop-in replacement for {@link org.webrtc.DefaultVideoEncoderFactory} whose hardware encoders are
+ * measured and abandoned for the software encoder when they fall behind.
+ */
+public class MonitoredVideoEncoderFactory implements VideoEncoderFactory {
+
+    /**
+     * Told when a hardware encoder stops keeping up. Called on the encoder thread.
+     */
+    public interface Listener {
+        /**
+         * @param codecName                 Codec of the failing encoder.
+         * @param reason                    Which threshold was exceeded.
+         * @param metrics                   The encoder's metrics at the time.
+         * @param softwareFallbackAvailable {@code true} if encoding continues on the software
+         *                                  encoder, {@code false} if the failing encoder stays in use
+         *                                  until another codec is negotiated.
+         */
+        void onEncoderFailing(String codecName, EncoderLatencyMonitor.Reason reason, EncoderMetrics metrics,
+                              boolean softwareFallbackAvailable);
+    }
+
+    private final HardwareVideoEncoderFactory hardwareFactory;
+
+    private final SoftwareVideoEncoderFactory softwareFactory = new SoftwareVideoEncoderFactory();
+
+    private final Listener listener;
+
+    private final List<MonitoredVideoEncoder> encoders = new CopyOnWriteArrayList<>();
+
+    public MonitoredVideoEncoderFactory(final EglBase.Context eglContext, final boolean enableIntelVp8Encoder,
+                                        final boolean enableH264HighProfile, final Listener listener) {
+        this.hardwareFactory = new HardwareVideoEncoderFactory(eglContext, enableIntelVp8Encoder,
+                enableH264HighProfile);
+        this.listener = listener;
+    }
+
+    @Override
+    public VideoEncoder createEncoder(final VideoCodecInfo info) {
+        final VideoEncoder softwareEncoder = softwareFactory.createEncoder(info);
+        final VideoEncoder hardwareEncoder = hardwareFactory.createEncoder(info);
+        if (hardwareEncoder == null) {
+            return softwareEncoder;
+        }
+
+        final MonitoredVideoEncoder monitored = new MonitoredVideoEncoder(hardwareEncoder, info.name,
+                softwareEncoder != null, listener);
+        // Encoders are not released through the factory, keep only the most recent per codec
+        for (final MonitoredVideoEncoder encoder : encoders) {
+            if (encoder.getCodecName().equals(info.name)) {
+                encoders.remove(encoder);
+            }
+        }
+        encoders.add(monitored);
+        return softwareEncoder != null ? new VideoEncoderFallback(softwareEncoder, monitored) : monitored;
+    }
+
+    @Override
+    public VideoCodecInfo[] getSupportedCodecs() {
+        final LinkedHashSet<VideoCodecInfo> supportedCodecInfos = new LinkedHashSet<>();
+        supportedCodecInfos.addAll(Arrays.asList(softwareFactory.getSupportedCodecs()));
+        supportedCodecInfos.addAll(Arrays.asList(hardwareFactory.getSupportedCodecs()));
+        return supportedCodecInfos.toArray(new VideoCodecInfo[0]);
+    }
+
+    /**
+     * @return Metrics of the most recently created hardware encoder of each codec.
+     */
+    public List<EncoderMetrics> getMetrics() {
+        final List<EncoderMetrics> metrics = new ArrayList<>();
+        for (final MonitoredVideoEncoder encoder : encoders) {
+            metrics.add(encoder.getMetrics());
+        }
+        return metrics;
+    }
+}
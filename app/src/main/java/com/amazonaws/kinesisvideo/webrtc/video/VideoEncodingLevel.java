@@ -0,0 +1,110 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One rung of the adaptive video quality ladder. Describes both the camera capture format and the
+ * encoding parameters applied to the video {@link org.webrtc.RtpSender}.
+ */
+public class VideoEncodingLevel {
+
+    private static final double BITS_PER_PIXEL = 0.15;
+
+    private static final int MIN_BITRATE_BPS = 30_000;
+
+    private final int captureWidth;
+
+    private final int captureHeight;
+
+    private final int captureFps;
+
+    private final double scaleResolutionDownBy;
+
+    private final int maxBitrateBps;
+
+    public VideoEncodingLevel(final int captureWidth, final int captureHeight, final int captureFps,
+                              final double scaleResolutionDownBy, final int maxBitrateBps) {
+        this.captureWidth = captureWidth;
+        this.captureHeight = captureHeight;
+        this.captureFps = captureFps;
+        this.scaleResolutionDownBy = scaleResolutionDownBy;
+        this.maxBitrateBps = maxBitrateBps;
+    }
+
+    public int getCaptureWidth() {
+        return captureWidth;
+    }
+
+    public int getCaptureHeight() {
+        return captureHeight;
+    }
+
+    public int getCaptureFps() {
+        return captureFps;
+    }
+
+    public double getScaleResolutionDownBy() {
+        return scaleResolutionDownBy;
+    }
+
+    /**
+     * The encoder frame rate cap. We never encode faster than we capture.
+     */
+    public int getMaxFramerate() {
+        return captureFps;
+    }
+
+    public int getMaxBitrateBps() {
+        return maxBitrateBps;
+    }
+
+    /**
+     * @return {@code true} if moving between this level and {@code other} requires the camera to be
+     * reconfigured, as opposed to only updating the sender's encoding parameters.
+     */
+    public boolean hasSameCaptureFormat(final VideoEncodingLevel other) {
+        return other != null
+                && captureWidth == other.captureWidth
+                && captureHeight == other.captureHeight
+                && captureFps == other.captureFps;
+    }
+
+    /**
+     * Builds the default ladder for a camera capturing at {@code width}x{@code height}@{@code fps}.
+     * The first level is the highest quality. Lower levels first trade frame rate, then resolution.
+     * Bitrates are derived from the encoded pixel rate so the ladder scales with the capture format.
+     *
+     * @param width  Capture width of the highest level.
+     * @param height Capture height of the highest level.
+     * @param fps    Capture frame rate of the highest level.
+     * @return Levels ordered from highest to lowest quality.
+     */
+    public static List<VideoEncodingLevel> defaultLadder(final int width, final int height, final int fps) {
+        final List<VideoEncodingLevel> ladder = new ArrayList<>();
+        ladder.add(level(width, height, fps, 1.0));
+        ladder.add(level(width, height, Math.max(1, fps * 2 / 3), 1.0));
+        ladder.add(level(width, height, Math.max(1, fps / 2), 1.5));
+        ladder.add(level(width, height, Math.max(1, fps / 2), 2.0));
+        ladder.add(level(width, height, Math.max(1, fps / 3), 3.0));
+        return Collections.unmodifiableList(ladder);
+    }
+
+    private static VideoEncodingLevel level(final int width, final int height, final int fps, final double scale) {
+        // Roughly 0.15 bits per encoded pixel, which is what VP8/H.264 need for "good" quality at
+        // these resolutions, with a floor so the lowest levels remain watchable.
+        final double encodedPixelsPerSecond = (width / scale) * (height / scale) * fps;
+        final int bitrate = (int) Math.max(MIN_BITRATE_BPS, encodedPixelsPerSecond * BITS_PER_PIXEL);
+        return new VideoEncodingLevel(width, height, fps, scale, bitrate);
+    }
+
+    @Override
+    public String toString() {
+        return "VideoEncodingLevel(" +
+                "capture=" + captureWidth + "x" + captureHeight + "@" + captureFps +
+                ", scaleResolutionDownBy=" + scaleResolutionDownBy +
+                ", maxBitrateBps=" + maxBitrateBps +
+                ')';
+    }
+}
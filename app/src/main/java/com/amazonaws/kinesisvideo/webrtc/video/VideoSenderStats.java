@@ -0,0 +1,114 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.Map;
+
+/**
+ * The subset of a {@link RTCStatsReport} that drives adaptive video quality decisions on the
+ * sending side. Values that were absent from the report are reported as {@link #UNKNOWN}.
+ *
+ * @see <a href="https://www.w3.org/TR/webrtc-stats/">Identifiers for WebRTC's Statistics API</a>
+ */
+public class VideoSenderStats {
+
+    public static final double UNKNOWN = -1;
+
+    private final long timestampMs;
+
+    private final double availableOutgoingBitrateBps;
+
+    private final double roundTripTimeMs;
+
+    private final double fractionLost;
+
+    public VideoSenderStats(final long timestampMs, final double availableOutgoingBitrateBps,
+                            final double roundTripTimeMs, final double fractionLost) {
+        this.timestampMs = timestampMs;
+        this.availableOutgoingBitrateBps = availableOutgoingBitrateBps;
+        this.roundTripTimeMs = roundTripTimeMs;
+        this.fractionLost = fractionLost;
+    }
+
+    public long getTimestampMs() {
+        return timestampMs;
+    }
+
+    /**
+     * Bandwidth estimate of the selected candidate pair, in bits per second.
+     */
+    public double getAvailableOutgoingBitrateBps() {
+        return availableOutgoingBitrateBps;
+    }
+
+    /**
+     * Round trip time reported by the remote peer (RTCP receiver reports), in milliseconds.
+     */
+    public double getRoundTripTimeMs() {
+        return roundTripTimeMs;
+    }
+
+    /**
+     * Fraction of video packets lost as reported by the remote peer, between 0 and 1.
+     */
+    public double getFractionLost() {
+        return fractionLost;
+    }
+
+    /**
+     * Extracts the outbound video statistics from a stats report.
+     *
+     * @param report Report delivered by {@link org.webrtc.PeerConnection#getStats}.
+     * @return The parsed stats. Fields missing from the report are {@link #UNKNOWN}.
+     */
+    public static VideoSenderStats fromReport(final RTCStatsReport report) {
+        double availableOutgoingBitrate = UNKNOWN;
+        double roundTripTime = UNKNOWN;
+        double fractionLost = UNKNOWN;
+
+        for (final RTCStats stats : report.getStatsMap().values()) {
+            final Map<String, Object> members = stats.getMembers();
+            switch (stats.getType()) {
+                case "candidate-pair":
+                    if (Boolean.TRUE.equals(members.get("nominated")) && "succeeded".equals(members.get("state"))) {
+                        availableOutgoingBitrate = number(members.get("availableOutgoingBitrate"), availableOutgoingBitrate);
+                        if (roundTripTime == UNKNOWN) {
+                            roundTripTime = secondsToMillis(members.get("currentRoundTripTime"), UNKNOWN);
+                        }
+                    }
+                    break;
+                case "remote-inbound-rtp":
+                    if ("video".equals(members.get("kind"))) {
+                        // The RTCP derived RTT is more representative of the media path than the STUN one
+                        roundTripTime = secondsToMillis(members.get("roundTripTime"), roundTripTime);
+                        fractionLost = Math.max(fractionLost, number(members.get("fractionLost"), UNKNOWN));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return new VideoSenderStats((long) (report.getTimestampUs() / 1000), availableOutgoingBitrate,
+                roundTripTime, fractionLost);
+    }
+
+    private static double number(final Object value, final double defaultValue) {
+        return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+    }
+
+    private static double secondsToMillis(final Object seconds, final double defaultValue) {
+        return seconds instanceof Number ? ((Number) seconds).doubleValue() * 1000 : defaultValue;
+    }
+
+    @Override
+    public String toString() {
+        return "VideoSenderStats(" +
+                "timestampMs=" + timestampMs +
+                ", availableOutgoingBitrateBps=" + availableOutgoingBitrateBps +
+                ", roundTripTimeMs=" + roundTripTimeMs +
+                ", fractionLost=" + fractionLost +
+                ')';
+    }
+}
@@ -0,0 +1,117 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AwsClientRegistryTest {
+
+    private static final class FakeClient {
+        final String region;
+
+        final String endpoint;
+
+        boolean shutdown;
+
+        FakeClient(final String region, final String endpoint) {
+            this.region = region;
+            this.endpoint = endpoint;
+        }
+    }
+
+    private static final class FakeService extends AwsClientRegistry.Service<FakeClient> {
+        final List<FakeClient> created = new ArrayList<>();
+
+        FakeService(final String name) {
+            super(name);
+        }
+
+        @Override
+        protected FakeClient create(final AWSCredentialsProvider credentialsProvider,
+                                    final ClientConfiguration configuration, final String region, final String endpoint) {
+            final FakeClient client = new FakeClient(region, endpoint);
+            created.add(client);
+            return client;
+        }
+
+        @Override
+        protected void shutdown(final FakeClient client) {
+            client.shutdown = true;
+        }
+    }
+
+    private final FakeService service = new FakeService("Fake");
+
+    private final FakeService otherService = new FakeService("Other");
+
+    private final AwsClientRegistry registry = new AwsClientRegistry(null, new ClientConfiguration(), 2);
+
+    @Test
+    public void when_sameServiceRegionAndEndpoint_then_clientReused() {
+        final FakeClient first = registry.get(service, "us-west-2", "https://a.example.com");
+        final FakeClient second = registry.get(service, "us-west-2", "https://a.example.com");
+
+        assertSame(first, second);
+        assertEquals(1, service.created.size());
+        final AwsClientStats stats = registry.getStats();
+        assertEquals(1, stats.getCreated());
+        assertEquals(1, stats.getReused());
+        assertEquals(0.5, stats.getReuseRatio(), 0.001);
+    }
+
+    @Test
+    public void when_differentServiceRegionOrEndpoint_then_separateClients() {
+        final FakeClient client = registry.get(service, "us-west-2");
+
+        assertNotSame(client, registry.get(otherService, "us-west-2"));
+        assertNotSame(client, registry.get(service, "eu-west-1"));
+        assertNotSame(client, registry.get(service, "us-west-2", "https://a.example.com"));
+        assertEquals("us-west-2", client.region);
+        assertNull(client.endpoint);
+        assertEquals(0, registry.getStats().getReused());
+    }
+
+    @Test
+    public void when_moreClientsThanMaximum_then_leastRecentlyUsedShutDown() {
+        final FakeClient first = registry.get(service, "us-west-2");
+        final FakeClient second = registry.get(service, "eu-west-1");
+        // Makes the second client the least recently used
+        registry.get(service, "us-west-2");
+        registry.get(service, "ap-south-1");
+
+        assertTrue(second.shutdown);
+        assertFalse(first.shutdown);
+        assertEquals(2, registry.getStats().getClients());
+        assertEquals(1, registry.getStats().getEvicted());
+        assertNotSame(second, registry.get(service, "eu-west-1"));
+    }
+
+    @Test
+    public void when_shutdown_then_allClientsShutDownAndCreatedAgain() {
+        final FakeClient first = registry.get(service, "us-west-2");
+        final FakeClient other = registry.get(otherService, "us-west-2");
+
+        registry.shutdown();
+
+        assertTrue(first.shutdown);
+        assertTrue(other.shutdown);
+        assertEquals(0, registry.getStats().getClients());
+        assertNotSame(first, registry.get(service, "us-west-2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_maximumNotPositive_then_throws() {
+        new AwsClientRegistry(null, new ClientConfiguration(), 0);
+    }
+}
@@ -0,0 +1,123 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ControlPlaneCacheTest {
+
+    private static final long TTL_MS = 10000;
+
+    private static final long REVALIDATE_AFTER_MS = 1000;
+
+    private static final SignalingChannelKey KEY = new SignalingChannelKey("us-west-2", "camera", ChannelRole.MASTER);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Runnable> revalidations = new ArrayList<>();
+
+    private long nowMs = 1_000_000;
+
+    private int loads;
+
+    @Test
+    public void when_warm_then_loaderNotCalled() throws Exception {
+        final ControlPlaneCache cache = newCache(folder.newFile());
+
+        final SignalingChannelInfo first = cache.get(KEY, this::load);
+        nowMs += 500;
+        final SignalingChannelInfo second = cache.get(KEY, this::load);
+
+        assertSame(first, second);
+        assertEquals(1, loads);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, revalidations.size());
+    }
+
+    @Test
+    public void when_stale_then_servedAndRevalidatedOnce() throws Exception {
+        final ControlPlaneCache cache = newCache(folder.newFile());
+        cache.get(KEY, this::load);
+
+        nowMs += REVALIDATE_AFTER_MS;
+        assertEquals("arn:1", cache.get(KEY, this::load).getChannelArn());
+        assertEquals("arn:1", cache.get(KEY, this::load).getChannelArn());
+        assertEquals(1, revalidations.size());
+
+        revalidations.remove(0).run();
+        assertEquals("arn:2", cache.get(KEY, this::load).getChannelArn());
+        assertEquals(2, loads);
+    }
+
+    @Test
+    public void when_expired_then_loadedAgain() throws Exception {
+        final ControlPlaneCache cache = newCache(folder.newFile());
+        cache.get(KEY, this::load);
+
+        nowMs += TTL_MS;
+        assertNull(cache.peek(KEY));
+        assertEquals("arn:2", cache.get(KEY, this::load).getChannelArn());
+    }
+
+    @Test
+    public void when_invalidated_then_revalidationResultDiscardedAndLoadedAgain() throws Exception {
+        final ControlPlaneCache cache = newCache(folder.newFile());
+        cache.get(KEY, this::load);
+        nowMs += REVALIDATE_AFTER_MS;
+        cache.get(KEY, this::load);
+
+        cache.invalidate(KEY);
+        revalidations.remove(0).run();
+
+        assertNull(cache.peek(KEY));
+        assertEquals("arn:3", cache.get(KEY, this::load).getChannelArn());
+    }
+
+    @Test
+    public void when_reopened_then_entriesRestored() throws Exception {
+        final File file = folder.newFile();
+        newCache(file).get(KEY, this::load);
+
+        final ControlPlaneCache reopened = newCache(file);
+        final SignalingChannelInfo info = reopened.peek(KEY);
+        assertEquals("arn:1", info.getChannelArn());
+        assertEquals("wss://example", info.getEndpoint(SignalingChannelInfo.PROTOCOL_WSS));
+        assertNull(reopened.peek(new SignalingChannelKey("us-west-2", "camera", ChannelRole.VIEWER)));
+    }
+
+    @Test
+    public void when_fileCorrupt_then_startsEmpty() throws Exception {
+        final File file = folder.newFile();
+        Files.write(file.toPath(), "{not json".getBytes(StandardCharsets.UTF_8));
+
+        final ControlPlaneCache cache = newCache(file);
+        assertNull(cache.peek(KEY));
+        cache.get(KEY, this::load);
+        assertEquals("arn:1", newCache(file).peek(KEY).getChannelArn());
+    }
+
+    private ControlPlaneCache newCache(final File file) {
+        return new ControlPlaneCache(file, revalidations::add, () -> nowMs, TTL_MS, REVALIDATE_AFTER_MS);
+    }
+
+    private SignalingChannelInfo load(final SignalingChannelKey key) {
+        loads++;
+        return new SignalingChannelInfo("arn:" + loads, null,
+                Collections.singletonMap(SignalingChannelInfo.PROTOCOL_WSS, "wss://example"));
+    }
+}
@@ -0,0 +1,177 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+import com.amazonaws.services.kinesisvideosignaling.model.IceServer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class IceServerConfigCacheTest {
+
+    private static final long SAFETY_MARGIN_MS = 30000;
+
+    private static final long REFRESH_LEAD_MS = 20000;
+
+    private static final SignalingChannelKey KEY = new SignalingChannelKey("us-west-2", "camera", ChannelRole.VIEWER);
+
+    /**
+     * Records scheduled refreshes for the test to run, instead of running them.
+     */
+    private static final class ManualScheduler extends ScheduledThreadPoolExecutor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        final List<Long> delaysMs = new ArrayList<>();
+
+        ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+            tasks.add(command);
+            delaysMs.add(unit.toMillis(delay));
+            return super.schedule(() -> { }, 1, TimeUnit.DAYS);
+        }
+
+        void runLast() {
+            tasks.get(tasks.size() - 1).run();
+        }
+    }
+
+    private long nowMs = 1_000_000;
+
+    private final ManualScheduler scheduler = new ManualScheduler();
+
+    private final IceServerConfigCache cache = new IceServerConfigCache(scheduler, () -> nowMs,
+            SAFETY_MARGIN_MS, REFRESH_LEAD_MS);
+
+    private final List<List<IceServer>> refreshed = new ArrayList<>();
+
+    private int loads;
+
+    private int ttlSeconds = 300;
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void when_withinTtlMinusMargin_then_loaderNotCalled() throws Exception {
+        final List<IceServer> first = cache.get(KEY, this::load);
+        nowMs += 300000 - SAFETY_MARGIN_MS - 1;
+        final List<IceServer> second = cache.get(KEY, this::load);
+
+        assertSame(first, second);
+        assertEquals(1, loads);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void when_withinSafetyMargin_then_loadedAgain() throws Exception {
+        cache.get(KEY, this::load);
+        nowMs += 300000 - SAFETY_MARGIN_MS;
+
+        assertEquals("user-2", cache.get(KEY, this::load).get(0).getUsername());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void when_serversHaveDifferentTtls_then_shortestUsed() {
+        final List<IceServer> iceServers = new ArrayList<>();
+        iceServers.add(new IceServer().withTtl(300));
+        iceServers.add(new IceServer().withTtl(120));
+        iceServers.add(new IceServer());
+
+        assertEquals(120000, IceServerConfigCache.ttlMs(iceServers));
+        assertEquals(IceServerConfigCache.DEFAULT_TTL_SECONDS * 1000L,
+                IceServerConfigCache.ttlMs(Collections.singletonList(new IceServer())));
+    }
+
+    @Test
+    public void when_noListener_then_noRefreshScheduled() throws Exception {
+        cache.get(KEY, this::load);
+
+        assertTrue(scheduler.tasks.isEmpty());
+    }
+
+    @Test
+    public void when_listening_then_refreshedBeforeExpiryAndListenerCalled() throws Exception {
+        cache.get(KEY, this::load);
+        assertTrue(cache.addListener(KEY, refreshed::add));
+        assertEquals(Long.valueOf(300000 - SAFETY_MARGIN_MS - REFRESH_LEAD_MS), scheduler.delaysMs.get(0));
+
+        nowMs += 300000 - SAFETY_MARGIN_MS - REFRESH_LEAD_MS;
+        scheduler.runLast();
+
+        assertEquals(1, refreshed.size());
+        assertEquals("user-2", refreshed.get(0).get(0).getUsername());
+        assertEquals(1, cache.getRefreshes());
+        // New sessions get the refreshed servers
+        assertSame(refreshed.get(0).get(0), cache.get(KEY, this::load).get(0));
+        assertEquals(2, loads);
+        // And the next refresh is scheduled
+        assertEquals(2, scheduler.tasks.size());
+    }
+
+    @Test
+    public void when_ttlShorterThanMargins_then_refreshDelayBounded() throws Exception {
+        ttlSeconds = 30;
+        cache.get(KEY, this::load);
+        cache.addListener(KEY, refreshed::add);
+
+        assertEquals(Long.valueOf(IceServerConfigCache.MIN_REFRESH_DELAY_MS), scheduler.delaysMs.get(0));
+    }
+
+    @Test
+    public void when_listenerRemovedOrInvalidated_then_refreshDoesNothing() throws Exception {
+        cache.get(KEY, this::load);
+        final IceServerConfigCache.Listener listener = refreshed::add;
+        cache.addListener(KEY, listener);
+        cache.removeListener(KEY, listener);
+        scheduler.runLast();
+
+        cache.addListener(KEY, listener);
+        cache.invalidate(KEY);
+        scheduler.runLast();
+
+        assertEquals(1, loads);
+        assertTrue(refreshed.isEmpty());
+        assertFalse(cache.addListener(KEY, listener));
+    }
+
+    @Test
+    public void when_beingFetched_then_pendingResultShared() throws Exception {
+        final List<Runnable> loads = new ArrayList<>();
+        final CompletableFuture<List<IceServer>> first = cache.getAsync(KEY, this::load, loads::add);
+        final CompletableFuture<List<IceServer>> second = cache.getAsync(KEY, this::load, loads::add);
+
+        assertSame(first, second);
+        assertEquals(1, loads.size());
+        loads.get(0).run();
+        assertSame(first.get(), cache.get(KEY, this::load));
+        assertEquals(1, this.loads);
+    }
+
+    private List<IceServer> load(final SignalingChannelKey key) {
+        loads++;
+        return Collections.singletonList(new IceServer()
+                .withUris(Collections.singletonList("turn:192.0.2.1:443?transport=udp"))
+                .withUsername("user-" + loads)
+                .withPassword("password")
+                .withTtl(ttlSeconds));
+    }
+}
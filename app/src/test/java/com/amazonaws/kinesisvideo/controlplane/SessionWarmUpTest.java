@@ -0,0 +1,254 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+import com.amazonaws.services.kinesisvideosignaling.model.IceServer;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class SessionWarmUpTest {
+
+    private static final long SETTLE_MS = 1000;
+
+    private static final long MAX_AGE_MS = 60000;
+
+    private static final long DEADLINE_MS = 10000;
+
+    private static final long BUDGET_WINDOW_MS = 300000;
+
+    private static final SignalingChannelKey VIEWER = new SignalingChannelKey("us-west-2", "camera", ChannelRole.VIEWER);
+
+    private static final SignalingChannelKey OTHER = new SignalingChannelKey("us-west-2", "doorbell", ChannelRole.VIEWER);
+
+    /**
+     * Records scheduled tasks for the test to run, instead of running them.
+     */
+    private static final class ManualScheduler extends ScheduledThreadPoolExecutor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        final List<Long> delaysMs = new ArrayList<>();
+
+        ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+            tasks.add(command);
+            delaysMs.add(unit.toMillis(delay));
+            return super.schedule(() -> { }, 1, TimeUnit.DAYS);
+        }
+
+        /**
+         * Runs the first task scheduled with {@code delayMs}.
+         */
+        void run(final long delayMs) {
+            final int index = delaysMs.indexOf(delayMs);
+            assertTrue("Nothing scheduled in " + delayMs + " ms", index >= 0);
+            delaysMs.remove(index);
+            tasks.remove(index).run();
+        }
+    }
+
+    private static final class FixedControlPlane implements ControlPlane {
+        int channelCalls;
+
+        @Override
+        public String getChannelArn(final SignalingChannelKey key) {
+            channelCalls++;
+            return "arn:" + key.getChannelName();
+        }
+
+        @Override
+        public String getStorageStreamArn(final SignalingChannelKey key, final String channelArn) {
+            return "arn:stream";
+        }
+
+        @Override
+        public Map<String, String> getEndpoints(final SignalingChannelKey key, final String channelArn,
+                                                final boolean ingestMedia) {
+            final Map<String, String> endpoints = new HashMap<>();
+            endpoints.put(SignalingChannelInfo.PROTOCOL_WSS, "wss://example");
+            endpoints.put(SignalingChannelInfo.PROTOCOL_HTTPS, "https://example");
+            return endpoints;
+        }
+
+        @Override
+        public List<IceServer> getIceServers(final SignalingChannelKey key, final String channelArn,
+                                             final String httpsEndpoint) {
+            return Collections.singletonList(new IceServer().withTtl(300));
+        }
+    }
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ManualScheduler scheduler = new ManualScheduler();
+
+    private final FixedControlPlane controlPlane = new FixedControlPlane();
+
+    /**
+     * Control plane calls waiting to run, for tests that hold them back.
+     */
+    private final List<Runnable> queued = new ArrayList<>();
+
+    private long nowMs = 1_000_000;
+
+    private int initialized;
+
+    private ControlPlaneException signerError;
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void when_inputsSettle_then_warmStateTaken() throws Exception {
+        final SessionWarmUp warmUp = newWarmUp(Runnable::run, 4);
+        warmUp.onInputsChanged(VIEWER, false, "");
+        assertEquals(0, controlPlane.channelCalls);
+
+        scheduler.run(SETTLE_MS);
+        scheduler.run(0);
+        final SessionWarmUp.Warm warm = warmUp.take(VIEWER, false, "");
+
+        assertNotNull(warm);
+        assertEquals("arn:camera", warm.getChannelInfo().getChannelArn());
+        assertFalse(warm.getClientId().isEmpty());
+        assertEquals(URI.create("wss://example?clientId=" + warm.getClientId()), warm.getSignedUri());
+        assertEquals(1, initialized);
+        assertEquals(1, warmUp.getUsed());
+        // Handed over once
+        assertNull(warmUp.take(VIEWER, false, ""));
+    }
+
+    @Test
+    public void when_inputsChangeBeforeSettling_then_onlyLastWarmedUp() throws Exception {
+        final SessionWarmUp warmUp = newWarmUp(Runnable::run, 4);
+        warmUp.onInputsChanged(VIEWER, false, "");
+        warmUp.onInputsChanged(OTHER, false, "");
+
+        scheduler.run(SETTLE_MS);
+        scheduler.run(SETTLE_MS);
+
+        assertEquals(1, warmUp.getStarted());
+        assertEquals(1, controlPlane.channelCalls);
+        assertNull(warmUp.take(VIEWER, false, ""));
+    }
+
+    @Test
+    public void when_takenForOtherInputs_then_nothingHandedOver() throws Exception {
+        final SessionWarmUp warmUp = newWarmUp(Runnable::run, 4);
+        warmUp.onInputsChanged(VIEWER, false, "");
+        scheduler.run(SETTLE_MS);
+
+        assertNull(warmUp.take(VIEWER, true, ""));
+        assertNull(warmUp.take(VIEWER, false, ""));
+        assertEquals(0, warmUp.getUsed());
+    }
+
+    @Test
+    public void when_notTakenInTime_then_discarded() throws Exception {
+        final SessionWarmUp warmUp = newWarmUp(Runnable::run, 4);
+        warmUp.onInputsChanged(VIEWER, false, "client");
+        scheduler.run(SETTLE_MS);
+
+        scheduler.run(MAX_AGE_MS);
+
+        assertNull(warmUp.take(VIEWER, false, "client"));
+        assertEquals(1, warmUp.getExpired());
+    }
+
+    @Test
+    public void when_deadlinePassed_then_warmUpCancelled() throws Exception {
+        final SessionWarmUp warmUp = newWarmUp(queued::add, 4);
+        warmUp.onInputsChanged(VIEWER, false, "");
+        scheduler.run(SETTLE_MS);
+
+        scheduler.run(DEADLINE_MS);
+        while (!queued.isEmpty()) {
+            queued.remove(0).run();
+        }
+
+        assertEquals(0, controlPlane.channelCalls);
+        assertEquals(1, warmUp.getFailed());
+        assertNull(warmUp.take(VIEWER, false, ""));
+    }
+
+    @Test
+    public void when_signingFails_then_nothingWarm() throws Exception {
+        signerError = new ControlPlaneException("No credentials");
+        final SessionWarmUp warmUp = newWarmUp(Runnable::run, 4);
+        warmUp.onInputsChanged(VIEWER, false, "");
+        scheduler.run(SETTLE_MS);
+
+        assertEquals(1, warmUp.getFailed());
+        assertNull(warmUp.take(VIEWER, false, ""));
+    }
+
+    @Test
+    public void when_budgetSpent_then_noWarmUpUntilWindowPassed() throws Exception {
+        final SessionWarmUp warmUp = newWarmUp(Runnable::run, 2);
+        warmUp.onInputsChanged(VIEWER, false, "");
+        scheduler.run(SETTLE_MS);
+        scheduler.run(0);
+        warmUp.onInputsChanged(OTHER, false, "");
+        scheduler.run(SETTLE_MS);
+        warmUp.onInputsChanged(VIEWER, true, "");
+        scheduler.run(SETTLE_MS);
+
+        assertEquals(2, warmUp.getStarted());
+        assertEquals(1, warmUp.getOverBudget());
+        assertNull(warmUp.take(VIEWER, true, ""));
+
+        nowMs += BUDGET_WINDOW_MS;
+        warmUp.onInputsChanged(VIEWER, true, "");
+        scheduler.run(SETTLE_MS);
+        assertEquals(3, warmUp.getStarted());
+        assertNotNull(warmUp.take(VIEWER, true, ""));
+        // Once per process
+        assertEquals(1, initialized);
+        assertFalse(scheduler.delaysMs.contains(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_maxWarmUpsNotPositive_then_throws() throws Exception {
+        newWarmUp(Runnable::run, 0);
+    }
+
+    private SessionWarmUp newWarmUp(final Executor executor, final int maxWarmUps) throws Exception {
+        final SignalingBootstrap bootstrap = new SignalingBootstrap(controlPlane,
+                new ControlPlaneCache(folder.newFile(), Runnable::run),
+                new IceServerConfigCache(scheduler, () -> nowMs), executor, () -> nowMs);
+        return new SessionWarmUp(bootstrap, this::sign, () -> initialized++, scheduler, () -> nowMs,
+                SETTLE_MS, MAX_AGE_MS, DEADLINE_MS, maxWarmUps, BUDGET_WINDOW_MS);
+    }
+
+    private URI sign(final SignalingChannelKey key, final SignalingChannelInfo info, final String clientId)
+            throws ControlPlaneException {
+        if (signerError != null) {
+            throw signerError;
+        }
+        return URI.create(info.getEndpoint(SignalingChannelInfo.PROTOCOL_WSS) + "?clientId=" + clientId);
+    }
+}
@@ -0,0 +1,337 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+import com.amazonaws.services.kinesisvideosignaling.model.IceServer;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SignalingBootstrapTest {
+
+    private static final SignalingChannelKey MASTER = new SignalingChannelKey("us-west-2", "camera", ChannelRole.MASTER);
+
+    private static final SignalingChannelKey VIEWER = new SignalingChannelKey("us-west-2", "camera", ChannelRole.VIEWER);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final FakeControlPlane controlPlane = new FakeControlPlane();
+
+    /**
+     * Stages waiting to run, for tests that run them one by one.
+     */
+    private final List<Runnable> queued = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void when_ingesting_then_storageConfigAndEndpointsFetchedConcurrently() throws Exception {
+        // Each call waits for the other to start, so running them in order times out
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        controlPlane.onStorageConfig = () -> awaitTogether(bothStarted);
+        controlPlane.onEndpoints = () -> awaitTogether(bothStarted);
+
+        final SignalingBootstrap.Session session = newBootstrap().start(MASTER, true);
+
+        final SignalingChannelInfo info = session.getChannelInfo().get(5, TimeUnit.SECONDS);
+        assertEquals("arn:channel", info.getChannelArn());
+        assertEquals("arn:stream", info.getStreamArn());
+        assertTrue(info.supportsIngestion());
+        assertEquals(1, session.getIceServers().get(5, TimeUnit.SECONDS).size());
+        final BootstrapTimings timings = session.getTimings();
+        for (final SignalingBootstrap.Stage stage : SignalingBootstrap.Stage.values()) {
+            assertTrue(stage + " not timed", timings.getStageMs(stage) >= 0);
+        }
+    }
+
+    @Test
+    public void when_iceServersFetched_then_notWaitingForStorageConfig() throws Exception {
+        final CountDownLatch iceServersFetched = new CountDownLatch(1);
+        controlPlane.onIceServers = iceServersFetched::countDown;
+        controlPlane.onStorageConfig = () -> {
+            if (!iceServersFetched.await(5, TimeUnit.SECONDS)) {
+                throw new ControlPlaneException("ICE servers were not fetched meanwhile");
+            }
+        };
+
+        final SignalingBootstrap.Session session = newBootstrap().start(MASTER, true);
+
+        assertEquals("arn:stream", session.getChannelInfo().get(5, TimeUnit.SECONDS).getStreamArn());
+    }
+
+    @Test
+    public void when_viewer_then_noStorageConfig() throws Exception {
+        final SignalingBootstrap.Session session = newBootstrap().start(VIEWER, true);
+
+        assertNull(session.getChannelInfo().get(5, TimeUnit.SECONDS).getStreamArn());
+        assertEquals(0, controlPlane.storageConfigCalls.get());
+        assertEquals(-1, session.getTimings().getStageMs(SignalingBootstrap.Stage.STORAGE_CONFIG));
+    }
+
+    @Test
+    public void when_warm_then_onlyCachedResultsUsed() throws Exception {
+        final SignalingBootstrap bootstrap = newBootstrap();
+        final SignalingBootstrap.Session cold = bootstrap.start(VIEWER, false);
+        cold.getChannelInfo().get(5, TimeUnit.SECONDS);
+        cold.getIceServers().get(5, TimeUnit.SECONDS);
+
+        final SignalingBootstrap.Session warm = bootstrap.start(VIEWER, false);
+
+        assertEquals(cold.getChannelInfo().get().getChannelArn(), warm.getChannelInfo().get(5, TimeUnit.SECONDS).getChannelArn());
+        assertSame(cold.getIceServers().get(), warm.getIceServers().get(5, TimeUnit.SECONDS));
+        assertEquals(1, controlPlane.channelCalls.get());
+        assertEquals(1, controlPlane.endpointCalls.get());
+        assertEquals(1, controlPlane.iceServerCalls.get());
+        assertEquals(0, warm.getTimings().getSequentialMs());
+    }
+
+    @Test
+    public void when_ingestingAfterCachedWithoutIngestion_then_fetchedAgain() throws Exception {
+        final SignalingBootstrap bootstrap = newBootstrap();
+        bootstrap.start(MASTER, false).getChannelInfo().get(5, TimeUnit.SECONDS);
+
+        final SignalingChannelInfo info = bootstrap.start(MASTER, true).getChannelInfo().get(5, TimeUnit.SECONDS);
+
+        assertTrue(info.supportsIngestion());
+        assertEquals(2, controlPlane.channelCalls.get());
+    }
+
+    @Test
+    public void when_notIngestingAfterCachedWithIngestion_then_ingestionInfoLeftOut() throws Exception {
+        final SignalingBootstrap bootstrap = newBootstrap();
+        bootstrap.start(MASTER, true).getChannelInfo().get(5, TimeUnit.SECONDS);
+
+        final SignalingChannelInfo info = bootstrap.start(MASTER, false).getChannelInfo().get(5, TimeUnit.SECONDS);
+
+        assertNull(info.getStreamArn());
+        assertNull(info.getEndpoint(SignalingChannelInfo.PROTOCOL_WEBRTC));
+        assertEquals("wss://example", info.getEndpoint(SignalingChannelInfo.PROTOCOL_WSS));
+        assertEquals(1, controlPlane.channelCalls.get());
+        assertTrue(bootstrap.start(MASTER, true).getChannelInfo().get(5, TimeUnit.SECONDS).supportsIngestion());
+    }
+
+    @Test
+    public void when_stageFails_then_bothResultsFailWithItsMessage() throws Exception {
+        controlPlane.onEndpoints = () -> {
+            throw new ControlPlaneException("Get Signaling Endpoint failed");
+        };
+
+        final SignalingBootstrap.Session session = newBootstrap().start(VIEWER, false);
+
+        assertFailed("Get Signaling Endpoint failed", session.getChannelInfo()::get);
+        assertFailed("Get Signaling Endpoint failed", session.getIceServers()::get);
+    }
+
+    @Test
+    public void when_running_then_progressReportedPerStage() throws Exception {
+        final List<SignalingBootstrap.Stage> stages = new ArrayList<>();
+        final List<String> progress = new ArrayList<>();
+        final SignalingBootstrap.Session session = newBootstrap(queued::add).start(MASTER, true,
+                (stage, finished, total) -> {
+                    stages.add(stage);
+                    progress.add(finished + "/" + total);
+                });
+        runQueued();
+
+        assertTrue(session.getIceServers().isDone());
+        assertEquals(SignalingBootstrap.Stage.CHANNEL, stages.get(0));
+        assertEquals(EnumSet.allOf(SignalingBootstrap.Stage.class), EnumSet.copyOf(stages));
+        assertEquals(Arrays.asList("1/4", "2/4", "3/4", "4/4"), progress);
+    }
+
+    @Test
+    public void when_cancelled_then_pendingStagesNotRunAndResultsCancelled() throws Exception {
+        final List<SignalingBootstrap.Stage> progress = new ArrayList<>();
+        final SignalingBootstrap.Session session = newBootstrap(queued::add).start(MASTER, true,
+                (stage, finished, total) -> progress.add(stage));
+        // Fetches the channel ARN, and queues the stages that need it
+        queued.remove(0).run();
+
+        session.cancel();
+        runQueued();
+
+        assertTrue(session.isCancelled());
+        assertTrue(session.getChannelInfo().isCancelled());
+        assertTrue(session.getIceServers().isCancelled());
+        assertEquals(0, controlPlane.storageConfigCalls.get());
+        assertEquals(0, controlPlane.endpointCalls.get());
+        assertEquals(0, controlPlane.iceServerCalls.get());
+        assertEquals(Collections.singletonList(SignalingBootstrap.Stage.CHANNEL), progress);
+    }
+
+    @Test
+    public void when_warmingUpAsMaster_then_channelNotCreatedButCachedForSession() throws Exception {
+        final SignalingBootstrap bootstrap = newBootstrap();
+        final SignalingBootstrap.Session warmUp = bootstrap.warmUp(MASTER, false);
+        warmUp.getChannelInfo().get(5, TimeUnit.SECONDS);
+        warmUp.getIceServers().get(5, TimeUnit.SECONDS);
+
+        final SignalingBootstrap.Session session = bootstrap.start(MASTER, false);
+
+        assertEquals("arn:channel", session.getChannelInfo().get(5, TimeUnit.SECONDS).getChannelArn());
+        assertEquals(Collections.singletonList(ChannelRole.VIEWER), controlPlane.channelRoles);
+        assertEquals(1, controlPlane.endpointCalls.get());
+        assertEquals(1, controlPlane.iceServerCalls.get());
+    }
+
+    @Test
+    public void when_cachedEntryStale_then_revalidatedWithoutWaitingOnTheExecutor() throws Exception {
+        // Revalidating on the only thread the stages run on must not wait for stages queued behind it
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        final AtomicLong nowMs = new AtomicLong(1000);
+        try {
+            final SignalingBootstrap bootstrap = new SignalingBootstrap(controlPlane,
+                    new ControlPlaneCache(folder.newFile(), single, nowMs::get, 10_000, 100),
+                    new IceServerConfigCache(Executors.newSingleThreadScheduledExecutor(), System::currentTimeMillis),
+                    single, nowMs::get);
+            bootstrap.start(VIEWER, false).getChannelInfo().get(5, TimeUnit.SECONDS);
+            nowMs.addAndGet(200);
+
+            final SignalingBootstrap.Session stale = bootstrap.start(VIEWER, false);
+
+            assertEquals("arn:channel", stale.getChannelInfo().get(5, TimeUnit.SECONDS).getChannelArn());
+            single.submit(() -> { }).get(5, TimeUnit.SECONDS);
+            assertEquals(2, controlPlane.channelCalls.get());
+            assertEquals(2, controlPlane.endpointCalls.get());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    private interface Result {
+        Object get() throws Exception;
+    }
+
+    private static final class FakeControlPlane implements ControlPlane {
+        final AtomicInteger channelCalls = new AtomicInteger();
+
+        final List<ChannelRole> channelRoles = Collections.synchronizedList(new ArrayList<>());
+
+        final AtomicInteger storageConfigCalls = new AtomicInteger();
+
+        final AtomicInteger endpointCalls = new AtomicInteger();
+
+        final AtomicInteger iceServerCalls = new AtomicInteger();
+
+        volatile Step onStorageConfig = () -> { };
+
+        volatile Step onEndpoints = () -> { };
+
+        volatile Step onIceServers = () -> { };
+
+        @Override
+        public String getChannelArn(final SignalingChannelKey key) {
+            channelCalls.incrementAndGet();
+            channelRoles.add(key.getRole());
+            return "arn:channel";
+        }
+
+        @Override
+        public String getStorageStreamArn(final SignalingChannelKey key, final String channelArn)
+                throws ControlPlaneException {
+            storageConfigCalls.incrementAndGet();
+            run(onStorageConfig);
+            return "arn:stream";
+        }
+
+        @Override
+        public Map<String, String> getEndpoints(final SignalingChannelKey key, final String channelArn,
+                                                final boolean ingestMedia) throws ControlPlaneException {
+            endpointCalls.incrementAndGet();
+            run(onEndpoints);
+            final Map<String, String> endpoints = new HashMap<>();
+            endpoints.put(SignalingChannelInfo.PROTOCOL_WSS, "wss://example");
+            endpoints.put(SignalingChannelInfo.PROTOCOL_HTTPS, "https://example");
+            if (ingestMedia) {
+                endpoints.put(SignalingChannelInfo.PROTOCOL_WEBRTC, "https://webrtc.example");
+            }
+            return endpoints;
+        }
+
+        @Override
+        public List<IceServer> getIceServers(final SignalingChannelKey key, final String channelArn,
+                                             final String httpsEndpoint) throws ControlPlaneException {
+            assertEquals("https://example", httpsEndpoint);
+            iceServerCalls.incrementAndGet();
+            run(onIceServers);
+            return Collections.singletonList(new IceServer().withTtl(300));
+        }
+
+        private static void run(final Step step) throws ControlPlaneException {
+            try {
+                step.run();
+            } catch (final ControlPlaneException e) {
+                throw e;
+            } catch (final Exception e) {
+                throw new ControlPlaneException(e.toString(), e);
+            }
+        }
+    }
+
+    private SignalingBootstrap newBootstrap() throws Exception {
+        return newBootstrap(executor);
+    }
+
+    private SignalingBootstrap newBootstrap(final Executor executor) throws Exception {
+        return new SignalingBootstrap(controlPlane,
+                new ControlPlaneCache(folder.newFile(), Runnable::run),
+                new IceServerConfigCache(Executors.newSingleThreadScheduledExecutor(), System::currentTimeMillis),
+                executor, System::currentTimeMillis);
+    }
+
+    private void runQueued() {
+        while (!queued.isEmpty()) {
+            queued.remove(0).run();
+        }
+    }
+
+    private static void awaitTogether(final CountDownLatch latch) throws Exception {
+        latch.countDown();
+        if (!latch.await(5, TimeUnit.SECONDS)) {
+            throw new ControlPlaneException("Not run concurrently");
+        }
+    }
+
+    private static void assertFailed(final String message, final Result result) throws Exception {
+        try {
+            result.get();
+            fail();
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof ControlPlaneException);
+            assertEquals(message, e.getCause().getMessage());
+        }
+    }
+}
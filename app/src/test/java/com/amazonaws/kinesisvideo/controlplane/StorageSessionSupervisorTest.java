@@ -0,0 +1,183 @@
+package com.amazonaws.kinesisvideo.controlplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class StorageSessionSupervisorTest {
+
+    private static final long INITIAL_BACKOFF_MS = 1000;
+
+    private static final long MAX_BACKOFF_MS = 4000;
+
+    private static final long OFFER_DEADLINE_MS = 10000;
+
+    /**
+     * Records scheduled tasks for the test to run, instead of running them.
+     */
+    private static final class ManualScheduler extends ScheduledThreadPoolExecutor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        final List<Long> delaysMs = new ArrayList<>();
+
+        ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+            tasks.add(command);
+            delaysMs.add(unit.toMillis(delay));
+            return super.schedule(() -> { }, 1, TimeUnit.DAYS);
+        }
+
+        /**
+         * Runs the task scheduled last, and returns its delay.
+         */
+        long runLast() {
+            final int index = tasks.size() - 1;
+            final long delayMs = delaysMs.remove(index);
+            tasks.remove(index).run();
+            return delayMs;
+        }
+    }
+
+    /**
+     * Jitters by as little as possible, or as much.
+     */
+    private static final class FixedRandom extends Random {
+        double value;
+
+        @Override
+        public double nextDouble() {
+            return value;
+        }
+    }
+
+    private final ManualScheduler scheduler = new ManualScheduler();
+
+    private final FixedRandom random = new FixedRandom();
+
+    private final List<ControlPlaneException> retryErrors = new ArrayList<>();
+
+    private final List<Long> retryDelaysMs = new ArrayList<>();
+
+    private int joins;
+
+    private int failuresLeft;
+
+    private long nowMs = 1_000_000;
+
+    private final StorageSessionSupervisor supervisor = new StorageSessionSupervisor(this::join,
+            (error, delayMs) -> {
+                retryErrors.add(error);
+                retryDelaysMs.add(delayMs);
+            }, scheduler, () -> nowMs, random, INITIAL_BACKOFF_MS, MAX_BACKOFF_MS, OFFER_DEADLINE_MS);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void when_offerArrives_then_joinToOfferLatencyRecorded() {
+        supervisor.start();
+        assertEquals(0, scheduler.runLast());
+        nowMs += 2500;
+
+        assertTrue(supervisor.onOfferReceived());
+
+        final StorageSessionStats stats = supervisor.getStats();
+        assertEquals(1, stats.getJoins());
+        assertEquals(1, stats.getOffers());
+        assertEquals(2500, stats.getLastJoinToOfferMs());
+        assertFalse(stats.isAwaitingOffer());
+        // Offers from viewers afterwards are not the storage session's
+        assertFalse(supervisor.onOfferReceived());
+    }
+
+    @Test
+    public void when_joinFails_then_retriedWithJitteredBackoffUpToMaximum() {
+        failuresLeft = 4;
+        random.value = 0.5;
+        supervisor.start();
+        scheduler.runLast();
+        for (int i = 0; i < 3; i++) {
+            scheduler.runLast();
+        }
+
+        assertEquals(Arrays.asList(750L, 1500L, 3000L, 3000L), retryDelaysMs);
+        assertEquals("Join failed", retryErrors.get(0).getMessage());
+
+        random.value = 1;
+        scheduler.runLast();
+        assertEquals(5, joins);
+        assertTrue(supervisor.getStats().isAwaitingOffer());
+        assertEquals(4, supervisor.getStats().getFailures());
+    }
+
+    @Test
+    public void when_noOfferBeforeDeadline_then_joinedAgain() {
+        random.value = 0;
+        supervisor.start();
+        scheduler.runLast();
+
+        assertEquals(OFFER_DEADLINE_MS, scheduler.runLast());
+        assertNull(retryErrors.get(0));
+        assertEquals(500, scheduler.runLast());
+        assertEquals(2, joins);
+        nowMs += 100;
+        assertTrue(supervisor.onOfferReceived());
+
+        final StorageSessionStats stats = supervisor.getStats();
+        assertEquals(1, stats.getOfferTimeouts());
+        assertEquals(100, stats.getLastJoinToOfferMs());
+    }
+
+    @Test
+    public void when_offerArrivesLate_then_notTakenForStorageSession() {
+        supervisor.start();
+        scheduler.runLast();
+        scheduler.runLast();
+
+        assertFalse(supervisor.onOfferReceived());
+    }
+
+    @Test
+    public void when_stopped_then_notRetried() {
+        failuresLeft = 1;
+        supervisor.start();
+        scheduler.runLast();
+
+        supervisor.stop();
+        scheduler.runLast();
+
+        assertEquals(1, joins);
+        assertFalse(supervisor.onOfferReceived());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_backoffsOutOfOrder_then_throws() {
+        new StorageSessionSupervisor(this::join, null, scheduler, () -> nowMs, random, 5000, 1000, 10000);
+    }
+
+    private void join() throws ControlPlaneException {
+        joins++;
+        if (failuresLeft > 0) {
+            failuresLeft--;
+            throw new ControlPlaneException("Join failed");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class ByteBufferPoolTest {
+
+    @Test
+    public void when_bufferReleased_then_nextAcquireOfSameSizeClassReusesIt() {
+        final ByteBufferPool pool = new ByteBufferPool(64 * 1024, 4);
+
+        final ByteBuffer first = pool.acquire(1000);
+        pool.release(first);
+        final ByteBuffer second = pool.acquire(700);
+
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(700, second.limit());
+        assertEquals(1, pool.getReuses());
+        assertEquals(1, pool.getAllocations());
+    }
+
+    @Test
+    public void when_sizeAboveLargestClass_then_bufferIsNotPooled() {
+        final ByteBufferPool pool = new ByteBufferPool(64 * 1024, 4);
+
+        final ByteBuffer large = pool.acquire(100 * 1024);
+        pool.release(large);
+
+        assertNotSame(large, pool.acquire(100 * 1024));
+        assertEquals(0, pool.getReuses());
+    }
+
+    @Test
+    public void when_sizeClassIsFull_then_extraBuffersAreDropped() {
+        final ByteBufferPool pool = new ByteBufferPool(64 * 1024, 1);
+
+        final ByteBuffer first = pool.acquire(300);
+        final ByteBuffer second = pool.acquire(300);
+        pool.release(first);
+        pool.release(second);
+
+        assertSame(first, pool.acquire(300));
+        assertNotSame(second, pool.acquire(300));
+    }
+}
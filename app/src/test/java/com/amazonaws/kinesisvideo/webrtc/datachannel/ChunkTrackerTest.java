@@ -0,0 +1,114 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+public class ChunkTrackerTest {
+
+    private static final int CHUNK_SIZE = 4;
+
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+
+    @Test
+    public void when_offerAccepted_then_chunksCountedWithShortLastChunk() {
+        final ChunkTracker chunks = ChunkTracker.forOffer(offer(10, CHUNK_SIZE), NO_LIMIT, NO_LIMIT);
+
+        assertEquals(3, chunks.getChunkCount());
+        assertEquals(0, chunks.getResumeOffset());
+        assertEquals(ChunkTracker.Verdict.WRITE, chunks.check(chunk(8, new byte[2])));
+        assertEquals(ChunkTracker.Verdict.INVALID, chunks.check(chunk(8, new byte[4])));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_offerExceedsLimit_then_rejected() {
+        ChunkTracker.forOffer(offer(1025, CHUNK_SIZE), 1024, NO_LIMIT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_offerExceedsFreeSpace_then_rejected() {
+        ChunkTracker.forOffer(offer(1025, CHUNK_SIZE), NO_LIMIT, 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_offerHasTooManyChunks_then_rejectedWithoutOverflow() {
+        ChunkTracker.forOffer(offer(Long.MAX_VALUE, 1), NO_LIMIT, NO_LIMIT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_chunkSizeTooLarge_then_rejected() {
+        ChunkTracker.forOffer(offer(1024, ChunkTracker.MAX_CHUNK_SIZE + 1), NO_LIMIT, NO_LIMIT);
+    }
+
+    @Test
+    public void when_savedStateRestored_then_resumesAtFirstMissingChunk() {
+        final ChunkTracker chunks = ChunkTracker.forOffer(offer(16, CHUNK_SIZE), NO_LIMIT, NO_LIMIT);
+        final BitSet saved = new BitSet();
+        saved.set(0);
+        saved.set(1);
+        saved.set(3);
+        // Beyond the offer, e.g. from a corrupt state file
+        saved.set(9);
+
+        chunks.restore(saved);
+
+        assertEquals(3, chunks.getReceivedCount());
+        assertEquals(8, chunks.getResumeOffset());
+        assertEquals(ChunkTracker.Verdict.DUPLICATE, chunks.check(chunk(12, new byte[4])));
+        assertEquals(ChunkTracker.Verdict.WRITE, chunks.check(chunk(8, new byte[4])));
+    }
+
+    @Test
+    public void when_chunkFailsCrc_then_damagedAndStillMissing() {
+        final ChunkTracker chunks = ChunkTracker.forOffer(offer(8, CHUNK_SIZE), NO_LIMIT, NO_LIMIT);
+        final ByteBuffer frame = chunkFrame(4, new byte[]{1, 2, 3, 4});
+        frame.put(TransferFrame.CHUNK_HEADER_LENGTH, (byte) 42);
+
+        assertEquals(ChunkTracker.Verdict.DAMAGED, chunks.check(TransferFrame.decode(frame)));
+        assertEquals(0, chunks.getReceivedCount());
+        assertEquals(ChunkTracker.Verdict.WRITE, chunks.check(chunk(4, new byte[]{1, 2, 3, 4})));
+    }
+
+    @Test
+    public void when_allChunksMarked_then_complete() {
+        final ChunkTracker chunks = ChunkTracker.forOffer(offer(8, CHUNK_SIZE), NO_LIMIT, NO_LIMIT);
+
+        chunks.markReceived(4);
+        assertFalse(chunks.isComplete());
+        chunks.markReceived(4);
+        chunks.markReceived(0);
+
+        assertTrue(chunks.isComplete());
+        assertEquals(2, chunks.getReceivedCount());
+    }
+
+    @Test
+    public void when_chunkOffsetMisaligned_then_invalid() {
+        final ChunkTracker chunks = ChunkTracker.forOffer(offer(8, CHUNK_SIZE), NO_LIMIT, NO_LIMIT);
+
+        assertEquals(ChunkTracker.Verdict.INVALID, chunks.check(chunk(2, new byte[4])));
+        assertEquals(ChunkTracker.Verdict.INVALID, chunks.check(chunk(8, new byte[4])));
+    }
+
+    private static TransferFrame offer(final long totalSize, final int chunkSize) {
+        return TransferFrame.decode(TransferFrame.offer(totalSize, chunkSize,
+                new byte[TransferFrame.DIGEST_LENGTH], "payload"));
+    }
+
+    private static TransferFrame chunk(final long offset, final byte[] payload) {
+        return TransferFrame.decode(chunkFrame(offset, payload));
+    }
+
+    private static ByteBuffer chunkFrame(final long offset, final byte[] payload) {
+        final ByteBuffer frameBuffer = ByteBuffer.allocate(TransferFrame.CHUNK_HEADER_LENGTH + payload.length);
+        frameBuffer.position(TransferFrame.CHUNK_HEADER_LENGTH);
+        frameBuffer.put(payload);
+        TransferFrame.chunk(frameBuffer, offset);
+        return frameBuffer;
+    }
+}
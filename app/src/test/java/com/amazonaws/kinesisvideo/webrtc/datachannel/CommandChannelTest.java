@@ -0,0 +1,187 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+import org.webrtc.DataChannel;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CommandChannelTest {
+
+    private static final int GET_ZOOM = 1;
+
+    private static final int ZOOM = 2;
+
+    private static final CommandSchema SCHEMA = CommandSchema.builder()
+            .define(GET_ZOOM, "getZoom")
+            .define(ZOOM, "zoom", CommandFieldType.UINT)
+            .build();
+
+    private final ScheduledExecutorService timeoutExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    private final LoopbackDataChannel viewerChannel = new LoopbackDataChannel();
+
+    private final LoopbackDataChannel masterChannel = new LoopbackDataChannel();
+
+    @After
+    public void tearDown() {
+        timeoutExecutor.shutdownNow();
+    }
+
+    @Test
+    public void when_requestAnswered_then_listenerGetsResponse() {
+        viewerChannel.peer = masterChannel;
+        masterChannel.peer = viewerChannel;
+        final CommandChannel viewer = new CommandChannel(viewerChannel, SCHEMA, timeoutExecutor, null);
+        final CommandChannel[] master = new CommandChannel[1];
+        master[0] = new CommandChannel(masterChannel, SCHEMA, timeoutExecutor, command -> {
+            if (command.getCommandId() == GET_ZOOM) {
+                master[0].beginResponse(ZOOM, command.getCorrelationId()).putUInt(4);
+                master[0].send();
+            }
+        });
+        final AtomicLong zoom = new AtomicLong();
+
+        viewer.beginRequest(GET_ZOOM, 1000, new RecordingListener() {
+            @Override
+            public void onResponse(final CommandReader response) {
+                zoom.set(response.getUInt());
+            }
+        });
+        assertTrue(viewer.send());
+
+        assertEquals(4, zoom.get());
+    }
+
+    @Test
+    public void when_noResponse_then_requestTimesOut() throws InterruptedException {
+        viewerChannel.peer = masterChannel;
+        masterChannel.peer = viewerChannel;
+        final CommandChannel viewer = new CommandChannel(viewerChannel, SCHEMA, timeoutExecutor, null);
+        new CommandChannel(masterChannel, SCHEMA, timeoutExecutor, command -> {
+            // Never answers
+        });
+        final RecordingListener listener = new RecordingListener();
+
+        viewer.beginRequest(GET_ZOOM, 20, listener);
+        viewer.send();
+
+        assertTrue(listener.failed.await(2, TimeUnit.SECONDS));
+        assertEquals(CommandChannel.Failure.TIMEOUT, listener.failure.get());
+    }
+
+    @Test
+    public void when_responseOfUnknownCommand_then_notDispatchedAndRequestTimesOut() throws InterruptedException {
+        viewerChannel.peer = masterChannel;
+        masterChannel.peer = viewerChannel;
+        final int newerZoom = 9;
+        final CommandSchema newerSchema = CommandSchema.builder()
+                .define(GET_ZOOM, "getZoom")
+                .define(newerZoom, "newerZoom", CommandFieldType.UINT)
+                .build();
+        final CommandChannel viewer = new CommandChannel(viewerChannel, SCHEMA, timeoutExecutor, null);
+        final CommandChannel[] master = new CommandChannel[1];
+        master[0] = new CommandChannel(masterChannel, newerSchema, timeoutExecutor, command -> {
+            master[0].beginResponse(newerZoom, command.getCorrelationId()).putUInt(4);
+            master[0].send();
+        });
+        final AtomicLong responses = new AtomicLong();
+        final RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onResponse(final CommandReader response) {
+                responses.incrementAndGet();
+            }
+        };
+
+        viewer.beginRequest(GET_ZOOM, 20, listener);
+        viewer.send();
+
+        assertTrue(listener.failed.await(2, TimeUnit.SECONDS));
+        assertEquals(0, responses.get());
+        assertEquals(CommandChannel.Failure.TIMEOUT, listener.failure.get());
+    }
+
+    @Test
+    public void when_channelNotOpen_then_requestFailsRightAway() {
+        viewerChannel.state = DataChannel.State.CONNECTING;
+        final CommandChannel viewer = new CommandChannel(viewerChannel, SCHEMA, timeoutExecutor, null);
+        final RecordingListener listener = new RecordingListener();
+
+        viewer.beginRequest(GET_ZOOM, 1000, listener);
+
+        assertEquals(false, viewer.send());
+        assertEquals(CommandChannel.Failure.SEND_FAILED, listener.failure.get());
+    }
+
+    @Test
+    public void when_closed_then_pendingRequestsFail() {
+        viewerChannel.peer = masterChannel;
+        final CommandChannel viewer = new CommandChannel(viewerChannel, SCHEMA, timeoutExecutor, null);
+        final RecordingListener listener = new RecordingListener();
+        viewer.beginRequest(GET_ZOOM, 1000, listener);
+        viewer.send();
+
+        viewer.close();
+
+        assertEquals(CommandChannel.Failure.CLOSED, listener.failure.get());
+    }
+
+    private static class RecordingListener implements CommandChannel.ResponseListener {
+        final AtomicReference<CommandChannel.Failure> failure = new AtomicReference<>();
+
+        final CountDownLatch failed = new CountDownLatch(1);
+
+        @Override
+        public void onResponse(final CommandReader response) {
+        }
+
+        @Override
+        public void onFailure(final int commandId, final CommandChannel.Failure reason) {
+            failure.set(reason);
+            failed.countDown();
+        }
+    }
+
+    private static class LoopbackDataChannel extends DataChannel {
+        private DataChannel.Observer observer;
+
+        private LoopbackDataChannel peer;
+
+        private DataChannel.State state = DataChannel.State.OPEN;
+
+        LoopbackDataChannel() {
+            super(0);
+        }
+
+        @Override
+        public void registerObserver(final DataChannel.Observer observer) {
+            this.observer = observer;
+        }
+
+        @Override
+        public void unregisterObserver() {
+            observer = null;
+        }
+
+        @Override
+        public DataChannel.State state() {
+            return state;
+        }
+
+        @Override
+        public boolean send(final DataChannel.Buffer buffer) {
+            if (peer != null && peer.observer != null) {
+                peer.observer.onMessage(buffer);
+            }
+            return true;
+        }
+    }
+}
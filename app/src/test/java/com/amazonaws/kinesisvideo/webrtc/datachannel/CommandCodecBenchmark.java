@@ -0,0 +1,110 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes a PTZ command as a binary command frame, as JSON and as the free-form text
+ * the data channel carried before. Run {@link #main} from the IDE; the GC profiler shows the
+ * allocation rate of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandCodecBenchmark {
+
+    private static final int PTZ = 1;
+
+    private static final CommandSchema SCHEMA = CommandSchema.builder()
+            .define(PTZ, "ptz", CommandFieldType.SINT, CommandFieldType.SINT, CommandFieldType.UINT)
+            .build();
+
+    static final class PtzCommand {
+        String command = "ptz";
+
+        int pan;
+
+        int tilt;
+
+        int zoom;
+    }
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+
+    private final CommandWriter writer = new CommandWriter(SCHEMA);
+
+    private final CommandReader reader = new CommandReader(SCHEMA);
+
+    private final Gson gson = new Gson();
+
+    private int pan = -90;
+
+    @Benchmark
+    public void binary(final Blackhole blackhole) {
+        pan = -pan;
+        buffer.clear();
+        writer.begin(buffer, PTZ, CommandKind.MESSAGE, 0).putSInt(pan).putSInt(45).putUInt(300).end();
+        buffer.flip();
+
+        reader.reset(buffer);
+        while (reader.next()) {
+            blackhole.consume(reader.getSInt());
+            blackhole.consume(reader.getSInt());
+            blackhole.consume(reader.getUInt());
+        }
+    }
+
+    @Benchmark
+    public void json(final Blackhole blackhole) {
+        pan = -pan;
+        final PtzCommand command = new PtzCommand();
+        command.pan = pan;
+        command.tilt = 45;
+        command.zoom = 300;
+        final byte[] wire = gson.toJson(command).getBytes(StandardCharsets.UTF_8);
+
+        final PtzCommand decoded = gson.fromJson(new String(wire, StandardCharsets.UTF_8), PtzCommand.class);
+        blackhole.consume(decoded.pan);
+        blackhole.consume(decoded.tilt);
+        blackhole.consume(decoded.zoom);
+    }
+
+    @Benchmark
+    public void text(final Blackhole blackhole) {
+        pan = -pan;
+        final byte[] wire = ("ptz " + pan + " " + 45 + " " + 300).getBytes(StandardCharsets.UTF_8);
+
+        final String[] parts = new String(wire, StandardCharsets.UTF_8).split(" ");
+        blackhole.consume(Integer.parseInt(parts[1]));
+        blackhole.consume(Integer.parseInt(parts[2]));
+        blackhole.consume(Integer.parseInt(parts[3]));
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CommandCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
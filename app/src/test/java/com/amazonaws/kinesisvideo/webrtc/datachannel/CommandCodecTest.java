@@ -0,0 +1,125 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class CommandCodecTest {
+
+    private static final int PTZ = 1;
+
+    private static final int STATUS = 2;
+
+    private static final int LOG = 3;
+
+    private static final CommandSchema SCHEMA = CommandSchema.builder()
+            .define(PTZ, "ptz", CommandFieldType.SINT, CommandFieldType.SINT, CommandFieldType.UINT)
+            .define(STATUS, "status", CommandFieldType.BOOL, CommandFieldType.FLOAT, CommandFieldType.DOUBLE,
+                    CommandFieldType.BYTES)
+            .define(LOG, "log", CommandFieldType.STRING)
+            .build();
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+    private final CommandWriter writer = new CommandWriter(SCHEMA);
+
+    private final CommandReader reader = new CommandReader(SCHEMA);
+
+    @Test
+    public void when_framesWritten_then_readerReturnsSameValues() {
+        writer.begin(buffer, PTZ, CommandKind.MESSAGE, 0).putSInt(-90).putSInt(45).putUInt(300).end();
+        writer.begin(buffer, STATUS, CommandKind.RESPONSE, 7)
+                .putBool(true).putFloat(0.5f).putDouble(-1.25).putBytes(ByteBuffer.wrap(new byte[]{9, 8, 7})).end();
+        writer.begin(buffer, LOG, CommandKind.REQUEST, 123456).putString("zoom é中😀").end();
+        buffer.flip();
+
+        reader.reset(buffer);
+        assertTrue(reader.next());
+        assertEquals(PTZ, reader.getCommandId());
+        assertEquals(CommandKind.MESSAGE, reader.getKind());
+        assertEquals(-90, reader.getSInt());
+        assertEquals(45, reader.getSInt());
+        assertEquals(300, reader.getUInt());
+
+        assertTrue(reader.next());
+        assertEquals(CommandKind.RESPONSE, reader.getKind());
+        assertEquals(7, reader.getCorrelationId());
+        assertTrue(reader.getBool());
+        assertEquals(0.5f, reader.getFloat(), 0);
+        assertEquals(-1.25, reader.getDouble(), 0);
+        final ByteBuffer bytes = ByteBuffer.allocate(3);
+        assertEquals(3, reader.getBytes(bytes));
+        assertEquals(8, bytes.get(1));
+
+        assertTrue(reader.next());
+        assertEquals(123456, reader.getCorrelationId());
+        assertEquals("zoom é中😀", reader.getString(new StringBuilder()).toString());
+
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void when_smallCommandWritten_then_frameIsCompact() {
+        assertEquals(5, writer.begin(buffer, PTZ, CommandKind.MESSAGE, 0).putSInt(-1).putSInt(1).putUInt(2).end());
+    }
+
+    @Test
+    public void when_bodyLongerThanOneLengthByte_then_frameStillDecodes() {
+        final StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longText.append((char) ('a' + i % 26));
+        }
+        writer.begin(buffer, LOG, CommandKind.MESSAGE, 0).putString(longText).end();
+        writer.begin(buffer, PTZ, CommandKind.MESSAGE, 0).putSInt(1).putSInt(2).putUInt(3).end();
+        buffer.flip();
+
+        reader.reset(buffer);
+        assertTrue(reader.next());
+        assertEquals(longText.toString(), reader.getString(new StringBuilder()).toString());
+        assertTrue(reader.next());
+        assertEquals(PTZ, reader.getCommandId());
+        assertEquals(1, reader.getSInt());
+    }
+
+    @Test
+    public void when_newerSchemaAppendsField_then_olderReaderSkipsIt() {
+        final CommandSchema newer = CommandSchema.builder()
+                .define(PTZ, "ptz", CommandFieldType.SINT, CommandFieldType.SINT, CommandFieldType.UINT,
+                        CommandFieldType.UINT)
+                .build();
+        new CommandWriter(newer).begin(buffer, PTZ, CommandKind.MESSAGE, 0)
+                .putSInt(1).putSInt(2).putUInt(3).putUInt(4).end();
+        writer.begin(buffer, LOG, CommandKind.MESSAGE, 0).putString("next").end();
+        buffer.flip();
+
+        reader.reset(buffer);
+        assertTrue(reader.next());
+        assertEquals(1, reader.getSInt());
+        assertTrue(reader.next());
+        assertEquals("next", reader.getString(new StringBuilder()).toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void when_fieldTypeDoesNotMatchSchema_then_writeThrows() {
+        writer.begin(buffer, PTZ, CommandKind.MESSAGE, 0).putUInt(1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void when_fieldsMissing_then_endThrows() {
+        writer.begin(buffer, PTZ, CommandKind.MESSAGE, 0).putSInt(1).end();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_frameTruncated_then_nextThrows() {
+        writer.begin(buffer, PTZ, CommandKind.MESSAGE, 0).putSInt(1).putSInt(2).putUInt(3).end();
+        buffer.flip();
+        buffer.limit(buffer.limit() - 1);
+
+        reader.reset(buffer);
+        reader.next();
+    }
+}
@@ -0,0 +1,76 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+import org.webrtc.DataChannel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DataChannelReceivePipelineTest {
+
+    private DataChannelReceivePipeline pipeline;
+
+    @After
+    public void tearDown() {
+        pipeline.close();
+    }
+
+    @Test
+    public void when_burstArrives_then_itIsDeliveredInBatchesInOrder() throws InterruptedException {
+        pipeline = new DataChannelReceivePipeline(1024, 100, 200);
+        final List<String> received = new ArrayList<>();
+        final List<Integer> batchSizes = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(250);
+        pipeline.subscribe(messages -> {
+            batchSizes.add(messages.size());
+            for (final DataChannelMessage message : messages) {
+                received.add(message.getLabel() + ":" + message.getText());
+                done.countDown();
+            }
+        });
+
+        for (int i = 0; i < 250; i++) {
+            pipeline.onMessage("telemetry", text("sample " + i));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("telemetry:sample 0", received.get(0));
+        assertEquals("telemetry:sample 249", received.get(249));
+        assertTrue("Expected batches, got " + batchSizes, batchSizes.size() <= 5);
+        for (final int size : batchSizes) {
+            assertTrue(size <= 100);
+        }
+    }
+
+    @Test
+    public void when_messageDelivered_then_bufferIsReturnedToPool() throws InterruptedException {
+        pipeline = new DataChannelReceivePipeline(1024, 100, 0);
+        final CountDownLatch done = new CountDownLatch(100);
+        pipeline.subscribe(messages -> {
+            for (int i = 0; i < messages.size(); i++) {
+                done.countDown();
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            pipeline.onMessage("telemetry", text("sample"));
+            // Give the worker time to release the buffer before the next message
+            Thread.sleep(2);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.getPool().getReuses() > 0);
+    }
+
+    private static DataChannel.Buffer text(final String text) {
+        return new DataChannel.Buffer(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), false);
+    }
+}
@@ -0,0 +1,152 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.webrtc.DataChannel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DataChannelSendSchedulerTest {
+
+    private final List<String> sent = new ArrayList<>();
+
+    private final List<String> undelivered = new ArrayList<>();
+
+    private final DataChannelSendScheduler scheduler = new DataChannelSendScheduler(Runnable::run, 1024,
+            (channel, data, binary) -> undelivered.add(channel.label() + ":" + string(data)));
+
+    @Test
+    public void when_bulkChannelIsBackedUp_then_controlMessagesStillGoOut() {
+        final FakeDataChannel bulk = new FakeDataChannel("bulk");
+        final FakeDataChannel control = new FakeDataChannel("control");
+        bulk.bufferedAmount = DataChannelPriority.BULK.getBufferedAmountLimit();
+
+        scheduler.submit(bulk, DataChannelPriority.BULK, text("chunk"), true);
+        scheduler.submit(control, DataChannelPriority.CONTROL, text("stop"), false);
+
+        assertEquals(1, sent.size());
+        assertEquals("control:stop", sent.get(0));
+        assertEquals(1, scheduler.getQueuedMessages(DataChannelPriority.BULK));
+
+        bulk.bufferedAmount = 0;
+        scheduler.scheduleDrain();
+
+        assertEquals("bulk:chunk", sent.get(1));
+    }
+
+    @Test
+    public void when_higherPriorityIsCongested_then_lowerPriorityWaits() {
+        final FakeDataChannel telemetry = new FakeDataChannel("telemetry");
+        final FakeDataChannel bulk = new FakeDataChannel("bulk");
+        telemetry.bufferedAmount = DataChannelPriority.NORMAL.getBufferedAmountLimit();
+
+        scheduler.submit(telemetry, DataChannelPriority.NORMAL, text("sample"), false);
+        scheduler.submit(bulk, DataChannelPriority.BULK, text("chunk"), true);
+
+        assertTrue(sent.isEmpty());
+
+        telemetry.bufferedAmount = 0;
+        scheduler.scheduleDrain();
+
+        assertEquals(2, sent.size());
+        assertEquals("telemetry:sample", sent.get(0));
+        assertEquals("bulk:chunk", sent.get(1));
+    }
+
+    @Test
+    public void when_channelIsConnecting_then_itDoesNotHoldUpOtherChannels() {
+        final FakeDataChannel connecting = new FakeDataChannel("connecting");
+        final FakeDataChannel open = new FakeDataChannel("open");
+        connecting.state = DataChannel.State.CONNECTING;
+
+        scheduler.submit(connecting, DataChannelPriority.CONTROL, text("first"), false);
+        scheduler.submit(connecting, DataChannelPriority.CONTROL, text("second"), false);
+        scheduler.submit(open, DataChannelPriority.NORMAL, text("sample"), false);
+
+        assertEquals(1, sent.size());
+        assertEquals("open:sample", sent.get(0));
+
+        connecting.state = DataChannel.State.OPEN;
+        scheduler.scheduleDrain();
+
+        assertEquals("connecting:first", sent.get(1));
+        assertEquals("connecting:second", sent.get(2));
+    }
+
+    @Test
+    public void when_priorityQueueIsFull_then_submitIsRejected() {
+        final FakeDataChannel bulk = new FakeDataChannel("bulk");
+        bulk.state = DataChannel.State.CONNECTING;
+
+        assertTrue(scheduler.submit(bulk, DataChannelPriority.BULK, ByteBuffer.allocate(1000), true));
+        assertFalse(scheduler.submit(bulk, DataChannelPriority.BULK, ByteBuffer.allocate(100), true));
+        assertTrue(scheduler.submit(bulk, DataChannelPriority.NORMAL, ByteBuffer.allocate(100), true));
+    }
+
+    @Test
+    public void when_channelClosesWithQueuedMessages_then_theyAreHandedBackInOrder() {
+        final FakeDataChannel text = new FakeDataChannel("text");
+        text.bufferedAmount = DataChannelPriority.NORMAL.getBufferedAmountLimit();
+
+        scheduler.submit(text, DataChannelPriority.NORMAL, text("one"), false);
+        scheduler.submit(text, DataChannelPriority.NORMAL, text("two"), false);
+        text.state = DataChannel.State.CLOSING;
+        scheduler.scheduleDrain();
+
+        assertTrue(sent.isEmpty());
+        assertEquals(Arrays.asList("text:one", "text:two"), undelivered);
+        assertEquals(0, scheduler.getQueuedMessages(DataChannelPriority.NORMAL));
+        assertFalse(scheduler.submit(text, DataChannelPriority.NORMAL, text("three"), false));
+    }
+
+    private static String string(final ByteBuffer data) {
+        final byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer text(final String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private class FakeDataChannel extends DataChannel {
+        private final String label;
+
+        private DataChannel.State state = DataChannel.State.OPEN;
+
+        private long bufferedAmount;
+
+        FakeDataChannel(final String label) {
+            super(0);
+            this.label = label;
+        }
+
+        @Override
+        public String label() {
+            return label;
+        }
+
+        @Override
+        public DataChannel.State state() {
+            return state;
+        }
+
+        @Override
+        public long bufferedAmount() {
+            return bufferedAmount;
+        }
+
+        @Override
+        public boolean send(final DataChannel.Buffer buffer) {
+            sent.add(label + ":" + string(buffer.data));
+            return true;
+        }
+    }
+}
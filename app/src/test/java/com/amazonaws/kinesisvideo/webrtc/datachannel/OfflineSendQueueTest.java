@@ -0,0 +1,151 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.webrtc.DataChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+public class OfflineSendQueueTest {
+
+    private static final long SESSION = 1;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private final List<String> sent = new ArrayList<>();
+
+    private final OfflineSendQueue.Sink sink = new OfflineSendQueue.Sink() {
+        @Override
+        public boolean send(final ByteBuffer data, final boolean binary) {
+            final byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            synchronized (sent) {
+                sent.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            return true;
+        }
+
+        @Override
+        public long getBufferedAmount() {
+            return 0;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void when_channelOpens_then_queuedMessagesAreSentInOrder() {
+        final OfflineSendQueue queue = OfflineSendQueue.builder().build(sink, executor);
+
+        queue.offer(text("one"), false);
+        queue.offer(text("two"), false);
+        assertTrue(sent.isEmpty());
+
+        queue.onStateChange(DataChannel.State.OPEN);
+
+        assertEquals(Arrays.asList("one", "two"), sent);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void when_memoryBudgetExceeded_then_messagesSpillAndKeepTheirOrder() throws IOException {
+        final OfflineSendQueue queue = OfflineSendQueue.builder()
+                .setMemoryBudgetBytes(6)
+                .setSpillFile(folder.newFile(), 1024, SESSION)
+                .build(sink, executor);
+
+        queue.offer(text("one"), false);
+        queue.offer(text("two"), false);
+        queue.offer(text("three"), false);
+        queue.offer(text("four"), false);
+        assertEquals(2, queue.getSpilledMessages());
+
+        queue.onStateChange(DataChannel.State.OPEN);
+
+        assertEquals(Arrays.asList("one", "two", "three", "four"), sent);
+    }
+
+    @Test
+    public void when_queueReopened_then_spilledMessagesAreRecovered() throws IOException {
+        final File spill = folder.newFile();
+        final OfflineSendQueue first = OfflineSendQueue.builder()
+                .setMemoryBudgetBytes(0)
+                .setSpillFile(spill, 1024, SESSION)
+                .build(sink, executor);
+        first.offer(text("kept"), false);
+        first.close();
+
+        final OfflineSendQueue second = OfflineSendQueue.builder()
+                .setMemoryBudgetBytes(0)
+                .setSpillFile(spill, 1024, SESSION)
+                .build(sink, executor);
+        assertEquals(1, second.getSpilledMessages());
+        second.onStateChange(DataChannel.State.OPEN);
+
+        assertEquals(Arrays.asList("kept"), sent);
+    }
+
+    @Test
+    public void when_queueFull_then_offerIsRejected() {
+        final OfflineSendQueue queue = OfflineSendQueue.builder().setMemoryBudgetBytes(4).build(sink, executor);
+
+        assertTrue(queue.offer(text("abc"), false));
+        assertFalse(queue.offer(text("de"), false));
+        assertEquals(1, queue.getDroppedMessages());
+    }
+
+    @Test
+    public void when_messagesRequeued_then_sentAgainBeforeTheRest() {
+        final OfflineSendQueue queue = OfflineSendQueue.builder().build(sink, executor);
+        queue.offer(text("three"), false);
+
+        queue.requeue(text("one"), false);
+        queue.requeue(text("two"), false);
+        assertEquals(3, queue.size());
+        queue.onStateChange(DataChannel.State.OPEN);
+
+        assertEquals(Arrays.asList("one", "two", "three"), sent);
+        assertEquals(0, queue.getQueuedBytes());
+    }
+
+    @Test
+    public void when_drainRateLow_then_backlogIsPaced() {
+        final OfflineSendQueue queue = OfflineSendQueue.builder()
+                .setDrainBytesPerSecond(100)
+                .build(sink, executor);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(text("0123456789"), false);
+        }
+
+        queue.onStateChange(DataChannel.State.OPEN);
+
+        synchronized (sent) {
+            assertEquals(1, sent.size());
+        }
+        assertEquals(9, queue.size());
+    }
+
+    private static ByteBuffer text(final String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
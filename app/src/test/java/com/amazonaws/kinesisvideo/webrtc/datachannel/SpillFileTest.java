@@ -0,0 +1,98 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class SpillFileTest {
+
+    private static final int CAPACITY = 64;
+
+    private static final long SESSION = 1;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void when_recordsWrapAround_then_orderIsKept() throws IOException {
+        try (SpillFile spill = new SpillFile(folder.newFile(), CAPACITY, SESSION)) {
+            assertTrue(spill.append(text("m00"), false));
+            assertTrue(spill.append(text("m01"), true));
+            for (int i = 2; i < 100; i++) {
+                assertTrue(spill.append(text(String.format("m%02d", i)), i % 2 == 1));
+                assertEquals(i % 2 == 0, !spill.isPeekBinary());
+                assertEquals(String.format("m%02d", i - 2), string(spill.peek()));
+                spill.remove();
+            }
+            assertEquals(2, spill.size());
+        }
+    }
+
+    @Test
+    public void when_reopenedAfterWrap_then_recordsAreRecovered() throws IOException {
+        final File path = folder.newFile();
+        try (SpillFile spill = new SpillFile(path, CAPACITY, SESSION)) {
+            for (int i = 0; i < 7; i++) {
+                spill.append(text("m" + i), false);
+                if (i >= 2) {
+                    spill.remove();
+                }
+            }
+        }
+
+        try (SpillFile spill = new SpillFile(path, CAPACITY, SESSION)) {
+            assertEquals(2, spill.size());
+            assertEquals("m5", string(spill.peek()));
+            spill.remove();
+            assertEquals("m6", string(spill.peek()));
+            spill.remove();
+            assertTrue(spill.isEmpty());
+            assertEquals(0, spill.getUsedBytes());
+        }
+    }
+
+    @Test
+    public void when_reopenedByOtherSession_then_recordsAreDiscarded() throws IOException {
+        final File path = folder.newFile();
+        try (SpillFile spill = new SpillFile(path, CAPACITY, SESSION)) {
+            spill.append(text("secret"), false);
+        }
+
+        try (SpillFile spill = new SpillFile(path, CAPACITY, SESSION + 1)) {
+            assertTrue(spill.isEmpty());
+        }
+    }
+
+    @Test
+    public void when_recordDoesNotFit_then_appendIsRejected() throws IOException {
+        try (SpillFile spill = new SpillFile(folder.newFile(), CAPACITY, SESSION)) {
+            assertTrue(spill.append(ByteBuffer.allocate(20), true));
+            assertFalse(spill.append(ByteBuffer.allocate(20), true));
+            assertEquals(1, spill.size());
+
+            spill.remove();
+
+            // Drained, the whole file is available again
+            assertTrue(spill.append(ByteBuffer.allocate(35), true));
+        }
+    }
+
+    private static ByteBuffer text(final String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String string(final ByteBuffer data) {
+        final byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,80 @@
+package com.amazonaws.kinesisvideo.webrtc.datachannel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class TransferFrameTest {
+
+    @Test
+    public void when_offerEncoded_then_decodeReturnsSameFields() {
+        final byte[] digest = new byte[TransferFrame.DIGEST_LENGTH];
+        for (int i = 0; i < digest.length; i++) {
+            digest[i] = (byte) i;
+        }
+
+        final TransferFrame frame = TransferFrame.decode(
+                TransferFrame.offer(300L * 1024 * 1024, 65536, digest, "recording-é.mkv"));
+
+        assertEquals(TransferFrame.TYPE_OFFER, frame.type);
+        assertEquals(300L * 1024 * 1024, frame.totalSize);
+        assertEquals(65536, frame.chunkSize);
+        assertArrayEquals(digest, frame.digest);
+        assertEquals("recording-é.mkv", frame.name);
+    }
+
+    @Test
+    public void when_chunkEncoded_then_payloadAndOffsetSurvive() {
+        final ByteBuffer frameBuffer = chunkFrame(5L * 1024 * 1024 * 1024, new byte[]{1, 2, 3, 4, 5});
+
+        final TransferFrame frame = TransferFrame.decode(frameBuffer);
+
+        assertEquals(TransferFrame.TYPE_CHUNK, frame.type);
+        assertEquals(5L * 1024 * 1024 * 1024, frame.offset);
+        assertEquals(5, frame.payload.remaining());
+        assertEquals(3, frame.payload.get(2));
+        assertTrue(frame.isIntact());
+    }
+
+    @Test
+    public void when_chunkPayloadCorrupted_then_frameIsNotIntact() {
+        final ByteBuffer frameBuffer = chunkFrame(0, new byte[]{1, 2, 3, 4, 5});
+        frameBuffer.put(TransferFrame.CHUNK_HEADER_LENGTH + 1, (byte) 42);
+
+        assertFalse(TransferFrame.decode(frameBuffer).isIntact());
+    }
+
+    @Test
+    public void when_controlFramesEncoded_then_decodeReturnsSameFields() {
+        assertEquals(123456789L, TransferFrame.decode(TransferFrame.resume(123456789L)).offset);
+        assertTrue(TransferFrame.decode(TransferFrame.complete(true)).verified);
+        assertFalse(TransferFrame.decode(TransferFrame.complete(false)).verified);
+        assertEquals(TransferFrame.TYPE_CANCEL, TransferFrame.decode(TransferFrame.cancel()).type);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_frameTruncated_then_decodeThrows() {
+        final ByteBuffer resume = TransferFrame.resume(42);
+        resume.limit(5);
+
+        TransferFrame.decode(resume);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_unknownType_then_decodeThrows() {
+        TransferFrame.decode(ByteBuffer.wrap(new byte[]{99}));
+    }
+
+    private static ByteBuffer chunkFrame(final long offset, final byte[] payload) {
+        final ByteBuffer frameBuffer = ByteBuffer.allocate(TransferFrame.CHUNK_HEADER_LENGTH + payload.length);
+        frameBuffer.position(TransferFrame.CHUNK_HEADER_LENGTH);
+        frameBuffer.put(payload);
+        TransferFrame.chunk(frameBuffer, offset);
+        return frameBuffer;
+    }
+}
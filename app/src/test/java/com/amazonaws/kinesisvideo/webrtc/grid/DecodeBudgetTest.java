@@ -0,0 +1,124 @@
+package com.amazonaws.kinesisvideo.webrtc.grid;
+
+import static org.junit.Assert.assertEquals;
+
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class DecodeBudgetTest {
+
+    private static final long FEED = 1000;
+
+    private static final long LARGE = 640 * 480;
+
+    private static final long SMALL = 100 * 100;
+
+    private static final long PARK_AFTER_MS = 5000;
+
+    private final DecodeBudget budget = new DecodeBudget(3 * FEED, FEED, 320 * 240, PARK_AFTER_MS);
+
+    @Test
+    public void when_feedsFitBudget_then_allConnected() {
+        final Map<SignalingChannelKey, DecodeBudget.Mode> modes = budget.plan(Arrays.asList(
+                tile("a", true, LARGE, 0, true, FEED),
+                tile("b", true, SMALL, 0, true, FEED)));
+
+        assertEquals(DecodeBudget.Mode.FULL, modes.get(key("a")));
+        assertEquals(DecodeBudget.Mode.REDUCED, modes.get(key("b")));
+    }
+
+    @Test
+    public void when_overBudget_then_smallestVisibleParked() {
+        final Map<SignalingChannelKey, DecodeBudget.Mode> modes = budget.plan(Arrays.asList(
+                tile("small", true, SMALL, 0, true, FEED),
+                tile("a", true, LARGE, 0, true, FEED),
+                tile("b", true, LARGE, 0, true, FEED),
+                tile("c", true, LARGE, 0, true, FEED)));
+
+        assertEquals(DecodeBudget.Mode.PARKED, modes.get(key("small")));
+        assertEquals(DecodeBudget.Mode.FULL, modes.get(key("c")));
+    }
+
+    @Test
+    public void when_offScreenBriefly_then_pausedBeforeVisibleAdmitted() {
+        final Map<SignalingChannelKey, DecodeBudget.Mode> modes = budget.plan(Arrays.asList(
+                tile("hidden", false, LARGE, PARK_AFTER_MS - 1, true, FEED),
+                tile("a", true, SMALL, 0, true, FEED),
+                tile("b", true, SMALL, 0, true, FEED),
+                tile("c", true, SMALL, 0, true, FEED)));
+
+        assertEquals(DecodeBudget.Mode.PARKED, modes.get(key("hidden")));
+        assertEquals(DecodeBudget.Mode.REDUCED, modes.get(key("c")));
+
+        assertEquals(DecodeBudget.Mode.PAUSED, budget.plan(Collections.singletonList(
+                tile("hidden", false, LARGE, PARK_AFTER_MS - 1, true, FEED))).get(key("hidden")));
+    }
+
+    @Test
+    public void when_offScreenLong_then_parked() {
+        final Map<SignalingChannelKey, DecodeBudget.Mode> modes = budget.plan(Arrays.asList(
+                tile("hidden", false, LARGE, PARK_AFTER_MS, true, FEED),
+                tile("a", true, LARGE, 0, true, FEED)));
+
+        assertEquals(DecodeBudget.Mode.PARKED, modes.get(key("hidden")));
+        assertEquals(DecodeBudget.Mode.FULL, modes.get(key("a")));
+    }
+
+    @Test
+    public void when_feedOverWholeBudget_then_largestVisibleStillAdmitted() {
+        final Map<SignalingChannelKey, DecodeBudget.Mode> modes = budget.plan(Arrays.asList(
+                tile("a", true, SMALL, 0, true, FEED),
+                tile("huge", true, LARGE, 0, true, 10 * FEED)));
+
+        assertEquals(DecodeBudget.Mode.FULL, modes.get(key("huge")));
+        assertEquals(DecodeBudget.Mode.PARKED, modes.get(key("a")));
+    }
+
+    @Test
+    public void when_unmeasured_then_defaultCostUsed() {
+        final DecodeBudget tight = new DecodeBudget(2 * FEED, FEED, 0, PARK_AFTER_MS);
+
+        final Map<SignalingChannelKey, DecodeBudget.Mode> modes = tight.plan(Arrays.asList(
+                tile("a", true, LARGE, 0, true, 0),
+                tile("b", true, LARGE, 0, true, 0),
+                tile("c", true, LARGE, 0, true, 0)));
+
+        assertEquals(DecodeBudget.Mode.FULL, modes.get(key("b")));
+        assertEquals(DecodeBudget.Mode.PARKED, modes.get(key("c")));
+    }
+
+    @Test
+    public void when_parkedTileFitsWithoutHeadroom_then_staysParked() {
+        final Map<SignalingChannelKey, DecodeBudget.Mode> modes = budget.plan(Arrays.asList(
+                tile("a", true, LARGE, 0, true, FEED),
+                tile("b", true, LARGE, 0, true, FEED),
+                tile("parked", true, SMALL, 0, false, FEED)));
+
+        assertEquals(DecodeBudget.Mode.PARKED, modes.get(key("parked")));
+
+        assertEquals(DecodeBudget.Mode.REDUCED, budget.plan(Arrays.asList(
+                tile("a", true, LARGE, 0, true, FEED),
+                tile("b", true, LARGE, 0, true, FEED),
+                tile("connected", true, SMALL, 0, true, FEED))).get(key("connected")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_budgetNotPositive_then_throws() {
+        new DecodeBudget(0, FEED, 0, 0);
+    }
+
+    private static DecodeBudget.Tile tile(final String name, final boolean visible, final long areaPx,
+                                          final long offScreenMs, final boolean connected, final long cost) {
+        return new DecodeBudget.Tile(key(name), visible, areaPx, offScreenMs, connected, cost);
+    }
+
+    private static SignalingChannelKey key(final String name) {
+        return new SignalingChannelKey("us-west-2", name, ChannelRole.VIEWER);
+    }
+}
@@ -0,0 +1,103 @@
+package com.amazonaws.kinesisvideo.webrtc.grid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.webrtc.EncodedImage;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoCodecStatus;
+import org.webrtc.VideoDecoder;
+import org.webrtc.VideoDecoderFactory;
+
+import java.util.Collections;
+
+public class DecoderPoolTest {
+
+    private static final VideoCodecInfo VP8 = new VideoCodecInfo("VP8", Collections.emptyMap());
+
+    private static final VideoCodecInfo H264 = new VideoCodecInfo("H264", Collections.emptyMap());
+
+    private static final class FakeDecoder implements VideoDecoder {
+        final String name;
+
+        int releases;
+
+        FakeDecoder(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public VideoCodecStatus initDecode(final Settings settings, final Callback callback) {
+            return VideoCodecStatus.OK;
+        }
+
+        @Override
+        public VideoCodecStatus release() {
+            releases++;
+            return VideoCodecStatus.OK;
+        }
+
+        @Override
+        public VideoCodecStatus decode(final EncodedImage frame, final DecodeInfo info) {
+            return VideoCodecStatus.OK;
+        }
+
+        @Override
+        public String getImplementationName() {
+            return name;
+        }
+    }
+
+    private static final VideoDecoderFactory HARDWARE = info -> new FakeDecoder("hardware");
+
+    /**
+     * Like libwebrtc's, decodes VP8 but not H.264.
+     */
+    private static final VideoDecoderFactory SOFTWARE =
+            info -> "VP8".equals(info.name) ? new FakeDecoder("software") : null;
+
+    private final DecoderPool pool = new DecoderPool(HARDWARE, SOFTWARE, 2);
+
+    @Test
+    public void when_hardwareDecodersTaken_then_softwareDecoder() {
+        assertEquals("hardware", pool.createDecoder(VP8).getImplementationName());
+        assertEquals("hardware", pool.createDecoder(VP8).getImplementationName());
+        assertEquals("software", pool.createDecoder(VP8).getImplementationName());
+
+        assertEquals(2, pool.getHardwareDecoders());
+        assertEquals(1, pool.getSoftwareDecoders());
+    }
+
+    @Test
+    public void when_hardwareDecoderReleased_then_slotReused() {
+        final VideoDecoder first = pool.createDecoder(VP8);
+        pool.createDecoder(VP8);
+
+        first.release();
+        // Released once
+        first.release();
+
+        assertEquals(1, pool.getHardwareDecoders());
+        assertEquals("hardware", pool.createDecoder(VP8).getImplementationName());
+    }
+
+    @Test
+    public void when_noSoftwareDecoderForCodec_then_hardwareOverLimit() {
+        pool.createDecoder(H264);
+        pool.createDecoder(H264);
+
+        assertNotNull(pool.createDecoder(H264));
+        assertEquals(3, pool.getHardwareDecoders());
+        assertEquals(1, pool.getOverLimit());
+    }
+
+    @Test
+    public void when_noDecoderForCodec_then_null() {
+        final DecoderPool noHardware = new DecoderPool(info -> null, SOFTWARE, 2);
+
+        assertNull(noHardware.createDecoder(H264));
+        assertEquals(0, noHardware.getHardwareDecoders());
+    }
+}
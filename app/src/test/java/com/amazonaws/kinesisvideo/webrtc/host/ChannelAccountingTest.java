@@ -0,0 +1,84 @@
+package com.amazonaws.kinesisvideo.webrtc.host;
+
+import static org.junit.Assert.assertEquals;
+
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+
+import org.junit.Test;
+
+public class ChannelAccountingTest {
+
+    private static final SignalingChannelKey KEY = new SignalingChannelKey("us-west-2", "camera", ChannelRole.MASTER);
+
+    private final ChannelAccounting accounting = new ChannelAccounting(KEY);
+
+    @Test
+    public void when_messagesExchanged_then_countedWithPayloadSizes() {
+        accounting.onMessageReceived(100);
+        accounting.onMessageReceived(20);
+        accounting.onMessageSent(300);
+
+        final ChannelStats stats = accounting.getStats();
+
+        assertEquals(KEY, stats.getKey());
+        assertEquals(2, stats.getMessagesReceived());
+        assertEquals(120, stats.getSignalingBytesReceived());
+        assertEquals(1, stats.getMessagesSent());
+        assertEquals(300, stats.getSignalingBytesSent());
+    }
+
+    @Test
+    public void when_peerBytesReportedAgain_then_notCountedTwice() {
+        accounting.onPeerCreated("viewer");
+        accounting.onPeerBytes("viewer", 1000, 50000);
+        accounting.onPeerBytes("viewer", 1500, 80000);
+
+        final ChannelStats stats = accounting.getStats();
+
+        assertEquals(1500, stats.getMediaBytesReceived());
+        assertEquals(80000, stats.getMediaBytesSent());
+    }
+
+    @Test
+    public void when_peerClosed_then_itsBytesKept() {
+        accounting.onPeerCreated("first");
+        accounting.onPeerBytes("first", 10, 1000);
+        accounting.onPeerClosed("first");
+        accounting.onPeerCreated("second");
+        accounting.onPeerBytes("second", 20, 2000);
+
+        final ChannelStats stats = accounting.getStats();
+
+        assertEquals(1, stats.getPeers());
+        assertEquals(2, stats.getPeersCreated());
+        assertEquals(30, stats.getMediaBytesReceived());
+        assertEquals(3000, stats.getMediaBytesSent());
+    }
+
+    @Test
+    public void when_bytesReportedForClosedPeer_then_ignored() {
+        accounting.onPeerCreated("viewer");
+        accounting.onPeerClosed("viewer");
+        accounting.onPeerBytes("viewer", 10, 1000);
+        accounting.onPeerClosed("viewer");
+
+        final ChannelStats stats = accounting.getStats();
+
+        assertEquals(0, stats.getPeers());
+        assertEquals(0, stats.getMediaBytesSent());
+    }
+
+    @Test
+    public void when_viewerReconnectsWithSameId_then_notCountedAsNewPeer() {
+        accounting.onPeerCreated("viewer");
+        accounting.onPeerCreated("viewer");
+        accounting.onFailure();
+
+        final ChannelStats stats = accounting.getStats();
+
+        assertEquals(1, stats.getPeers());
+        assertEquals(1, stats.getPeersCreated());
+        assertEquals(1, stats.getFailures());
+    }
+}
@@ -0,0 +1,150 @@
+package com.amazonaws.kinesisvideo.webrtc.host;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.kinesisvideo.controlplane.SignalingChannelKey;
+import com.amazonaws.services.kinesisvideo.model.ChannelRole;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class UplinkAllocatorTest {
+
+    private static final SignalingChannelKey FRONT = new SignalingChannelKey("us-west-2", "front", ChannelRole.MASTER);
+
+    private static final SignalingChannelKey BACK = new SignalingChannelKey("us-west-2", "back", ChannelRole.MASTER);
+
+    private final Map<String, Integer> applied = new HashMap<>();
+
+    private final UplinkAllocator allocator = new UplinkAllocator(Runnable::run, 0, 100_000, 10_000_000);
+
+    private UplinkAllocator.Target target(final String name) {
+        return maxBitrateBps -> applied.put(name, maxBitrateBps);
+    }
+
+    @Test
+    public void when_viewersJoin_then_defaultBudgetSplitEvenly() {
+        allocator.onViewerJoined(FRONT, "a", target("a"));
+        allocator.onViewerJoined(BACK, "b", target("b"));
+
+        assertEquals(2_000_000, (int) applied.get("a"));
+        assertEquals(2_000_000, (int) applied.get("b"));
+    }
+
+    @Test
+    public void when_viewerLeaves_then_othersRebalanced() {
+        allocator.onViewerJoined(FRONT, "a", target("a"));
+        allocator.onViewerJoined(FRONT, "b", target("b"));
+        allocator.onViewerLeft(FRONT, "b");
+
+        assertEquals(4_000_000, (int) applied.get("a"));
+        assertEquals(1, allocator.getStats().getViewers());
+    }
+
+    @Test
+    public void when_channelPrioritized_then_itsViewersServedFirst() {
+        final UplinkAllocator capped = new UplinkAllocator(Runnable::run, 4_000_000, 100_000, 3_000_000);
+        capped.setChannelPriority(FRONT, 1, 1);
+        capped.onViewerJoined(FRONT, "a", target("a"));
+        capped.onViewerJoined(BACK, "b", target("b"));
+
+        assertEquals(3_000_000, (int) applied.get("a"));
+        assertEquals(1_000_000, (int) applied.get("b"));
+    }
+
+    @Test
+    public void when_viewerWeighted_then_overridesItsChannel() {
+        final UplinkAllocator unbounded = new UplinkAllocator(Runnable::run, 3_000_000, 0, 10_000_000);
+        unbounded.setChannelPriority(FRONT, 0, 1);
+        unbounded.setViewerPriority(FRONT, "a", 0, 2);
+        unbounded.onViewerJoined(FRONT, "a", target("a"));
+        unbounded.onViewerJoined(FRONT, "b", target("b"));
+
+        assertEquals(2_000_000, (int) applied.get("a"));
+        assertEquals(1_000_000, (int) applied.get("b"));
+    }
+
+    @Test
+    public void when_allViewersEstimated_then_measuredBudgetSplitWithHeadroom() {
+        allocator.onViewerJoined(FRONT, "a", target("a"));
+        allocator.onViewerJoined(FRONT, "b", target("b"));
+        allocator.onEstimate(FRONT, "a", 1_000_000);
+
+        assertEquals(0, allocator.getStats().getMeasuredBudgetBps());
+        assertEquals(2_000_000, (int) applied.get("a"));
+
+        allocator.onEstimate(FRONT, "b", 1_000_000);
+
+        assertEquals(2_200_000, allocator.getStats().getBudgetBps());
+        assertEquals(1_100_000, (int) applied.get("a"));
+        assertEquals(1_100_000, (int) applied.get("b"));
+    }
+
+    @Test
+    public void when_estimateMovesLittle_then_notRebalanced() {
+        allocator.onViewerJoined(FRONT, "a", target("a"));
+        allocator.onEstimate(FRONT, "a", 2_000_000);
+        final long rebalances = allocator.getStats().getRebalances();
+
+        allocator.onEstimate(FRONT, "a", 2_050_000);
+
+        assertEquals(rebalances, allocator.getStats().getRebalances());
+        assertEquals(2_200_000, (int) applied.get("a"));
+    }
+
+    @Test
+    public void when_estimatesAtTheCaps_then_budgetGrows() {
+        allocator.onViewerJoined(FRONT, "a", target("a"));
+        allocator.onViewerJoined(FRONT, "b", target("b"));
+        allocator.onEstimate(FRONT, "a", 1_000_000);
+        allocator.onEstimate(FRONT, "b", 1_000_000);
+
+        for (int i = 0; i < 3; i++) {
+            final long budgetBps = allocator.getStats().getBudgetBps();
+            allocator.onEstimate(FRONT, "a", applied.get("a"));
+            allocator.onEstimate(FRONT, "b", applied.get("b"));
+
+            assertTrue(allocator.getStats().getBudgetBps() > budgetBps);
+        }
+        assertEquals(2_928_200, allocator.getStats().getBudgetBps());
+        assertEquals(1_464_100, (int) applied.get("a"));
+    }
+
+    @Test
+    public void when_configuredBelowMeasured_then_configuredUsed() {
+        allocator.setBudgetBps(1_000_000);
+        allocator.onViewerJoined(FRONT, "a", target("a"));
+        allocator.onEstimate(FRONT, "a", 5_000_000);
+
+        assertEquals(1_000_000, allocator.getStats().getBudgetBps());
+        assertEquals(1_000_000, (int) applied.get("a"));
+    }
+
+    @Test
+    public void when_channelStopped_then_itsViewersDropped() {
+        allocator.onViewerJoined(FRONT, "a", target("a"));
+        allocator.onViewerJoined(BACK, "b", target("b"));
+        allocator.onChannelStopped(BACK);
+
+        assertEquals(1, allocator.getStats().getViewers());
+        assertEquals(4_000_000, (int) applied.get("a"));
+    }
+
+    @Test
+    public void when_shareUnchanged_then_notReapplied() {
+        allocator.onViewerJoined(FRONT, "a", target("a"));
+        applied.clear();
+        allocator.setChannelPriority(BACK, 1, 1);
+
+        assertFalse(applied.containsKey("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_maximumBelowMinimum_then_throws() {
+        new UplinkAllocator(Runnable::run, 0, 2_000_000, 1_000_000);
+    }
+}
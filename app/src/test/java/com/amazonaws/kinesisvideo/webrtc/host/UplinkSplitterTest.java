@@ -0,0 +1,72 @@
+package com.amazonaws.kinesisvideo.webrtc.host;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class UplinkSplitterTest {
+
+    @Test
+    public void when_samePriority_then_splitByWeight() {
+        final Map<String, Long> split = UplinkSplitter.split(3_000_000, Arrays.asList(
+                new UplinkSplitter.Demand("a", 0, 2, 0, 5_000_000),
+                new UplinkSplitter.Demand("b", 0, 1, 0, 5_000_000)));
+
+        assertEquals(2_000_000, (long) split.get("a"));
+        assertEquals(1_000_000, (long) split.get("b"));
+    }
+
+    @Test
+    public void when_higherPriority_then_servedUpToItsMaximumFirst() {
+        final Map<String, Long> split = UplinkSplitter.split(3_000_000, Arrays.asList(
+                new UplinkSplitter.Demand("low", 0, 1, 100_000, 2_500_000),
+                new UplinkSplitter.Demand("high", 1, 1, 100_000, 2_500_000)));
+
+        assertEquals(2_500_000, (long) split.get("high"));
+        assertEquals(500_000, (long) split.get("low"));
+    }
+
+    @Test
+    public void when_viewerCappedAtMaximum_then_othersOfSamePriorityShareTheRest() {
+        final Map<String, Long> split = UplinkSplitter.split(3_000_000, Arrays.asList(
+                new UplinkSplitter.Demand("small", 0, 1, 0, 500_000),
+                new UplinkSplitter.Demand("a", 0, 1, 0, 5_000_000),
+                new UplinkSplitter.Demand("b", 0, 1, 0, 5_000_000)));
+
+        assertEquals(500_000, (long) split.get("small"));
+        assertEquals(1_250_000, (long) split.get("a"));
+        assertEquals(1_250_000, (long) split.get("b"));
+    }
+
+    @Test
+    public void when_budgetShort_then_minimumsGivenByPriority() {
+        final Map<String, Long> split = UplinkSplitter.split(250_000, Arrays.asList(
+                new UplinkSplitter.Demand("low", 0, 1, 150_000, 2_500_000),
+                new UplinkSplitter.Demand("high", 1, 1, 150_000, 2_500_000)));
+
+        assertEquals(150_000, (long) split.get("high"));
+        assertEquals(100_000, (long) split.get("low"));
+    }
+
+    @Test
+    public void when_budgetExceedsAllMaximums_then_leftOver() {
+        final Map<String, Long> split = UplinkSplitter.split(10_000_000,
+                Collections.singletonList(new UplinkSplitter.Demand("only", 0, 1, 150_000, 2_500_000)));
+
+        assertEquals(2_500_000, (long) split.get("only"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_weightNotPositive_then_throws() {
+        new UplinkSplitter.Demand("viewer", 0, 0, 0, 1_000_000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_maximumBelowMinimum_then_throws() {
+        new UplinkSplitter.Demand("viewer", 0, 1, 2_000_000, 1_000_000);
+    }
+}
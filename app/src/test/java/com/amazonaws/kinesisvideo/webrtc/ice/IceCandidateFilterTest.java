@@ -0,0 +1,99 @@
+package com.amazonaws.kinesisvideo.webrtc.ice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.webrtc.PeerConnection;
+
+import java.util.Collections;
+
+public class IceCandidateFilterTest {
+
+    private static final String HOST_WIFI = "candidate:1 1 udp 2122260223 192.168.1.5 50000 typ host network-cost 10";
+
+    private static final String HOST_CELLULAR = "candidate:2 1 udp 2122194687 10.64.0.9 50001 typ host network-cost 900";
+
+    private static final String HOST_IPV6 = "candidate:3 1 udp 2122262783 2001:db8::5 50002 typ host network-cost 10";
+
+    private static final String HOST_TCP = "candidate:4 1 tcp 1518280447 192.168.1.5 9 typ host tcptype active";
+
+    private static final String RELAY = "candidate:5 1 udp 41885439 198.51.100.20 60000 typ relay raddr 203.0.113.7 rport 50000";
+
+    @Test
+    public void when_allowAll_then_everythingAccepted() {
+        for (final String candidate : new String[]{HOST_WIFI, HOST_CELLULAR, HOST_IPV6, HOST_TCP, RELAY, "garbage"}) {
+            assertTrue(IceCandidateFilter.ALLOW_ALL.acceptLocal(candidate));
+            assertTrue(IceCandidateFilter.ALLOW_ALL.acceptRemote(candidate));
+        }
+    }
+
+    @Test
+    public void when_relayOnly_then_onlyRelayAccepted() {
+        final IceCandidateFilter filter = IceCandidateFilter.builder().setRelayOnly(true).build();
+
+        assertFalse(filter.acceptRemote(HOST_WIFI));
+        assertFalse(filter.acceptRemote(HOST_TCP));
+        assertTrue(filter.acceptRemote(RELAY));
+        assertFalse(filter.acceptLocal(HOST_WIFI));
+    }
+
+    @Test
+    public void when_noTcpNoIpv6_then_thoseDropped() {
+        final IceCandidateFilter filter = IceCandidateFilter.builder().setAllowTcp(false).setAllowIpv6(false).build();
+
+        assertTrue(filter.acceptRemote(HOST_WIFI));
+        assertFalse(filter.acceptRemote(HOST_TCP));
+        assertFalse(filter.acceptRemote(HOST_IPV6));
+        assertFalse(filter.acceptLocal(HOST_TCP));
+    }
+
+    @Test
+    public void when_wifiPreferred_then_localCellularDroppedAndUnknownCostKept() {
+        final IceCandidateFilter filter = IceCandidateFilter.builder()
+                .setPreferredNetwork(PeerConnection.AdapterType.WIFI)
+                .build();
+
+        assertTrue(filter.acceptLocal(HOST_WIFI));
+        assertFalse(filter.acceptLocal(HOST_CELLULAR));
+        assertTrue(filter.acceptLocal(RELAY));
+    }
+
+    @Test
+    public void when_wifiPreferred_then_remoteCellularKept() {
+        final IceCandidateFilter filter = IceCandidateFilter.builder()
+                .setPreferredNetwork(PeerConnection.AdapterType.WIFI)
+                .build();
+
+        assertTrue(filter.acceptRemote(HOST_CELLULAR));
+    }
+
+    @Test
+    public void when_unparsable_then_accepted() {
+        final IceCandidateFilter filter = IceCandidateFilter.builder().setRelayOnly(true).build();
+
+        assertTrue(filter.acceptRemote(""));
+        assertTrue(filter.acceptLocal("candidate:1 1 udp"));
+    }
+
+    @Test
+    public void when_appliedToConfiguration_then_gatheringRestricted() {
+        final PeerConnection.RTCConfiguration rtcConfig = new PeerConnection.RTCConfiguration(Collections.emptyList());
+        rtcConfig.tcpCandidatePolicy = PeerConnection.TcpCandidatePolicy.ENABLED;
+
+        IceCandidateFilter.builder()
+                .setRelayOnly(true)
+                .setAllowTcp(false)
+                .setAllowIpv6(false)
+                .setPreferredNetwork(PeerConnection.AdapterType.WIFI)
+                .build()
+                .applyTo(rtcConfig);
+
+        assertEquals(PeerConnection.IceTransportsType.RELAY, rtcConfig.iceTransportsType);
+        assertEquals(PeerConnection.TcpCandidatePolicy.DISABLED, rtcConfig.tcpCandidatePolicy);
+        assertEquals(0, rtcConfig.maxIPv6Networks);
+        assertEquals(PeerConnection.AdapterType.WIFI, rtcConfig.networkPreference);
+        assertEquals(PeerConnection.CandidateNetworkPolicy.LOW_COST, rtcConfig.candidateNetworkPolicy);
+    }
+}
@@ -0,0 +1,65 @@
+package com.amazonaws.kinesisvideo.webrtc.ice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IceCandidateLineTest {
+
+    private final IceCandidateLine line = new IceCandidateLine();
+
+    @Test
+    public void when_serverReflexiveCandidate_then_allFieldsParsed() {
+        assertTrue(line.parse("candidate:842163049 1 udp 1677729535 203.0.113.7 50000 typ srflx "
+                + "raddr 10.0.0.2 rport 50000 generation 0 ufrag abcd network-id 1 network-cost 10"));
+
+        assertEquals("842163049", line.getFoundation());
+        assertEquals(1, line.getComponent());
+        assertEquals(IceCandidateLine.Protocol.UDP, line.getProtocol());
+        assertEquals(1677729535L, line.getPriority());
+        assertEquals("203.0.113.7", line.getAddress());
+        assertFalse(line.isIpv6());
+        assertEquals(50000, line.getPort());
+        assertEquals(IceCandidateLine.Type.SRFLX, line.getType());
+        assertEquals(10, line.getNetworkCost());
+    }
+
+    @Test
+    public void when_ipv6TcpCandidateWithAttributePrefix_then_parsed() {
+        assertTrue(line.parse("a=candidate:1 2 TCP 4294967295 2001:db8::1 9 typ host tcptype active"));
+
+        assertEquals(2, line.getComponent());
+        assertEquals(IceCandidateLine.Protocol.TCP, line.getProtocol());
+        assertEquals(4294967295L, line.getPriority());
+        assertEquals("2001:db8::1", line.getAddress());
+        assertTrue(line.isIpv6());
+        assertEquals(IceCandidateLine.Type.HOST, line.getType());
+        assertEquals(-1, line.getNetworkCost());
+    }
+
+    @Test
+    public void when_lineIsReused_then_previousValuesDoNotLeak() {
+        assertTrue(line.parse("candidate:1 1 udp 100 10.0.0.2 5000 typ host network-cost 900"));
+        assertTrue(line.parse("candidate:2 1 udp 100 3dd5c1e8-2f6c-4a4e-9a8e-2c2d7a0e0a11.local 5000 typ relay"));
+
+        assertEquals("3dd5c1e8-2f6c-4a4e-9a8e-2c2d7a0e0a11.local", line.getAddress());
+        assertEquals(IceCandidateLine.Type.RELAY, line.getType());
+        assertEquals(-1, line.getNetworkCost());
+    }
+
+    @Test
+    public void when_malformed_then_rejected() {
+        assertFalse(line.parse(""));
+        assertFalse(line.parse("candidate:"));
+        assertFalse(line.parse("foundation 1 udp 100 10.0.0.2 5000 typ host"));
+        assertFalse(line.parse("candidate:1 0 udp 100 10.0.0.2 5000 typ host"));
+        assertFalse(line.parse("candidate:1 1 sctp 100 10.0.0.2 5000 typ host"));
+        assertFalse(line.parse("candidate:1 1 udp 4294967296 10.0.0.2 5000 typ host"));
+        assertFalse(line.parse("candidate:1 1 udp 100 10.0.0.2 65536 typ host"));
+        assertFalse(line.parse("candidate:1 1 udp 100 10.0.0.2 5000 type host"));
+        assertFalse(line.parse("candidate:1 1 udp 100 10.0.0.2 5000 typ local"));
+        assertFalse(line.parse("candidate:1 1 udp 100 10.0.0.2 5000 typ host generation"));
+    }
+}
@@ -0,0 +1,124 @@
+package com.amazonaws.kinesisvideo.webrtc.ice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.webrtc.PeerConnection.IceConnectionState;
+
+public class IceRestartPolicyTest {
+
+    private final IceRestartPolicy policy = new IceRestartPolicy(3000, 5000, 20000);
+
+    @Test
+    public void when_disconnectedBriefly_then_noRestart() {
+        connect(0);
+        policy.onIceConnectionChange(IceConnectionState.DISCONNECTED, 1000);
+        assertNull(policy.poll(2000));
+        policy.onIceConnectionChange(IceConnectionState.CONNECTED, 2500);
+
+        assertNull(policy.poll(10000));
+        assertEquals(0, policy.getStats().getRestarts());
+        assertEquals(1, policy.getStats().getRecoveries());
+        assertEquals(1500, policy.getStats().getLastRecoveryMs());
+    }
+
+    @Test
+    public void when_disconnectedPastThreshold_then_restartAndRecoveryTimeRecorded() {
+        connect(0);
+        policy.onIceConnectionChange(IceConnectionState.DISCONNECTED, 1000);
+        assertNull(policy.poll(3999));
+        assertEquals(IceRestartPolicy.Reason.DISCONNECTED_TIMEOUT, policy.poll(4000));
+        assertTrue(policy.getStats().isRecovering());
+
+        policy.onIceConnectionChange(IceConnectionState.CONNECTED, 6000);
+        final IceRecoveryStats stats = policy.getStats();
+        assertEquals(1, stats.getRestarts());
+        assertEquals(1, stats.getRecoveries());
+        assertEquals(5000, stats.getLastRecoveryMs());
+        assertFalse(stats.isRecovering());
+    }
+
+    @Test
+    public void when_failed_then_restartImmediately() {
+        connect(0);
+        policy.onIceConnectionChange(IceConnectionState.FAILED, 1000);
+
+        assertEquals(IceRestartPolicy.Reason.FAILED, policy.poll(1000));
+        assertNull(policy.poll(1001));
+    }
+
+    @Test
+    public void when_initialConnectionFails_then_restart() {
+        policy.onIceConnectionChange(IceConnectionState.CHECKING, 0);
+        assertNull(policy.poll(60000));
+        policy.onIceConnectionChange(IceConnectionState.FAILED, 61000);
+
+        assertEquals(IceRestartPolicy.Reason.FAILED, policy.poll(61000));
+    }
+
+    @Test
+    public void when_restartsDoNotRecover_then_intervalBacksOffUpToMaximum() {
+        connect(0);
+        policy.onIceConnectionChange(IceConnectionState.FAILED, 1000);
+
+        assertEquals(IceRestartPolicy.Reason.FAILED, policy.poll(1000));
+        assertNull(policy.poll(5999));
+        assertEquals(IceRestartPolicy.Reason.FAILED, policy.poll(6000));
+        assertNull(policy.poll(15999));
+        assertEquals(IceRestartPolicy.Reason.FAILED, policy.poll(16000));
+        assertNull(policy.poll(35999));
+        assertEquals(IceRestartPolicy.Reason.FAILED, policy.poll(36000));
+        assertNull(policy.poll(55999));
+        assertEquals(IceRestartPolicy.Reason.FAILED, policy.poll(56000));
+        assertEquals(5, policy.getStats().getRestarts());
+
+        // Recovering resets the back-off
+        policy.onIceConnectionChange(IceConnectionState.CONNECTED, 57000);
+        policy.onIceConnectionChange(IceConnectionState.FAILED, 62000);
+        assertEquals(IceRestartPolicy.Reason.FAILED, policy.poll(62000));
+        assertNull(policy.poll(66999));
+        assertEquals(IceRestartPolicy.Reason.FAILED, policy.poll(67000));
+    }
+
+    @Test
+    public void when_networkChanges_then_restartOnceRateLimited() {
+        assertNull(policyAfterNetworkChange(0));
+
+        connect(0);
+        policy.onNetworkChange(1000);
+        assertEquals(IceRestartPolicy.Reason.NETWORK_CHANGE, policy.poll(1000));
+        assertNull(policy.poll(1500));
+
+        policy.onNetworkChange(2000);
+        assertNull(policy.poll(2000));
+        assertEquals(IceRestartPolicy.Reason.NETWORK_CHANGE, policy.poll(6000));
+    }
+
+    @Test
+    public void when_closed_then_noRestart() {
+        connect(0);
+        policy.onIceConnectionChange(IceConnectionState.DISCONNECTED, 1000);
+        policy.onIceConnectionChange(IceConnectionState.CLOSED, 1500);
+        policy.onNetworkChange(2000);
+
+        assertNull(policy.poll(60000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void when_intervalsOutOfOrder_then_throws() {
+        new IceRestartPolicy(3000, 10000, 5000);
+    }
+
+    private IceRestartPolicy.Reason policyAfterNetworkChange(final long nowMs) {
+        policy.onNetworkChange(nowMs);
+        return policy.poll(nowMs);
+    }
+
+    private void connect(final long nowMs) {
+        policy.onIceConnectionChange(IceConnectionState.CHECKING, nowMs);
+        policy.onIceConnectionChange(IceConnectionState.CONNECTED, nowMs);
+    }
+}
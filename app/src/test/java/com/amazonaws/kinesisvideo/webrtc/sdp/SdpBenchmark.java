@@ -0,0 +1,118 @@
+package com.amazonaws.kinesisvideo.webrtc.sdp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses and serializes captured offers from Chrome and from this app, and caps the video bitrate
+ * and moves H.264 first with {@link SdpSession} and with the regular expressions such munging is
+ * usually done with. Run {@link #main} from the IDE; the GC profiler shows the allocation rate of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SdpBenchmark {
+
+    private static final Pattern VIDEO_SECTION = Pattern.compile("(m=video[^\\r\\n]*\\r\\n(?:[ic]=[^\\r\\n]*\\r\\n)*)");
+
+    private static final Pattern VIDEO_M_LINE = Pattern.compile("m=video (\\d+) (\\S+)((?: \\d+)+)");
+
+    private static final Pattern H264_RTPMAP = Pattern.compile("a=rtpmap:(\\d+) H264/90000");
+
+    @Param({"chrome_offer.sdp", "android_offer.sdp"})
+    public String offerName;
+
+    private String offer;
+
+    private SdpSession parsed;
+
+    @Setup
+    public void setUp() throws IOException {
+        offer = SdpSessionTest.readOffer(offerName);
+        parsed = SdpSession.parse(offer);
+    }
+
+    @Benchmark
+    public SdpSession parse() {
+        return SdpSession.parse(offer);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return parsed.toString();
+    }
+
+    @Benchmark
+    public String mungeTyped() {
+        final SdpSession sdp = SdpSession.parse(offer);
+        for (final SdpMedia video : sdp.getMedia("video")) {
+            video.setBandwidth("AS", 1500);
+            final List<String> h264 = new ArrayList<>();
+            for (final RtpMap rtpMap : video.getRtpMaps()) {
+                if ("H264".equals(rtpMap.getEncodingName())) {
+                    h264.add(Integer.toString(rtpMap.getPayloadType()));
+                }
+            }
+            video.setFormatOrder(h264);
+        }
+        return sdp.toString();
+    }
+
+    @Benchmark
+    public String mungeRegex() {
+        String sdp = VIDEO_SECTION.matcher(offer).replaceFirst("$1b=AS:1500\r\n");
+
+        final StringBuilder h264 = new StringBuilder();
+        final Matcher rtpMaps = H264_RTPMAP.matcher(sdp);
+        while (rtpMaps.find()) {
+            h264.append(' ').append(rtpMaps.group(1));
+        }
+        final Matcher mLine = VIDEO_M_LINE.matcher(sdp);
+        if (mLine.find()) {
+            final List<String> preferred = Arrays.asList(h264.toString().trim().split(" "));
+            final StringBuilder formats = new StringBuilder();
+            for (final String format : preferred) {
+                formats.append(' ').append(format);
+            }
+            for (final String format : mLine.group(3).trim().split(" ")) {
+                if (!preferred.contains(format)) {
+                    formats.append(' ').append(format);
+                }
+            }
+            sdp = sdp.substring(0, mLine.start()) + "m=video " + mLine.group(1) + " " + mLine.group(2)
+                    + formats + sdp.substring(mLine.end());
+        }
+        return sdp;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SdpBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
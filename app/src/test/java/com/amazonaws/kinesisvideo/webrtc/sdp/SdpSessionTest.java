@@ -0,0 +1,151 @@
+package com.amazonaws.kinesisvideo.webrtc.sdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+public class SdpSessionTest {
+
+    @Test
+    public void when_realOffersParsed_then_serializedUnchanged() throws IOException {
+        for (final String name : new String[]{"chrome_offer.sdp", "android_offer.sdp"}) {
+            final String offer = readOffer(name);
+            assertEquals(name, offer, SdpSession.parse(offer).toString());
+        }
+    }
+
+    @Test
+    public void when_irregularText_then_serializedUnchanged() {
+        final String[] descriptions = {
+                "",
+                "v=0",
+                "v=0\nm=audio 9 RTP/AVP 0\n",
+                "v=0\r\nm=audio 9 RTP/AVP 0\na=sendonly",
+                "v=0\r\n\r\nnot a line\r\nm=\r\n",
+        };
+        for (final String description : descriptions) {
+            assertEquals(description, SdpSession.parse(description).toString());
+        }
+    }
+
+    @Test
+    public void when_chromeOfferParsed_then_typedAttributesAvailable() throws IOException {
+        final SdpSession sdp = SdpSession.parse(readOffer("chrome_offer.sdp"));
+
+        assertEquals("BUNDLE 0 1 2", sdp.getAttribute("group"));
+        assertEquals(3, sdp.getMedia().size());
+        assertEquals(7, sdp.getSessionLines().size());
+
+        final SdpMedia audio = sdp.findMedia("0");
+        assertEquals("audio", audio.getType());
+        assertEquals(9, audio.getPort());
+        assertEquals("UDP/TLS/RTP/SAVPF", audio.getProtocol());
+        assertEquals(Arrays.asList("111", "63", "9", "0", "8", "13", "110", "126"), audio.getFormats());
+        assertEquals("sendrecv", audio.getDirection());
+
+        final RtpMap opus = audio.getRtpMap(111);
+        assertEquals("opus", opus.getEncodingName());
+        assertEquals(48000, opus.getClockRate());
+        assertEquals(2, opus.getChannels());
+        assertEquals("1", audio.getFmtp(111).getParameter("useinbandfec"));
+
+        final SdpMedia video = sdp.getMedia("video").get(0);
+        assertEquals(25, video.getRtpMaps().size());
+        assertEquals("42e01f", video.getFmtp(106).getParameter("profile-level-id"));
+        assertEquals("96", video.getFmtp(97).getParameter("apt"));
+        assertNull(video.getFmtp(96));
+
+        final List<ExtMap> extMaps = video.getExtMaps();
+        assertEquals(11, extMaps.size());
+        assertEquals(14, extMaps.get(0).getId());
+        assertEquals("urn:ietf:params:rtp-hdrext:toffset", extMaps.get(0).getUri());
+
+        final SdpMedia data = sdp.getMedia("application").get(0);
+        assertEquals(Arrays.asList("webrtc-datachannel"), data.getFormats());
+        assertEquals("5000", data.getAttribute("sctp-port"));
+        assertEquals("", audio.getAttribute("rtcp-mux"));
+    }
+
+    @Test
+    public void when_bandwidthSet_then_lineInsertedAfterConnectionAndReplacedLater() throws IOException {
+        final SdpSession sdp = SdpSession.parse(readOffer("android_offer.sdp"));
+        final SdpMedia video = sdp.getMedia("video").get(0);
+        assertEquals(-1, video.getBandwidth("AS"));
+
+        video.setBandwidth("AS", 1500);
+        video.setBandwidth("TIAS", 1400000);
+        video.setBandwidth("AS", 2000);
+
+        assertEquals(2000, video.getBandwidth("AS"));
+        assertEquals(1400000, video.getBandwidth("TIAS"));
+        assertTrue(sdp.toString().contains("m=video 9 UDP/TLS/RTP/SAVPF 96 97 98 99 100 101 127 124 125\r\n"
+                + "c=IN IP4 0.0.0.0\r\nb=AS:2000\r\nb=TIAS:1400000\r\na=rtcp:9 IN IP4 0.0.0.0\r\n"));
+
+        assertTrue(video.removeBandwidth("TIAS"));
+        assertFalse(video.removeBandwidth("TIAS"));
+    }
+
+    @Test
+    public void when_formatsReorderedAndRemoved_then_relatedLinesFollow() throws IOException {
+        final SdpSession sdp = SdpSession.parse(readOffer("android_offer.sdp"));
+        final SdpMedia video = sdp.getMedia("video").get(0);
+
+        video.setFormatOrder(Arrays.asList("100", "101", "42"));
+        assertEquals(Arrays.asList("100", "101", "96", "97", "98", "99", "127", "124", "125"), video.getFormats());
+
+        assertTrue(video.removeFormat("96"));
+        assertFalse(video.removeFormat("96"));
+        assertNull(video.getRtpMap(96));
+        assertNull(video.getFmtp(96));
+        final String text = sdp.toString();
+        assertFalse(text.contains("a=rtcp-fb:96 "));
+        assertTrue(text.contains("m=video 9 UDP/TLS/RTP/SAVPF 100 101 97 98 99 127 124 125\r\n"));
+        // Lines of other payload types that refer to 96 are kept
+        assertEquals("96", video.getFmtp(97).getParameter("apt"));
+    }
+
+    @Test
+    public void when_linesAddedToUnterminatedDescription_then_lineEndingsKept() {
+        final SdpSession sdp = SdpSession.parse("v=0\r\nm=video 9 RTP/AVP 96\r\na=rtpmap:96 VP8/90000");
+        final SdpMedia video = sdp.getMedia().get(0);
+
+        video.setFmtp(Fmtp.parse("96 max-fr=30;max-fs=3600"));
+        video.addLine(SdpLine.attribute("sendonly", null));
+
+        assertEquals("v=0\r\nm=video 9 RTP/AVP 96\r\na=rtpmap:96 VP8/90000\r\na=fmtp:96 max-fr=30;max-fs=3600\r\n"
+                + "a=sendonly\r\n", sdp.toString());
+        assertEquals("sendonly", video.getDirection());
+    }
+
+    @Test
+    public void when_attributesMalformed_then_parsersReturnNull() {
+        assertNull(RtpMap.parse("VP8/90000"));
+        assertNull(RtpMap.parse("x VP8/90000"));
+        assertNull(Fmtp.parse("apt=96"));
+        assertNull(ExtMap.parse("urn:ietf:params:rtp-hdrext:toffset"));
+
+        final ExtMap extMap = ExtMap.parse("3/sendonly urn:example:ext attr");
+        assertEquals(3, extMap.getId());
+        assertEquals("sendonly", extMap.getDirection());
+        assertEquals("urn:example:ext", extMap.getUri());
+        assertEquals("attr", extMap.getAttributes());
+        assertEquals("a=extmap:3/sendonly urn:example:ext attr", extMap.toLine().getText());
+    }
+
+    static String readOffer(final String name) throws IOException {
+        try (InputStream in = SdpSessionTest.class.getResourceAsStream(name)) {
+            return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AdaptiveBitrateControllerTest {
+
+    private static final List<VideoEncodingLevel> LADDER = VideoEncodingLevel.defaultLadder(400, 300, 30);
+
+    @Test
+    public void when_linkIsHealthy_then_controllerStaysAtHighestLevel() {
+        final AdaptiveBitrateController controller = new AdaptiveBitrateController(LADDER);
+
+        for (int i = 0; i < 60; i++) {
+            assertNull(controller.onStats(new VideoSenderStats(i * 1000L, 2_000_000, 50, 0)));
+        }
+        assertEquals(0, controller.getCurrentLevelIndex());
+    }
+
+    @Test
+    public void when_singleCongestedSample_then_controllerDoesNotDowngrade() {
+        final AdaptiveBitrateController controller = new AdaptiveBitrateController(LADDER);
+
+        controller.onStats(new VideoSenderStats(0, 2_000_000, 50, 0.2));
+        controller.onStats(new VideoSenderStats(1000, 2_000_000, 50, 0));
+
+        assertEquals(0, controller.getCurrentLevelIndex());
+    }
+
+    @Test
+    public void when_bandwidthCollapses_then_controllerDropsToLevelThatFits() {
+        final AdaptiveBitrateController controller = new AdaptiveBitrateController(LADDER);
+
+        controller.onStats(new VideoSenderStats(0, 100_000, 50, 0));
+        final VideoEncodingLevel level = controller.onStats(new VideoSenderStats(1000, 100_000, 50, 0));
+
+        assertTrue(level.getMaxBitrateBps() <= 100_000);
+        assertTrue(level.getScaleResolutionDownBy() > 1.0);
+    }
+
+    @Test
+    public void when_nothingMeasured_then_controllerDoesNotUpgrade() {
+        final AdaptiveBitrateController controller = new AdaptiveBitrateController(LADDER);
+        controller.onStats(new VideoSenderStats(0, 100_000, 50, 0));
+        controller.onStats(new VideoSenderStats(1000, 100_000, 50, 0));
+        final int downgraded = controller.getCurrentLevelIndex();
+
+        for (int i = 0; i < 60; i++) {
+            assertNull(controller.onStats(new VideoSenderStats(2000 + i * 1000L, VideoSenderStats.UNKNOWN,
+                    VideoSenderStats.UNKNOWN, VideoSenderStats.UNKNOWN)));
+        }
+
+        assertEquals(downgraded, controller.getCurrentLevelIndex());
+    }
+
+    @Test
+    public void when_replayingWifiToCellularTrace_then_controllerAdaptsWithoutOscillating() throws IOException {
+        final List<VideoSenderStats> trace = readTrace("wifi_to_cellular_trace.csv");
+        final AdaptiveBitrateController controller = new AdaptiveBitrateController(LADDER);
+        final long start = trace.get(0).getTimestampMs();
+
+        int switchesWhileOscillating = 0;
+        long lastChangeMs = -AdaptiveBitrateController.MIN_UPGRADE_HOLD_MS;
+        for (final VideoSenderStats stats : trace) {
+            final long second = (stats.getTimestampMs() - start) / 1000;
+            final int before = controller.getCurrentLevelIndex();
+            final VideoEncodingLevel level = controller.onStats(stats);
+
+            if (level != null) {
+                if (second >= 100 && second < 140) {
+                    switchesWhileOscillating++;
+                }
+                if (controller.getCurrentLevelIndex() < before) {
+                    assertTrue("Upgrades must respect the hold time",
+                            stats.getTimestampMs() - lastChangeMs >= AdaptiveBitrateController.MIN_UPGRADE_HOLD_MS);
+                }
+                lastChangeMs = stats.getTimestampMs();
+            }
+
+            if (second == 33) {
+                // Weak cellular link: the level must fit in ~150 kbps within a few samples
+                assertTrue(controller.getCurrentLevel().getMaxBitrateBps() <= 150_000);
+            }
+            if (second == 69) {
+                // Loss and RTT spike on top of ~90 kbps
+                assertTrue(controller.getCurrentLevel().getMaxBitrateBps() <= 90_000);
+            }
+        }
+
+        assertTrue("Estimate hovering around a level boundary caused " + switchesWhileOscillating + " switches",
+                switchesWhileOscillating <= 2);
+        assertEquals("Controller should recover on the final Wi-Fi segment", 0, controller.getCurrentLevelIndex());
+    }
+
+    private List<VideoSenderStats> readTrace(final String name) throws IOException {
+        final List<VideoSenderStats> trace = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream(name), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#") || line.startsWith("timestampMs")) {
+                    continue;
+                }
+                final String[] columns = line.split(",");
+                trace.add(new VideoSenderStats(Long.parseLong(columns[0]), Double.parseDouble(columns[1]),
+                        Double.parseDouble(columns[2]), Double.parseDouble(columns[3])));
+            }
+        }
+        return trace;
+    }
+}
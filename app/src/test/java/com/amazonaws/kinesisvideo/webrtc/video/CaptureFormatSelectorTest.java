@@ -0,0 +1,67 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CaptureFormatSelectorTest {
+
+    // A typical phone back camera
+    private static final List<CaptureFormatSelector.Candidate> FORMATS = Arrays.asList(
+            new CaptureFormatSelector.Candidate(1920, 1080, 15, 30),
+            new CaptureFormatSelector.Candidate(1280, 720, 15, 30),
+            new CaptureFormatSelector.Candidate(960, 720, 15, 30),
+            new CaptureFormatSelector.Candidate(640, 480, 15, 30),
+            new CaptureFormatSelector.Candidate(352, 288, 15, 30),
+            new CaptureFormatSelector.Candidate(320, 240, 15, 30),
+            new CaptureFormatSelector.Candidate(176, 144, 15, 30));
+
+    private final CaptureFormatSelector selector = new CaptureFormatSelector();
+
+    @Test
+    public void when_targetIsSupported_then_targetIsSelected() {
+        final CameraCaptureFormat target = new CameraCaptureFormat(1280, 720, 30);
+
+        assertEquals(target, selector.select(FORMATS, target));
+    }
+
+    @Test
+    public void when_targetIsNotSupported_then_closestFormatIsSelected() {
+        // 400x300 sits between 352x288 and 640x480, the latter would more than double the pixel rate
+        final CameraCaptureFormat selected = selector.select(FORMATS, new CameraCaptureFormat(400, 300, 30));
+
+        assertEquals(new CameraCaptureFormat(352, 288, 30), selected);
+    }
+
+    @Test
+    public void when_targetIsFarAboveSmallerFormat_then_largerFormatIsSelected() {
+        final CameraCaptureFormat selected = selector.select(FORMATS, new CameraCaptureFormat(600, 450, 30));
+
+        assertEquals(new CameraCaptureFormat(640, 480, 30), selected);
+    }
+
+    @Test
+    public void when_targetFrameRateIsAboveRange_then_frameRateIsClamped() {
+        final CameraCaptureFormat selected = selector.select(FORMATS, new CameraCaptureFormat(640, 480, 60));
+
+        assertEquals(new CameraCaptureFormat(640, 480, 30), selected);
+    }
+
+    @Test
+    public void when_noCandidates_then_nullIsReturned() {
+        assertNull(selector.select(Collections.emptyList(), new CameraCaptureFormat(640, 480, 30)));
+    }
+
+    @Test
+    public void when_formatIsSerialized_then_parseReturnsSameFormat() {
+        final CameraCaptureFormat format = new CameraCaptureFormat(1280, 720, 24);
+
+        assertEquals(format, CameraCaptureFormat.parse(format.serialize()));
+        assertNull(CameraCaptureFormat.parse("1280x720"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.webrtc.RtpCapabilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CodecPreferencesTest {
+
+    private static final String BASELINE = "42e01f";
+
+    private static final String HIGH = "640c1f";
+
+    @Test
+    public void when_hardwareCodecAvailable_then_itIsOrderedFirst() {
+        final List<RtpCapabilities.CodecCapability> codecs = Arrays.asList(
+                codec("VP8", null), codec("rtx", null), codec("VP9", null), codec("H264", BASELINE));
+        final List<CodecProbeResult> probe = Arrays.asList(
+                result("H264", BASELINE, true, CodecProbeResult.UNKNOWN),
+                result("VP8", null, false, CodecProbeResult.UNKNOWN),
+                result("VP9", null, false, CodecProbeResult.UNKNOWN));
+
+        assertEquals(Arrays.asList("H264", "VP8", "VP9", "rtx"), names(CodecPreferences.order(codecs, probe)));
+    }
+
+    @Test
+    public void when_severalHardwareCodecs_then_fastestEncoderIsFirst() {
+        final List<RtpCapabilities.CodecCapability> codecs = Arrays.asList(
+                codec("VP8", null), codec("H264", BASELINE), codec("H264", HIGH), codec("AV1", null));
+        final List<CodecProbeResult> probe = Arrays.asList(
+                result("VP8", null, true, 9.5),
+                result("H264", BASELINE, true, 6.0),
+                result("H264", HIGH, true, CodecProbeResult.UNKNOWN));
+
+        final List<RtpCapabilities.CodecCapability> ordered = CodecPreferences.order(codecs, probe);
+
+        assertEquals(Arrays.asList("H264", "VP8", "H264", "AV1"), names(ordered));
+        assertEquals(BASELINE, ordered.get(0).parameters.get(CodecProbeResult.PROFILE_LEVEL_ID));
+        assertEquals(HIGH, ordered.get(2).parameters.get(CodecProbeResult.PROFILE_LEVEL_ID));
+    }
+
+    @Test
+    public void when_noProbeResults_then_orderIsUnchangedExceptResiliencyFormats() {
+        final List<RtpCapabilities.CodecCapability> codecs = Arrays.asList(
+                codec("red", null), codec("VP8", null), codec("ulpfec", null), codec("H264", BASELINE));
+
+        assertEquals(Arrays.asList("VP8", "H264", "red", "ulpfec"),
+                names(CodecPreferences.order(codecs, Collections.<CodecProbeResult>emptyList())));
+    }
+
+    private static RtpCapabilities.CodecCapability codec(final String name, final String profileLevelId) {
+        final RtpCapabilities.CodecCapability codec = new RtpCapabilities.CodecCapability();
+        codec.name = name;
+        codec.mimeType = "video/" + name;
+        codec.clockRate = 90000;
+        codec.parameters = params(profileLevelId);
+        return codec;
+    }
+
+    private static CodecProbeResult result(final String name, final String profileLevelId, final boolean hardware,
+                                           final double encodeMsPerFrame) {
+        return new CodecProbeResult(name, params(profileLevelId), hardware, encodeMsPerFrame);
+    }
+
+    private static Map<String, String> params(final String profileLevelId) {
+        final Map<String, String> params = new HashMap<>();
+        if (profileLevelId != null) {
+            params.put(CodecProbeResult.PROFILE_LEVEL_ID, profileLevelId);
+        }
+        return params;
+    }
+
+    private static List<String> names(final List<RtpCapabilities.CodecCapability> codecs) {
+        final List<String> names = new ArrayList<>();
+        for (final RtpCapabilities.CodecCapability codec : codecs) {
+            names.add(codec.name);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,106 @@
+package com.amazonaws.kinesisvideo.webrtc.video;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class EncoderLatencyMonitorTest {
+
+    private static final long FRAME_INTERVAL_MS = 33;
+
+    private long nowMs;
+
+    private long timestampNs;
+
+    @Test
+    public void when_encoderKeepsUp_then_noFallback() {
+        final EncoderLatencyMonitor monitor = new EncoderLatencyMonitor("H264");
+
+        for (int i = 0; i < 300; i++) {
+            assertNull(encodeFrame(monitor, 10));
+        }
+        assertEquals(300, monitor.getMetrics().getFramesEncoded());
+        assertEquals(0, monitor.getMetrics().getFramesDropped());
+    }
+
+    @Test
+    public void when_latencyIsHighForOneWindow_then_noFallback() {
+        final EncoderLatencyMonitor monitor = new EncoderLatencyMonitor("H264");
+
+        for (int i = 0; i < 90; i++) {
+            assertNull(encodeFrame(monitor, 10));
+        }
+        for (int i = 0; i < 30; i++) {
+            assertNull(encodeFrame(monitor, 300));
+        }
+        for (int i = 0; i < 90; i++) {
+            assertNull(encodeFrame(monitor, 10));
+        }
+    }
+
+    @Test
+    public void when_latencyIsHighForSeveralWindows_then_fallbackForLatency() {
+        final EncoderLatencyMonitor monitor = new EncoderLatencyMonitor("H264");
+
+        EncoderLatencyMonitor.Reason reason = null;
+        for (int i = 0; i < 300 && reason == null; i++) {
+            reason = encodeFrame(monitor, 150);
+        }
+
+        assertEquals(EncoderLatencyMonitor.Reason.ENCODE_LATENCY, reason);
+        assertEquals(150, monitor.getMetrics().getMaxEncodeMs());
+    }
+
+    @Test
+    public void when_encoderSkipsFrames_then_skippedFramesCountAsDropped() {
+        final EncoderLatencyMonitor monitor = new EncoderLatencyMonitor("VP8");
+
+        EncoderLatencyMonitor.Reason reason = null;
+        for (int i = 0; i < 300 && reason == null; i++) {
+            monitor.onFrameSubmitted(nextTimestamp(), nowMs);
+            nowMs += FRAME_INTERVAL_MS;
+            final long encodedTimestamp = nextTimestamp();
+            monitor.onFrameSubmitted(encodedTimestamp, nowMs);
+            monitor.onFrameEncoded(encodedTimestamp, nowMs + 5);
+            nowMs += FRAME_INTERVAL_MS;
+            reason = monitor.check(nowMs);
+        }
+
+        assertEquals(EncoderLatencyMonitor.Reason.DROPPED_FRAMES, reason);
+        assertEquals(monitor.getMetrics().getFramesEncoded(), monitor.getMetrics().getFramesDropped());
+    }
+
+    @Test
+    public void when_encoderStopsProducingFrames_then_fallbackForQueueDepth() {
+        final EncoderLatencyMonitor monitor = new EncoderLatencyMonitor("H264");
+
+        for (int i = 0; i < 90; i++) {
+            assertNull(encodeFrame(monitor, 10));
+        }
+        EncoderLatencyMonitor.Reason reason = null;
+        for (int i = 0; i < 300 && reason == null; i++) {
+            monitor.onFrameSubmitted(nextTimestamp(), nowMs);
+            nowMs += FRAME_INTERVAL_MS;
+            reason = monitor.check(nowMs);
+        }
+
+        assertEquals(EncoderLatencyMonitor.Reason.QUEUE_DEPTH, reason);
+    }
+
+    /**
+     * Submits a frame that is encoded after {@code encodeMs}, then advances to the next frame.
+     */
+    private EncoderLatencyMonitor.Reason encodeFrame(final EncoderLatencyMonitor monitor, final long encodeMs) {
+        final long frameTimestampNs = nextTimestamp();
+        monitor.onFrameSubmitted(frameTimestampNs, nowMs);
+        monitor.onFrameEncoded(frameTimestampNs, nowMs + encodeMs);
+        nowMs += FRAME_INTERVAL_MS;
+        return monitor.check(nowMs);
+    }
+
+    private long nextTimestamp() {
+        timestampNs += FRAME_INTERVAL_MS * 1_000_000L;
+        return timestampNs;
+    }
+}